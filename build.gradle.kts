@@ -9,11 +9,21 @@ group = "ru.spbstu.hsai"
 version = "0.0"
 val jarBaseName = "currency-converter-bot"
 application.mainClass.set("ru.spbstu.hsai.Application")
+// SIMD-ядро кросс-курсов (rates.kernel.mode=VECTOR) использует инкубаторный Vector API
+val vectorApiArgs = listOf("--add-modules", "jdk.incubator.vector")
+application.applicationDefaultJvmArgs = vectorApiArgs
 
 repositories {
     mavenCentral()
 }
 
+// Микробенчмарки JMH: src/jmh/java, запуск через ./gradlew jmh
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.main.get().runtimeClasspath
+    }
+}
 
 dependencies {
     implementation(platform("org.springframework:spring-framework-bom:6.2.5"))
@@ -34,6 +44,9 @@ dependencies {
     implementation("org.springframework.security:spring-security-config")
     implementation("org.springframework.security:spring-security-web")
 
+    // Metrics
+    implementation("io.micrometer:micrometer-core:1.14.5")
+
     // Netty
     implementation("io.projectreactor.netty:reactor-netty-http:1.2.4")
 
@@ -86,9 +99,17 @@ dependencies {
     implementation("org.springdoc:springdoc-openapi-webflux-core:1.8.0")
     implementation("org.springdoc:springdoc-openapi-common:1.8.0")
     implementation("io.swagger.core.v3:swagger-annotations:2.2.30")
+
+    // Benchmarks
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 
+tasks.withType<JavaCompile> {
+    options.compilerArgs.addAll(vectorApiArgs)
+}
+
 tasks.withType<Jar> {
     archiveBaseName.set(jarBaseName)
     manifest {
@@ -135,4 +156,13 @@ tasks.register("generateDocs", org.asciidoctor.gradle.jvm.AsciidoctorTask::class
 
 tasks.test {
     useJUnitPlatform()
+    jvmArgs(vectorApiArgs)
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    jvmArgs(vectorApiArgs)
+    args = (project.findProperty("jmhArgs") as String?)?.split(" ") ?: emptyList()
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package ru.spbstu.hsai.alert.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.spbstu.hsai.alert.entities.AlertCondition;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.currency.PairKey;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск сработавших уведомлений одной пары при изменении курса на 0.1%:
+ * двоичный поиск по отсортированным порогам и перебор всех условий.
+ * Запуск: ./gradlew jmh -PjmhArgs="PairAlertsBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PairAlertsBenchmark {
+    // USD/RUB около 95.5 в масштабе курсов
+    private static final long RATE = 95_500_000L;
+
+    @Param({"1000", "100000", "1000000"})
+    private int alerts;
+
+    private AlertDBO[] pairAlerts;
+    private PairAlerts index;
+    private final List<AlertResult> fired = new ArrayList<>();
+    private int pairKey;
+    private long oldRate;
+    private long newRate;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        pairAlerts = new AlertDBO[alerts];
+        for (int i = 0; i < alerts; i++) {
+            // Пороги в пределах 10% от курса, четверть уведомлений на изменение в процентах
+            int kind = random.nextInt(4);
+            String expr = switch (kind) {
+                case 0 -> ">" + BigDecimal.valueOf(RATE + random.nextLong(RATE / 10), 6).toPlainString();
+                case 1 -> "<" + BigDecimal.valueOf(RATE - random.nextLong(RATE / 10), 6).toPlainString();
+                default -> (kind == 2 ? "+" : "-") + (1 + random.nextInt(10)) + "%";
+            };
+            pairAlerts[i] = new AlertDBO(null, (long) i, "USD", "RUB", expr);
+        }
+        index = PairAlerts.of(pairAlerts);
+        pairKey = PairKey.of("USD", "RUB");
+        oldRate = RATE + RATE / 20;
+        newRate = oldRate + RATE / 1000;
+    }
+
+    @Benchmark
+    public int sortedThresholds() {
+        fired.clear();
+        index.collectFired(pairKey, oldRate, newRate, 10, fired);
+        return fired.size();
+    }
+
+    @Benchmark
+    public int scan() {
+        fired.clear();
+        for (AlertDBO alert : pairAlerts) {
+            if (alert.getCondition().test(oldRate, newRate, 10)) {
+                fired.add(PairChange.toResult(alert, alert.getCondition(), pairKey, newRate, 10));
+            }
+        }
+        return fired.size();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.spbstu.hsai.rates;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import ru.spbstu.hsai.rates.api.http.ExchangeRatesDecoder;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesDTO;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение разбора latest.json: ObjectMapper в ExchangeRatesDTO (Map с BigDecimal)
+ * и потоковый ExchangeRatesDecoder в массив double.
+ * Запуск: ./gradlew jmh -PjmhArgs="ExchangeRatesParsingBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExchangeRatesParsingBenchmark {
+    // Размер HTTP-чанка, которыми Netty обычно отдаёт тело ответа
+    private static final int CHUNK_SIZE = 8192;
+
+    @Param({"170"})
+    private int currencies;
+
+    // Так же настроен ObjectMapper кодека WebClient, которым раньше читался ответ
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Map<String, String> rates = new TreeMap<>();
+        for (int i = 0; i < currencies; i++) {
+            String code = "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+            rates.put(code, BigDecimal.valueOf(random.nextDouble() * 1000).setScale(6, RoundingMode.HALF_UP)
+                    .toPlainString());
+        }
+        StringBuilder json = new StringBuilder()
+                .append("{\"disclaimer\":\"Usage subject to terms\",")
+                .append("\"license\":\"https://openexchangerates.org/license\",")
+                .append("\"timestamp\":1700000000,\"base\":\"AAA\",\"rates\":{");
+        rates.forEach((code, rate) -> json.append('"').append(code).append("\":").append(rate).append(','));
+        json.setLength(json.length() - 1);
+        body = json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, BigDecimal> objectMapperDto() throws IOException {
+        return objectMapper.readValue(body, ExchangeRatesDTO.class).getRates();
+    }
+
+    @Benchmark
+    public ExchangeRatesVector streamingDecoder() {
+        return ExchangeRatesDecoder.decode(body);
+    }
+
+    @Benchmark
+    public ExchangeRatesVector streamingDecoderChunked() {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < body.length; i += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, body.length - i);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(body, i, length)));
+        }
+        return ExchangeRatesDecoder.decode(Flux.fromIterable(buffers)).block();
+    }
+}
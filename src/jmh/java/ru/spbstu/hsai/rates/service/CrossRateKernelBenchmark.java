@@ -0,0 +1,109 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.spbstu.hsai.rates.CrossRates;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересчёт полной матрицы кросс-курсов с маской изменений и процентами:
+ * скалярное ядро, SIMD-ядро и прежнее вычисление через BigDecimal.
+ * Запуск: ./gradlew jmh -PjmhArgs="CrossRateKernelBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CrossRateKernelBenchmark {
+    // Курсы в масштабе 12, как у вектора OpenExchangeRates с курсом BTC
+    private static final int SCALE = 12;
+
+    @Param({"170", "500", "2000"})
+    private int currencies;
+
+    private final CrossRateKernel scalar = new ScalarCrossRateKernel();
+    private final CrossRateKernel vector = new VectorCrossRateKernel();
+
+    private long[] rates;
+    private long[] previous;
+    private BigDecimal[] decimalRates;
+    private BigDecimal[] decimalPrevious;
+    private long[] matrix;
+    private long[] changed;
+    private long[] percents;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int n = currencies;
+        rates = new long[n];
+        decimalRates = new BigDecimal[n];
+        long[] oldRates = new long[n];
+        for (int i = 0; i < n; i++) {
+            rates[i] = (long) (Math.pow(10, 6 + random.nextDouble() * 12));
+            // Около трети курсов меняется между обновлениями
+            oldRates[i] = random.nextInt(3) == 0 ? rates[i] + rates[i] / 1000 : rates[i];
+            decimalRates[i] = BigDecimal.valueOf(rates[i], SCALE);
+        }
+        previous = new long[n * n];
+        scalar.compute(oldRates, null, 0, previous, new long[words(n)], null);
+        decimalPrevious = Arrays.stream(previous)
+                .mapToObj(rate -> BigDecimal.valueOf(rate, CrossRates.RATE_SCALE))
+                .toArray(BigDecimal[]::new);
+        matrix = new long[n * n];
+        changed = new long[words(n)];
+        percents = new long[n * n];
+    }
+
+    @Benchmark
+    public CrossRateKernel.Result scalarKernel() {
+        Arrays.fill(changed, 0);
+        return scalar.compute(rates, previous, 0, matrix, changed, percents);
+    }
+
+    @Benchmark
+    public CrossRateKernel.Result vectorKernel() {
+        Arrays.fill(changed, 0);
+        return vector.compute(rates, previous, 0, matrix, changed, percents);
+    }
+
+    @Benchmark
+    public int bigDecimal() {
+        int n = currencies;
+        int changedCount = 0;
+        for (int base = 0; base < n; base++) {
+            for (int target = 0; target < n; target++) {
+                BigDecimal rate = decimalRates[target].divide(decimalRates[base], CrossRates.RATE_SCALE, RoundingMode.HALF_UP);
+                BigDecimal oldRate = decimalPrevious[base * n + target];
+                if (rate.compareTo(oldRate) != 0) {
+                    changedCount++;
+                    rate.subtract(oldRate)
+                            .divide(oldRate, 6, RoundingMode.HALF_UP)
+                            .multiply(BigDecimal.valueOf(100))
+                            .setScale(CrossRates.PERCENT_SCALE, RoundingMode.HALF_UP);
+                }
+            }
+        }
+        return changedCount;
+    }
+
+    private static int words(int n) {
+        return (n * n + 63) / 64;
+    }
+}
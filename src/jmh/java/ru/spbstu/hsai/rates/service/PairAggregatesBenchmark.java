@@ -0,0 +1,66 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Учёт одного обновления курсов в OHLC-бакетах и EWMA всех пар и сериализация состояния.
+ * Запуск: ./gradlew jmh -PjmhArgs="PairAggregatesBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PairAggregatesBenchmark {
+    @Param({"170"})
+    private int currencies;
+
+    private PairAggregates aggregates;
+    private double[][] updates;
+    private long time;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] codes = new String[currencies];
+        for (int i = 0; i < currencies; i++) {
+            codes[i] = String.format("C%03d", i);
+        }
+        aggregates = new PairAggregates(codes);
+        updates = new double[64][currencies];
+        for (double[] rates : updates) {
+            for (int i = 0; i < currencies; i++) {
+                rates[i] = Math.pow(10, random.nextDouble() * 6 - 3);
+            }
+        }
+        time = 1_767_225_600L;
+        aggregates.update(time, updates[0]);
+    }
+
+    @Benchmark
+    public boolean update() {
+        // Обновление раз в 10 минут, поэтому периодически закрываются часовые бакеты
+        time += 600;
+        return aggregates.update(time, updates[next++ & 63]);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return aggregates.toBytes();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.entities.RateHistoryBlockDBO;
+import ru.spbstu.hsai.rates.entities.RateHistoryPoint;
+import ru.spbstu.hsai.rates.entities.RateHistoryStats;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение кросс-курсов пары за год ежечасных обновлений из сжатых блоков
+ * (без обращения к MongoDB: блоки уже загружены с проекцией на два ряда)
+ * и запросы /rate к индексу недавней истории в памяти.
+ * Запуск: ./gradlew jmh -PjmhArgs="RateHistoryBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateHistoryBenchmark {
+    private static final long YEAR_START = 1_735_689_600L;
+
+    private final List<RateHistoryBlockDBO> blocks = new ArrayList<>();
+    private RecentRateHistory recent;
+    private LocalDate recentFrom;
+    private LocalDate lastDay;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] codes = {"EUR", "RUB"};
+        double[] rates = {0.92, 91.5};
+        for (int day = 0; day < 365; day++) {
+            String id = LocalDate.ofEpochDay(YEAR_START / 86_400 + day).toString();
+            RateHistoryBlockDBO block = new RateHistoryBlockDBO(id, "USD", 0, new byte[0], new HashMap<>(), null, null);
+            for (int hour = 0; hour < 24; hour++) {
+                rates[0] = Math.round(rates[0] * (1 + random.nextGaussian() * 0.001) * 1e6) / 1e6;
+                rates[1] = Math.round(rates[1] * (1 + random.nextGaussian() * 0.001) * 1e4) / 1e4;
+                long time = YEAR_START + day * 86_400L + hour * 3600L;
+                RateHistoryService.appendPoint(block, time, new ExchangeRatesVector(time, "USD", codes, rates.clone()));
+            }
+            blocks.add(block);
+        }
+        recentFrom = LocalDate.parse(blocks.get(blocks.size() - 31).getId());
+        recent = RecentRateHistory.of(recentFrom, blocks.subList(blocks.size() - 31, blocks.size()));
+        lastDay = LocalDate.parse(blocks.get(blocks.size() - 1).getId());
+    }
+
+    @Benchmark
+    public RateHistoryPoint recentRateOn() {
+        return recent.lastOn("EUR", "RUB", lastDay);
+    }
+
+    @Benchmark
+    public RateHistoryStats recentStatsMonth() {
+        RateStatsAccumulator accumulator = new RateStatsAccumulator();
+        recent.accumulate("EUR", "RUB", recentFrom, lastDay, accumulator);
+        return accumulator.toStats();
+    }
+
+    @Benchmark
+    public int readYear() {
+        int points = 0;
+        for (RateHistoryBlockDBO block : blocks) {
+            points += RateHistoryService.crossRates(block, "EUR", "RUB", YEAR_START, Long.MAX_VALUE).size();
+        }
+        return points;
+    }
+
+    @Benchmark
+    public Map<String, byte[]> appendPoint() {
+        RateHistoryBlockDBO block = blocks.get(0);
+        RateHistoryBlockDBO copy = new RateHistoryBlockDBO(null, "USD", block.getCount(), block.getTimestamps(),
+                block.getSeries(), null, null);
+        RateHistoryService.appendPoint(copy, Long.MAX_VALUE / 2,
+                new ExchangeRatesVector(0L, "USD", new String[]{"EUR", "RUB"}, new double[]{0.93, 92.0}));
+        return copy.getSeries();
+    }
+}
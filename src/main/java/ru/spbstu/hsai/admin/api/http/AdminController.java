@@ -1,5 +1,7 @@
 package ru.spbstu.hsai.admin.api.http;
 
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,12 +22,17 @@ import ru.spbstu.hsai.admin.api.http.dto.ApiKeyDTO;
 import ru.spbstu.hsai.admin.api.http.dto.CreateAdminRequest;
 import ru.spbstu.hsai.admin.entities.AdminDBO;
 import ru.spbstu.hsai.admin.service.AdminService;
+import ru.spbstu.hsai.rates.PairStatsDTO;
+import ru.spbstu.hsai.rates.PairStatsSDK;
 import ru.spbstu.hsai.rates.RatesFetcher;
 import ru.spbstu.hsai.telegram.CurrencyConverterBot;
 import ru.spbstu.hsai.user.UserDTO;
 import ru.spbstu.hsai.user.UserServiceSDK;
 
 import javax.validation.Valid;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/users")
@@ -35,7 +42,9 @@ public class AdminController {
     private final AdminService adminService;
     private final ApiKeyServiceImpl apiKeyService;
     private final RatesFetcher ratesFetcher;
+    private final PairStatsSDK pairStatsSDK;
     private final CurrencyConverterBot bot;
+    private final MeterRegistry meterRegistry;
 
     // Получение списка пользователей
     @GetMapping
@@ -85,6 +94,30 @@ public class AdminController {
         return Mono.empty();
     }
 
+    // OHLC-бакеты и волатильность валютной пары
+    @GetMapping("/currency/stats/{base}/{target}")
+    public Mono<PairStatsDTO> getPairStats(
+            @PathVariable("base") String base,
+            @PathVariable("target") String target
+    ) {
+        return pairStatsSDK.getPairStats(base.toUpperCase(), target.toUpperCase());
+    }
+
+    // Метрики приложения: имя метрики с тегами -> статистика -> значение
+    @GetMapping("/metrics")
+    public Mono<Map<String, Map<String, Double>>> getMetrics() {
+        return Mono.fromSupplier(() -> {
+            Map<String, Map<String, Double>> metrics = new TreeMap<>();
+            meterRegistry.forEachMeter(meter -> {
+                Map<String, Double> measurements = new TreeMap<>();
+                meter.measure().forEach(measurement ->
+                        measurements.put(measurement.getStatistic().getTagValueRepresentation(), measurement.getValue()));
+                metrics.put(meterKey(meter.getId()), measurements);
+            });
+            return metrics;
+        });
+    }
+
     // Рассылка уведомлений
     @PostMapping("/notify")
     public Mono<BroadcastResponse> sendGlobalNotification(@RequestBody BroadcastRequest request) {
@@ -104,6 +137,15 @@ public class AdminController {
     }
 
 
+    private String meterKey(Meter.Id id) {
+        if (id.getTags().isEmpty()) {
+            return id.getName();
+        }
+        return id.getName() + id.getTags().stream()
+                .map(tag -> tag.getKey() + "=" + tag.getValue())
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
     private ApiKeyDTO mapToApiKeyDTO(ApiKey apiKey){
         return new ApiKeyDTO(
                 apiKey.getKey(),
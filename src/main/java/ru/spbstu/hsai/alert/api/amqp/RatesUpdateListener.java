@@ -1,67 +1,100 @@
 package ru.spbstu.hsai.alert.api.amqp;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import ru.spbstu.hsai.alert.api.amqp.dto.RateChangeEvent;
+import ru.spbstu.hsai.alert.api.amqp.dto.RatesSnapshotEvent;
+import ru.spbstu.hsai.alert.entities.AlertResult;
 import ru.spbstu.hsai.alert.entities.RateChange;
+import ru.spbstu.hsai.alert.entities.RateVectorChange;
+import ru.spbstu.hsai.alert.service.NotificationDispatcher;
 import ru.spbstu.hsai.alert.service.RatesUpdateService;
-import ru.spbstu.hsai.telegram.CurrencyConverterBot;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RatesUpdateListener {
     private final ObjectMapper objectMapper;
-    private final CurrencyConverterBot bot;
+    private final NotificationDispatcher notificationDispatcher;
     private final RatesUpdateService ratesUpdateService;
 
+    // Изменения пар приходят отдельными сообщениями и собираются в одно обновление
+    private final Sinks.Many<RateChange> pairChanges = Sinks.many().unicast().onBackpressureBuffer();
+
+    // Сообщения об изменении пар, пришедшие в течение окна, проверяются как одно обновление
+    @Value("${alerts.evaluation.pairs-window-ms:500}")
+    private long pairsWindowMs;
+
+    @Value("${alerts.evaluation.max-pairs:10000}")
+    private int maxPairs;
+
+    private Disposable pairUpdates;
+
+    @PostConstruct
+    public void start() {
+        pairUpdates = pairChanges.asFlux()
+                .bufferTimeout(maxPairs, Duration.ofMillis(pairsWindowMs))
+                // Обновления проверяются по одному, параллельность внутри обновления задаёт AlertBatchEvaluator
+                .concatMap(changes -> ratesUpdateService.processRefresh(changes)
+                        .doOnNext(this::sendNotifications)
+                        .onErrorResume(error -> {
+                            log.error("Error processing {} rate changes", changes.size(), error);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pairUpdates != null) {
+            pairUpdates.dispose();
+        }
+    }
+
     @RabbitListener(queues = "currency-converter-bot.rates-updates")
     public void handleRatesUpdate(Message message) {
         try {
             log.info("Received message: {}", new String(message.getBody()));
             RateChangeEvent event = objectMapper.readValue(message.getBody(), RateChangeEvent.class);
-            ratesUpdateService.processRateChange(mapToRateChange(event)).flatMap(result ->
-                Mono.fromRunnable(() -> sendNotification(result.getChatId(), result.getBaseCurrency(), result.getTargetCurrency(),
-                        result.getNewRate(), result.getChangePercent(), result.getReason()))
-            ).subscribe(
-                    null,
-                    error -> log.error("Error processing event", error),
-                    () -> log.debug("Finished processing event")
-            );
+            // Слушатель может вызываться из нескольких потоков, а sink принимает элементы последовательно
+            pairChanges.emitNext(mapToRateChange(event), Sinks.EmitFailureHandler.busyLooping(Duration.ofSeconds(1)));
         } catch (Exception e) {
             log.error("Error processing rates update", e);
         }
     }
 
-    private void sendNotification(
-            Long chatId,
-            String baseCurrency,
-            String targetCurrency,
-            BigDecimal newRate,
-            BigDecimal changePercent,
-            String reason
-    ) {
-        String message = String.format(
-                "🚨 Сработало уведомление для %s/%s\n\n" +
-                        "Текущий курс: %.4f\n" +
-                        "Изменение: %.2f%%\n" +
-                        "Причина: %s\n\n" +
-                        "Чтобы управлять уведомлениями: /alert_list",
-                baseCurrency,
-                targetCurrency,
-                newRate,
-                changePercent,
-                reason
-        );
+    @RabbitListener(queues = "currency-converter-bot.rates-snapshots")
+    public void handleRatesSnapshot(Message message) {
+        try {
+            RatesSnapshotEvent event = objectMapper.readValue(message.getBody(), RatesSnapshotEvent.class);
+            log.info("Received rates snapshot: {} currencies, updated {}", event.getCurrencies().size(), event.getUpdated());
+            ratesUpdateService.processRefresh(mapToRateVectorChange(event)).subscribe(
+                    this::sendNotifications,
+                    error -> log.error("Error processing rates snapshot", error)
+            );
+        } catch (Exception e) {
+            log.error("Error processing rates snapshot", e);
+        }
+    }
 
-        bot.sendMessage(chatId, message);
+    private void sendNotifications(Map<Long, List<AlertResult>> resultsByChat) {
+        resultsByChat.forEach(notificationDispatcher::enqueue);
     }
 
     private RateChange mapToRateChange(RateChangeEvent event){
@@ -74,4 +107,19 @@ public class RatesUpdateListener {
         );
     }
 
+    private RateVectorChange mapToRateVectorChange(RatesSnapshotEvent event) {
+        Map<String, BigDecimal> oldRates = new HashMap<>();
+        Map<String, BigDecimal> newRates = new HashMap<>();
+        List<String> currencies = event.getCurrencies();
+        for (int i = 0; i < currencies.size(); i++) {
+            if (event.getOldRates() != null && event.getOldRates().get(i) != null) {
+                oldRates.put(currencies.get(i), event.getOldRates().get(i));
+            }
+            if (event.getNewRates().get(i) != null) {
+                newRates.put(currencies.get(i), event.getNewRates().get(i));
+            }
+        }
+        return new RateVectorChange(event.getBase(), oldRates, newRates);
+    }
+
 }
@@ -0,0 +1,38 @@
+package ru.spbstu.hsai.alert.api.amqp.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RatesSnapshotEvent {
+    @JsonProperty("base")
+    @NotNull
+    private String base;
+
+    @JsonProperty("currencies")
+    @NotNull
+    private List<String> currencies;
+
+    @JsonProperty("oldRates")
+    private List<BigDecimal> oldRates;
+
+    @JsonProperty("newRates")
+    @NotNull
+    private List<BigDecimal> newRates;
+
+    @JsonProperty("updated")
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'")
+    private LocalDateTime updated;
+}
@@ -7,6 +7,8 @@ import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import reactor.core.publisher.Mono;
 import ru.spbstu.hsai.alert.service.AlertService;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.history.HistorySDK;
 import ru.spbstu.hsai.telegram.BotCommand;
@@ -79,8 +81,13 @@ public class AlertAddHandler implements CommandHandler {
     }
 
     private Mono<Void> validatePair(String pair) {
-        String[] currencies = pair.split("/");
-        return ratesService.getCurrencyPairId(currencies[0], currencies[1]).switchIfEmpty(Mono.error(new CCBException(
+        int pairKey = PairKey.parse(pair);
+        if (pairKey == PairKey.INVALID) {
+            return Mono.error(new CCBException(commandPairNotFound));
+        }
+        return ratesService.getCurrencyPairId(
+                CurrencyCode.format(PairKey.base(pairKey)), CurrencyCode.format(PairKey.target(pairKey))
+        ).switchIfEmpty(Mono.error(new CCBException(
                 commandPairNotFound
         ))).then();
     }
@@ -10,4 +10,5 @@ import ru.spbstu.hsai.alert.entities.AlertDBO;
 public interface AlertDAO extends ReactiveCrudRepository<AlertDBO, ObjectId> {
     Flux<AlertDBO> findAllByChatId(Long chatId);
     Flux<AlertDBO> findByBaseCurrencyAndTargetCurrency(String baseCurrency, String targetCurrency);
+    Flux<AlertDBO> findByConditionIsNull();
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package ru.spbstu.hsai.alert.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.spbstu.hsai.rates.CrossRates;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Условие уведомления, разобранное из выражения один раз при создании.
+ * Порог хранится в фиксированной точке: для курса в масштабе {@link CrossRates#RATE_SCALE},
+ * для процента в масштабе {@link CrossRates#PERCENT_SCALE}. Порог округляется в сторону,
+ * при которой сравнение целых значений совпадает со сравнением с исходным порогом
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertCondition {
+    /**
+     * Значение изменения, которого нет в событии
+     */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    public enum Kind {
+        ABSOLUTE,
+        PERCENT,
+        // Выражение без направления или с неверным числом никогда не срабатывает
+        NEVER
+    }
+
+    public enum Direction {
+        UP,
+        DOWN
+    }
+
+    private Kind kind;
+    private Direction direction;
+    private long threshold;
+
+    public static AlertCondition compile(String expr) {
+        if (expr == null) {
+            return never();
+        }
+        try {
+            if (expr.contains("%")) {
+                BigDecimal threshold = new BigDecimal(expr.replaceAll("[^0-9.-]", ""));
+                if (expr.startsWith("+")) {
+                    return new AlertCondition(Kind.PERCENT, Direction.UP,
+                            unscaled(threshold, CrossRates.PERCENT_SCALE, RoundingMode.CEILING));
+                }
+                if (expr.startsWith("-")) {
+                    return new AlertCondition(Kind.PERCENT, Direction.DOWN,
+                            unscaled(threshold.abs().negate(), CrossRates.PERCENT_SCALE, RoundingMode.FLOOR));
+                }
+                return never();
+            }
+
+            BigDecimal threshold = new BigDecimal(expr.replaceAll("[^0-9.]", ""));
+            if (expr.contains(">")) {
+                return new AlertCondition(Kind.ABSOLUTE, Direction.UP,
+                        unscaled(threshold, CrossRates.RATE_SCALE, RoundingMode.FLOOR));
+            }
+            if (expr.contains("<")) {
+                return new AlertCondition(Kind.ABSOLUTE, Direction.DOWN,
+                        unscaled(threshold, CrossRates.RATE_SCALE, RoundingMode.CEILING));
+            }
+            return never();
+        } catch (ArithmeticException | NumberFormatException e) {
+            return never();
+        }
+    }
+
+    private static AlertCondition never() {
+        return new AlertCondition(Kind.NEVER, null, 0);
+    }
+
+    private static long unscaled(BigDecimal value, int scale, RoundingMode roundingMode) {
+        return value.setScale(scale, roundingMode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Проверяет условие без выделения памяти. Условие на курс срабатывает, когда курс пересекает порог;
+     * если старого курса нет, достаточно, чтобы новый курс был за порогом
+     *
+     * @param oldRate       старый курс в масштабе {@link CrossRates#RATE_SCALE} или {@link #NO_VALUE}
+     * @param newRate       новый курс в масштабе {@link CrossRates#RATE_SCALE}
+     * @param changePercent изменение в масштабе {@link CrossRates#PERCENT_SCALE} или {@link #NO_VALUE}
+     * @return true, если уведомление должно сработать
+     */
+    public boolean test(long oldRate, long newRate, long changePercent) {
+        if (kind == Kind.ABSOLUTE) {
+            return direction == Direction.UP
+                    ? newRate > threshold && (oldRate == NO_VALUE || oldRate <= threshold)
+                    : newRate < threshold && (oldRate == NO_VALUE || oldRate >= threshold);
+        }
+        if (kind == Kind.PERCENT && changePercent != NO_VALUE) {
+            return direction == Direction.UP ? changePercent >= threshold : changePercent <= threshold;
+        }
+        return false;
+    }
+
+    public boolean isValid() {
+        return kind != null && kind != Kind.NEVER;
+    }
+}
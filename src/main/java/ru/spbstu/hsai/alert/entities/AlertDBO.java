@@ -18,4 +18,10 @@ public class AlertDBO {
     private String baseCurrency;
     private String targetCurrency;
     private String expr;
+    // Условие, разобранное из expr при создании уведомления
+    private AlertCondition condition;
+
+    public AlertDBO(ObjectId id, Long chatId, String baseCurrency, String targetCurrency, String expr) {
+        this(id, chatId, baseCurrency, targetCurrency, expr, AlertCondition.compile(expr));
+    }
 }
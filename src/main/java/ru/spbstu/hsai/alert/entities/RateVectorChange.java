@@ -0,0 +1,20 @@
+package ru.spbstu.hsai.alert.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Изменение курсов всех валют к базовой валюте за одно обновление
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateVectorChange {
+    private String base;
+    private Map<String, BigDecimal> oldRates;
+    private Map<String, BigDecimal> newRates;
+}
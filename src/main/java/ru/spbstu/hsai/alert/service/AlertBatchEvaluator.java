@@ -0,0 +1,158 @@
+package ru.spbstu.hsai.alert.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверяет уведомления за одно обновление курсов целиком. Пары обновления делятся между потоками
+ * собственного ForkJoinPool, каждая пара проверяется по {@link PairAlerts} из индекса.
+ * Результаты группируются по чатам без повторов, время проверки обновления измеряется таймером
+ */
+@Component
+@Slf4j
+public class AlertBatchEvaluator {
+    private final AlertIndex alertIndex;
+    private final Timer evaluationTimer;
+    private final Counter firedCounter;
+
+    // 0 — по числу процессоров
+    @Value("${alerts.evaluation.parallelism:0}")
+    private int parallelism;
+
+    // Пар в одной задаче, меньшие диапазоны проверяются без деления
+    @Value("${alerts.evaluation.pairs-per-task:32}")
+    private int pairsPerTask;
+
+    private ForkJoinPool pool;
+
+    public AlertBatchEvaluator(AlertIndex alertIndex, MeterRegistry meterRegistry) {
+        this.alertIndex = alertIndex;
+        this.evaluationTimer = Timer.builder("alerts.evaluation.refresh")
+                .description("Evaluation of all alerts for one rates refresh")
+                .register(meterRegistry);
+        this.firedCounter = Counter.builder("alerts.evaluation.fired")
+                .description("Alerts fired by rates refreshes after deduplication")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Проверяет уведомления по всем парам обновления
+     *
+     * @param pairKeys пары обновления, упакованные {@link ru.spbstu.hsai.currency.PairKey}
+     * @param changes  проверка изменения пары; вызывается из разных потоков
+     * @return Mono со сработавшими уведомлениями по чатам в порядке пар
+     */
+    Mono<Map<Long, List<AlertResult>>> evaluate(int[] pairKeys, PairChanges changes) {
+        return Mono.fromFuture(() -> {
+            long start = System.nanoTime();
+            return CompletableFuture
+                    .supplyAsync(() -> new PairsTask(pairKeys, 0, pairKeys.length, changes).invoke(), pool)
+                    .thenApply(results -> {
+                        Map<Long, List<AlertResult>> byChat = groupByChat(results);
+                        long elapsed = System.nanoTime() - start;
+                        evaluationTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                        log.debug("Evaluated alerts for {} pairs in {} us: {} chats notified",
+                                pairKeys.length, elapsed / 1_000, byChat.size());
+                        return byChat;
+                    });
+        });
+    }
+
+    /**
+     * Одинаковые уведомления одного чата (например, созданные дважды) дают одно сообщение
+     */
+    Map<Long, List<AlertResult>> groupByChat(List<AlertResult> results) {
+        Map<Long, Set<AlertResult>> unique = new LinkedHashMap<>();
+        for (AlertResult result : results) {
+            unique.computeIfAbsent(result.getChatId(), _ -> new LinkedHashSet<>()).add(result);
+        }
+        Map<Long, List<AlertResult>> byChat = new LinkedHashMap<>(unique.size() * 2);
+        int fired = 0;
+        for (Map.Entry<Long, Set<AlertResult>> entry : unique.entrySet()) {
+            byChat.put(entry.getKey(), List.copyOf(entry.getValue()));
+            fired += entry.getValue().size();
+        }
+        firedCounter.increment(fired);
+        return byChat;
+    }
+
+    /**
+     * Изменения пар одного обновления. Изменение пары передаётся сразу в {@link PairAlerts},
+     * чтобы пары без сработавших уведомлений проверялись без выделения памяти
+     */
+    @FunctionalInterface
+    interface PairChanges {
+        /**
+         * Добавляет в список результаты сработавших уведомлений пары, если её курс изменился
+         */
+        void collectFired(int pairKey, PairAlerts alerts, List<AlertResult> results);
+    }
+
+    private final class PairsTask extends RecursiveTask<List<AlertResult>> {
+        private final int[] pairKeys;
+        private final int from;
+        private final int to;
+        private final PairChanges changes;
+
+        private PairsTask(int[] pairKeys, int from, int to, PairChanges changes) {
+            this.pairKeys = pairKeys;
+            this.from = from;
+            this.to = to;
+            this.changes = changes;
+        }
+
+        @Override
+        protected List<AlertResult> compute() {
+            if (to - from <= Math.max(1, pairsPerTask)) {
+                List<AlertResult> results = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    PairAlerts alerts = alertIndex.thresholds(pairKeys[i]);
+                    if (alerts.size() == 0) {
+                        continue;
+                    }
+                    changes.collectFired(pairKeys[i], alerts, results);
+                }
+                return results;
+            }
+
+            int middle = (from + to) >>> 1;
+            PairsTask left = new PairsTask(pairKeys, from, middle, changes);
+            left.fork();
+            List<AlertResult> results = new PairsTask(pairKeys, middle, to, changes).compute();
+            List<AlertResult> leftResults = left.join();
+            leftResults.addAll(results);
+            return leftResults;
+        }
+    }
+}
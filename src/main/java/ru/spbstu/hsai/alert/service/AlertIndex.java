@@ -0,0 +1,415 @@
+package ru.spbstu.hsai.alert.service;
+
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import ru.spbstu.hsai.alert.dao.AlertDAO;
+import ru.spbstu.hsai.alert.entities.AlertCondition;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.currency.PairKeyMap;
+import ru.spbstu.hsai.rates.SubscribedPairsSDK;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Все уведомления в памяти процесса, сгруппированные по валютной паре.
+ * Индекс загружается при старте, изменения этого экземпляра приходят из {@link AlertService},
+ * изменения других экземпляров — из change stream коллекции alerts. Если change stream недоступен
+ * (MongoDB без реплики) или прерывался, индекс периодически перестраивается целиком.
+ * Читатели получают неизменяемые массивы без блокировок. Изменение одного уведомления пересобирает
+ * только его пару, остальные пары переиспользуются. Изменения передаются в модуль курсов как подписки на пары
+ */
+@Component
+@Slf4j
+public class AlertIndex {
+    private static final String COLLECTION = "alerts";
+    private static final AlertDBO[] NO_ALERTS = new AlertDBO[0];
+
+    private final AlertDAO alertDAO;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final SubscribedPairsSDK subscribedPairs;
+    private final Timer rebuildTimer;
+
+    // Изменяется только под блокировкой this
+    private final Map<ObjectId, AlertDBO> alerts = new HashMap<>();
+    // Изменения, пришедшие во время перестроения, повторяются поверх загруженных данных
+    private List<AlertDBO> changedDuringRebuild;
+    private List<ObjectId> removedDuringRebuild;
+
+    // Заменяется целиком под блокировкой this
+    private volatile View view = View.EMPTY;
+    private volatile boolean loaded;
+    private Disposable changeStream;
+
+    public AlertIndex(AlertDAO alertDAO, ReactiveMongoTemplate mongoTemplate, SubscribedPairsSDK subscribedPairs,
+                      MeterRegistry meterRegistry) {
+        this.alertDAO = alertDAO;
+        this.mongoTemplate = mongoTemplate;
+        this.subscribedPairs = subscribedPairs;
+        this.rebuildTimer = Timer.builder("alerts.index.rebuild")
+                .description("Full reload of the in-memory alert index")
+                .register(meterRegistry);
+        Gauge.builder("alerts.index.size", this, AlertIndex::size)
+                .description("Alerts in the in-memory index")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        changeStream = mongoTemplate.changeStream(null, COLLECTION,
+                        ChangeStreamOptions.builder().returnFullDocumentOnUpdate().build(), AlertDBO.class)
+                .doOnNext(this::apply)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(5))
+                        .maxBackoff(Duration.ofMinutes(5))
+                        .doBeforeRetry(signal -> {
+                            log.warn("Alert change stream failed, rebuilding index: {}", signal.failure().toString());
+                            resync();
+                        }))
+                .subscribe(
+                        _ -> {},
+                        ex -> log.error("Alert change stream stopped", ex)
+                );
+        resync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (changeStream != null) {
+            changeStream.dispose();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${alerts.index.resync:PT15M}", initialDelayString = "${alerts.index.resync:PT15M}")
+    public void resync() {
+        rebuild().subscribe(
+                _ -> {},
+                ex -> log.error("Failed to rebuild alert index", ex)
+        );
+    }
+
+    /**
+     * Перезагружает все уведомления из MongoDB. Одновременно выполняется только одно перестроение
+     *
+     * @return Mono с числом уведомлений в индексе или пустой Mono, если перестроение уже идёт
+     */
+    public Mono<Integer> rebuild() {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (changedDuringRebuild != null) {
+                    return Mono.empty();
+                }
+                changedDuringRebuild = new ArrayList<>();
+                removedDuringRebuild = new ArrayList<>();
+            }
+            long start = System.nanoTime();
+            return alertDAO.findAll()
+                    .collectList()
+                    .map(loadedAlerts -> install(loadedAlerts, start))
+                    .doFinally(_ -> {
+                        synchronized (this) {
+                            changedDuringRebuild = null;
+                            removedDuringRebuild = null;
+                        }
+                    });
+        });
+    }
+
+    private synchronized int install(List<AlertDBO> loadedAlerts, long start) {
+        alerts.clear();
+        for (AlertDBO alert : loadedAlerts) {
+            alerts.put(alert.getId(), compiled(alert));
+        }
+        changedDuringRebuild.forEach(alert -> alerts.put(alert.getId(), alert));
+        removedDuringRebuild.forEach(alerts::remove);
+
+        int[] pairKeys = alerts.values().stream().mapToInt(AlertIndex::pairKey).toArray();
+        subscribedPairs.replaceAll(pairKeys);
+        view = View.of(alerts.values());
+        loaded = true;
+
+        long elapsed = System.nanoTime() - start;
+        rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Rebuilt alert index: {} alerts on {} pairs in {} ms",
+                alerts.size(), view.pairKeys.length, elapsed / 1_000_000);
+        return alerts.size();
+    }
+
+    /**
+     * Добавляет или заменяет уведомление, повторное добавление того же уведомления ничего не меняет
+     */
+    public synchronized void add(AlertDBO alert) {
+        if (alert.getId() == null) {
+            return;
+        }
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(alert);
+        }
+        AlertDBO previous = alerts.put(alert.getId(), compiled(alert));
+        if (previous == null) {
+            subscribedPairs.subscribe(pairKey(alert));
+        } else if (pairKey(previous) != pairKey(alert)) {
+            subscribedPairs.unsubscribe(pairKey(previous));
+            subscribedPairs.subscribe(pairKey(alert));
+        }
+        view = view.replace(previous, alert);
+    }
+
+    public synchronized void remove(ObjectId alertId) {
+        if (changedDuringRebuild != null) {
+            removedDuringRebuild.add(alertId);
+        }
+        AlertDBO previous = alerts.remove(alertId);
+        if (previous != null) {
+            subscribedPairs.unsubscribe(pairKey(previous));
+            view = view.replace(previous, null);
+        }
+    }
+
+    void apply(ChangeStreamEvent<AlertDBO> event) {
+        OperationType type = event.getOperationType();
+        if (type == OperationType.INSERT || type == OperationType.UPDATE || type == OperationType.REPLACE) {
+            if (event.getBody() != null) {
+                add(event.getBody());
+            }
+        } else if (type == OperationType.DELETE) {
+            BsonValue id = event.getRaw() == null || event.getRaw().getDocumentKey() == null
+                    ? null
+                    : event.getRaw().getDocumentKey().get("_id");
+            if (id != null && id.isObjectId()) {
+                remove(id.asObjectId().getValue());
+            }
+        } else if (type == OperationType.DROP || type == OperationType.INVALIDATE) {
+            resync();
+        }
+    }
+
+    /**
+     * @return уведомления по паре; массив общий для всех читателей и не должен изменяться
+     */
+    public AlertDBO[] get(int pairKey) {
+        PairEntry entry = view.pairs.get(pairKey);
+        return entry == null ? NO_ALERTS : entry.alerts();
+    }
+
+    /**
+     * @return уведомления по паре, отсортированные по порогам
+     */
+    PairAlerts thresholds(int pairKey) {
+        PairEntry entry = view.pairs.get(pairKey);
+        return entry == null ? PairAlerts.EMPTY : entry.thresholds();
+    }
+
+    /**
+     * @return пары, на которые есть уведомления; массив не должен изменяться
+     */
+    int[] pairKeys() {
+        return view.pairKeys;
+    }
+
+    /**
+     * Обходит пары, на которые есть уведомления
+     */
+    void forEachPair(PairKeyMap.EntryConsumer<? super PairAlerts> action) {
+        view.pairs.forEach((pairKey, entry) -> action.accept(pairKey, entry.thresholds()));
+    }
+
+    /**
+     * @return все уведомления, упорядоченные по паре; массив собирается при первом обращении
+     * после изменения и не должен изменяться
+     */
+    public AlertDBO[] all() {
+        return view.all();
+    }
+
+    /**
+     * @return true, если индекс уже загружен из MongoDB
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        return view.size;
+    }
+
+    /**
+     * Уведомления без скомпилированного условия (созданные до миграции) компилируются
+     * при попадании в индекс, чтобы проверка курсов не разбирала выражения
+     */
+    private static AlertDBO compiled(AlertDBO alert) {
+        if (alert.getCondition() == null) {
+            alert.setCondition(AlertCondition.compile(alert.getExpr()));
+        }
+        return alert;
+    }
+
+    private static int pairKey(AlertDBO alert) {
+        return PairKey.of(alert.getBaseCurrency(), alert.getTargetCurrency());
+    }
+
+    private record PairEntry(AlertDBO[] alerts, PairAlerts thresholds) {
+        static PairEntry of(AlertDBO[] alerts) {
+            return new PairEntry(alerts, PairAlerts.of(alerts));
+        }
+    }
+
+    /**
+     * Неизменяемый после публикации снимок индекса. Изменение одного уведомления копирует таблицу пар
+     * и пересобирает массивы только затронутых пар, стоимость O(пар + уведомлений пары · log)
+     * вместо сортировки всех уведомлений
+     */
+    private static final class View {
+        static final View EMPTY = new View(new PairKeyMap<>(), new int[0], NO_ALERTS, 0);
+
+        private final PairKeyMap<PairEntry> pairs;
+        // Пары по возрастанию ключа
+        private int[] pairKeys;
+        // Уведомления с неизвестными валютами: в проверке курсов не участвуют, но входят в all()
+        private AlertDBO[] invalid;
+        private int size;
+        private volatile AlertDBO[] all;
+
+        private View(PairKeyMap<PairEntry> pairs, int[] pairKeys, AlertDBO[] invalid, int size) {
+            this.pairs = pairs;
+            this.pairKeys = pairKeys;
+            this.invalid = invalid;
+            this.size = size;
+        }
+
+        static View of(Collection<AlertDBO> alerts) {
+            AlertDBO[] sorted = alerts.toArray(NO_ALERTS);
+            Arrays.sort(sorted, Comparator.comparingInt(AlertIndex::pairKey));
+            View view = new View(new PairKeyMap<>(sorted.length), new int[0], NO_ALERTS, sorted.length);
+            int[] keys = new int[sorted.length];
+            int pairs = 0;
+            for (int from = 0; from < sorted.length; ) {
+                int key = pairKey(sorted[from]);
+                int to = from + 1;
+                while (to < sorted.length && pairKey(sorted[to]) == key) {
+                    to++;
+                }
+                AlertDBO[] pairAlerts = Arrays.copyOfRange(sorted, from, to);
+                if (key == PairKey.INVALID) {
+                    view.invalid = pairAlerts;
+                } else {
+                    view.pairs.put(key, PairEntry.of(pairAlerts));
+                    keys[pairs++] = key;
+                }
+                from = to;
+            }
+            view.pairKeys = Arrays.copyOf(keys, pairs);
+            view.all = sorted;
+            return view;
+        }
+
+        /**
+         * @param removed прежняя версия уведомления или null
+         * @param added   новая версия уведомления или null
+         * @return новый снимок; текущий не изменяется
+         */
+        View replace(AlertDBO removed, AlertDBO added) {
+            View updated = new View(pairs.copy(), pairKeys, invalid, size);
+            if (removed != null) {
+                int key = pairKey(removed);
+                AlertDBO[] remaining = without(updated.alertsOf(key), removed.getId());
+                if (added != null && pairKey(added) == key) {
+                    updated.setAlerts(key, with(remaining, added));
+                    return updated;
+                }
+                updated.setAlerts(key, remaining);
+                updated.size--;
+            }
+            if (added != null) {
+                int key = pairKey(added);
+                updated.setAlerts(key, with(updated.alertsOf(key), added));
+                updated.size++;
+            }
+            return updated;
+        }
+
+        AlertDBO[] all() {
+            AlertDBO[] result = all;
+            if (result == null) {
+                result = Arrays.copyOf(invalid, size);
+                int offset = invalid.length;
+                for (int key : pairKeys) {
+                    AlertDBO[] alerts = pairs.get(key).alerts();
+                    System.arraycopy(alerts, 0, result, offset, alerts.length);
+                    offset += alerts.length;
+                }
+                all = result;
+            }
+            return result;
+        }
+
+        private AlertDBO[] alertsOf(int key) {
+            if (key == PairKey.INVALID) {
+                return invalid;
+            }
+            PairEntry entry = pairs.get(key);
+            return entry == null ? NO_ALERTS : entry.alerts();
+        }
+
+        private void setAlerts(int key, AlertDBO[] alerts) {
+            if (key == PairKey.INVALID) {
+                invalid = alerts;
+            } else if (alerts.length == 0) {
+                if (pairs.remove(key) != null) {
+                    int index = Arrays.binarySearch(pairKeys, key);
+                    int[] keys = new int[pairKeys.length - 1];
+                    System.arraycopy(pairKeys, 0, keys, 0, index);
+                    System.arraycopy(pairKeys, index + 1, keys, index, keys.length - index);
+                    pairKeys = keys;
+                }
+            } else if (pairs.put(key, PairEntry.of(alerts)) == null) {
+                int index = -Arrays.binarySearch(pairKeys, key) - 1;
+                int[] keys = new int[pairKeys.length + 1];
+                System.arraycopy(pairKeys, 0, keys, 0, index);
+                keys[index] = key;
+                System.arraycopy(pairKeys, index, keys, index + 1, pairKeys.length - index);
+                pairKeys = keys;
+            }
+        }
+
+        private static AlertDBO[] without(AlertDBO[] alerts, ObjectId id) {
+            for (int i = 0; i < alerts.length; i++) {
+                if (id.equals(alerts[i].getId())) {
+                    AlertDBO[] remaining = new AlertDBO[alerts.length - 1];
+                    System.arraycopy(alerts, 0, remaining, 0, i);
+                    System.arraycopy(alerts, i + 1, remaining, i, remaining.length - i);
+                    return remaining;
+                }
+            }
+            return alerts;
+        }
+
+        private static AlertDBO[] with(AlertDBO[] alerts, AlertDBO alert) {
+            AlertDBO[] grown = Arrays.copyOf(alerts, alerts.length + 1);
+            grown[alerts.length] = alert;
+            return grown;
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package ru.spbstu.hsai.alert.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import ru.spbstu.hsai.alert.dao.AlertDAO;
+import ru.spbstu.hsai.alert.entities.AlertCondition;
 import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.user.UserServiceSDK;
 
@@ -14,9 +23,12 @@ import java.util.List;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class AlertService {
     private final AlertDAO alertDAO;
+    private final ReactiveMongoTemplate mongoTemplate;
     private final UserServiceSDK userService;
+    private final AlertIndex alertIndex;
 
     public Mono<String> addAlert(Long chatId, String pair, String condition){
         return userService.getUserByChatId(chatId)
@@ -28,15 +40,25 @@ public class AlertService {
     private Mono<String> processAlert(String pair, String condition, Long chatId) {
         return Mono.just(pair)
                 .flatMap(valid -> {
-                    String[] currencies = pair.split("/");
+                    int pairKey = PairKey.parse(pair);
+                    if (pairKey == PairKey.INVALID) {
+                        return Mono.error(new CCBException("❌ Неверный формат валютной пары"));
+                    }
+                    // Условие разбирается один раз и хранится рядом с выражением
+                    AlertCondition compiled = AlertCondition.compile(condition);
+                    if (!compiled.isValid()) {
+                        return Mono.error(new CCBException("❌ Неверный формат условия"));
+                    }
                     AlertDBO alert = new AlertDBO(
                             null,
                             chatId,
-                            currencies[0],
-                            currencies[1],
-                            condition
+                            CurrencyCode.format(PairKey.base(pairKey)),
+                            CurrencyCode.format(PairKey.target(pairKey)),
+                            condition,
+                            compiled
                     );
                     return alertDAO.save(alert)
+                            .doOnNext(alertIndex::add)
                             .thenReturn("✅ Уведомление добавлено: " + formatAlert(alert));
                 });
     }
@@ -50,6 +72,31 @@ public class AlertService {
     }
 
 
+    @PostConstruct
+    public void backfillConditionsOnStartup() {
+        backfillConditions().subscribe(
+                compiled -> log.info("Compiled conditions of {} alerts", compiled),
+                error -> log.error("Failed to compile alert conditions", error)
+        );
+    }
+
+    /**
+     * Дописывает скомпилированное условие в уведомления, созданные до его появления.
+     * Обновляется только поле condition, поэтому удалённые тем временем уведомления не восстанавливаются
+     *
+     * @return Mono с количеством обновлённых уведомлений
+     */
+    public Mono<Long> backfillConditions() {
+        return alertDAO.findByConditionIsNull()
+                .flatMap(alert -> mongoTemplate.updateFirst(
+                        new Query(Criteria.where("_id").is(alert.getId()).and("condition").is(null)),
+                        new Update().set("condition", AlertCondition.compile(alert.getExpr())),
+                        AlertDBO.class
+                ), 16)
+                .filter(result -> result.getModifiedCount() > 0)
+                .count();
+    }
+
     public Mono<List<AlertDBO>> getAllAlertsByChatId(Long chatId){
         return userService.getUserByChatId(chatId)
                 .flatMapMany(user -> alertDAO.findAllByChatId(user.getChatId()))
@@ -63,6 +110,7 @@ public class AlertService {
                         return Mono.error(new CCBException("❌ Уведомление не найдено"));
                     }
                     return alertDAO.delete(alert)
+                            .then(Mono.fromRunnable(() -> alertIndex.remove(alert.getId())))
                             .thenReturn("✅ Уведомление удалено: " + formatAlert(alert));
                 })
                 .switchIfEmpty(Mono.just("❌ Уведомление не найдено"));
@@ -0,0 +1,332 @@
+package ru.spbstu.hsai.alert.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.telegram.CurrencyConverterBot;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Очередь уведомлений в Telegram. Уведомления одного чата, сработавшие за окно объединения,
+ * отправляются одним сообщением. Отправка ограничена общим token bucket (у Telegram около 30 сообщений
+ * в секунду на бота) и интервалом между сообщениями в один чат. Ответ 429 откладывает чат и всю отправку
+ * на retry_after, остальные ошибки повторяются ограниченное число раз
+ */
+@Component
+@Slf4j
+public class NotificationDispatcher {
+    // Лимит Telegram 4096 символов, запас на заголовок и подпись
+    private static final int MAX_MESSAGE_LENGTH = 3800;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final CurrencyConverterBot bot;
+    private final Counter sentCounter;
+    private final Counter throttledCounter;
+    private final Counter droppedQueueFull;
+    private final Counter droppedFailed;
+
+    @Value("${alerts.notifications.rate:25}")
+    private double messagesPerSecond;
+
+    @Value("${alerts.notifications.burst:25}")
+    private int burst;
+
+    @Value("${alerts.notifications.chat-interval-ms:1000}")
+    private long chatIntervalMs;
+
+    @Value("${alerts.notifications.coalesce-window-ms:1000}")
+    private long coalesceWindowMs;
+
+    // Наибольшее число уведомлений в очереди, сверх него новые отбрасываются
+    @Value("${alerts.notifications.max-queue:10000}")
+    private int maxQueue;
+
+    @Value("${alerts.notifications.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${alerts.notifications.tick-ms:20}")
+    private long tickMs;
+
+    // Время в наносекундах
+    private LongSupplier clock = System::nanoTime;
+
+    // Изменяются только под блокировкой this. Чаты упорядочены по очереди на отправку
+    private final Map<Long, ChatQueue> chats = new LinkedHashMap<>();
+    private int queued;
+    private double tokens = -1;
+    private long refilledAt;
+    private long pausedUntil;
+
+    private Scheduler scheduler;
+    private Disposable ticks;
+
+    public NotificationDispatcher(CurrencyConverterBot bot, MeterRegistry meterRegistry) {
+        this.bot = bot;
+        this.sentCounter = Counter.builder("alerts.notifications.sent")
+                .description("Alert messages sent to Telegram")
+                .register(meterRegistry);
+        this.throttledCounter = Counter.builder("alerts.notifications.throttled")
+                .description("Alert messages rejected by Telegram with 429 and requeued")
+                .register(meterRegistry);
+        this.droppedQueueFull = Counter.builder("alerts.notifications.dropped")
+                .description("Fired alerts that were never delivered")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.droppedFailed = Counter.builder("alerts.notifications.dropped")
+                .description("Fired alerts that were never delivered")
+                .tag("reason", "failed")
+                .register(meterRegistry);
+        Gauge.builder("alerts.notifications.queue", this, NotificationDispatcher::queued)
+                .description("Fired alerts waiting to be sent")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        // Отправка блокирующая, поэтому у очереди свой поток
+        scheduler = Schedulers.newSingle("alert-notifications");
+        ticks = Flux.interval(Duration.ofMillis(tickMs), scheduler)
+                .subscribe(_ -> {
+                    try {
+                        tick();
+                    } catch (Exception e) {
+                        log.error("Failed to dispatch alert notifications", e);
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticks != null) {
+            ticks.dispose();
+        }
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+        if (queued() > 0) {
+            log.warn("Discarding {} queued alert notifications on shutdown", queued());
+        }
+    }
+
+    /**
+     * Ставит сработавшие уведомления чата в очередь. Уведомления, пришедшие до отправки,
+     * объединяются с уже ожидающими
+     */
+    public synchronized void enqueue(Long chatId, List<AlertResult> results) {
+        int accepted = Math.min(results.size(), maxQueue - queued);
+        if (accepted < results.size()) {
+            droppedQueueFull.increment(results.size() - Math.max(accepted, 0));
+            log.warn("Alert notification queue is full, dropped {} alerts for chat {}",
+                    results.size() - Math.max(accepted, 0), chatId);
+        }
+        if (accepted <= 0) {
+            return;
+        }
+
+        long now = clock.getAsLong();
+        long coalesceUntil = now + TimeUnit.MILLISECONDS.toNanos(coalesceWindowMs);
+        ChatQueue chat = chats.get(chatId);
+        if (chat == null) {
+            chat = new ChatQueue(coalesceUntil);
+            chats.put(chatId, chat);
+        } else if (chat.pending.isEmpty()) {
+            // Чат недавно получал сообщение: ждём и окно объединения, и интервал чата
+            chat.readyAt = Math.max(chat.readyAt, coalesceUntil);
+        }
+        chat.pending.addAll(results.subList(0, accepted));
+        queued += accepted;
+    }
+
+    /**
+     * Отправляет сообщения чатам, у которых истекли окно объединения и интервал,
+     * пока в общем bucket есть токены
+     */
+    void tick() {
+        long now = clock.getAsLong();
+        List<Outgoing> outgoing = new ArrayList<>();
+        synchronized (this) {
+            refill(now);
+            List<Map.Entry<Long, ChatQueue>> sent = new ArrayList<>();
+            Iterator<Map.Entry<Long, ChatQueue>> iterator = chats.entrySet().iterator();
+            while (iterator.hasNext() && tokens >= 1 && now >= pausedUntil) {
+                Map.Entry<Long, ChatQueue> entry = iterator.next();
+                ChatQueue chat = entry.getValue();
+                if (chat.readyAt > now) {
+                    continue;
+                }
+                iterator.remove();
+                if (chat.pending.isEmpty()) {
+                    continue;
+                }
+
+                List<AlertResult> part = takeMessage(chat.pending);
+                queued -= part.size();
+                chat.readyAt = now + TimeUnit.MILLISECONDS.toNanos(chatIntervalMs);
+                tokens -= 1;
+                outgoing.add(new Outgoing(entry.getKey(), part, chat.attempts));
+                sent.add(entry);
+            }
+            // Отправившие чаты уходят в конец очереди, интервал чата помнится до следующего сообщения
+            sent.forEach(entry -> chats.put(entry.getKey(), entry.getValue()));
+        }
+
+        for (Outgoing message : outgoing) {
+            send(message);
+        }
+    }
+
+    private void refill(long now) {
+        if (tokens < 0) {
+            tokens = burst;
+            refilledAt = now;
+            return;
+        }
+        tokens = Math.min(burst, tokens + (now - refilledAt) * messagesPerSecond / 1e9);
+        refilledAt = now;
+    }
+
+    /**
+     * Забирает из начала очереди чата столько уведомлений, сколько помещается в одно сообщение
+     */
+    private static List<AlertResult> takeMessage(List<AlertResult> pending) {
+        int count = 0;
+        int length = 0;
+        while (count < pending.size()) {
+            length += formatAlert(pending.get(count)).length();
+            if (count > 0 && length > MAX_MESSAGE_LENGTH) {
+                break;
+            }
+            count++;
+        }
+        List<AlertResult> part = new ArrayList<>(pending.subList(0, count));
+        pending.subList(0, count).clear();
+        return part;
+    }
+
+    private void send(Outgoing message) {
+        try {
+            bot.sendMessageOrThrow(message.chatId(), format(message.results()));
+            sentCounter.increment();
+            synchronized (this) {
+                ChatQueue chat = chats.get(message.chatId());
+                if (chat != null) {
+                    chat.attempts = 0;
+                }
+            }
+        } catch (TelegramApiRequestException e) {
+            Integer retryAfter = e.getParameters() == null ? null : e.getParameters().getRetryAfter();
+            if (e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS && retryAfter != null) {
+                throttledCounter.increment();
+                log.warn("Telegram rate limit hit for chat {}, retrying in {} s", message.chatId(), retryAfter);
+                long retryAt = clock.getAsLong() + TimeUnit.SECONDS.toNanos(retryAfter);
+                synchronized (this) {
+                    pausedUntil = Math.max(pausedUntil, retryAt);
+                    tokens = 0;
+                }
+                requeue(message, message.attempts(), retryAt);
+            } else {
+                failed(message, e);
+            }
+        } catch (TelegramApiException e) {
+            failed(message, e);
+        }
+    }
+
+    private void failed(Outgoing message, TelegramApiException e) {
+        int attempts = message.attempts() + 1;
+        if (attempts >= maxAttempts) {
+            droppedFailed.increment(message.results().size());
+            log.error("Failed to send {} alerts to chat {} after {} attempts",
+                    message.results().size(), message.chatId(), attempts, e);
+            return;
+        }
+        log.warn("Failed to send alerts to chat {}, attempt {}: {}", message.chatId(), attempts, e.toString());
+        requeue(message, attempts, clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(chatIntervalMs));
+    }
+
+    /**
+     * Возвращает неотправленные уведомления в начало очереди чата
+     */
+    private synchronized void requeue(Outgoing message, int attempts, long readyAt) {
+        ChatQueue chat = chats.computeIfAbsent(message.chatId(), _ -> new ChatQueue(readyAt));
+        chat.pending.addAll(0, message.results());
+        chat.readyAt = Math.max(chat.readyAt, readyAt);
+        chat.attempts = attempts;
+        queued += message.results().size();
+    }
+
+    synchronized int queued() {
+        return queued;
+    }
+
+    private static String format(List<AlertResult> results) {
+        if (results.size() == 1) {
+            AlertResult result = results.get(0);
+            return String.format(
+                    "🚨 Сработало уведомление для %s/%s\n\n" +
+                            "Текущий курс: %.4f\n" +
+                            "Изменение: %.2f%%\n" +
+                            "Причина: %s\n\n" +
+                            "Чтобы управлять уведомлениями: /alert_list",
+                    result.getBaseCurrency(),
+                    result.getTargetCurrency(),
+                    result.getNewRate(),
+                    result.getChangePercent(),
+                    result.getReason()
+            );
+        }
+
+        StringBuilder message = new StringBuilder()
+                .append("🚨 Сработали уведомления: ")
+                .append(results.size())
+                .append("\n\n");
+        for (AlertResult result : results) {
+            message.append(formatAlert(result));
+        }
+        return message.append("Чтобы управлять уведомлениями: /alert_list").toString();
+    }
+
+    private static String formatAlert(AlertResult result) {
+        return String.format(
+                "%s/%s: курс %.4f, изменение %.2f%%\nПричина: %s\n\n",
+                result.getBaseCurrency(),
+                result.getTargetCurrency(),
+                result.getNewRate(),
+                result.getChangePercent(),
+                result.getReason()
+        );
+    }
+
+    private static final class ChatQueue {
+        private final List<AlertResult> pending = new ArrayList<>();
+        private long readyAt;
+        private int attempts;
+
+        private ChatQueue(long readyAt) {
+            this.readyAt = readyAt;
+        }
+    }
+
+    private record Outgoing(Long chatId, List<AlertResult> results, int attempts) {
+    }
+}
@@ -0,0 +1,147 @@
+package ru.spbstu.hsai.alert.service;
+
+import ru.spbstu.hsai.alert.entities.AlertCondition;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Уведомления одной пары, разложенные по видам условий в массивы, отсортированные по порогу.
+ * Сработавшие уведомления находятся двоичным поиском диапазона порогов между старым и новым значением,
+ * поэтому проверка стоит O(log n + число сработавших) вместо перебора всех уведомлений пары.
+ * Результат совпадает с {@link AlertCondition#test(long, long, long)} для каждого уведомления
+ */
+final class PairAlerts {
+    static final PairAlerts EMPTY = of(new AlertDBO[0]);
+
+    // Курс пересёк порог снизу вверх: старый курс <= порог < новый
+    private final Thresholds above;
+    // Курс пересёк порог сверху вниз: новый курс < порог <= старый
+    private final Thresholds below;
+    // Рост не меньше порога: порог <= изменение
+    private final Thresholds rise;
+    // Падение не меньше порога: изменение <= порог
+    private final Thresholds fall;
+
+    private PairAlerts(Thresholds above, Thresholds below, Thresholds rise, Thresholds fall) {
+        this.above = above;
+        this.below = below;
+        this.rise = rise;
+        this.fall = fall;
+    }
+
+    static PairAlerts of(AlertDBO[] alerts) {
+        List<AlertDBO> above = new ArrayList<>();
+        List<AlertDBO> below = new ArrayList<>();
+        List<AlertDBO> rise = new ArrayList<>();
+        List<AlertDBO> fall = new ArrayList<>();
+        for (AlertDBO alert : alerts) {
+            AlertCondition condition = alert.getCondition();
+            if (condition == null || !condition.isValid()) {
+                continue;
+            }
+            boolean up = condition.getDirection() == AlertCondition.Direction.UP;
+            if (condition.getKind() == AlertCondition.Kind.ABSOLUTE) {
+                (up ? above : below).add(alert);
+            } else {
+                (up ? rise : fall).add(alert);
+            }
+        }
+        return new PairAlerts(Thresholds.of(above), Thresholds.of(below), Thresholds.of(rise), Thresholds.of(fall));
+    }
+
+    /**
+     * Добавляет результаты сработавших уведомлений прямо в список вызывающего,
+     * без промежуточного списка на пару
+     *
+     * @param pairKey       ключ пары, упакованный {@link ru.spbstu.hsai.currency.PairKey}
+     * @param oldRate       старый курс в масштабе курсов или {@link AlertCondition#NO_VALUE}
+     * @param newRate       новый курс в масштабе курсов
+     * @param changePercent изменение в масштабе процентов или {@link AlertCondition#NO_VALUE}
+     * @param results       список для результатов сработавших уведомлений
+     */
+    void collectFired(int pairKey, long oldRate, long newRate, long changePercent, List<AlertResult> results) {
+        boolean noOldRate = oldRate == AlertCondition.NO_VALUE;
+        int aboveFrom = noOldRate ? 0 : above.lowerBound(oldRate);
+        int belowTo = noOldRate ? below.size() : below.upperBound(oldRate);
+        above.collect(aboveFrom, above.lowerBound(newRate), pairKey, newRate, changePercent, results);
+        below.collect(below.upperBound(newRate), belowTo, pairKey, newRate, changePercent, results);
+        if (changePercent != AlertCondition.NO_VALUE) {
+            rise.collect(0, rise.upperBound(changePercent), pairKey, newRate, changePercent, results);
+            fall.collect(fall.lowerBound(changePercent), fall.size(), pairKey, newRate, changePercent, results);
+        }
+    }
+
+    int size() {
+        return above.size() + below.size() + rise.size() + fall.size();
+    }
+
+    private static final class Thresholds {
+        private final long[] thresholds;
+        private final AlertDBO[] alerts;
+
+        private Thresholds(long[] thresholds, AlertDBO[] alerts) {
+            this.thresholds = thresholds;
+            this.alerts = alerts;
+        }
+
+        static Thresholds of(List<AlertDBO> alerts) {
+            AlertDBO[] sorted = alerts.toArray(new AlertDBO[0]);
+            Arrays.sort(sorted, Comparator.comparingLong(alert -> alert.getCondition().getThreshold()));
+            long[] thresholds = new long[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                thresholds[i] = sorted[i].getCondition().getThreshold();
+            }
+            return new Thresholds(thresholds, sorted);
+        }
+
+        int size() {
+            return thresholds.length;
+        }
+
+        /**
+         * @return индекс первого порога, не меньшего value
+         */
+        int lowerBound(long value) {
+            int low = 0;
+            int high = thresholds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (thresholds[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return индекс первого порога, большего value
+         */
+        int upperBound(long value) {
+            int low = 0;
+            int high = thresholds.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (thresholds[middle] <= value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        void collect(int from, int to, int pairKey, long newRate, long changePercent, List<AlertResult> results) {
+            for (int i = from; i < to; i++) {
+                AlertDBO alert = alerts[i];
+                results.add(PairChange.toResult(alert, alert.getCondition(), pairKey, newRate, changePercent));
+            }
+        }
+    }
+}
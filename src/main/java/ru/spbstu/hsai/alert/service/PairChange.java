@@ -0,0 +1,142 @@
+package ru.spbstu.hsai.alert.service;
+
+import ru.spbstu.hsai.alert.entities.AlertCondition;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.alert.entities.RateChange;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.FixedPoint;
+import ru.spbstu.hsai.rates.FixedPointRates;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Изменение курса пары: ключ пары, старый и новый курс и изменение в фиксированной точке.
+ * Коды валют и BigDecimal для результата строятся только для сработавших уведомлений,
+ * поэтому проверка пары без срабатываний ничего не выделяет
+ */
+record PairChange(int pairKey, long oldRate, long newRate, long changePercent) {
+    static final PairChange NO_CHANGE =
+            new PairChange(PairKey.INVALID, AlertCondition.NO_VALUE, 0, AlertCondition.NO_VALUE);
+
+    static PairChange of(RateChange event) {
+        int pairKey = PairKey.of(event.getBaseCurrency(), event.getTargetCurrency());
+        if (pairKey == PairKey.INVALID || event.getNewRate() == null) {
+            return NO_CHANGE;
+        }
+        return new PairChange(
+                pairKey,
+                toUnscaled(event.getOldRate(), CrossRates.RATE_SCALE),
+                FixedPoint.toUnscaledRounded(event.getNewRate(), CrossRates.RATE_SCALE),
+                toUnscaled(event.getChangePercent(), CrossRates.PERCENT_SCALE)
+        );
+    }
+
+    private static long toUnscaled(BigDecimal value, int scale) {
+        return value == null ? AlertCondition.NO_VALUE : FixedPoint.toUnscaledRounded(value, scale);
+    }
+
+    /**
+     * Вычисляет изменение кросс-курса пары по векторам курсов к базовой валюте
+     *
+     * @return изменение или {@link #NO_CHANGE}, если курс не изменился или его нет
+     */
+    static PairChange of(FixedPointRates oldRates, FixedPointRates newRates, int pairKey) {
+        long oldRate = crossRate(oldRates, pairKey);
+        long newRate = crossRate(newRates, pairKey);
+        if (!changed(oldRate, newRate)) {
+            return NO_CHANGE;
+        }
+        return new PairChange(pairKey, oldRate, newRate, CrossRates.changePercent(oldRate, newRate));
+    }
+
+    /**
+     * То же, что {@link #of(FixedPointRates, FixedPointRates, int)} и {@link #collectFired(PairAlerts, List)},
+     * но без объекта изменения: курсы пары остаются в локальных переменных
+     */
+    static void collectFired(FixedPointRates oldRates, FixedPointRates newRates, int pairKey,
+                             PairAlerts alerts, List<AlertResult> results) {
+        long oldRate = crossRate(oldRates, pairKey);
+        long newRate = crossRate(newRates, pairKey);
+        if (changed(oldRate, newRate)) {
+            alerts.collectFired(pairKey, oldRate, newRate, CrossRates.changePercent(oldRate, newRate), results);
+        }
+    }
+
+    /**
+     * @return кросс-курс пары или {@link FixedPointRates#NO_RATE}, если курса валюты нет
+     */
+    private static long crossRate(FixedPointRates rates, int pairKey) {
+        long baseRate = rates.get(PairKey.base(pairKey));
+        long targetRate = rates.get(PairKey.target(pairKey));
+        if (baseRate == FixedPointRates.NO_RATE || targetRate == FixedPointRates.NO_RATE || baseRate == 0) {
+            return FixedPointRates.NO_RATE;
+        }
+        return CrossRates.crossRate(baseRate, targetRate);
+    }
+
+    private static boolean changed(long oldRate, long newRate) {
+        return oldRate != FixedPointRates.NO_RATE && newRate != FixedPointRates.NO_RATE
+                && oldRate != 0 && oldRate != newRate;
+    }
+
+    /**
+     * Добавляет в список результаты сработавших уведомлений пары
+     */
+    void collectFired(PairAlerts alerts, List<AlertResult> results) {
+        if (this != NO_CHANGE) {
+            alerts.collectFired(pairKey, oldRate, newRate, changePercent, results);
+        }
+    }
+
+    /**
+     * Проверяет скомпилированное условие сравнением целых чисел
+     *
+     * @return сработавшее уведомление или null
+     */
+    AlertResult check(AlertDBO alert) {
+        if (this == NO_CHANGE) {
+            return null;
+        }
+        AlertCondition condition = alert.getCondition();
+        if (condition == null) {
+            // Уведомление ещё не обновлено миграцией
+            condition = AlertCondition.compile(alert.getExpr());
+        }
+        if (!condition.test(oldRate, newRate, changePercent)) {
+            return null;
+        }
+        return toResult(alert, condition, pairKey, newRate, changePercent);
+    }
+
+    /**
+     * Результат и причина срабатывания строятся только для сработавших уведомлений
+     *
+     * @param newRate       новый курс в масштабе курсов
+     * @param changePercent изменение в масштабе процентов или {@link AlertCondition#NO_VALUE}
+     */
+    static AlertResult toResult(AlertDBO alert, AlertCondition condition, int pairKey,
+                                long newRate, long changePercent) {
+        BigDecimal percent = changePercent == AlertCondition.NO_VALUE
+                ? null
+                : FixedPoint.toBigDecimal(changePercent, CrossRates.PERCENT_SCALE);
+        String reason;
+        if (condition.getKind() == AlertCondition.Kind.PERCENT) {
+            reason = condition.getDirection() == AlertCondition.Direction.UP
+                    ? String.format("Рост на %.2f%%", percent)
+                    : String.format("Падение на %.2f%%", percent.abs());
+        } else {
+            // Порог выводится так, как его ввёл пользователь
+            BigDecimal threshold = new BigDecimal(alert.getExpr().replaceAll("[^0-9.]", ""));
+            reason = condition.getDirection() == AlertCondition.Direction.UP
+                    ? String.format("Курс превысил %s", threshold)
+                    : String.format("Курс упал ниже %s", threshold);
+        }
+        return new AlertResult(alert.getChatId(),
+                CurrencyCode.format(PairKey.base(pairKey)), CurrencyCode.format(PairKey.target(pairKey)),
+                FixedPoint.toBigDecimal(newRate, CrossRates.RATE_SCALE), percent, reason);
+    }
+}
@@ -9,62 +9,118 @@ import ru.spbstu.hsai.alert.dao.AlertDAO;
 import ru.spbstu.hsai.alert.entities.AlertDBO;
 import ru.spbstu.hsai.alert.entities.AlertResult;
 import ru.spbstu.hsai.alert.entities.RateChange;
+import ru.spbstu.hsai.alert.entities.RateVectorChange;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.currency.PairKeyMap;
+import ru.spbstu.hsai.rates.FixedPointRates;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RatesUpdateService {
     private final AlertDAO alertDAO;
+    private final AlertIndex alertIndex;
+    private final AlertBatchEvaluator batchEvaluator;
 
-    public Flux<AlertResult> processRateChange(RateChange event) {
-        return alertDAO.findByBaseCurrencyAndTargetCurrency(
-                        event.getBaseCurrency(),
-                        event.getTargetCurrency()
-                )
-                .flatMap(alert -> checkAlertConditions(alert, event));
+    /**
+     * Проверяет уведомления за одно обновление курсов, пришедшее снимком векторов.
+     * Кросс-курсы вычисляются параллельно и только для пар, на которые есть уведомления
+     *
+     * @param change старый и новый векторы курсов к базовой валюте
+     * @return Mono со сработавшими уведомлениями по чатам
+     */
+    public Mono<Map<Long, List<AlertResult>>> processRefresh(RateVectorChange change) {
+        if (!alertIndex.isLoaded()) {
+            return processRatesSnapshot(change).collectList().map(batchEvaluator::groupByChat);
+        }
+        FixedPointRates oldRates = FixedPointRates.of(change.getOldRates());
+        FixedPointRates newRates = FixedPointRates.of(change.getNewRates());
+        return batchEvaluator.evaluate(alertIndex.pairKeys(),
+                (pairKey, alerts, results) -> PairChange.collectFired(oldRates, newRates, pairKey, alerts, results));
     }
 
-    private Mono<AlertResult> checkAlertConditions(AlertDBO alert, RateChange event) {
-        return Mono.fromCallable(() -> {
-            String condition = alert.getExpr();
-            boolean shouldNotify = false;
-            String reason = "";
-
-            if (condition.contains("%")) {
-                // Обработка относительных изменений
-                BigDecimal threshold = new BigDecimal(condition.replaceAll("[^0-9.-]", ""));
-                BigDecimal actualChange = event.getChangePercent();
+    /**
+     * Проверяет уведомления за одно обновление курсов, пришедшее отдельными парами.
+     * Если пара встречается несколько раз, проверяется последнее изменение
+     *
+     * @param changes изменения пар одного обновления
+     * @return Mono со сработавшими уведомлениями по чатам
+     */
+    public Mono<Map<Long, List<AlertResult>>> processRefresh(List<RateChange> changes) {
+        if (!alertIndex.isLoaded()) {
+            return Flux.fromIterable(changes)
+                    .concatMap(this::processRateChange)
+                    .collectList()
+                    .map(batchEvaluator::groupByChat);
+        }
+        PairKeyMap<PairChange> byPair = new PairKeyMap<>(changes.size());
+        for (RateChange change : changes) {
+            PairChange pairChange = PairChange.of(change);
+            if (pairChange != PairChange.NO_CHANGE) {
+                byPair.put(pairChange.pairKey(), pairChange);
+            }
+        }
+        int[] pairKeys = new int[byPair.size()];
+        int[] next = {0};
+        byPair.forEach((pairKey, _) -> pairKeys[next[0]++] = pairKey);
+        return batchEvaluator.evaluate(pairKeys,
+                (pairKey, alerts, results) -> byPair.get(pairKey).collectFired(alerts, results));
+    }
 
-                if (condition.startsWith("+") && actualChange.compareTo(threshold) >= 0) {
-                    shouldNotify = true;
-                    reason = String.format("Рост на %.2f%%", actualChange);
-                } else if (condition.startsWith("-") && actualChange.compareTo(threshold.abs().negate()) <= 0) {
-                    shouldNotify = true;
-                    reason = String.format("Падение на %.2f%%", actualChange.abs());
-                }
-            } else {
-                // Обработка абсолютных значений
-                BigDecimal threshold = new BigDecimal(condition.replaceAll("[^0-9.]", ""));
-                int comparison = event.getNewRate().compareTo(threshold);
+    /**
+     * Проверяет уведомления по изменившейся паре. Уведомления берутся из индекса в памяти
+     * двоичным поиском по порогам, MongoDB читается, только пока индекс не загружен
+     */
+    public Flux<AlertResult> processRateChange(RateChange event) {
+        PairChange change = PairChange.of(event);
+        if (alertIndex.isLoaded()) {
+            return Flux.defer(() -> {
+                List<AlertResult> results = new ArrayList<>();
+                change.collectFired(alertIndex.thresholds(change.pairKey()), results);
+                return Flux.fromIterable(results);
+            });
+        }
+        return alertDAO.findByBaseCurrencyAndTargetCurrency(event.getBaseCurrency(), event.getTargetCurrency())
+                .mapNotNull(alert -> change.check(alert));
+    }
 
-                if (condition.contains(">") && comparison > 0) {
-                    shouldNotify = true;
-                    reason = String.format("Курс превысил %s", threshold);
-                } else if (condition.contains("<") && comparison < 0) {
-                    shouldNotify = true;
-                    reason = String.format("Курс упал ниже %s", threshold);
-                }
-            }
+    /**
+     * Проверяет все уведомления по снимку курсов: кросс-курсы вычисляются
+     * только для пар, на которые есть уведомления, и один раз на пару
+     *
+     * @param change старый и новый векторы курсов к базовой валюте
+     * @return Flux сработавших уведомлений
+     */
+    public Flux<AlertResult> processRatesSnapshot(RateVectorChange change) {
+        // Векторы переводятся в фиксированную точку один раз на снимок
+        FixedPointRates oldRates = FixedPointRates.of(change.getOldRates());
+        FixedPointRates newRates = FixedPointRates.of(change.getNewRates());
+        if (alertIndex.isLoaded()) {
+            return Flux.defer(() -> {
+                List<AlertResult> results = new ArrayList<>();
+                alertIndex.forEachPair((pairKey, alerts) ->
+                        PairChange.collectFired(oldRates, newRates, pairKey, alerts, results));
+                return Flux.fromIterable(results);
+            });
+        }
 
-            if (shouldNotify) {
-                return new AlertResult(alert.getChatId(), event.getBaseCurrency(), event.getTargetCurrency(),
-                        event.getNewRate(), event.getChangePercent(), reason);
-            }
-            else{
-                return null;
-            }
-        });
+        // Ключи пар упакованы в int; onNext вызывается последовательно, поэтому синхронизация не нужна
+        PairKeyMap<PairChange> pairChanges = new PairKeyMap<>();
+        return alertDAO.findAll()
+                .mapNotNull(alert -> {
+                    int pairKey = PairKey.of(alert.getBaseCurrency(), alert.getTargetCurrency());
+                    if (pairKey == PairKey.INVALID) {
+                        return null;
+                    }
+                    PairChange pairChange = pairChanges.computeIfAbsent(
+                            pairKey,
+                            key -> PairChange.of(oldRates, newRates, key)
+                    );
+                    return pairChange == PairChange.NO_CHANGE ? null : pairChange.check(alert);
+                });
     }
 }
@@ -0,0 +1,17 @@
+package ru.spbstu.hsai.amqp;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Неблокирующая отправка сообщений в обменник currency-converter-bot
+ */
+public interface AmqpPublisher {
+    /**
+     * Ставит сообщение в очередь на отправку
+     *
+     * @param routingKey ключ маршрутизации
+     * @param message    тело сообщения, сериализуется в JSON
+     * @return Mono, завершающийся после подтверждения сообщения брокером
+     */
+    Mono<Void> publish(String routingKey, Object message);
+}
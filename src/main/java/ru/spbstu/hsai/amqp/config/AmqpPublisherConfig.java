@@ -0,0 +1,51 @@
+package ru.spbstu.hsai.amqp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.spbstu.hsai.amqp.AmqpPublisher;
+import ru.spbstu.hsai.amqp.service.BatchingAmqpPublisher;
+
+import java.time.Duration;
+
+@Configuration
+public class AmqpPublisherConfig {
+
+    // Отдельное соединение с пулом каналов и подтверждениями, не влияющее на слушателей очередей
+    @Bean
+    public AmqpPublisher amqpPublisher(
+            @Value("${rabbitmq_host}") String host,
+            @Value("${rabbitmq_username}") String username,
+            @Value("${rabbitmq_password}") String password,
+            @Value("${amqp.publisher.batch-size:100}") int batchSize,
+            @Value("${amqp.publisher.linger-ms:20}") long lingerMs,
+            @Value("${amqp.publisher.buffer-size:8192}") int bufferSize,
+            @Value("${amqp.publisher.channels:4}") int channels,
+            @Value("${amqp.publisher.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+            MeterRegistry meterRegistry
+    ) {
+        CachingConnectionFactory factory = new CachingConnectionFactory(host);
+        factory.setUsername(username);
+        factory.setPassword(password);
+        factory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.SIMPLE);
+        factory.setChannelCacheSize(channels);
+        factory.setConnectionNameStrategy(_ -> "currency-converter-bot-publisher");
+
+        RabbitTemplate template = new RabbitTemplate(factory);
+        template.setMessageConverter(new Jackson2JsonMessageConverter());
+
+        return new BatchingAmqpPublisher(
+                template,
+                batchSize,
+                Duration.ofMillis(lingerMs),
+                bufferSize,
+                channels,
+                Duration.ofMillis(confirmTimeoutMs),
+                meterRegistry
+        );
+    }
+}
@@ -0,0 +1,137 @@
+package ru.spbstu.hsai.amqp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.DisposableBean;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+import ru.spbstu.hsai.amqp.AmqpPublisher;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отправляет сообщения пакетами с подтверждениями брокера (publisher confirms).
+ * Сообщения копятся в ограниченном буфере и отправляются пакетом, когда набирается
+ * batchSize сообщений или проходит linger. Каждый пакет отправляется на отдельном
+ * канале из пула и подтверждается одним ожиданием confirm.
+ * Если буфер заполнен, отправитель повторяет попытку с задержкой, пока место не освободится
+ */
+@Slf4j
+public class BatchingAmqpPublisher implements AmqpPublisher, DisposableBean {
+    private static final String EXCHANGE = "currency-converter-bot";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Duration confirmTimeout;
+    private final Sinks.Many<PendingMessage> sink;
+    private final Scheduler scheduler;
+    private final Disposable drain;
+
+    private final Counter publishedCounter;
+    private final Counter nackCounter;
+    private final Counter overflowCounter;
+    private final Timer confirmTimer;
+    private final DistributionSummary batchSizeSummary;
+
+    public BatchingAmqpPublisher(RabbitTemplate rabbitTemplate, int batchSize, Duration linger, int bufferSize,
+                                 int channels, Duration confirmTimeout, MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirmTimeout = confirmTimeout;
+        this.sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<PendingMessage>get(bufferSize).get());
+        this.scheduler = Schedulers.newBoundedElastic(channels, Integer.MAX_VALUE, "amqp-publisher");
+
+        this.publishedCounter = Counter.builder("amqp.publisher.published")
+                .description("Messages confirmed by the broker")
+                .register(meterRegistry);
+        this.nackCounter = Counter.builder("amqp.publisher.nacked")
+                .description("Messages nacked by the broker or failed to publish")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("amqp.publisher.buffer.overflow")
+                .description("Publish attempts delayed because the buffer was full")
+                .register(meterRegistry);
+        this.confirmTimer = Timer.builder("amqp.publisher.confirm.latency")
+                .description("Time to publish a batch and receive its confirms")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("amqp.publisher.batch.size")
+                .register(meterRegistry);
+
+        this.drain = sink.asFlux()
+                .bufferTimeout(batchSize, linger, true)
+                .flatMap(batch -> Mono.fromRunnable(() -> sendBatch(batch)).subscribeOn(scheduler), channels)
+                .subscribe();
+    }
+
+    @Override
+    public Mono<Void> publish(String routingKey, Object message) {
+        return Mono.defer(() -> {
+                    PendingMessage pending = new PendingMessage(routingKey, message, Sinks.empty());
+                    Sinks.EmitResult result;
+                    synchronized (sink) {
+                        result = sink.tryEmitNext(pending);
+                    }
+                    if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                        overflowCounter.increment();
+                        return Mono.error(new BufferFullException());
+                    }
+                    if (result.isFailure()) {
+                        return Mono.error(new IllegalStateException("Publisher is not accepting messages: " + result));
+                    }
+                    return pending.result().asMono();
+                })
+                .retryWhen(Retry.backoff(20, Duration.ofMillis(10))
+                        .maxBackoff(Duration.ofSeconds(1))
+                        .filter(BufferFullException.class::isInstance));
+    }
+
+    private void sendBatch(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (PendingMessage pending : batch) {
+                    operations.convertAndSend(EXCHANGE, pending.routingKey(), pending.message());
+                }
+                operations.waitForConfirmsOrDie(confirmTimeout.toMillis());
+                return null;
+            });
+            confirmTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizeSummary.record(batch.size());
+            publishedCounter.increment(batch.size());
+            batch.forEach(pending -> pending.result().tryEmitEmpty());
+        } catch (Exception e) {
+            nackCounter.increment(batch.size());
+            log.error("Failed to publish batch of {} messages", batch.size(), e);
+            batch.forEach(pending -> pending.result().tryEmitError(e));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        sink.tryEmitComplete();
+        drain.dispose();
+        scheduler.dispose();
+        if (rabbitTemplate.getConnectionFactory() instanceof CachingConnectionFactory factory) {
+            factory.destroy();
+        }
+    }
+
+    private record PendingMessage(String routingKey, Object message, Sinks.Empty<Void> result) {
+    }
+
+    private static class BufferFullException extends RuntimeException {
+        BufferFullException() {
+            super("Publisher buffer is full", null, false, false);
+        }
+    }
+}
@@ -90,6 +90,12 @@ public class RabbitConfig {
         return new Queue("currency-converter-bot.rates-updates", true, false, false);
     }
 
+    // Объявление очереди под снимки курсов
+    @Bean
+    public Queue ratesSnapshotQueue() {
+        return new Queue("currency-converter-bot.rates-snapshots", true, false, false);
+    }
+
     // Объявление очереди под задачи экспорта
     @Bean
     public Queue exportQueue() {
@@ -111,6 +117,14 @@ public class RabbitConfig {
                 .with("rates.update");
     }
 
+    @Bean
+    public Binding ratesSnapshotBinding() {
+        return BindingBuilder
+                .bind(ratesSnapshotQueue())
+                .to(currencyConverterBotExchange())
+                .with("rates.snapshot");
+    }
+
     @Bean
     public Binding exportBinding() {
         return BindingBuilder
@@ -133,7 +147,9 @@ public class RabbitConfig {
         return new Declarables(
                 currencyConverterBotExchange(),
                 currencyUpdatesQueue(),
-                currencyUpdatesBinding()
+                currencyUpdatesBinding(),
+                ratesSnapshotQueue(),
+                ratesSnapshotBinding()
         );
     }
 
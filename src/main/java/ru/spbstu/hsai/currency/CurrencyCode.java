@@ -0,0 +1,95 @@
+package ru.spbstu.hsai.currency;
+
+/**
+ * Трёхбуквенный код валюты ISO 4217, упакованный в int.
+ * Код AAA..ZZZ отображается в плотный номер 0..{@link #COUNT}-1 (помещается в short),
+ * порядок номеров совпадает с алфавитным порядком кодов, поэтому номер можно использовать
+ * как индекс массива, а отсортированные номера — для двоичного поиска.
+ * Разбор и форматирование не создают объектов: строки кодов кэшируются
+ */
+public final class CurrencyCode {
+    public static final int INVALID = -1;
+    public static final int COUNT = 26 * 26 * 26;
+
+    private static final int LETTERS = 26;
+    // Заполняется при первом форматировании кода; гонка безопасна, строки неизменяемы
+    private static final String[] NAMES = new String[COUNT];
+
+    private CurrencyCode() {
+    }
+
+    /**
+     * @param text код валюты из трёх латинских букв в любом регистре
+     * @return упакованный код или {@link #INVALID}
+     */
+    public static int parse(CharSequence text) {
+        return text != null && text.length() == 3 ? parse(text, 0) : INVALID;
+    }
+
+    /**
+     * Разбирает три символа, начиная с offset
+     *
+     * @return упакованный код или {@link #INVALID}
+     */
+    public static int parse(CharSequence text, int offset) {
+        if (offset < 0 || offset + 3 > text.length()) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = offset; i < offset + 3; i++) {
+            // Установка бита 0x20 переводит латинскую букву в нижний регистр,
+            // остальные символы остаются вне диапазона a..z
+            int letter = (text.charAt(i) | 0x20) - 'a';
+            if (letter < 0 || letter >= LETTERS) {
+                return INVALID;
+            }
+            code = code * LETTERS + letter;
+        }
+        return code;
+    }
+
+    /**
+     * Разбирает три ASCII-символа массива, начиная с offset
+     *
+     * @return упакованный код или {@link #INVALID}
+     */
+    public static int parse(byte[] ascii, int offset) {
+        if (offset < 0 || offset + 3 > ascii.length) {
+            return INVALID;
+        }
+        int code = 0;
+        for (int i = offset; i < offset + 3; i++) {
+            int letter = (ascii[i] | 0x20) - 'a';
+            if (letter < 0 || letter >= LETTERS) {
+                return INVALID;
+            }
+            code = code * LETTERS + letter;
+        }
+        return code;
+    }
+
+    public static boolean isValid(int code) {
+        return code >= 0 && code < COUNT;
+    }
+
+    /**
+     * @return код валюты в верхнем регистре, повторные вызовы возвращают ту же строку
+     */
+    public static String format(int code) {
+        String name = NAMES[code];
+        if (name == null) {
+            name = new String(new char[]{letter(code, 0), letter(code, 1), letter(code, 2)});
+            NAMES[code] = name;
+        }
+        return name;
+    }
+
+    public static StringBuilder appendTo(StringBuilder builder, int code) {
+        return builder.append(letter(code, 0)).append(letter(code, 1)).append(letter(code, 2));
+    }
+
+    private static char letter(int code, int position) {
+        int divisor = position == 0 ? LETTERS * LETTERS : position == 1 ? LETTERS : 1;
+        return (char) ('A' + code / divisor % LETTERS);
+    }
+}
@@ -0,0 +1,67 @@
+package ru.spbstu.hsai.currency;
+
+/**
+ * Валютная пара, упакованная в int: старшие 16 бит — базовая валюта,
+ * младшие — целевая (оба кода из {@link CurrencyCode}). Ключ неотрицателен,
+ * поэтому {@link #INVALID} не совпадает ни с одной парой
+ */
+public final class PairKey {
+    public static final int INVALID = -1;
+    public static final char SEPARATOR = '/';
+
+    private PairKey() {
+    }
+
+    public static int of(int baseCurrency, int targetCurrency) {
+        return baseCurrency << 16 | targetCurrency;
+    }
+
+    /**
+     * @return ключ пары или {@link #INVALID}, если хотя бы один код некорректен
+     */
+    public static int of(CharSequence baseCurrency, CharSequence targetCurrency) {
+        int base = CurrencyCode.parse(baseCurrency);
+        int target = CurrencyCode.parse(targetCurrency);
+        return base == CurrencyCode.INVALID || target == CurrencyCode.INVALID ? INVALID : of(base, target);
+    }
+
+    /**
+     * @param text пара вида USD/EUR в любом регистре
+     * @return ключ пары или {@link #INVALID}
+     */
+    public static int parse(CharSequence text) {
+        if (text == null || text.length() != 7 || text.charAt(3) != SEPARATOR) {
+            return INVALID;
+        }
+        int base = CurrencyCode.parse(text, 0);
+        int target = CurrencyCode.parse(text, 4);
+        return base == CurrencyCode.INVALID || target == CurrencyCode.INVALID ? INVALID : of(base, target);
+    }
+
+    public static int base(int key) {
+        return key >>> 16;
+    }
+
+    public static int target(int key) {
+        return key & 0xFFFF;
+    }
+
+    /**
+     * @return пара с переставленными валютами
+     */
+    public static int inverse(int key) {
+        return of(target(key), base(key));
+    }
+
+    /**
+     * @return пара вида USD/EUR
+     */
+    public static String format(int key) {
+        return appendTo(new StringBuilder(7), key).toString();
+    }
+
+    public static StringBuilder appendTo(StringBuilder builder, int key) {
+        CurrencyCode.appendTo(builder, base(key)).append(SEPARATOR);
+        return CurrencyCode.appendTo(builder, target(key));
+    }
+}
@@ -0,0 +1,166 @@
+package ru.spbstu.hsai.currency;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Отображение ключей {@link PairKey} в значения с открытой адресацией:
+ * поиск не упаковывает ключи в Integer. Не потокобезопасно
+ *
+ * @param <V> тип значений
+ */
+public final class PairKeyMap<V> {
+    private static final int EMPTY = PairKey.INVALID;
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public PairKeyMap() {
+        this(16);
+    }
+
+    public PairKeyMap(int expectedSize) {
+        keys = new int[PairKeySet.capacity(expectedSize)];
+        values = new Object[keys.length];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private PairKeyMap(int[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == EMPTY) {
+            return null;
+        }
+        int slot = PairKeySet.slot(keys, key);
+        return keys[slot] == key ? (V) values[slot] : null;
+    }
+
+    public boolean containsKey(int key) {
+        return key != EMPTY && keys[PairKeySet.slot(keys, key)] == key;
+    }
+
+    /**
+     * @return предыдущее значение или null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        requireValid(key);
+        int slot = PairKeySet.slot(keys, key);
+        if (keys[slot] == key) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает значение по ключу, вычисляя и сохраняя его при первом обращении
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(int key, IntFunction<? extends V> mapping) {
+        requireValid(key);
+        int slot = PairKeySet.slot(keys, key);
+        if (keys[slot] == key) {
+            return (V) values[slot];
+        }
+        V value = mapping.apply(key);
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Удаляет ключ, сдвигая следующие ключи цепочки пробирования на освободившееся место
+     *
+     * @return удалённое значение или null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == EMPTY) {
+            return null;
+        }
+        int slot = PairKeySet.slot(keys, key);
+        if (keys[slot] != key) {
+            return null;
+        }
+        V previous = (V) values[slot];
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            // Ключ можно сдвинуть, если освободившаяся ячейка лежит между его начальной ячейкой и текущей
+            if (((next - PairKeySet.home(keys, keys[next])) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        values[hole] = null;
+        size--;
+        return previous;
+    }
+
+    /**
+     * @return независимая копия таблицы; значения не копируются
+     */
+    public PairKeyMap<V> copy() {
+        return new PairKeyMap<>(keys.clone(), values.clone(), size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Обходит пары ключ-значение в порядке ячеек таблицы
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private static void requireValid(int key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Invalid pair key");
+        }
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[keys.length];
+        Arrays.fill(keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = PairKeySet.slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
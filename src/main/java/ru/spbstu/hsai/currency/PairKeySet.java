@@ -0,0 +1,104 @@
+package ru.spbstu.hsai.currency;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Множество ключей {@link PairKey} с открытой адресацией на примитивном массиве:
+ * добавление и проверка принадлежности не создают объектов. Не потокобезопасно
+ */
+public final class PairKeySet {
+    private static final int EMPTY = PairKey.INVALID;
+
+    private int[] keys;
+    private int size;
+
+    public PairKeySet() {
+        this(16);
+    }
+
+    public PairKeySet(int expectedSize) {
+        keys = new int[capacity(expectedSize)];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * @return true, если ключа ещё не было в множестве
+     */
+    public boolean add(int key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Invalid pair key");
+        }
+        int slot = slot(keys, key);
+        if (keys[slot] == key) {
+            return false;
+        }
+        keys[slot] = key;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean contains(int key) {
+        return key != EMPTY && keys[slot(keys, key)] == key;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Обходит ключи в порядке ячеек таблицы
+     */
+    public void forEach(IntConsumer action) {
+        for (int key : keys) {
+            if (key != EMPTY) {
+                action.accept(key);
+            }
+        }
+    }
+
+    private void rehash() {
+        int[] rehashed = new int[keys.length * 2];
+        Arrays.fill(rehashed, EMPTY);
+        for (int key : keys) {
+            if (key != EMPTY) {
+                rehashed[slot(rehashed, key)] = key;
+            }
+        }
+        keys = rehashed;
+    }
+
+    /**
+     * @return ячейка с ключом или первая свободная ячейка на пути пробирования
+     */
+    static int slot(int[] keys, int key) {
+        int mask = keys.length - 1;
+        int slot = home(keys, key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return ячейка, с которой начинается пробирование для ключа
+     */
+    static int home(int[] keys, int key) {
+        return mix(key) & (keys.length - 1);
+    }
+
+    static int capacity(int expectedSize) {
+        return Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
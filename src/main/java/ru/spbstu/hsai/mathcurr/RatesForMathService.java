@@ -6,4 +6,9 @@ import java.math.BigDecimal;
 
 public interface RatesForMathService {
     Mono<BigDecimal> getBigDecimalExchangeRate(String baseCurrency, String targetCurrency);
+
+    /**
+     * @param pairKey валютная пара, упакованная {@link ru.spbstu.hsai.currency.PairKey}
+     */
+    Mono<BigDecimal> getBigDecimalExchangeRate(int pairKey);
 }
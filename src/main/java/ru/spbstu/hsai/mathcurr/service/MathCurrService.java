@@ -6,6 +6,8 @@ import net.objecthunter.exp4j.ExpressionBuilder;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.mathcurr.RatesForMathService;
 import ru.spbstu.hsai.user.UserServiceSDK;
@@ -27,13 +29,17 @@ public class MathCurrService {
     private final UserServiceSDK userService;
 
     public Mono<Double> processCalculation(Long chatId, String expression, String targetCurrency) {
+        int target = CurrencyCode.parse(targetCurrency);
+        if (target == CurrencyCode.INVALID) {
+            return Mono.error(new CCBException("❌ Не удалось получить курс для " + targetCurrency));
+        }
         return userService.getUserByChatId(chatId)
-                .flatMap(settings -> convertExpression(expression, targetCurrency, settings.getSettings()))
+                .flatMap(settings -> convertExpression(expression, target, settings.getSettings()))
                 .flatMap(this::evaluateExpression)
                 .switchIfEmpty(Mono.error(new CCBException("❌ Не удалось вычислить выражение")));
     }
 
-    private Mono<String> convertExpression(String expression, String targetCurrency, UserSettings settings) {
+    private Mono<String> convertExpression(String expression, int targetCurrency, UserSettings settings) {
         return Flux.fromIterable(getCurrencyTerms(expression))
                 .flatMap(term -> convertTerm(term, targetCurrency, settings))
                 .collectMap(CurrencyTerm::original, CurrencyTerm::converted)
@@ -48,19 +54,20 @@ public class MathCurrService {
             terms.add(new CurrencyTerm(
                     matcher.group(0),
                     Double.parseDouble(matcher.group(1)),
-                    matcher.group(2)
+                    CurrencyCode.parse(expression, matcher.start(2))
             ));
         }
         return terms;
     }
 
-    private Mono<CurrencyTerm> convertTerm(CurrencyTerm term, String targetCurrency, UserSettings settings) {
-        return ratesService.getBigDecimalExchangeRate(term.currency(), targetCurrency)
+    private Mono<CurrencyTerm> convertTerm(CurrencyTerm term, int targetCurrency, UserSettings settings) {
+        int pairKey = PairKey.of(term.currency(), targetCurrency);
+        return ratesService.getBigDecimalExchangeRate(pairKey)
                 .map(rate -> term.convert(rate.doubleValue()))
-                .onErrorResume(e -> ratesService.getBigDecimalExchangeRate(targetCurrency, term.currency())
+                .onErrorResume(e -> ratesService.getBigDecimalExchangeRate(PairKey.inverse(pairKey))
                         .map(inverseRate -> term.convert(1 / inverseRate.doubleValue())))
                 .switchIfEmpty(Mono.error(new CCBException(
-                        "❌ Не удалось получить курс для " + term.currency() + "/" + targetCurrency
+                        "❌ Не удалось получить курс для " + PairKey.format(pairKey)
                 )));
     }
 
@@ -84,10 +91,10 @@ public class MathCurrService {
     private record CurrencyTerm(
             String original,
             double amount,
-            String currency,
+            int currency,
             String converted
     ) {
-        public CurrencyTerm(String original, double amount, String currency) {
+        public CurrencyTerm(String original, double amount, int currency) {
             this(original, amount, currency, null);
         }
 
@@ -0,0 +1,91 @@
+package ru.spbstu.hsai.rates;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Правила вычисления кросс-курсов и их изменений.
+ * Используются и при сохранении курсов, и получателями снимков курсов,
+ * чтобы все модули получали одинаковые значения
+ */
+public final class CrossRates {
+    public static final int RATE_SCALE = 6;
+    public static final int PERCENT_SCALE = 2;
+
+    private CrossRates() {
+    }
+
+    /**
+     * Вычисляет кросс-курс по курсам двух валют к общей базовой валюте
+     *
+     * @param baseRate   курс базовой валюты пары
+     * @param targetRate курс целевой валюты пары
+     * @return targetRate / baseRate с точностью {@link #RATE_SCALE} знаков
+     * @throws ArithmeticException если курс базовой валюты равен нулю
+     */
+    public static BigDecimal crossRate(BigDecimal baseRate, BigDecimal targetRate) {
+        int scale = Math.max(FixedPoint.exactScale(baseRate), FixedPoint.exactScale(targetRate));
+        if (scale <= FixedPoint.MAX_SCALE) {
+            try {
+                long rate = crossRate(FixedPoint.toUnscaled(baseRate, scale), FixedPoint.toUnscaled(targetRate, scale));
+                return FixedPoint.toBigDecimal(rate, RATE_SCALE);
+            } catch (ArithmeticException e) {
+                if (baseRate.signum() == 0) {
+                    throw e;
+                }
+                // курсы не помещаются в long, считаем через BigDecimal
+            }
+        }
+        return targetRate.divide(baseRate, RATE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Вычисляет кросс-курс по курсам с фиксированной точкой в одном масштабе
+     *
+     * @return targetRate / baseRate в масштабе {@link #RATE_SCALE}
+     * @throws ArithmeticException если курс базовой валюты равен нулю
+     */
+    public static long crossRate(long baseRate, long targetRate) {
+        return FixedPoint.divide(targetRate, baseRate, RATE_SCALE);
+    }
+
+    /**
+     * Вычисляет процент изменения курса
+     *
+     * @param oldRate старый курс
+     * @param newRate новый курс (после изменения)
+     * @return изменение в процентах или null, если старый курс неизвестен или равен нулю
+     */
+    public static BigDecimal changePercent(BigDecimal oldRate, BigDecimal newRate) {
+        if (oldRate == null || oldRate.compareTo(BigDecimal.ZERO) == 0) {
+            return null;
+        }
+        int scale = Math.max(FixedPoint.exactScale(oldRate), FixedPoint.exactScale(newRate));
+        if (scale <= FixedPoint.MAX_SCALE) {
+            try {
+                long percent = changePercent(FixedPoint.toUnscaled(oldRate, scale), FixedPoint.toUnscaled(newRate, scale));
+                return FixedPoint.toBigDecimal(percent, PERCENT_SCALE);
+            } catch (ArithmeticException e) {
+                // курсы не помещаются в long, считаем через BigDecimal
+            }
+        }
+        return newRate.subtract(oldRate)
+                .divide(oldRate, 6, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(100))
+                .setScale(PERCENT_SCALE, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Вычисляет процент изменения по курсам с фиксированной точкой в одном масштабе.
+     * Доля изменения округляется до 6 знаков, затем процент до {@link #PERCENT_SCALE},
+     * как и в {@link #changePercent(BigDecimal, BigDecimal)}
+     *
+     * @return изменение в процентах в масштабе {@link #PERCENT_SCALE}
+     * @throws ArithmeticException если старый курс равен нулю
+     */
+    public static long changePercent(long oldRate, long newRate) {
+        long ratio = FixedPoint.divide(Math.subtractExact(newRate, oldRate), oldRate, 6);
+        // ratio * 100 имеет масштаб 4
+        return FixedPoint.rescale(ratio, 4, PERCENT_SCALE);
+    }
+}
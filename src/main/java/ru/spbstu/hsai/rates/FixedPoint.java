@@ -0,0 +1,168 @@
+package ru.spbstu.hsai.rates;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Арифметика чисел с фиксированной точкой, хранящихся в long как unscaled * 10^-scale.
+ * Деление округляет по правилу HALF_UP и даёт тот же результат, что и
+ * {@link BigDecimal#divide(BigDecimal, int, RoundingMode)}, но без выделения памяти:
+ * частное оценивается в double и уточняется по точному остатку в long.
+ * В редких случаях переполнения long вычисление выполняется через BigDecimal
+ */
+public final class FixedPoint {
+    /**
+     * Наибольший масштаб, при котором 10^scale помещается в long
+     */
+    public static final int MAX_SCALE = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+    private static final long MAX_ESTIMATED_DIVISOR = 1L << 60;
+    private static final double MAX_ESTIMATED_QUOTIENT = 0x1p52;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_SCALE; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * @return 10^scale
+     */
+    public static long pow10(int scale) {
+        return POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * @return наименьший масштаб, при котором значение представимо без потери знаков
+     */
+    public static int exactScale(BigDecimal value) {
+        return Math.max(0, value.stripTrailingZeros().scale());
+    }
+
+    /**
+     * Переводит число в представление с фиксированной точкой без округления
+     *
+     * @throws ArithmeticException если значение не представимо в заданном масштабе или не помещается в long
+     */
+    public static long toUnscaled(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Переводит число в представление с фиксированной точкой с округлением HALF_UP
+     *
+     * @throws ArithmeticException если значение не помещается в long
+     */
+    public static long toUnscaledRounded(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long unscaled, int scale) {
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * Делит два числа, записанных в одном масштабе
+     *
+     * @param dividend делимое
+     * @param divisor  делитель
+     * @param scale    масштаб результата, от 0 до {@link #MAX_SCALE}
+     * @return dividend / divisor с точностью scale знаков, округлённое HALF_UP
+     * @throws ArithmeticException при делении на ноль или если результат не помещается в long
+     */
+    public static long divide(long dividend, long divisor, int scale) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division by zero");
+        }
+        if (dividend == Long.MIN_VALUE || divisor == Long.MIN_VALUE) {
+            return divideExact(dividend, divisor, scale);
+        }
+
+        boolean negative = (dividend < 0) != (divisor < 0);
+        long a = Math.abs(dividend);
+        long b = Math.abs(divisor);
+        long pow = POWERS_OF_TEN[scale];
+
+        double estimate = (double) a * pow / b;
+        if (b < MAX_ESTIMATED_DIVISOR && estimate < MAX_ESTIMATED_QUOTIENT) {
+            return divideEstimated(a, b, pow, (long) estimate, negative);
+        }
+
+        long quotient = a / b;
+        long remainder = a % b;
+        // (quotient + 1) * pow должно помещаться в long вместе с дробной частью и округлением
+        if (quotient >= Long.MAX_VALUE / pow) {
+            return divideExact(dividend, divisor, scale);
+        }
+        quotient *= pow;
+
+        if (remainder <= Long.MAX_VALUE / pow) {
+            // Частый случай: все дробные знаки получаются одним делением
+            long scaled = remainder * pow;
+            quotient += scaled / b;
+            remainder = scaled % b;
+        } else {
+            // Большой делитель: дробные знаки вычисляются по одному
+            for (int digit = scale - 1; digit >= 0; digit--) {
+                if (remainder > Long.MAX_VALUE / 10) {
+                    return divideExact(dividend, divisor, scale);
+                }
+                remainder *= 10;
+                quotient += remainder / b * POWERS_OF_TEN[digit];
+                remainder %= b;
+            }
+        }
+
+        // HALF_UP: остаток не меньше половины делителя округляется от нуля
+        if (remainder >= b - remainder) {
+            quotient++;
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * Уточняет оценку частного, полученную в double. Относительная погрешность оценки
+     * не больше 2^-51, поэтому при частном до 2^52 она ошибается не больше чем на 3.
+     * Остаток a * pow - q * b вычисляется по модулю 2^64, но по модулю он меньше 4b < 2^62,
+     * поэтому переполнение промежуточных произведений не искажает его
+     */
+    private static long divideEstimated(long a, long b, long pow, long quotient, boolean negative) {
+        long remainder = a * pow - quotient * b;
+        while (remainder < 0) {
+            quotient--;
+            remainder += b;
+        }
+        while (remainder >= b) {
+            quotient++;
+            remainder -= b;
+        }
+        if (remainder >= b - remainder) {
+            quotient++;
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * Меняет масштаб числа, при уменьшении масштаба округляет HALF_UP
+     *
+     * @throws ArithmeticException если результат не помещается в long
+     */
+    public static long rescale(long unscaled, int fromScale, int toScale) {
+        if (toScale >= fromScale) {
+            return Math.multiplyExact(unscaled, POWERS_OF_TEN[toScale - fromScale]);
+        }
+        return divide(unscaled, POWERS_OF_TEN[fromScale - toScale], 0);
+    }
+
+    private static long divideExact(long dividend, long divisor, int scale) {
+        return BigDecimal.valueOf(dividend)
+                .divide(BigDecimal.valueOf(divisor), scale, RoundingMode.HALF_UP)
+                .unscaledValue()
+                .longValueExact();
+    }
+}
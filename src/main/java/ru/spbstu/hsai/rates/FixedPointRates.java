@@ -0,0 +1,134 @@
+package ru.spbstu.hsai.rates;
+
+import ru.spbstu.hsai.currency.CurrencyCode;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Курсы валют к базовой валюте в общем масштабе с фиксированной точкой.
+ * Масштаб выбирается по самому точному курсу, поэтому перевод выполняется без потерь
+ * и кросс-курсы совпадают с вычисленными через BigDecimal. Если курсы не помещаются
+ * в long с общим масштабом, масштаб уменьшается до подходящего с округлением HALF_UP
+ */
+public final class FixedPointRates {
+    public static final long NO_RATE = Long.MIN_VALUE;
+
+    private final String[] codes;
+    // Упакованные коды по тем же индексам или null, если не все коды упаковываются по порядку
+    private final int[] packedCodes;
+    private final long[] rates;
+    private final int scale;
+
+    private FixedPointRates(String[] codes, long[] rates, int scale) {
+        this.codes = codes;
+        this.packedCodes = packedCodes(codes);
+        this.rates = rates;
+        this.scale = scale;
+    }
+
+    private static int[] packedCodes(String[] codes) {
+        int[] packed = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            packed[i] = CurrencyCode.parse(codes[i]);
+            if (packed[i] == CurrencyCode.INVALID || (i > 0 && packed[i] <= packed[i - 1])) {
+                return null;
+            }
+        }
+        return packed;
+    }
+
+    public static FixedPointRates of(Map<String, BigDecimal> rates) {
+        String[] codes = rates.keySet().toArray(new String[0]);
+        Arrays.sort(codes);
+        BigDecimal[] values = new BigDecimal[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            values[i] = rates.get(codes[i]);
+        }
+        return of(codes, values);
+    }
+
+    /**
+     * @param codes отсортированные коды валют
+     * @param rates курсы валют по тем же индексам
+     */
+    public static FixedPointRates of(String[] codes, double[] rates) {
+        BigDecimal[] values = new BigDecimal[rates.length];
+        for (int i = 0; i < rates.length; i++) {
+            values[i] = BigDecimal.valueOf(rates[i]);
+        }
+        return of(codes, values);
+    }
+
+    private static FixedPointRates of(String[] codes, BigDecimal[] values) {
+        int scale = 0;
+        for (BigDecimal value : values) {
+            scale = Math.max(scale, FixedPoint.exactScale(value));
+        }
+        scale = Math.min(scale, FixedPoint.MAX_SCALE);
+
+        for (; scale >= 0; scale--) {
+            long[] unscaled = toUnscaled(values, scale);
+            if (unscaled != null) {
+                return new FixedPointRates(codes, unscaled, scale);
+            }
+        }
+        throw new ArithmeticException("Rates do not fit into long");
+    }
+
+    private static long[] toUnscaled(BigDecimal[] values, int scale) {
+        long[] unscaled = new long[values.length];
+        try {
+            for (int i = 0; i < values.length; i++) {
+                unscaled[i] = FixedPoint.toUnscaledRounded(values[i], scale);
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return unscaled;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @return единица в масштабе курсов
+     */
+    public long one() {
+        return FixedPoint.pow10(scale);
+    }
+
+    /**
+     * @return курс валюты в масштабе {@link #getScale()} или {@link #NO_RATE}, если курса нет
+     */
+    public long get(String code) {
+        int index = Arrays.binarySearch(codes, code);
+        return index < 0 ? NO_RATE : rates[index];
+    }
+
+    /**
+     * @param code упакованный код валюты {@link CurrencyCode}
+     * @return курс валюты в масштабе {@link #getScale()} или {@link #NO_RATE}, если курса нет
+     */
+    public long get(int code) {
+        if (packedCodes == null) {
+            return CurrencyCode.isValid(code) ? get(CurrencyCode.format(code)) : NO_RATE;
+        }
+        int index = Arrays.binarySearch(packedCodes, code);
+        return index < 0 ? NO_RATE : rates[index];
+    }
+
+    /**
+     * @return курсы в порядке отсортированных кодов валют
+     */
+    public long[] toArray() {
+        return rates.clone();
+    }
+
+    public long getOrDefault(String code, long defaultRate) {
+        long rate = get(code);
+        return rate == NO_RATE ? defaultRate : rate;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.spbstu.hsai.rates;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PairStatsDTO {
+    @JsonProperty("base") private String base;
+    @JsonProperty("target") private String target;
+    @JsonProperty("buckets") private List<Bucket> buckets;
+    // Стандартное отклонение логарифмической доходности в процентах, null до второго обновления
+    @JsonProperty("hourlyVolatility") private BigDecimal hourlyVolatility;
+    @JsonProperty("dailyVolatility") private BigDecimal dailyVolatility;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    @JsonProperty("updated") private LocalDateTime updated;
+
+    /**
+     * OHLC за один период; время начала в UTC
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Bucket {
+        @JsonProperty("period") private String period;
+        @JsonProperty("closed") private boolean closed;
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+        @JsonProperty("start") private LocalDateTime start;
+        @JsonProperty("open") private BigDecimal open;
+        @JsonProperty("high") private BigDecimal high;
+        @JsonProperty("low") private BigDecimal low;
+        @JsonProperty("close") private BigDecimal close;
+    }
+}
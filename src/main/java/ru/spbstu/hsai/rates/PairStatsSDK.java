@@ -0,0 +1,11 @@
+package ru.spbstu.hsai.rates;
+
+import reactor.core.publisher.Mono;
+
+public interface PairStatsSDK {
+    /**
+     * @return OHLC за текущие и прошлые час, день и неделю и EWMA-волатильность пары
+     * или пустой Mono, если по паре ещё нет данных
+     */
+    Mono<PairStatsDTO> getPairStats(String baseCurrency, String targetCurrency);
+}
@@ -1,28 +1,92 @@
 package ru.spbstu.hsai.rates;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
-import ru.spbstu.hsai.rates.api.http.OpenExchangeRatesSDK;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+import ru.spbstu.hsai.rates.service.AdaptiveRefreshPolicy;
+import ru.spbstu.hsai.rates.service.HedgedRateSource;
+import ru.spbstu.hsai.rates.service.RateAggregationService;
+import ru.spbstu.hsai.rates.service.RateHistoryService;
+import ru.spbstu.hsai.rates.service.RateSnapshotHolder;
 import ru.spbstu.hsai.rates.service.RatesServiceImpl;
+import ru.spbstu.hsai.rates.service.RefreshLease;
+import ru.spbstu.hsai.rates.service.RefreshLeaseService;
+import ru.spbstu.hsai.rates.service.RefreshSchedule;
 
 import java.time.Duration;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 @RequiredArgsConstructor
 @Slf4j
 @Service
 public class RatesFetcher {
     private final RatesServiceImpl service;
-    private final OpenExchangeRatesSDK openExchangeRatesSDK;
+    private final HedgedRateSource rateSource;
+    private final RateSnapshotHolder snapshotHolder;
+    private final RefreshLeaseService leaseService;
+    private final RateHistoryService historyService;
+    private final RateAggregationService aggregationService;
+    private final AdaptiveRefreshPolicy refreshPolicy;
 
     private static final String UPDATE_JOB_KEY = "currencyUpdateJob";
-    private final ConcurrentHashMap<String, Boolean> activeJobs = new ConcurrentHashMap<>();
+    // Время обновления, снимок которого уже опубликован в этом экземпляре
+    private final AtomicReference<Instant> loadedRefresh = new AtomicReference<>(Instant.EPOCH);
 
-    @Scheduled(cron = "0 0 * * * *") // Каждый час в 00 минут
+    /**
+     * Загружает снимок курсов из MongoDB при старте, чтобы запросы
+     * не ждали первого планового обновления
+     */
+    @PostConstruct
+    public void loadSnapshot() {
+        leaseService.lastCompleted(UPDATE_JOB_KEY)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(completed -> service.loadSnapshot()
+                        .filter(snapshot -> !snapshot.isEmpty())
+                        .doOnNext(snapshot -> {
+                            snapshotHolder.initialize(snapshot);
+                            completed.ifPresent(this::markLoaded);
+                        }))
+                .subscribe(
+                        _ -> {},
+                        ex -> log.error("Failed to load rate snapshot", ex)
+                );
+        historyService.loadRecent().subscribe(
+                _ -> {},
+                ex -> log.error("Failed to load recent rate history", ex)
+        );
+        aggregationService.load().subscribe(
+                _ -> {},
+                ex -> log.error("Failed to load rate aggregates", ex)
+        );
+    }
+
+    /**
+     * Обновляет курсы, если наступило время по расписанию. Интервал выбирает {@link AdaptiveRefreshPolicy}
+     * после каждого обновления, а время следующего хранится в аренде и общее для всех экземпляров
+     */
+    @Scheduled(fixedDelayString = "${rates.refresh.tick:PT1M}", initialDelayString = "${rates.refresh.tick:PT1M}")
+    public void refreshIfDue() {
+        leaseService.tryAcquireDue(UPDATE_JOB_KEY)
+                .flatMap(this::runUpdate)
+                .timeout(Duration.ofMinutes(10))
+                .subscribe(
+                        _ -> {},
+                        ex -> log.error("Scheduled currency update failed", ex)
+                );
+    }
+
+    /**
+     * Внеплановое обновление курсов, не дожидаясь расписания
+     */
     public void scheduleCurrencyUpdate() {
         executeCurrencyUpdate()
                 .retryWhen(Retry.fixedDelay(3, Duration.ofSeconds(1)))
@@ -30,19 +94,138 @@ public class RatesFetcher {
                 .subscribe();
     }
 
+    /**
+     * Подхватывает снимок, сохранённый экземпляром, который выполнил последнее обновление
+     */
+    @Scheduled(fixedDelayString = "${rates.lease.sync-interval:PT1M}", initialDelayString = "${rates.lease.sync-interval:PT1M}")
+    public void syncSnapshot() {
+        syncSnapshotIfStale().subscribe(
+                _ -> {},
+                ex -> log.error("Failed to sync rate snapshot", ex)
+        );
+    }
+
+    /**
+     * Обновляет курсы, если аренда задачи обновления свободна во всём кластере.
+     * Перед записью курсов аренда продлевается: если её уже получил другой экземпляр
+     * (больший fencing token), обновление прерывается без записи и публикации.
+     * Если аренда истекла уже после продления, записи с устаревшим токеном отклоняет MongoDB
+     */
     public Mono<Void> executeCurrencyUpdate() {
-        if (activeJobs.putIfAbsent(UPDATE_JOB_KEY, true) != null) {
-            log.warn("Currency update is already in progress");
-            return Mono.empty();
-        }
-
-        log.info("Currency update started");
-        return openExchangeRatesSDK.fetchCurrencies()
-                .flatMap(service::updateCurrencyData)
-                .then(openExchangeRatesSDK.fetchExchangeRates())
-                .flatMap(service::updateCurrencyPairs)
-                .doOnSuccess(v -> log.info("Currency update completed"))
-                .doOnError(ex -> log.error("Currency update failed", ex))
-                .doFinally(signal -> activeJobs.remove(UPDATE_JOB_KEY));
+        return leaseService.tryAcquire(UPDATE_JOB_KEY)
+                .switchIfEmpty(Mono.fromRunnable(() -> log.warn("Currency update is already in progress")))
+                .flatMap(this::runUpdate);
+    }
+
+    /**
+     * Выполняет обновление под арендой и назначает следующее: после успеха по изменению курсов,
+     * после ошибки с увеличенным интервалом
+     */
+    private Mono<Void> runUpdate(RefreshLease lease) {
+        return Mono.usingWhen(
+                Mono.just(lease),
+                held -> updateCurrencies(held)
+                        .flatMap(movePercent -> currentSchedule()
+                                .map(schedule -> refreshPolicy.afterSuccess(schedule, movePercent, Instant.now())))
+                        .doOnNext(interval -> log.info("Next currency update in {}", interval))
+                        .flatMap(interval -> leaseService.complete(held, interval))
+                        .doOnNext(this::markLoaded),
+                _ -> Mono.empty(),
+                (held, _) -> currentSchedule()
+                        .map(schedule -> refreshPolicy.afterFailure(schedule, Instant.now()))
+                        .doOnNext(interval -> log.warn("Currency update will be retried in {}", interval))
+                        .flatMap(interval -> leaseService.release(held, interval)),
+                leaseService::release
+        ).then();
+    }
+
+    /**
+     * @return Mono с наибольшим изменением курсов к базовой валюте в процентах:
+     * 0, если провайдер вернул прежние курсы, и NaN, если сравнить не с чем
+     */
+    private Mono<Double> updateCurrencies(RefreshLease lease) {
+        log.info("Currency update started with lease token {}", lease.token());
+        return fetchRates(lease)
+                .flatMap(rates -> {
+                    double movePercent = AdaptiveRefreshPolicy.maxMovePercent(snapshotHolder.get(), rates);
+                    return leaseService.renew(lease)
+                            .then(service.updateCurrencyPairs(rates, lease))
+                            .flatMap(snapshot -> appendHistory(rates, lease)
+                                    .then(updateAggregates(rates, lease))
+                                    .thenReturn(snapshot))
+                            .doOnNext(snapshotHolder::publish)
+                            .thenReturn(movePercent);
+                })
+                .defaultIfEmpty(0.0)
+                .doOnSuccess(movePercent -> log.info("Currency update completed, max move {}%", movePercent))
+                .doOnError(ex -> {
+                    log.error("Currency update failed", ex);
+                    // Курсы, загруженные в неудачной попытке, должны быть обработаны при повторе
+                    rateSource.invalidateExchangeRates();
+                });
+    }
+
+    /**
+     * Загружает список валют и курсы и учитывает в бюджете аренды все запросы, которые
+     * получили провайдеры: повторы, ответы 304 и загрузки списка валют, в том числе при ошибке
+     *
+     * @return Mono с курсами или пустой Mono, если курсы не изменились
+     */
+    private Mono<ExchangeRatesVector> fetchRates(RefreshLease lease) {
+        return Mono.defer(() -> {
+            long requestsBefore = rateSource.requestCount();
+            Mono<Void> countRequests = Mono.defer(() ->
+                    leaseService.countCalls(lease, rateSource.requestCount() - requestsBefore));
+            return rateSource.fetchCurrencies()
+                    .flatMap(service::updateCurrencyData)
+                    .then(rateSource.fetchExchangeRates())
+                    .onErrorResume(ex -> countRequests.then(Mono.error(ex)))
+                    .flatMap(rates -> countRequests.thenReturn(rates))
+                    .switchIfEmpty(countRequests.then(Mono.empty()));
+        });
+    }
+
+    private Mono<RefreshSchedule> currentSchedule() {
+        return leaseService.schedule(UPDATE_JOB_KEY).defaultIfEmpty(RefreshSchedule.NONE);
+    }
+
+    /**
+     * Ошибка записи истории не отменяет обновление курсов: точка будет пропущена
+     */
+    private Mono<Void> appendHistory(ExchangeRatesVector rates, RefreshLease lease) {
+        return historyService.append(rates, lease)
+                .onErrorResume(ex -> {
+                    log.error("Failed to append rates to history", ex);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Ошибка обновления агрегатов не отменяет обновление курсов
+     */
+    private Mono<Void> updateAggregates(ExchangeRatesVector rates, RefreshLease lease) {
+        return aggregationService.update(rates, lease)
+                .onErrorResume(ex -> {
+                    log.error("Failed to update rate aggregates", ex);
+                    return Mono.empty();
+                });
+    }
+
+    Mono<RateSnapshot> syncSnapshotIfStale() {
+        return leaseService.lastCompleted(UPDATE_JOB_KEY)
+                .filter(completed -> completed.isAfter(loadedRefresh.get()))
+                .flatMap(completed -> service.loadSnapshot()
+                        .filter(snapshot -> !snapshot.isEmpty())
+                        .doOnNext(snapshot -> {
+                            snapshotHolder.publish(snapshot);
+                            markLoaded(completed);
+                        })
+                        .flatMap(snapshot -> historyService.loadRecent()
+                                .then(aggregationService.load())
+                                .thenReturn(snapshot)));
+    }
+
+    private void markLoaded(Instant completed) {
+        loadedRefresh.accumulateAndGet(completed, (current, next) -> next.isAfter(current) ? next : current);
     }
 }
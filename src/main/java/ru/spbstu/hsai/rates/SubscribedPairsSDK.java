@@ -0,0 +1,29 @@
+package ru.spbstu.hsai.rates;
+
+/**
+ * Пары, на которые есть хотя бы одно уведомление. Модуль уведомлений сообщает
+ * о добавленных и удалённых уведомлениях, а события об изменении курсов
+ * публикуются только для этих пар
+ */
+public interface SubscribedPairsSDK {
+    /**
+     * Учитывает новое уведомление по паре
+     *
+     * @param pairKey пара, упакованная {@link ru.spbstu.hsai.currency.PairKey}
+     */
+    void subscribe(int pairKey);
+
+    /**
+     * Учитывает удаление уведомления по паре
+     *
+     * @param pairKey пара, упакованная {@link ru.spbstu.hsai.currency.PairKey}
+     */
+    void unsubscribe(int pairKey);
+
+    /**
+     * Заменяет все подписки. До первого вызова события публикуются для всех пар
+     *
+     * @param pairKeys пары всех уведомлений, пара повторяется по числу уведомлений на неё
+     */
+    void replaceAll(int[] pairKeys);
+}
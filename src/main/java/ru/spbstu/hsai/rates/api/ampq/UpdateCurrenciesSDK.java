@@ -2,20 +2,23 @@ package ru.spbstu.hsai.rates.api.ampq;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.amqp.AmqpPublisher;
 import ru.spbstu.hsai.rates.api.ampq.dto.RateChangeEvent;
+import ru.spbstu.hsai.rates.api.ampq.dto.RatesSnapshotEvent;
 import ru.spbstu.hsai.rates.entities.CurrencyPairDBO;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
 
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UpdateCurrenciesSDK {
-    private final RabbitTemplate rabbitTemplate;
+    private final AmqpPublisher amqpPublisher;
     /**
      * Отправляет уведомление об обновлении курса через RabbitMQ
      *
@@ -25,19 +28,34 @@ public class UpdateCurrenciesSDK {
      * @return Mono сигнализирующий о завершении операции
      */
     public Mono<Void> sendUpdateNotification(CurrencyPairDBO pair, BigDecimal oldRate, BigDecimal changePercent) {
-        return Mono.fromRunnable(() ->
-                rabbitTemplate.convertAndSend(
-                        "currency-converter-bot",
-                        "rates.update",
-                        new RateChangeEvent(
-                                pair.getBaseCurrency(),
-                                pair.getTargetCurrency(),
-                                oldRate,
-                                pair.getCurrentRate(),
-                                changePercent,
-                                pair.getUpdated()
-                        )
+        return amqpPublisher.publish(
+                "rates.update",
+                new RateChangeEvent(
+                        pair.getBaseCurrency(),
+                        pair.getTargetCurrency(),
+                        oldRate,
+                        pair.getCurrentRate(),
+                        changePercent,
+                        pair.getUpdated()
                 )
         );
     }
+
+    /**
+     * Отправляет одним сообщением снимок курсов всех валют после обновления
+     *
+     * @param base Базовая валюта векторов
+     * @param currencies Коды валют
+     * @param oldRates Курсы к базовой валюте до обновления
+     * @param newRates Курсы к базовой валюте после обновления
+     * @param updated Время обновления
+     * @return Mono сигнализирующий о завершении операции
+     */
+    public Mono<Void> sendSnapshotNotification(String base, List<String> currencies, List<BigDecimal> oldRates,
+                                               List<BigDecimal> newRates, LocalDateTime updated) {
+        return amqpPublisher.publish(
+                "rates.snapshot",
+                new RatesSnapshotEvent(base, currencies, oldRates, newRates, updated)
+        );
+    }
 }
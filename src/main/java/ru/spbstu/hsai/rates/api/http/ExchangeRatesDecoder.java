@@ -0,0 +1,181 @@
+package ru.spbstu.hsai.rates.api.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Потоковый разбор latest.json без построения дерева и Map:
+ * курсы читаются из DataBuffer по мере поступления прямо в массив double
+ */
+public final class ExchangeRatesDecoder {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ExchangeRatesDecoder() {
+    }
+
+    public static Mono<ExchangeRatesVector> decode(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            ParserState state = new ParserState();
+            return body.doOnNext(buffer -> {
+                        try {
+                            state.feed(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(state::finish))
+                    .doFinally(_ -> state.close());
+        });
+    }
+
+    public static ExchangeRatesVector decode(byte[] body) {
+        ParserState state = new ParserState();
+        try {
+            state.feed(ByteBuffer.wrap(body));
+            return state.finish();
+        } finally {
+            state.close();
+        }
+    }
+
+    private static final class ParserState {
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+
+        private int depth;
+        private boolean inRates;
+        private boolean completed;
+        private String field;
+        private Long timestamp;
+        private String base;
+        private String[] codes = new String[256];
+        private double[] rates = new double[256];
+        private int size;
+
+        ParserState() {
+            try {
+                this.parser = JSON_FACTORY.createNonBlockingByteBufferParser();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        }
+
+        void feed(DataBuffer buffer) {
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    feed(iterator.next());
+                }
+            }
+        }
+
+        void feed(ByteBuffer buffer) {
+            try {
+                feeder.feedInput(buffer);
+                JsonToken token;
+                while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                    onToken(token);
+                }
+            } catch (IOException e) {
+                throw new DecodingException("Failed to parse exchange rates", e);
+            }
+        }
+
+        private void onToken(JsonToken token) throws IOException {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    depth++;
+                    inRates = depth == 2 && token == JsonToken.START_OBJECT && "rates".equals(field);
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    if (depth == 2) {
+                        inRates = false;
+                    }
+                    depth--;
+                    completed = depth == 0;
+                }
+                case FIELD_NAME -> field = parser.currentName();
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                    if (inRates && depth == 2) {
+                        add(field, parser.getDoubleValue());
+                    } else if (depth == 1 && "timestamp".equals(field)) {
+                        timestamp = parser.getLongValue();
+                    }
+                }
+                case VALUE_STRING -> {
+                    if (depth == 1 && "base".equals(field)) {
+                        base = parser.getText();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void add(String code, double rate) {
+            if (size == codes.length) {
+                codes = Arrays.copyOf(codes, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+            }
+            codes[size] = code;
+            rates[size] = rate;
+            size++;
+        }
+
+        ExchangeRatesVector finish() {
+            feeder.endOfInput();
+            if (!completed) {
+                throw new DecodingException("Exchange rates response is truncated");
+            }
+
+            String[] sortedCodes = Arrays.copyOf(codes, size);
+            double[] sortedRates = Arrays.copyOf(rates, size);
+            if (isSorted(sortedCodes)) {
+                // OpenExchangeRates отдаёт курсы по алфавиту, пересортировка обычно не нужна
+                return new ExchangeRatesVector(timestamp, base, sortedCodes, sortedRates);
+            }
+
+            // Упорядочиваем по коду валюты, чтобы индекс совпадал с порядковым номером в снимке
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(i -> codes[i]));
+            for (int i = 0; i < size; i++) {
+                sortedCodes[i] = codes[order[i]];
+                sortedRates[i] = rates[order[i]];
+            }
+            return new ExchangeRatesVector(timestamp, base, sortedCodes, sortedRates);
+        }
+
+        private static boolean isSorted(String[] codes) {
+            for (int i = 1; i < codes.length; i++) {
+                if (codes[i - 1].compareTo(codes[i]) > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // парсер работает только с памятью
+            }
+        }
+    }
+}
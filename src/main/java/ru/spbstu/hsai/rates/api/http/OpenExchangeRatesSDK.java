@@ -1,48 +1,142 @@
 package ru.spbstu.hsai.rates.api.http;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.stereotype.Service;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
-import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesDTO;
-import ru.spbstu.hsai.rates.service.RatesServiceImpl;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Сервис для периодического обновления валютных курсов из OpenExchangeRates API
+ * Клиент OpenExchangeRates API и совместимых с ним серверов (например, {@link StubRateServer}).
+ * Курсы запрашиваются условно (ETag / Last-Modified), ответ с тем же timestamp
+ * считается неизменившимся. Список валют кэшируется на rates.currencies.ttl-minutes.
+ * Каждая попытка запроса ограничена таймаутом, чтобы медленный провайдер не задерживал обновление.
+ * Каждая отправленная попытка, в том числе повтор, считается в {@link #requestCount()}
  */
-@Service
 @Slf4j
-public class OpenExchangeRatesSDK {
+public class OpenExchangeRatesSDK implements RateProvider {
+    private static final int RETRIES = 3;
+
+    private final String name;
     private final WebClient webClient;
+    private final String baseUrl;
     private final String apiKey;
+    private final Duration timeout;
+    private final AtomicReference<RatesValidators> ratesValidators = new AtomicReference<>(RatesValidators.NONE);
+    private final Mono<Map<String, String>> cachedCurrencies;
+    private final AtomicLong requests = new AtomicLong();
 
-    public OpenExchangeRatesSDK(
-            @Qualifier("telegramWebClient") WebClient webClient,
-            RatesServiceImpl service,
-            @Value("${api_key}") String apiKey
-    ){
+    /**
+     * @param name          имя провайдера в настройках и метриках
+     * @param baseUrl       адрес API без завершающего слэша, например https://openexchangerates.org/api
+     * @param currenciesTtl время жизни кэша списка валют
+     * @param timeout       таймаут одной попытки запроса
+     */
+    public OpenExchangeRatesSDK(String name, WebClient webClient, String baseUrl, String apiKey,
+                                Duration currenciesTtl, Duration timeout) {
+        this.name = name;
         this.webClient = webClient;
+        this.baseUrl = baseUrl;
         this.apiKey = apiKey;
+        this.timeout = timeout;
+        this.cachedCurrencies = requestCurrencies()
+                .cache(_ -> currenciesTtl, _ -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    @Override
+    public String name() {
+        return name;
     }
 
+    /**
+     * @return список валют (код -> название), загружается заново только после истечения TTL кэша
+     */
+    @Override
     public Mono<Map<String, String>> fetchCurrencies() {
+        return cachedCurrencies;
+    }
+
+    private Mono<Map<String, String>> requestCurrencies() {
         return webClient.get()
-                .uri("https://openexchangerates.org/api/currencies.json?app_id={key}", apiKey)
+                .uri(baseUrl + "/currencies.json?app_id={key}", apiKey)
                 .retrieve()
                 .bodyToMono(new ParameterizedTypeReference<Map<String, String>>() {})
-                .retry(3);
+                .doOnSubscribe(_ -> requests.incrementAndGet())
+                .timeout(timeout)
+                .doOnNext(currencies -> log.info("Fetched {} currencies from {}", currencies.size(), name))
+                .retry(RETRIES);
     }
 
-    public Mono<ExchangeRatesDTO> fetchExchangeRates() {
-        return webClient.get()
-                .uri("https://openexchangerates.org/api/latest.json?app_id={key}", apiKey)
-                .retrieve()
-                .bodyToMono(ExchangeRatesDTO.class)
-                .retry(3);
+    /**
+     * Загружает актуальные курсы, ответ разбирается потоково в {@link ExchangeRatesVector}
+     *
+     * @return Mono с курсами или пустой Mono, если курсы не изменились с прошлой загрузки
+     */
+    @Override
+    public Mono<ExchangeRatesVector> fetchExchangeRates() {
+        return Mono.defer(() -> {
+            RatesValidators previous = ratesValidators.get();
+            return webClient.get()
+                    .uri(baseUrl + "/latest.json?app_id={key}", apiKey)
+                    .headers(headers -> {
+                        if (previous.etag() != null) {
+                            headers.set(HttpHeaders.IF_NONE_MATCH, previous.etag());
+                        }
+                        if (previous.lastModified() != null) {
+                            headers.set(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
+                        }
+                    })
+                    .exchangeToMono(response -> {
+                        if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                            log.info("Exchange rates from {} not modified, skipping update", name);
+                            return response.releaseBody().then(Mono.<ExchangeRatesVector>empty());
+                        }
+                        if (response.statusCode().isError()) {
+                            return response.createError();
+                        }
+
+                        HttpHeaders headers = response.headers().asHttpHeaders();
+                        return ExchangeRatesDecoder.decode(response.bodyToFlux(DataBuffer.class)).flatMap(rates -> {
+                            ratesValidators.set(new RatesValidators(
+                                    headers.getETag(),
+                                    headers.getFirst(HttpHeaders.LAST_MODIFIED),
+                                    rates.getTimestamp()
+                            ));
+                            if (rates.getTimestamp() != null && rates.getTimestamp().equals(previous.timestamp())) {
+                                log.info("Exchange rates timestamp {} from {} is unchanged, skipping update", rates.getTimestamp(), name);
+                                return Mono.empty();
+                            }
+                            return Mono.just(rates);
+                        });
+                    })
+                    .doOnSubscribe(_ -> requests.incrementAndGet())
+                    .timeout(timeout);
+        }).retry(RETRIES);
+    }
+
+    @Override
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Сбрасывает запомненные ETag, Last-Modified и timestamp, чтобы следующая загрузка
+     * вернула курсы, даже если они не изменились (например, после ошибки их обработки)
+     */
+    @Override
+    public void invalidateExchangeRates() {
+        ratesValidators.set(RatesValidators.NONE);
+    }
+
+    private record RatesValidators(String etag, String lastModified, Long timestamp) {
+        static final RatesValidators NONE = new RatesValidators(null, null, null);
     }
 }
@@ -0,0 +1,37 @@
+package ru.spbstu.hsai.rates.api.http;
+
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+
+import java.util.Map;
+
+/**
+ * Источник курсов валют к базовой валюте
+ */
+public interface RateProvider {
+    /**
+     * @return имя провайдера в настройках rates.providers и в метриках
+     */
+    String name();
+
+    /**
+     * @return Mono со списком валют (код -> название)
+     */
+    Mono<Map<String, String>> fetchCurrencies();
+
+    /**
+     * @return Mono с курсами или пустой Mono, если курсы не изменились с прошлой загрузки
+     */
+    Mono<ExchangeRatesVector> fetchExchangeRates();
+
+    /**
+     * @return число запросов к провайдеру с запуска, включая повторы, ответы 304 и загрузки списка валют,
+     * то есть всё, что провайдер учитывает в тарифе
+     */
+    long requestCount();
+
+    /**
+     * Забывает прошлую загрузку, чтобы следующая вернула курсы, даже если они не изменились
+     */
+    void invalidateExchangeRates();
+}
@@ -0,0 +1,153 @@
+package ru.spbstu.hsai.rates.api.http;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import ru.spbstu.hsai.currency.CurrencyCode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Локальный сервер, отвечающий как OpenExchangeRates API по записанным ответам
+ * из classpath:stub/latest.json и classpath:stub/currencies.json.
+ * Нужен для нагрузочной проверки конвейера обновления курсов без сети: каждый ответ
+ * получает новый timestamp, а курсы случайно смещаются не больше чем на jitterPercent,
+ * поэтому каждое обновление находит изменения. Список валют можно дополнить
+ * синтетическими валютами до заданного размера
+ */
+@Slf4j
+public class StubRateServer {
+    private static final MathContext RATE_PRECISION = new MathContext(8);
+
+    private final String host;
+    private final int port;
+    private final Duration latency;
+    private final double jitterPercent;
+    private final String[] codes;
+    private final double[] rates;
+    private final String currenciesBody;
+    private DisposableServer server;
+
+    /**
+     * @param port          порт сервера, 0 для любого свободного
+     * @param latency       задержка перед каждым ответом
+     * @param jitterPercent наибольшее случайное изменение курса в процентах
+     * @param currencies    число валют в ответе; 0 для записанного списка, больше записанного
+     *                      дополняется синтетическими валютами
+     */
+    public StubRateServer(String host, int port, Duration latency, double jitterPercent, int currencies) {
+        this.host = host;
+        this.port = port;
+        this.latency = latency;
+        this.jitterPercent = jitterPercent;
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode recorded = read(mapper, "stub/latest.json").get("rates");
+        Map<String, String> names = new LinkedHashMap<>();
+        read(mapper, "stub/currencies.json").fields()
+                .forEachRemaining(entry -> names.put(entry.getKey(), entry.getValue().asText()));
+
+        List<String> codeList = new ArrayList<>();
+        List<Double> rateList = new ArrayList<>();
+        recorded.fields().forEachRemaining(entry -> {
+            codeList.add(entry.getKey());
+            rateList.add(entry.getValue().asDouble());
+        });
+        // Синтетические коды берутся с конца алфавита (ZZZ, ZZY, ...), пропуская настоящие
+        for (int i = 0, packed = CurrencyCode.COUNT - 1; codeList.size() < currencies; packed--) {
+            String code = CurrencyCode.format(packed);
+            if (names.containsKey(code)) {
+                continue;
+            }
+            codeList.add(code);
+            rateList.add(rateList.get(i % rateList.size()) * (1 + i % 7 / 10.0));
+            names.put(code, "Synthetic currency " + code);
+            i++;
+        }
+        this.codes = codeList.toArray(new String[0]);
+        this.rates = rateList.stream().mapToDouble(Double::doubleValue).toArray();
+        try {
+            this.currenciesBody = mapper.writeValueAsString(names);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void start() {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create()
+                .host(host)
+                .port(port)
+                .route(routes -> routes
+                        .get("/api/latest.json", (request, response) -> response
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.delay(latency).map(_ -> latestBody())))
+                        .get("/api/currencies.json", (request, response) -> response
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.delay(latency).map(_ -> currenciesBody))))
+                .bindNow();
+        log.info("Stub rate server started at {} with {} currencies", baseUrl(), codes.length);
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.disposeNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return адрес API запущенного сервера для {@link OpenExchangeRatesSDK}
+     */
+    public synchronized String baseUrl() {
+        if (server == null) {
+            throw new IllegalStateException("Stub rate server is not started");
+        }
+        return "http://" + host + ":" + server.port() + "/api";
+    }
+
+    private String latestBody() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder body = new StringBuilder(codes.length * 24 + 64)
+                .append("{\"timestamp\":").append(Instant.now().getEpochSecond())
+                .append(",\"base\":\"USD\",\"rates\":{");
+        for (int i = 0; i < codes.length; i++) {
+            // Базовая валюта остаётся равной 1, курсы округляются до точности ответов OpenExchangeRates
+            double rate = "USD".equals(codes[i]) || jitterPercent <= 0
+                    ? rates[i]
+                    : rates[i] * (1 + random.nextDouble(-jitterPercent, jitterPercent) / 100);
+            body.append(i == 0 ? "" : ",").append('"').append(codes[i]).append("\":")
+                    .append(new BigDecimal(rate).round(RATE_PRECISION).toPlainString());
+        }
+        return body.append("}}").toString();
+    }
+
+    private static JsonNode read(ObjectMapper mapper, String resource) {
+        try (InputStream stream = StubRateServer.class.getClassLoader().getResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IllegalStateException("Missing stub resource " + resource);
+            }
+            return mapper.readTree(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
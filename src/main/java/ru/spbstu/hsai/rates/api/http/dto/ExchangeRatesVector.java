@@ -0,0 +1,97 @@
+package ru.spbstu.hsai.rates.api.http.dto;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Курсы валют из ответа OpenExchangeRates в виде примитивного вектора.
+ * Коды валют отсортированы, курс валюты хранится по тому же индексу,
+ * что и её код (совпадает с порядковым номером валюты в снимке курсов)
+ */
+public final class ExchangeRatesVector {
+    private final Long timestamp;
+    private final String base;
+    private final String[] currencies;
+    private final double[] rates;
+
+    public ExchangeRatesVector(Long timestamp, String base, String[] currencies, double[] rates) {
+        if (currencies.length != rates.length) {
+            throw new IllegalArgumentException("Currencies and rates must have the same length");
+        }
+        this.timestamp = timestamp;
+        this.base = base;
+        this.currencies = currencies;
+        this.rates = rates;
+    }
+
+    /**
+     * Строит вектор по курсам в виде Map
+     */
+    public static ExchangeRatesVector of(Long timestamp, String base, Map<String, BigDecimal> rates) {
+        String[] currencies = rates.keySet().toArray(new String[0]);
+        Arrays.sort(currencies);
+        double[] values = new double[currencies.length];
+        for (int i = 0; i < currencies.length; i++) {
+            values[i] = rates.get(currencies[i]).doubleValue();
+        }
+        return new ExchangeRatesVector(timestamp, base, currencies, values);
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    /**
+     * @return отсортированные коды валют, массив не копируется и не должен изменяться
+     */
+    public String[] getCurrencies() {
+        return currencies;
+    }
+
+    /**
+     * @return курсы к базовой валюте по индексам валют, массив не копируется и не должен изменяться
+     */
+    public double[] getRates() {
+        return rates;
+    }
+
+    public int size() {
+        return currencies.length;
+    }
+
+    /**
+     * @return индекс валюты или отрицательное число, если валюты нет
+     */
+    public int indexOf(String code) {
+        return Arrays.binarySearch(currencies, code);
+    }
+
+    /**
+     * Курс валюты в виде BigDecimal. Курсы OpenExchangeRates содержат меньше 17 значащих цифр,
+     * поэтому BigDecimal.valueOf(double) восстанавливает их десятичную запись без потерь
+     *
+     * @return курс к базовой валюте или null, если валюты нет
+     */
+    public BigDecimal getRate(String code) {
+        int index = indexOf(code);
+        return index < 0 ? null : BigDecimal.valueOf(rates[index]);
+    }
+
+    public BigDecimal getRate(int index) {
+        return BigDecimal.valueOf(rates[index]);
+    }
+
+    public Map<String, BigDecimal> toRateMap() {
+        Map<String, BigDecimal> map = new HashMap<>(currencies.length * 2);
+        for (int i = 0; i < currencies.length; i++) {
+            map.put(currencies[i], BigDecimal.valueOf(rates[i]));
+        }
+        return map;
+    }
+}
@@ -7,8 +7,11 @@ import org.telegram.telegrambots.meta.api.objects.Message;
 import reactor.core.publisher.Mono;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.history.HistorySDK;
+import ru.spbstu.hsai.rates.service.RateHistoryService;
 import ru.spbstu.hsai.rates.service.RatesServiceImpl;
 import ru.spbstu.hsai.telegram.BotCommand;
 import ru.spbstu.hsai.telegram.CommandHandler;
@@ -16,7 +19,11 @@ import ru.spbstu.hsai.user.UserDTO;
 import ru.spbstu.hsai.user.UserServiceSDK;
 import ru.spbstu.hsai.user.UserSettings;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -29,8 +36,12 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class ConvertHandler implements CommandHandler {
     private static final Pattern CONVERT_PATTERN =
-            Pattern.compile("^/convert\\s+(\\d+(?:\\.\\d+)?)(?:\\s+([A-Z]{3})(?:\\s+([A-Z]{3}))?)?$", Pattern.CASE_INSENSITIVE);
+            Pattern.compile("^/convert\\s+(\\d+(?:\\.\\d+)?)(?:\\s+([A-Z]{3})(?:\\s+([A-Z]{3}))?)?(?:\\s+at\\s+(\\d{4}-\\d{2}-\\d{2}))?$",
+                    Pattern.CASE_INSENSITIVE);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm 'UTC'");
     private final RatesServiceImpl ratesService;
+    private final RateHistoryService rateHistoryService;
     private final UserServiceSDK userService;
     private final HistorySDK historySDK;
 
@@ -55,8 +66,12 @@ public class ConvertHandler implements CommandHandler {
     @Value("${command.convert.error.rate}")
     private String errorRateNotFound;
 
+    @Value("${command.convert.error.history}")
+    private String errorHistoryNotFound;
+
     /**
-     * Обрабатывает команду /convert, производя конвертации валютных сумм из одной в другую
+     * Обрабатывает команду /convert, производя конвертации валютных сумм из одной в другую.
+     * С суффиксом at &lt;дата&gt; используется курс последнего обновления этой даты
      *
      * @param message входящее сообщение от пользователя
      * @return Mono<String> с результатом конвертации валют или сообщением об ошибке
@@ -76,12 +91,19 @@ public class ConvertHandler implements CommandHandler {
                     double amount = Double.parseDouble(matcher.group(1));
                     String fromCurrency = matcher.group(2) != null ? matcher.group(2).toUpperCase() : null;
                     String toCurrency = matcher.group(3) != null ? matcher.group(3).toUpperCase() : null;
+                    LocalDate date;
+                    try {
+                        date = matcher.group(4) != null ? LocalDate.parse(matcher.group(4)) : null;
+                    } catch (DateTimeParseException e) {
+                        return Mono.error(new CCBException(errorFormat));
+                    }
 
                     return processConvertRequest(
                             message.getChatId(),
                             amount,
                             fromCurrency,
-                            toCurrency
+                            toCurrency,
+                            date
                     )// Сохраняем историю после успешного выполнения
                     .flatMap(conversionResult -> {
                         Map<String, Object> historyPayload = new HashMap<>();
@@ -89,6 +111,9 @@ public class ConvertHandler implements CommandHandler {
                         historyPayload.put("amount", amount);
                         historyPayload.put("from", fromCurrency);
                         historyPayload.put("to", toCurrency);
+                        if (date != null) {
+                            historyPayload.put("date", date.toString());
+                        }
                         historyPayload.put("result", conversionResult);
 
                         return historySDK.saveHistory(
@@ -104,10 +129,12 @@ public class ConvertHandler implements CommandHandler {
                 ));
     }
 
-    private Mono<String> processConvertRequest(Long chatId, Double amount, String from, String to) {
+    private Mono<String> processConvertRequest(Long chatId, Double amount, String from, String to, LocalDate date) {
         return userService.getUserByChatId(chatId)
                 .flatMap(user -> determineCurrencies(user.getSettings(), from, to))
-                .flatMap(currencies -> convertAmount(amount, currencies.getT1(), currencies.getT2()))
+                .flatMap(currencies -> date == null
+                        ? convertAmount(amount, currencies.getT1(), currencies.getT2())
+                        : convertAmountAt(amount, currencies.getT1(), currencies.getT2(), date))
                 .switchIfEmpty(Mono.error(new CCBException(errorSettingsNotFound)));
     }
 
@@ -129,8 +156,13 @@ public class ConvertHandler implements CommandHandler {
         if (settings.getDefaultPair() == null) {
             return Mono.error(new CCBException(errorPairNotSpecified));
         }
-        String[] pair = settings.getDefaultPair().split("/");
-        return Mono.just(Tuples.of(pair[0], pair[1]));
+        int pairKey = PairKey.parse(settings.getDefaultPair());
+        if (pairKey == PairKey.INVALID) {
+            return Mono.error(new CCBException(errorPairNotSpecified));
+        }
+        return Mono.just(Tuples.of(
+                CurrencyCode.format(PairKey.base(pairKey)), CurrencyCode.format(PairKey.target(pairKey))
+        ));
     }
 
     private Mono<String> convertAmount(Double amount, String from, String to) {
@@ -150,4 +182,19 @@ public class ConvertHandler implements CommandHandler {
                 })
                 .switchIfEmpty(Mono.error(new CCBException(String.format(errorRateNotFound,from, to))));
     }
+
+    private Mono<String> convertAmountAt(Double amount, String from, String to, LocalDate date) {
+        return rateHistoryService.getRateOn(from, to, date)
+                .map(point -> String.format(successTemplate,
+                        String.format("%.2f", amount),
+                        from,
+                        String.format("%.2f", amount * point.rate().doubleValue()),
+                        to,
+                        from,
+                        String.format("%.6f", point.rate()),
+                        to,
+                        LocalDateTime.ofInstant(point.time(), ZoneOffset.UTC).format(TIME_FORMAT)
+                ))
+                .switchIfEmpty(Mono.error(new CCBException(String.format(errorHistoryNotFound, from, to, date.format(DATE_FORMAT)))));
+    }
 }
\ No newline at end of file
@@ -5,14 +5,22 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.history.HistorySDK;
+import ru.spbstu.hsai.rates.service.RateHistoryService;
 import ru.spbstu.hsai.rates.service.RatesServiceImpl;
 import ru.spbstu.hsai.telegram.BotCommand;
 import ru.spbstu.hsai.telegram.CommandHandler;
 import ru.spbstu.hsai.user.UserServiceSDK;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -24,11 +32,18 @@ import java.util.regex.Pattern;
 @RequiredArgsConstructor
 public class RateHandler implements CommandHandler {
     private static final Pattern RATE_PATTERN =
-            Pattern.compile("^/rate(?:\\s+(([A-Z]{3})(?:/([A-Z]{3}))?))?$", Pattern.CASE_INSENSITIVE);
+            Pattern.compile("^/rate(?:\\s+(([A-Z]{3})(?:/([A-Z]{3}))?))?(?:\\s+(\\d{4}-\\d{2}-\\d{2})(?:\\s+(\\d{4}-\\d{2}-\\d{2}))?)?$",
+                    Pattern.CASE_INSENSITIVE);
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm 'UTC'");
     private final RatesServiceImpl ratesService;
+    private final RateHistoryService rateHistoryService;
     private final UserServiceSDK userService;
     private final HistorySDK historySDK;
 
+    @Value("${rates.history.max-range-days:366}")
+    private int maxRangeDays = 366;
+
     @Value("${command.rate.success}")
     private String commandRatesReply;
 
@@ -50,8 +65,21 @@ public class RateHandler implements CommandHandler {
     @Value("${command.rate.error.rate}")
     private String errorRateNotFound;
 
+    @Value("${command.rate.history.success}")
+    private String historyReply;
+
+    @Value("${command.rate.range.success}")
+    private String rangeReply;
+
+    @Value("${command.rate.error.history}")
+    private String errorHistoryNotFound;
+
+    @Value("${command.rate.error.range}")
+    private String errorRange;
+
     /**
-     * Обрабатывает команду /rate для получения курса валюты или валютной пары
+     * Обрабатывает команду /rate для получения курса валюты или валютной пары.
+     * С датой возвращает курс на эту дату, с двумя датами - минимум, максимум и среднее за период
      * @param message входящее сообщение с параметрами команды
      * @return форматированный ответ с курсом или сообщение об ошибке
      */
@@ -89,32 +117,54 @@ public class RateHandler implements CommandHandler {
     private Mono<String> processRateRequest(Long chatId, Matcher matcher) {
         String currency1 = matcher.group(2);
         String currency2 = matcher.group(3);
+        LocalDate from = parseDate(matcher.group(4));
+        LocalDate to = parseDate(matcher.group(5));
+        if (to != null && (from.isAfter(to) || ChronoUnit.DAYS.between(from, to) >= maxRangeDays)) {
+            return Mono.error(new CCBException(String.format(errorRange, maxRangeDays)));
+        }
 
         // Определение типа запроса
         if (currency1 == null) {
-            return handleDefaultPair(chatId);
+            return handleDefaultPair(chatId, from, to);
         } else if (currency2 == null) {
-            return handleSingleCurrency(chatId, currency1);
+            return handleSingleCurrency(chatId, currency1, from, to);
         } else {
-            return handleCurrencyPair(currency1, currency2);
+            return handleCurrencyPair(currency1, currency2, from, to);
+        }
+    }
+
+    private LocalDate parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new CCBException(errorFormat);
         }
     }
 
-    private Mono<String> handleDefaultPair(Long chatId) {
+    private Mono<String> handleDefaultPair(Long chatId, LocalDate from, LocalDate to) {
         return userService.getUserByChatId(chatId)
                 .flatMap(user -> {
                     if (user.getSettings().getDefaultPair() == null) {
                         return Mono.error(new CCBException(errorPairNotSpecified));
                     }
+                    int pairKey = PairKey.parse(user.getSettings().getDefaultPair());
+                    if (pairKey == PairKey.INVALID) {
+                        return Mono.error(new CCBException(errorPairNotSpecified));
+                    }
                     return processPair(
-                            user.getSettings().getDefaultPair().split("/")[0],
-                            user.getSettings().getDefaultPair().split("/")[1]
+                            CurrencyCode.format(PairKey.base(pairKey)),
+                            CurrencyCode.format(PairKey.target(pairKey)),
+                            from,
+                            to
                     );
                 })
                 .switchIfEmpty(Mono.error(new CCBException(errorSettingsNotFound)));
     }
 
-    private Mono<String> handleSingleCurrency(Long chatId, String currency) {
+    private Mono<String> handleSingleCurrency(Long chatId, String currency, LocalDate from, LocalDate to) {
         return userService.getUserByChatId(chatId)
                 .flatMap(user -> {
                     if (user.getSettings().getHomeCurrency() == null) {
@@ -122,13 +172,51 @@ public class RateHandler implements CommandHandler {
                                 errorCurrencyNotSpecified
                         ));
                     }
-                    return processPair(user.getSettings().getHomeCurrency(), currency);
+                    return processPair(user.getSettings().getHomeCurrency(), currency.toUpperCase(), from, to);
                 })
                 .switchIfEmpty(Mono.error(new CCBException(errorSettingsNotFound)));
     }
 
-    private Mono<String> handleCurrencyPair(String currency1, String currency2) {
-        return processPair(currency1.toUpperCase(), currency2.toUpperCase());
+    private Mono<String> handleCurrencyPair(String currency1, String currency2, LocalDate from, LocalDate to) {
+        return processPair(currency1.toUpperCase(), currency2.toUpperCase(), from, to);
+    }
+
+    private Mono<String> processPair(String baseCurrency, String targetCurrency, LocalDate from, LocalDate to) {
+        if (from == null) {
+            return processPair(baseCurrency, targetCurrency);
+        }
+        if (to == null) {
+            return processRateOnDate(baseCurrency, targetCurrency, from);
+        }
+        return processRange(baseCurrency, targetCurrency, from, to);
+    }
+
+    private Mono<String> processRateOnDate(String baseCurrency, String targetCurrency, LocalDate date) {
+        String pair = baseCurrency + "/" + targetCurrency;
+        return rateHistoryService.getRateOn(baseCurrency, targetCurrency, date)
+                .map(point -> String.format(historyReply,
+                        pair,
+                        date.format(DATE_FORMAT),
+                        String.format("%.4f", point.rate()),
+                        LocalDateTime.ofInstant(point.time(), ZoneOffset.UTC).format(TIME_FORMAT)
+                ))
+                .switchIfEmpty(Mono.error(new CCBException(String.format(errorHistoryNotFound, pair, date.format(DATE_FORMAT)))));
+    }
+
+    private Mono<String> processRange(String baseCurrency, String targetCurrency, LocalDate from, LocalDate to) {
+        String pair = baseCurrency + "/" + targetCurrency;
+        return rateHistoryService.getStats(baseCurrency, targetCurrency, from, to)
+                .map(stats -> String.format(rangeReply,
+                        pair,
+                        from.format(DATE_FORMAT),
+                        to.format(DATE_FORMAT),
+                        String.format("%.4f", stats.min()),
+                        String.format("%.4f", stats.max()),
+                        String.format("%.4f", stats.average()),
+                        stats.points()
+                ))
+                .switchIfEmpty(Mono.error(new CCBException(String.format(errorHistoryNotFound, pair,
+                        from.format(DATE_FORMAT) + " - " + to.format(DATE_FORMAT)))));
     }
 
     private Mono<String> processPair(String baseCurrency, String targetCurrency) {
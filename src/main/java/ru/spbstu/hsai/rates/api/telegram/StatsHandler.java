@@ -0,0 +1,123 @@
+package ru.spbstu.hsai.rates.api.telegram;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.history.HistorySDK;
+import ru.spbstu.hsai.rates.PairStatsDTO;
+import ru.spbstu.hsai.rates.PairStatsSDK;
+import ru.spbstu.hsai.telegram.BotCommand;
+import ru.spbstu.hsai.telegram.CommandHandler;
+
+import java.math.BigDecimal;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Обработчик команды /stats для получения OHLC и волатильности валютной пары
+ */
+@Component
+@RequiredArgsConstructor
+public class StatsHandler implements CommandHandler {
+    private static final Pattern STATS_PATTERN =
+            Pattern.compile("^/stats\\s+([A-Z]{3})/([A-Z]{3})$", Pattern.CASE_INSENSITIVE);
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private final PairStatsSDK pairStatsSDK;
+    private final HistorySDK historySDK;
+
+    @Value("${command.stats.success}")
+    private String successTemplate;
+
+    @Value("${command.stats.bucket}")
+    private String bucketTemplate;
+
+    // Подписи текущих и прошлых часа, дня и недели
+    @Value("${command.stats.periods}")
+    private String[] periodLabels;
+
+    @Value("${command.stats.error}")
+    private String errorMessage;
+
+    @Value("${command.stats.error.format}")
+    private String errorFormat;
+
+    @Value("${command.stats.error.pair}")
+    private String errorStatsNotFound;
+
+    /**
+     * Обрабатывает команду /stats, возвращая OHLC за час, день и неделю и EWMA-волатильность пары
+     *
+     * @param message входящее сообщение с парой валют
+     * @return форматированная статистика или сообщение об ошибке
+     */
+    @Override
+    @BotCommand("/stats")
+    public Mono<String> handle(Message message) {
+        return Mono.justOrEmpty(message.getText())
+                .flatMap(commandText -> {
+                    Matcher matcher = STATS_PATTERN.matcher(commandText.trim());
+                    if (!matcher.find()) {
+                        return Mono.error(new CCBException(errorFormat));
+                    }
+
+                    String pair = (matcher.group(1) + "/" + matcher.group(2)).toUpperCase();
+                    return pairStatsSDK.getPairStats(matcher.group(1).toUpperCase(), matcher.group(2).toUpperCase())
+                            .map(this::formatStats)
+                            .switchIfEmpty(Mono.error(new CCBException(String.format(errorStatsNotFound, pair))))
+                            .doOnNext(result -> saveHistory(message.getChatId(), pair, commandText, result));
+                })
+                .onErrorResume(e -> Mono.just(
+                        e instanceof CCBException ? e.getMessage() : errorMessage
+                ));
+    }
+
+    private String formatStats(PairStatsDTO stats) {
+        StringBuilder buckets = new StringBuilder();
+        for (PairStatsDTO.Bucket bucket : stats.getBuckets()) {
+            boolean hourly = "HOUR".equals(bucket.getPeriod());
+            int label = switch (bucket.getPeriod()) {
+                case "HOUR" -> 0;
+                case "DAY" -> 2;
+                default -> 4;
+            } + (bucket.isClosed() ? 1 : 0);
+            buckets.append(String.format(bucketTemplate,
+                    periodLabels[label],
+                    bucket.getStart().format(hourly ? HOUR_FORMAT : DAY_FORMAT),
+                    formatRate(bucket.getOpen()),
+                    formatRate(bucket.getHigh()),
+                    formatRate(bucket.getLow()),
+                    formatRate(bucket.getClose())
+            ));
+        }
+        return String.format(successTemplate,
+                stats.getBase() + "/" + stats.getTarget(),
+                buckets,
+                formatPercent(stats.getHourlyVolatility()),
+                formatPercent(stats.getDailyVolatility()),
+                stats.getUpdated().format(HOUR_FORMAT)
+        );
+    }
+
+    private static String formatRate(BigDecimal rate) {
+        return String.format("%.4f", rate);
+    }
+
+    private static String formatPercent(BigDecimal percent) {
+        return percent == null ? "—" : String.format("%.2f%%", percent);
+    }
+
+    private void saveHistory(Long chatId, String pair, String request, String result) {
+        historySDK.saveHistory(
+                chatId,
+                "STATS",
+                pair,
+                Map.of("request", request, "result", result)
+        ).subscribe();
+    }
+}
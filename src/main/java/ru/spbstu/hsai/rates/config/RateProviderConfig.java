@@ -0,0 +1,77 @@
+package ru.spbstu.hsai.rates.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+import ru.spbstu.hsai.rates.api.http.OpenExchangeRatesSDK;
+import ru.spbstu.hsai.rates.api.http.RateProvider;
+import ru.spbstu.hsai.rates.api.http.StubRateServer;
+import ru.spbstu.hsai.rates.service.HedgedRateSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class RateProviderConfig {
+    private static final String OPEN_EXCHANGE_RATES = "openexchangerates";
+    private static final String STUB = "stub";
+
+    @Value("${rates.currencies.ttl-minutes:1440}")
+    private long currenciesTtlMinutes = 1440;
+
+    // Таймаут одной попытки запроса к провайдеру
+    @Value("${rates.provider.timeout-seconds:15}")
+    private long timeoutSeconds = 15;
+
+    @Bean
+    public OpenExchangeRatesSDK openExchangeRatesSDK(
+            @Qualifier("exchangeRatesWebClient") WebClient webClient,
+            @Value("${api_key}") String apiKey
+    ) {
+        return new OpenExchangeRatesSDK(OPEN_EXCHANGE_RATES, webClient, "https://openexchangerates.org/api", apiKey,
+                Duration.ofMinutes(currenciesTtlMinutes), Duration.ofSeconds(timeoutSeconds));
+    }
+
+    // Локальный провайдер для нагрузочных проверок, запускается только если указан в rates.providers
+    @Bean(destroyMethod = "stop")
+    public StubRateServer stubRateServer(
+            @Value("${rates.stub.host:127.0.0.1}") String host,
+            @Value("${rates.stub.port:18089}") int port,
+            @Value("${rates.stub.latency-ms:50}") long latencyMs,
+            @Value("${rates.stub.jitter-percent:0.1}") double jitterPercent,
+            @Value("${rates.stub.currencies:0}") int currencies
+    ) {
+        return new StubRateServer(host, port, Duration.ofMillis(latencyMs), jitterPercent, currencies);
+    }
+
+    // Провайдеры в порядке приоритета: следующий получает запрос, если предыдущий не ответил за свой p95
+    @Bean
+    public HedgedRateSource hedgedRateSource(
+            @Value("${rates.providers:openexchangerates}") String[] providerNames,
+            @Value("${rates.hedge.initial-delay-ms:3000}") long initialDelayMs,
+            @Value("${rates.hedge.min-delay-ms:200}") long minDelayMs,
+            @Qualifier("exchangeRatesWebClient") WebClient webClient,
+            OpenExchangeRatesSDK openExchangeRatesSDK,
+            StubRateServer stubRateServer,
+            MeterRegistry meterRegistry
+    ) {
+        List<RateProvider> providers = new ArrayList<>();
+        for (String name : providerNames) {
+            switch (name.trim()) {
+                case OPEN_EXCHANGE_RATES -> providers.add(openExchangeRatesSDK);
+                case STUB -> {
+                    stubRateServer.start();
+                    providers.add(new OpenExchangeRatesSDK(STUB, webClient, stubRateServer.baseUrl(), STUB,
+                            Duration.ofMinutes(currenciesTtlMinutes), Duration.ofSeconds(timeoutSeconds)));
+                }
+                default -> throw new IllegalStateException("Unknown rate provider " + name);
+            }
+        }
+        return new HedgedRateSource(providers, Duration.ofMillis(initialDelayMs), Duration.ofMillis(minDelayMs),
+                meterRegistry);
+    }
+}
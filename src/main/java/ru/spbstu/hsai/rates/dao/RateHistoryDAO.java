@@ -0,0 +1,9 @@
+package ru.spbstu.hsai.rates.dao;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import ru.spbstu.hsai.rates.entities.RateHistoryBlockDBO;
+
+@Repository
+public interface RateHistoryDAO extends ReactiveCrudRepository<RateHistoryBlockDBO, String> {
+}
@@ -0,0 +1,14 @@
+package ru.spbstu.hsai.rates.dao;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.rates.entities.RateVectorDBO;
+
+@Repository
+public interface RateVectorDAO extends ReactiveCrudRepository<RateVectorDBO, ObjectId> {
+    Mono<RateVectorDBO> findFirstByOrderByLeaseTokenDescUpdatedDesc();
+
+    Mono<Boolean> existsByLeaseTokenGreaterThan(Long leaseToken);
+}
@@ -0,0 +1,67 @@
+package ru.spbstu.hsai.rates.entities;
+
+import org.bson.types.ObjectId;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Стабильные идентификаторы валютных пар.
+ * Идентификатор вычисляется из кодов валют и не зависит от того,
+ * материализована ли пара в коллекции currency_pairs:
+ * 4 нулевых байта (вместо времени создания), 3 байта базовой валюты,
+ * 3 байта целевой валюты и 2 нулевых байта
+ */
+public final class CurrencyPairIds {
+    private static final int BASE_OFFSET = 4;
+    private static final int TARGET_OFFSET = 7;
+
+    private CurrencyPairIds() {
+    }
+
+    public static ObjectId of(String baseCurrency, String targetCurrency) {
+        byte[] bytes = new byte[12];
+        System.arraycopy(baseCurrency.getBytes(StandardCharsets.US_ASCII), 0, bytes, BASE_OFFSET, 3);
+        System.arraycopy(targetCurrency.getBytes(StandardCharsets.US_ASCII), 0, bytes, TARGET_OFFSET, 3);
+        return new ObjectId(bytes);
+    }
+
+    public static ObjectId of(int pairKey) {
+        return of(CurrencyCode.format(PairKey.base(pairKey)), CurrencyCode.format(PairKey.target(pairKey)));
+    }
+
+    /**
+     * @return true, если идентификатор построен по кодам валют, а не выдан MongoDB
+     */
+    public static boolean isStable(ObjectId pairId) {
+        byte[] bytes = pairId.toByteArray();
+        for (int i = 0; i < BASE_OFFSET; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        for (int i = BASE_OFFSET; i < TARGET_OFFSET + 3; i++) {
+            if (bytes[i] < 'A' || bytes[i] > 'Z') {
+                return false;
+            }
+        }
+        return bytes[10] == 0 && bytes[11] == 0;
+    }
+
+    public static String baseCurrency(ObjectId pairId) {
+        return new String(pairId.toByteArray(), BASE_OFFSET, 3, StandardCharsets.US_ASCII);
+    }
+
+    public static String targetCurrency(ObjectId pairId) {
+        return new String(pairId.toByteArray(), TARGET_OFFSET, 3, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return упакованная пара {@link PairKey} стабильного идентификатора (см. {@link #isStable})
+     */
+    public static int pairKey(ObjectId pairId) {
+        byte[] bytes = pairId.toByteArray();
+        return PairKey.of(CurrencyCode.parse(bytes, BASE_OFFSET), CurrencyCode.parse(bytes, TARGET_OFFSET));
+    }
+}
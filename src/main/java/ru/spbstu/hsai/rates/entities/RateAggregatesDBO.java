@@ -0,0 +1,31 @@
+package ru.spbstu.hsai.rates.entities;
+
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+
+/**
+ * Состояние агрегатов всех валютных пар: текущие и прошлые OHLC-бакеты по периодам
+ * и EWMA-волатильность, упакованные в один массив double
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "rate_aggregates")
+public class RateAggregatesDBO {
+    @Id
+    private String id;
+    private List<String> codes;
+    // Время последнего учтённого обновления в секундах от эпохи
+    private Long updated;
+    private List<Long> starts;
+    private List<Long> previousStarts;
+    private byte[] data;
+    // Токен аренды обновления, под которой состояние записано последним
+    private Long leaseToken;
+}
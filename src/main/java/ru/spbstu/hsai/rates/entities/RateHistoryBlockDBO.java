@@ -0,0 +1,33 @@
+package ru.spbstu.hsai.rates.entities;
+
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * История курсов к базовой валюте за один день (UTC).
+ * Каждое обновление добавляет точку во все ряды блока; ряды и время хранятся сжатыми,
+ * отсутствующий в обновлении курс хранится как NaN
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "rate_history")
+public class RateHistoryBlockDBO {
+    // День в формате ISO (2026-01-15): строки сортируются в хронологическом порядке
+    @Id
+    private String id;
+    private String base;
+    private int count;
+    private byte[] timestamps;
+    private Map<String, byte[]> series;
+    private LocalDateTime updated;
+    // Токен аренды обновления, под которой блок записан последним
+    private Long leaseToken;
+}
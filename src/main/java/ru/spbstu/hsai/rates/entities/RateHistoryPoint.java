@@ -0,0 +1,13 @@
+package ru.spbstu.hsai.rates.entities;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Кросс-курс валютной пары на момент одного обновления
+ *
+ * @param time время курсов по данным OpenExchangeRates
+ * @param rate курс целевой валюты к базовой
+ */
+public record RateHistoryPoint(Instant time, BigDecimal rate) {
+}
@@ -0,0 +1,18 @@
+package ru.spbstu.hsai.rates.entities;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Статистика кросс-курса валютной пары за период
+ *
+ * @param min     минимальный курс
+ * @param max     максимальный курс
+ * @param average среднее по всем обновлениям периода
+ * @param points  число обновлений в периоде
+ * @param first   время первого обновления периода
+ * @param last    время последнего обновления периода
+ */
+public record RateHistoryStats(BigDecimal min, BigDecimal max, BigDecimal average, int points,
+                               Instant first, Instant last) {
+}
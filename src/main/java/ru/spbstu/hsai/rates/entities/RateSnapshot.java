@@ -0,0 +1,327 @@
+package ru.spbstu.hsai.rates.entities;
+
+import org.bson.types.ObjectId;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.FixedPoint;
+import ru.spbstu.hsai.rates.FixedPointRates;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Неизменяемый снимок курсов всех валютных пар в памяти процесса.
+ * Коды валют отображаются в плотные порядковые номера через таблицу,
+ * индексированную упакованным кодом {@link CurrencyCode}, курсы хранятся
+ * в примитивной матрице n*n в виде целых чисел с масштабом {@link #RATE_SCALE}
+ */
+public final class RateSnapshot {
+    public static final int RATE_SCALE = CrossRates.RATE_SCALE;
+    public static final RateSnapshot EMPTY = new RateSnapshot(new String[0], new short[CurrencyCode.COUNT], new long[0], null, null, null);
+
+    public static final long NO_RATE = FixedPointRates.NO_RATE;
+
+    private final String[] codes;
+    // Порядковый номер валюты + 1 по упакованному коду, 0 — валюты нет в снимке
+    private final short[] ordinals;
+    private final long[] rates;
+    private final LocalDateTime updated;
+    private final String baseCurrency;
+    private final Map<String, BigDecimal> baseRates;
+
+    private RateSnapshot(String[] codes, short[] ordinals, long[] rates, LocalDateTime updated,
+                         String baseCurrency, Map<String, BigDecimal> baseRates) {
+        this.codes = codes;
+        this.ordinals = ordinals;
+        this.rates = rates;
+        this.updated = updated;
+        this.baseCurrency = baseCurrency;
+        this.baseRates = baseRates;
+    }
+
+    /**
+     * Строит снимок по списку валютных пар
+     *
+     * @param pairs валютные пары с актуальными курсами
+     * @return снимок, содержащий все переданные пары
+     */
+    public static RateSnapshot fromPairs(List<CurrencyPairDBO> pairs) {
+        TreeSet<String> distinctCodes = new TreeSet<>();
+        LocalDateTime updated = null;
+        for (CurrencyPairDBO pair : pairs) {
+            distinctCodes.add(pair.getBaseCurrency());
+            distinctCodes.add(pair.getTargetCurrency());
+            if (pair.getUpdated() != null && (updated == null || pair.getUpdated().isAfter(updated))) {
+                updated = pair.getUpdated();
+            }
+        }
+
+        String[] codes = distinctCodes.toArray(new String[0]);
+        int n = codes.length;
+        RateSnapshot snapshot = new RateSnapshot(codes, ordinals(codes), new long[n * n], updated, null, null);
+
+        long[] rates = snapshot.rates;
+        Arrays.fill(rates, NO_RATE);
+        for (CurrencyPairDBO pair : pairs) {
+            int cell = snapshot.cell(PairKey.of(pair.getBaseCurrency(), pair.getTargetCurrency()));
+            BigDecimal rate = pair.getCurrentRate();
+            if (cell >= 0 && rate != null) {
+                rates[cell] = unscaled(rate);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Строит снимок по вектору курсов к базовой валюте,
+     * кросс-курс пары вычисляется как rates[target] / rates[base]
+     *
+     * @param baseCurrency базовая валюта вектора
+     * @param baseRates    курсы всех валют к базовой валюте
+     * @param updated      время обновления курсов
+     * @return снимок, содержащий все пары валют из вектора
+     */
+    public static RateSnapshot fromBaseVector(String baseCurrency, Map<String, BigDecimal> baseRates,
+                                              LocalDateTime updated) {
+        String[] codes = new TreeSet<>(baseRates.keySet()).toArray(new String[0]);
+        int n = codes.length;
+        // Кросс-курсы считаются в long без создания BigDecimal на каждую пару
+        FixedPointRates fixed = FixedPointRates.of(baseRates);
+        long[] vector = new long[n];
+        for (int i = 0; i < n; i++) {
+            vector[i] = fixed.get(codes[i]);
+        }
+
+        long[] rates = new long[n * n];
+        Arrays.fill(rates, NO_RATE);
+        for (int base = 0; base < n; base++) {
+            if (vector[base] == 0) {
+                continue;
+            }
+            for (int target = 0; target < n; target++) {
+                rates[base * n + target] = CrossRates.crossRate(vector[base], vector[target]);
+            }
+        }
+        return new RateSnapshot(codes, ordinals(codes), rates, updated, baseCurrency, Map.copyOf(baseRates));
+    }
+
+    /**
+     * Строит снимок по готовой матрице кросс-курсов
+     *
+     * @param codes        отсортированные коды валют
+     * @param rates        матрица n*n в масштабе {@link #RATE_SCALE}, ячейка base * n + target
+     * @param updated      время обновления курсов
+     * @param baseCurrency базовая валюта вектора, по которому вычислена матрица
+     * @param baseRates    курсы всех валют к базовой валюте
+     */
+    public static RateSnapshot fromMatrix(String[] codes, long[] rates, LocalDateTime updated,
+                                          String baseCurrency, Map<String, BigDecimal> baseRates) {
+        if (rates.length != codes.length * codes.length) {
+            throw new IllegalArgumentException("Rate matrix size does not match currencies");
+        }
+        return new RateSnapshot(codes, ordinals(codes), rates, updated, baseCurrency,
+                baseRates == null ? null : Map.copyOf(baseRates));
+    }
+
+    /**
+     * Возвращает матрицу курсов для заданного порядка валют. Если порядок совпадает
+     * с порядком снимка, возвращается внутренний массив без копирования (его нельзя изменять)
+     *
+     * @param codes отсортированные коды валют
+     * @return матрица n*n, курсы отсутствующих пар равны {@link #NO_RATE}
+     */
+    public long[] alignedRates(String[] codes) {
+        if (Arrays.equals(codes, this.codes)) {
+            return rates;
+        }
+        int n = codes.length;
+        int[] mapping = new int[n];
+        for (int i = 0; i < n; i++) {
+            mapping[i] = ordinal(codes[i]);
+        }
+        long[] aligned = new long[n * n];
+        for (int base = 0; base < n; base++) {
+            for (int target = 0; target < n; target++) {
+                aligned[base * n + target] = mapping[base] < 0 || mapping[target] < 0
+                        ? NO_RATE
+                        : rates[mapping[base] * this.codes.length + mapping[target]];
+            }
+        }
+        return aligned;
+    }
+
+    /**
+     * @return копия снимка, хранящая исходный вектор курсов, по которому он был вычислен
+     */
+    public RateSnapshot withBaseRates(String baseCurrency, Map<String, BigDecimal> baseRates) {
+        return new RateSnapshot(codes, ordinals, rates, updated, baseCurrency, Map.copyOf(baseRates));
+    }
+
+    /**
+     * @return true, если снимок хранит исходный вектор курсов к этой базовой валюте
+     */
+    public boolean hasBaseRates(String baseCurrency) {
+        return baseRates != null && baseCurrency.equals(this.baseCurrency);
+    }
+
+    /**
+     * Возвращает курс валюты к базовой валюте из исходного вектора. Снимок, загруженный из currency_pairs,
+     * вектора не хранит: курсы пар округлены до {@link #RATE_SCALE} знаков и искажают малые курсы
+     * (0.0000093 становится 0.000009), поэтому для него курс не возвращается
+     *
+     * @return курс валюты к базовой валюте или null, если он неизвестен
+     */
+    public BigDecimal getBaseRate(String baseCurrency, String code) {
+        return hasBaseRates(baseCurrency) ? baseRates.get(code) : null;
+    }
+
+    /**
+     * Коды не из трёх латинских букв не попадают в таблицу и не находятся в снимке
+     */
+    private static short[] ordinals(String[] codes) {
+        short[] ordinals = new short[CurrencyCode.COUNT];
+        for (int i = 0; i < codes.length; i++) {
+            int code = CurrencyCode.parse(codes[i]);
+            if (code != CurrencyCode.INVALID) {
+                ordinals[code] = (short) (i + 1);
+            }
+        }
+        return ordinals;
+    }
+
+    private static long unscaled(BigDecimal rate) {
+        return FixedPoint.toUnscaledRounded(rate, RATE_SCALE);
+    }
+
+    public boolean isEmpty() {
+        return codes.length == 0;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public LocalDateTime getUpdated() {
+        return updated;
+    }
+
+    /**
+     * @return отсортированные коды валют, массив не копируется и не должен изменяться
+     */
+    public String[] getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return базовая валюта исходного вектора или null, если снимок построен не по вектору
+     */
+    public String getBaseCurrency() {
+        return baseCurrency;
+    }
+
+    /**
+     * @return курсы к базовой валюте исходного вектора или null, если снимок построен не по вектору
+     */
+    public Map<String, BigDecimal> getBaseRates() {
+        return baseRates;
+    }
+
+    /**
+     * @return порядковый номер валюты или -1, если валюты нет в снимке
+     */
+    public int ordinal(String code) {
+        return ordinal(CurrencyCode.parse(code));
+    }
+
+    /**
+     * @param code упакованный код валюты
+     * @return порядковый номер валюты или -1, если валюты нет в снимке
+     */
+    public int ordinal(int code) {
+        return CurrencyCode.isValid(code) ? ordinals[code] - 1 : -1;
+    }
+
+    public boolean containsCurrency(String code) {
+        return ordinal(code) >= 0;
+    }
+
+    /**
+     * @return курс пары в виде целого числа с масштабом {@link #RATE_SCALE}
+     * или {@link Long#MIN_VALUE}, если курс неизвестен
+     */
+    public long unscaledRate(String baseCurrency, String targetCurrency) {
+        return unscaledRate(PairKey.of(baseCurrency, targetCurrency));
+    }
+
+    /**
+     * @param pairKey упакованная пара {@link PairKey}
+     * @return курс пары в виде целого числа с масштабом {@link #RATE_SCALE} или {@link #NO_RATE}
+     */
+    public long unscaledRate(int pairKey) {
+        int cell = cell(pairKey);
+        return cell < 0 ? NO_RATE : rates[cell];
+    }
+
+    public BigDecimal getRate(String baseCurrency, String targetCurrency) {
+        return getRate(PairKey.of(baseCurrency, targetCurrency));
+    }
+
+    public BigDecimal getRate(int pairKey) {
+        long rate = unscaledRate(pairKey);
+        return rate == NO_RATE ? null : BigDecimal.valueOf(rate, RATE_SCALE);
+    }
+
+    /**
+     * Восстанавливает валютную пару по её стабильному идентификатору
+     *
+     * @return валютная пара или null, если идентификатор не стабильный или пары нет в снимке
+     * @see CurrencyPairIds
+     */
+    public CurrencyPairDBO getPair(ObjectId pairId) {
+        return CurrencyPairIds.isStable(pairId) ? getPair(CurrencyPairIds.pairKey(pairId)) : null;
+    }
+
+    public CurrencyPairDBO getPair(String baseCurrency, String targetCurrency) {
+        return getPair(PairKey.of(baseCurrency, targetCurrency));
+    }
+
+    /**
+     * @return валютная пара или null, если ключ некорректен или пары нет в снимке
+     */
+    public CurrencyPairDBO getPair(int pairKey) {
+        int cell = cell(pairKey);
+        if (cell < 0 || rates[cell] == NO_RATE) {
+            return null;
+        }
+        return toPair(cell / codes.length, cell % codes.length);
+    }
+
+    private CurrencyPairDBO toPair(int base, int target) {
+        int cell = base * codes.length + target;
+        long rate = rates[cell];
+        return new CurrencyPairDBO(
+                CurrencyPairIds.of(codes[base], codes[target]),
+                codes[base],
+                codes[target],
+                rate == NO_RATE ? null : BigDecimal.valueOf(rate, RATE_SCALE),
+                updated
+        );
+    }
+
+    private int cell(int pairKey) {
+        if (pairKey == PairKey.INVALID) {
+            return -1;
+        }
+        int base = ordinal(PairKey.base(pairKey));
+        int target = ordinal(PairKey.target(pairKey));
+        if (base < 0 || target < 0) {
+            return -1;
+        }
+        return base * codes.length + target;
+    }
+}
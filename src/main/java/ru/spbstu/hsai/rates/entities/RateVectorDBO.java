@@ -0,0 +1,32 @@
+package ru.spbstu.hsai.rates.entities;
+
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Курсы всех валют к базовой валюте на момент одного обновления,
+ * кросс-курсы вычисляются из этого вектора
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "rate_vectors")
+public class RateVectorDBO {
+    @Id
+    private ObjectId id;
+    private String base;
+    private Long timestamp;
+    private Map<String, BigDecimal> rates;
+    private LocalDateTime updated;
+    // Токен аренды обновления: из векторов читается записанный под последней арендой
+    private Long leaseToken;
+}
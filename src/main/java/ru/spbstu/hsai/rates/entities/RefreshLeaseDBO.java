@@ -0,0 +1,34 @@
+package ru.spbstu.hsai.rates.entities;
+
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Аренда задачи обновления курсов, общая для всех экземпляров бота.
+ * Документ не удаляется по TTL: срок аренды задаётся полем expiresAt,
+ * чтобы fencing token только возрастал. Здесь же хранится расписание следующего обновления
+ * и число запросов к провайдеру курсов за текущий месяц
+ */
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document(collection = "refresh_leases")
+public class RefreshLeaseDBO {
+    @Id
+    private String id;
+    private String owner;
+    private Long token;
+    private Instant expiresAt;
+    private Instant completedAt;
+    private Instant nextRunAt;
+    private Long intervalSeconds;
+    // Месяц в формате yyyy-MM (UTC), за который посчитаны запросы
+    private String budgetMonth;
+    private Long budgetUsed;
+}
@@ -0,0 +1,118 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Выбор интервала до следующего обновления курсов.
+ * После крупного движения курсов интервал уменьшается вдвое, после обновления без изменений
+ * или ошибки провайдера увеличивается вдвое, после обычного обновления возвращается к базовому.
+ * Интервал не короче, чем позволяет остаток месячного бюджета запросов к провайдеру
+ */
+@Component
+public class AdaptiveRefreshPolicy {
+    @Value("${rates.refresh.interval-minutes:60}")
+    private long intervalMinutes = 60;
+
+    @Value("${rates.refresh.min-interval-minutes:5}")
+    private long minIntervalMinutes = 5;
+
+    @Value("${rates.refresh.max-interval-minutes:360}")
+    private long maxIntervalMinutes = 360;
+
+    // Бесплатный тариф OpenExchangeRates: 1000 запросов в месяц
+    @Value("${rates.refresh.monthly-calls:1000}")
+    private long monthlyCalls = 1000;
+
+    // Изменение курса к базовой валюте в процентах, после которого обновления учащаются
+    @Value("${rates.refresh.large-move-percent:0.5}")
+    private double largeMovePercent = 0.5;
+
+    /**
+     * @param schedule    расписание с учётом запроса этого обновления
+     * @param movePercent наибольшее изменение курса к базовой валюте в процентах,
+     *                    0 если курсы не изменились, NaN если сравнить не с чем
+     * @return интервал до следующего обновления
+     */
+    public Duration afterSuccess(RefreshSchedule schedule, double movePercent, Instant now) {
+        Duration interval = Duration.ofMinutes(intervalMinutes);
+        Duration previous = previous(schedule);
+        Duration next;
+        if (movePercent >= largeMovePercent) {
+            next = previous.dividedBy(2);
+        } else if (movePercent == 0) {
+            next = previous.multipliedBy(2);
+        } else if (previous.compareTo(interval) < 0) {
+            next = min(previous.multipliedBy(2), interval);
+        } else {
+            next = max(previous.dividedBy(2), interval);
+        }
+        return withinBudget(next, schedule.calls(), now);
+    }
+
+    /**
+     * @return интервал до повтора после ошибки обновления
+     */
+    public Duration afterFailure(RefreshSchedule schedule, Instant now) {
+        return withinBudget(previous(schedule).multipliedBy(2), schedule.calls(), now);
+    }
+
+    /**
+     * Ограничивает интервал пределами и растягивает его так, чтобы оставшихся запросов
+     * хватило до конца месяца. Если бюджет исчерпан, следующее обновление переносится на начало месяца
+     */
+    Duration withinBudget(Duration next, long calls, Instant now) {
+        Duration minInterval = Duration.ofMinutes(minIntervalMinutes);
+        Duration clamped = max(min(next, Duration.ofMinutes(maxIntervalMinutes)), minInterval);
+        Instant monthEnd = YearMonth.from(now.atOffset(ZoneOffset.UTC)).plusMonths(1)
+                .atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        Duration remaining = Duration.between(now, monthEnd);
+        long remainingCalls = monthlyCalls - calls;
+        if (remainingCalls <= 0) {
+            return max(remaining, minInterval);
+        }
+        return max(clamped, remaining.dividedBy(remainingCalls));
+    }
+
+    /**
+     * @return наибольшее относительное изменение курсов к базовой валюте в процентах
+     * или NaN, если прошлый снимок не хранит вектор курсов этой базовой валюты
+     */
+    public static double maxMovePercent(RateSnapshot previous, ExchangeRatesVector rates) {
+        if (!previous.hasBaseRates(rates.getBase())) {
+            return Double.NaN;
+        }
+        String[] codes = rates.getCurrencies();
+        double[] values = rates.getRates();
+        double move = Double.NaN;
+        for (int i = 0; i < codes.length; i++) {
+            BigDecimal oldRate = previous.getBaseRate(rates.getBase(), codes[i]);
+            if (oldRate == null || oldRate.signum() <= 0 || !(values[i] > 0)) {
+                continue;
+            }
+            double change = Math.abs(values[i] / oldRate.doubleValue() - 1) * 100;
+            move = Double.isNaN(move) ? change : Math.max(move, change);
+        }
+        return move;
+    }
+
+    private Duration previous(RefreshSchedule schedule) {
+        return schedule.interval() == null ? Duration.ofMinutes(intervalMinutes) : schedule.interval();
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+}
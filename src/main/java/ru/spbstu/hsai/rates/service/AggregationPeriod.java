@@ -0,0 +1,29 @@
+package ru.spbstu.hsai.rates.service;
+
+/**
+ * Период OHLC-бакета, границы считаются в UTC
+ */
+public enum AggregationPeriod {
+    HOUR,
+    DAY,
+    // Неделя по ISO начинается в понедельник
+    WEEK;
+
+    private static final long HOUR_SECONDS = 3600;
+    private static final long DAY_SECONDS = 86_400;
+
+    /**
+     * @return начало бакета, содержащего момент времени, в секундах от эпохи
+     */
+    public long bucketStart(long epochSecond) {
+        return switch (this) {
+            case HOUR -> Math.floorDiv(epochSecond, HOUR_SECONDS) * HOUR_SECONDS;
+            case DAY -> Math.floorDiv(epochSecond, DAY_SECONDS) * DAY_SECONDS;
+            case WEEK -> {
+                long epochDay = Math.floorDiv(epochSecond, DAY_SECONDS);
+                // 1970-01-01 - четверг
+                yield (epochDay - Math.floorMod(epochDay + 3, 7)) * DAY_SECONDS;
+            }
+        };
+    }
+}
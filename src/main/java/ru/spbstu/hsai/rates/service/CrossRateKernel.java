@@ -0,0 +1,23 @@
+package ru.spbstu.hsai.rates.service;
+
+/**
+ * Вычисляет за один проход матрицу кросс-курсов n*n по вектору курсов к базовой валюте,
+ * маску курсов, изменившихся относительно предыдущей матрицы, и проценты их изменения.
+ * Ячейка base * n + target содержит курс target / base в масштабе CrossRates.RATE_SCALE
+ */
+interface CrossRateKernel {
+
+    /**
+     * @param vector   курсы валют к базовой валюте в общем масштабе, RateSnapshot.NO_RATE - курса нет
+     * @param previous предыдущие кросс-курсы в тех же ячейках или null
+     * @param epsilon  наибольшее изменение курса в масштабе CrossRates.RATE_SCALE, не считающееся изменением
+     * @param rates    матрица n*n для результата
+     * @param changed  битовая маска изменившихся ячеек, не меньше (n * n + 63) / 64 слов, должна быть обнулена
+     * @param percents проценты изменения изменившихся ячеек в масштабе CrossRates.PERCENT_SCALE или null
+     * @return число изменившихся ячеек и ячеек, для которых был предыдущий курс
+     */
+    Result compute(long[] vector, long[] previous, long epsilon, long[] rates, long[] changed, long[] percents);
+
+    record Result(int changed, int compared) {
+    }
+}
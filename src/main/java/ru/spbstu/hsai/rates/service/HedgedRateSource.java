@@ -0,0 +1,146 @@
+package ru.spbstu.hsai.rates.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.spbstu.hsai.rates.api.http.RateProvider;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка курсов из нескольких провайдеров с хеджированием.
+ * Запрос отправляется первому провайдеру; если он не ответил за p95 своих последних задержек
+ * или завершился ошибкой, запрос дублируется следующему провайдеру, и так далее по списку.
+ * Используется первый полученный ответ, остальные запросы отменяются.
+ * Пока измерений мало, вместо p95 используется начальная задержка
+ */
+@Slf4j
+public class HedgedRateSource {
+    private static final double HEDGE_QUANTILE = 0.95;
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 10;
+
+    private final List<Backend> backends;
+    private final Duration initialDelay;
+    private final Duration minDelay;
+    private final Counter hedges;
+
+    /**
+     * @param providers    провайдеры в порядке приоритета
+     * @param initialDelay задержка хеджирования, пока у провайдера мало измерений
+     * @param minDelay     наименьшая задержка хеджирования
+     */
+    public HedgedRateSource(List<RateProvider> providers, Duration initialDelay, Duration minDelay,
+                            MeterRegistry meterRegistry) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one rate provider is required");
+        }
+        this.backends = providers.stream()
+                .map(provider -> new Backend(provider, new LatencyWindow(WINDOW), Timer.builder("rates.provider.latency")
+                        .description("Latency of successful exchange rate requests")
+                        .tag("provider", provider.name())
+                        .register(meterRegistry)))
+                .toList();
+        this.initialDelay = initialDelay;
+        this.minDelay = minDelay;
+        this.hedges = Counter.builder("rates.provider.hedged")
+                .description("Exchange rate requests duplicated to a fallback provider")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Mono со списком валют первого провайдера, при ошибке следующего по списку
+     */
+    public Mono<Map<String, String>> fetchCurrencies() {
+        Mono<Map<String, String>> result = backends.getFirst().provider().fetchCurrencies();
+        for (Backend backend : backends.subList(1, backends.size())) {
+            result = result.onErrorResume(ex -> {
+                log.warn("Failed to fetch currencies, falling back to {}", backend.provider().name(), ex);
+                return backend.provider().fetchCurrencies();
+            });
+        }
+        return result;
+    }
+
+    /**
+     * @return Mono с курсами первого ответившего провайдера или пустой Mono,
+     * если он ответил, что курсы не изменились
+     */
+    public Mono<ExchangeRatesVector> fetchExchangeRates() {
+        return race(0).flatMap(Mono::justOrEmpty);
+    }
+
+    /**
+     * @return число запросов ко всем провайдерам с запуска, включая отменённые запросы хеджирования
+     */
+    public long requestCount() {
+        long count = 0;
+        for (Backend backend : backends) {
+            count += backend.provider().requestCount();
+        }
+        return count;
+    }
+
+    public void invalidateExchangeRates() {
+        backends.forEach(backend -> backend.provider().invalidateExchangeRates());
+    }
+
+    /**
+     * @return текущая задержка хеджирования для провайдера с индексом index
+     */
+    Duration hedgeDelay(int index) {
+        Duration p95 = backends.get(index).latencies().percentile(HEDGE_QUANTILE, MIN_SAMPLES);
+        Duration delay = p95 == null ? initialDelay : p95;
+        return delay.compareTo(minDelay) < 0 ? minDelay : delay;
+    }
+
+    private Mono<Optional<ExchangeRatesVector>> race(int index) {
+        Mono<Optional<ExchangeRatesVector>> attempt = timed(backends.get(index));
+        if (index + 1 == backends.size()) {
+            return attempt;
+        }
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> failed = Sinks.empty();
+            Duration delay = hedgeDelay(index);
+            Mono<Optional<ExchangeRatesVector>> primary = attempt.doOnError(_ -> failed.tryEmitEmpty());
+            Mono<Optional<ExchangeRatesVector>> hedge = Mono.firstWithSignal(Mono.delay(delay).then(), failed.asMono())
+                    .then(Mono.defer(() -> {
+                        hedges.increment();
+                        log.info("Rates from {} not received within {}, hedging to {}",
+                                backends.get(index).provider().name(), delay, backends.get(index + 1).provider().name());
+                        return race(index + 1);
+                    }));
+            return Mono.firstWithValue(primary, hedge);
+        });
+    }
+
+    /**
+     * Запрос к провайдеру с учётом задержки успешных ответов. Отменённые запросы
+     * проигравших провайдеров не учитываются
+     */
+    private static Mono<Optional<ExchangeRatesVector>> timed(Backend backend) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return backend.provider().fetchExchangeRates()
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .doOnNext(_ -> {
+                        long elapsed = System.nanoTime() - start;
+                        backend.latencies().record(elapsed);
+                        backend.timer().record(elapsed, TimeUnit.NANOSECONDS);
+                    })
+                    .doOnError(ex -> log.warn("Failed to fetch exchange rates from {}", backend.provider().name(), ex));
+        });
+    }
+
+    private record Backend(RateProvider provider, LatencyWindow latencies, Timer timer) {
+    }
+}
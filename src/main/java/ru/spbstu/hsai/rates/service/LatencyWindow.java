@@ -0,0 +1,45 @@
+package ru.spbstu.hsai.rates.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Задержки последних запросов к провайдеру в кольцевом буфере для оценки перцентилей
+ */
+final class LatencyWindow {
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @param quantile   квантиль от 0 до 1
+     * @param minSamples сколько измерений нужно для оценки
+     * @return задержка квантиля по последним измерениям или null, если измерений мало
+     */
+    Duration percentile(double quantile, int minSamples) {
+        long[] sorted;
+        synchronized (this) {
+            if (size < minSamples || size == 0) {
+                return null;
+            }
+            sorted = Arrays.copyOf(samples, size);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.clamp(index, 0, sorted.length - 1)]);
+    }
+}
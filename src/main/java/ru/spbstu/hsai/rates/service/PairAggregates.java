@@ -0,0 +1,275 @@
+package ru.spbstu.hsai.rates.service;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * OHLC-бакеты и EWMA-волатильность всех валютных пар в примитивных массивах.
+ * Интервал между обновлениями меняется, поэтому дисперсия ведётся в пересчёте на час:
+ * квадрат доходности делится на прошедшее время, а затухание зависит от него же.
+ * Хранится только верхний треугольник матрицы пар (base &lt; target в порядке кодов):
+ * для обратной пары open/close обращаются, а high и low меняются местами и обращаются.
+ * Обновление выполняет O(1) операций на пару и не выделяет память, кроме смены набора валют.
+ * Не потокобезопасен
+ */
+final class PairAggregates {
+    // Коэффициент затухания RiskMetrics за час; за интервал в t часов старая оценка весит LAMBDA^t
+    static final double LAMBDA = 0.94;
+    static final double SECONDS_PER_HOUR = 3600;
+    static final int OPEN = 0;
+    static final int HIGH = 1;
+    static final int LOW = 2;
+    static final int CLOSE = 3;
+    private static final int FIELDS = 4;
+    private static final AggregationPeriod[] PERIODS = AggregationPeriod.values();
+
+    private final String[] codes;
+    private final int pairs;
+    private final long[] starts = new long[PERIODS.length];
+    private final long[] previousStarts = new long[PERIODS.length];
+    // [период][пара * FIELDS + поле]
+    private final double[][] current = new double[PERIODS.length][];
+    private final double[][] previous = new double[PERIODS.length][];
+    // Последний курс пары, его время в секундах и EWMA дисперсии логарифмической доходности за час
+    private final double[] last;
+    private final double[] lastTime;
+    private final double[] variance;
+    private long updated = Long.MIN_VALUE;
+
+    /**
+     * @param codes отсортированные коды валют
+     */
+    PairAggregates(String[] codes) {
+        this.codes = codes;
+        this.pairs = codes.length * (codes.length - 1) / 2;
+        for (int p = 0; p < PERIODS.length; p++) {
+            starts[p] = Long.MIN_VALUE;
+            previousStarts[p] = Long.MIN_VALUE;
+            current[p] = filledWithNaN(pairs * FIELDS);
+            previous[p] = filledWithNaN(pairs * FIELDS);
+        }
+        last = filledWithNaN(pairs);
+        lastTime = filledWithNaN(pairs);
+        variance = filledWithNaN(pairs);
+    }
+
+    String[] codes() {
+        return codes;
+    }
+
+    long updated() {
+        return updated;
+    }
+
+    /**
+     * Добавляет курсы одного обновления
+     *
+     * @param time  время курсов в секундах от эпохи
+     * @param rates курсы к базовой валюте в порядке {@link #codes()}; NaN, если курса нет
+     * @return false, если курсы с этим или более поздним временем уже учтены
+     */
+    boolean update(long time, double[] rates) {
+        if (time <= updated) {
+            return false;
+        }
+        updated = time;
+        for (int p = 0; p < PERIODS.length; p++) {
+            long start = PERIODS[p].bucketStart(time);
+            if (start != starts[p]) {
+                // Текущий бакет закрывается, массив прошлого бакета переиспользуется для нового
+                double[] closed = current[p];
+                current[p] = previous[p];
+                previous[p] = closed;
+                Arrays.fill(current[p], Double.NaN);
+                previousStarts[p] = starts[p];
+                starts[p] = start;
+            }
+        }
+
+        int n = codes.length;
+        int pair = 0;
+        for (int i = 0; i < n; i++) {
+            double baseRate = rates[i];
+            boolean baseValid = baseRate > 0;
+            for (int j = i + 1; j < n; j++, pair++) {
+                double targetRate = rates[j];
+                if (!baseValid || !(targetRate > 0)) {
+                    continue;
+                }
+                double rate = targetRate / baseRate;
+                for (double[] bucket : current) {
+                    updateBucket(bucket, pair * FIELDS, rate);
+                }
+                double lastRate = last[pair];
+                if (!Double.isNaN(lastRate)) {
+                    double logReturn = Math.log(rate / lastRate);
+                    double hours = (time - lastTime[pair]) / SECONDS_PER_HOUR;
+                    // Дисперсия доходности растёт пропорционально интервалу
+                    double hourly = logReturn * logReturn / hours;
+                    double var = variance[pair];
+                    double decay = Math.pow(LAMBDA, hours);
+                    variance[pair] = Double.isNaN(var) ? hourly : decay * var + (1 - decay) * hourly;
+                }
+                last[pair] = rate;
+                lastTime[pair] = time;
+            }
+        }
+        return true;
+    }
+
+    private static void updateBucket(double[] bucket, int offset, double rate) {
+        if (Double.isNaN(bucket[offset + OPEN])) {
+            bucket[offset + OPEN] = rate;
+            bucket[offset + HIGH] = rate;
+            bucket[offset + LOW] = rate;
+        } else {
+            if (rate > bucket[offset + HIGH]) {
+                bucket[offset + HIGH] = rate;
+            }
+            if (rate < bucket[offset + LOW]) {
+                bucket[offset + LOW] = rate;
+            }
+        }
+        bucket[offset + CLOSE] = rate;
+    }
+
+    int indexOf(String code) {
+        return Arrays.binarySearch(codes, code);
+    }
+
+    long start(AggregationPeriod period, boolean closed) {
+        return closed ? previousStarts[period.ordinal()] : starts[period.ordinal()];
+    }
+
+    /**
+     * Записывает OHLC пары в out в порядке OPEN, HIGH, LOW, CLOSE
+     *
+     * @param base   индекс базовой валюты
+     * @param target индекс целевой валюты
+     * @param closed true для прошлого (закрытого) бакета
+     * @return false, если за бакет нет курсов пары
+     */
+    boolean ohlc(AggregationPeriod period, boolean closed, int base, int target, double[] out) {
+        if (base == target) {
+            Arrays.fill(out, 0, FIELDS, 1.0);
+            return start(period, closed) != Long.MIN_VALUE;
+        }
+        double[] bucket = (closed ? previous : current)[period.ordinal()];
+        int offset = pairIndex(Math.min(base, target), Math.max(base, target)) * FIELDS;
+        if (Double.isNaN(bucket[offset + OPEN])) {
+            return false;
+        }
+        if (base < target) {
+            System.arraycopy(bucket, offset, out, 0, FIELDS);
+        } else {
+            out[OPEN] = 1 / bucket[offset + OPEN];
+            out[HIGH] = 1 / bucket[offset + LOW];
+            out[LOW] = 1 / bucket[offset + HIGH];
+            out[CLOSE] = 1 / bucket[offset + CLOSE];
+        }
+        return true;
+    }
+
+    /**
+     * @return EWMA дисперсии логарифмической доходности пары за час или NaN;
+     * для обратной пары дисперсия та же
+     */
+    double variance(int base, int target) {
+        if (base == target) {
+            return 0;
+        }
+        return variance[pairIndex(Math.min(base, target), Math.max(base, target))];
+    }
+
+    /**
+     * Переносит накопленные значения на новый набор валют; пары с новыми валютами начинаются заново
+     */
+    PairAggregates withCodes(String[] newCodes) {
+        if (Arrays.equals(codes, newCodes)) {
+            return this;
+        }
+        PairAggregates remapped = new PairAggregates(newCodes);
+        remapped.updated = updated;
+        System.arraycopy(starts, 0, remapped.starts, 0, starts.length);
+        System.arraycopy(previousStarts, 0, remapped.previousStarts, 0, previousStarts.length);
+        int[] oldIndex = new int[newCodes.length];
+        for (int i = 0; i < newCodes.length; i++) {
+            oldIndex[i] = indexOf(newCodes[i]);
+        }
+        for (int i = 0; i < newCodes.length; i++) {
+            for (int j = i + 1; j < newCodes.length; j++) {
+                // Порядок кодов сохраняется, поэтому старые индексы тоже возрастают
+                if (oldIndex[i] < 0 || oldIndex[j] < 0) {
+                    continue;
+                }
+                int from = pairIndex(oldIndex[i], oldIndex[j]);
+                int to = remapped.pairIndex(i, j);
+                for (int p = 0; p < PERIODS.length; p++) {
+                    System.arraycopy(current[p], from * FIELDS, remapped.current[p], to * FIELDS, FIELDS);
+                    System.arraycopy(previous[p], from * FIELDS, remapped.previous[p], to * FIELDS, FIELDS);
+                }
+                remapped.last[to] = last[from];
+                remapped.lastTime[to] = lastTime[from];
+                remapped.variance[to] = variance[from];
+            }
+        }
+        return remapped;
+    }
+
+    /**
+     * @return бакеты, последние курсы, дисперсии и время последних курсов подряд, как double в порядке big-endian
+     */
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(dataLength() * Double.BYTES);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        for (int p = 0; p < PERIODS.length; p++) {
+            doubles.put(current[p]).put(previous[p]);
+        }
+        doubles.put(last).put(variance).put(lastTime);
+        return buffer.array();
+    }
+
+    /**
+     * @return восстановленные агрегаты или null, если данные не соответствуют набору валют
+     */
+    static PairAggregates fromBytes(String[] codes, long updated, long[] starts, long[] previousStarts, byte[] data) {
+        PairAggregates aggregates = new PairAggregates(codes);
+        if (data == null || data.length != aggregates.dataLength() * Double.BYTES
+                || starts.length != PERIODS.length || previousStarts.length != PERIODS.length) {
+            return null;
+        }
+        aggregates.updated = updated;
+        System.arraycopy(starts, 0, aggregates.starts, 0, PERIODS.length);
+        System.arraycopy(previousStarts, 0, aggregates.previousStarts, 0, PERIODS.length);
+        DoubleBuffer doubles = ByteBuffer.wrap(data).asDoubleBuffer();
+        for (int p = 0; p < PERIODS.length; p++) {
+            doubles.get(aggregates.current[p]);
+            doubles.get(aggregates.previous[p]);
+        }
+        doubles.get(aggregates.last).get(aggregates.variance).get(aggregates.lastTime);
+        return aggregates;
+    }
+
+    long[] starts(boolean closed) {
+        return (closed ? previousStarts : starts).clone();
+    }
+
+    private int dataLength() {
+        return PERIODS.length * 2 * pairs * FIELDS + 3 * pairs;
+    }
+
+    /**
+     * Индекс пары i &lt; j в верхнем треугольнике матрицы по строкам
+     */
+    private int pairIndex(int i, int j) {
+        int n = codes.length;
+        return i * (2 * n - i - 1) / 2 + (j - i - 1);
+    }
+
+    private static double[] filledWithNaN(int length) {
+        double[] values = new double[length];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+}
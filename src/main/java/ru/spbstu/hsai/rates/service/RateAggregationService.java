@@ -0,0 +1,191 @@
+package ru.spbstu.hsai.rates.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.PairStatsDTO;
+import ru.spbstu.hsai.rates.PairStatsSDK;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.entities.RateAggregatesDBO;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Инкрементальные агрегаты курсов: каждое обновление за O(1) на пару дополняет
+ * OHLC-бакеты часа, дня и недели и EWMA-волатильность всех пар с учётом интервала между обновлениями.
+ * Состояние хранится одним документом rate_aggregates и перезаписывается после каждого обновления
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateAggregationService implements PairStatsSDK {
+    private static final String DOCUMENT_ID = "pairs";
+    private static final int VOLATILITY_SCALE = 4;
+    // Дисперсия ведётся за час и масштабируется на сутки независимо от интервала обновлений
+    private static final double HOURS_PER_DAY = 24;
+
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    // Доступ к агрегатам только под монитором сервиса
+    private PairAggregates aggregates = new PairAggregates(new String[0]);
+
+    /**
+     * Учитывает курсы обновления и сохраняет состояние агрегатов. Состояние, записанное
+     * под арендой с большим токеном, не заменяется: локальные агрегаты тогда перечитываются из MongoDB
+     *
+     * @param rates курсы к базовой валюте
+     * @param lease аренда обновления курсов
+     * @return Mono сигнализирующий о завершении операции или ошибка, если запись отклонена новой арендой
+     */
+    public Mono<Void> update(ExchangeRatesVector rates, RefreshLease lease) {
+        return Mono.fromCallable(() -> aggregate(rates))
+                .doOnNext(dbo -> dbo.setLeaseToken(lease.token()))
+                .flatMap(dbo -> lease.replaceFenced(mongoTemplate, DOCUMENT_ID, dbo))
+                .doOnNext(saved -> log.info("Saved rate aggregates: {} currencies, {} KB",
+                        saved.getCodes().size(), saved.getData().length / 1024))
+                .onErrorResume(CCBException.class, ex -> mongoTemplate.findById(DOCUMENT_ID, RateAggregatesDBO.class)
+                        .doOnNext(this::replace)
+                        .then(Mono.error(ex)))
+                .then();
+    }
+
+    /**
+     * Загружает сохранённое состояние агрегатов: при старте и когда курсы обновил другой экземпляр
+     */
+    public Mono<Void> load() {
+        return mongoTemplate.findById(DOCUMENT_ID, RateAggregatesDBO.class)
+                .doOnNext(this::restore)
+                .then();
+    }
+
+    @Override
+    public Mono<PairStatsDTO> getPairStats(String baseCurrency, String targetCurrency) {
+        return Mono.fromCallable(() -> stats(baseCurrency, targetCurrency));
+    }
+
+    /**
+     * @return документ с новым состоянием или null, если курсы с этим временем уже учтены
+     */
+    synchronized RateAggregatesDBO aggregate(ExchangeRatesVector rates) {
+        long time = rates.getTimestamp() != null ? rates.getTimestamp() : Instant.now().getEpochSecond();
+        String[] codes = rates.getCurrencies();
+        double[] values = rates.getRates();
+        if (rates.indexOf(rates.getBase()) < 0) {
+            // Базовая валюта участвует в парах с курсом 1
+            codes = Arrays.copyOf(codes, codes.length + 1);
+            codes[codes.length - 1] = rates.getBase();
+            Arrays.sort(codes);
+            double[] withBase = new double[codes.length];
+            for (int i = 0; i < codes.length; i++) {
+                int index = rates.indexOf(codes[i]);
+                withBase[i] = index < 0 ? 1.0 : values[index];
+            }
+            values = withBase;
+        }
+
+        aggregates = aggregates.withCodes(codes);
+        if (!aggregates.update(time, values)) {
+            return null;
+        }
+        return new RateAggregatesDBO(
+                DOCUMENT_ID,
+                List.of(codes),
+                aggregates.updated(),
+                toList(aggregates.starts(false)),
+                toList(aggregates.starts(true)),
+                aggregates.toBytes(),
+                null
+        );
+    }
+
+    private synchronized void restore(RateAggregatesDBO dbo) {
+        PairAggregates restored = decode(dbo);
+        if (restored != null && restored.updated() > aggregates.updated()) {
+            aggregates = restored;
+            log.info("Loaded rate aggregates: {} currencies", restored.codes().length);
+        }
+    }
+
+    /**
+     * Заменяет локальные агрегаты сохранёнными, даже если локальные новее
+     */
+    private synchronized void replace(RateAggregatesDBO dbo) {
+        PairAggregates restored = decode(dbo);
+        if (restored != null) {
+            aggregates = restored;
+            log.info("Replaced local rate aggregates with the stored state: {} currencies", restored.codes().length);
+        }
+    }
+
+    private static PairAggregates decode(RateAggregatesDBO dbo) {
+        PairAggregates restored = PairAggregates.fromBytes(
+                dbo.getCodes().toArray(new String[0]),
+                dbo.getUpdated(),
+                dbo.getStarts().stream().mapToLong(Long::longValue).toArray(),
+                dbo.getPreviousStarts().stream().mapToLong(Long::longValue).toArray(),
+                dbo.getData()
+        );
+        if (restored == null) {
+            log.warn("Stored rate aggregates do not match their currency list, ignoring them");
+        }
+        return restored;
+    }
+
+    synchronized PairStatsDTO stats(String baseCurrency, String targetCurrency) {
+        int base = aggregates.indexOf(baseCurrency);
+        int target = aggregates.indexOf(targetCurrency);
+        if (base < 0 || target < 0) {
+            return null;
+        }
+
+        List<PairStatsDTO.Bucket> buckets = new ArrayList<>();
+        double[] ohlc = new double[4];
+        for (AggregationPeriod period : AggregationPeriod.values()) {
+            for (boolean closed : new boolean[]{false, true}) {
+                if (aggregates.ohlc(period, closed, base, target, ohlc)) {
+                    buckets.add(new PairStatsDTO.Bucket(
+                            period.name(),
+                            closed,
+                            LocalDateTime.ofEpochSecond(aggregates.start(period, closed), 0, ZoneOffset.UTC),
+                            toRate(ohlc[PairAggregates.OPEN]),
+                            toRate(ohlc[PairAggregates.HIGH]),
+                            toRate(ohlc[PairAggregates.LOW]),
+                            toRate(ohlc[PairAggregates.CLOSE])
+                    ));
+                }
+            }
+        }
+        if (buckets.isEmpty()) {
+            return null;
+        }
+
+        double variance = aggregates.variance(base, target);
+        BigDecimal hourly = Double.isNaN(variance) ? null : toPercent(Math.sqrt(variance));
+        BigDecimal daily = Double.isNaN(variance) ? null : toPercent(Math.sqrt(variance * HOURS_PER_DAY));
+        return new PairStatsDTO(baseCurrency, targetCurrency, buckets, hourly, daily,
+                LocalDateTime.ofEpochSecond(aggregates.updated(), 0, ZoneOffset.UTC));
+    }
+
+    private static BigDecimal toRate(double value) {
+        return BigDecimal.valueOf(value).setScale(CrossRates.RATE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal toPercent(double value) {
+        return BigDecimal.valueOf(value * 100).setScale(VOLATILITY_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private static List<Long> toList(long[] values) {
+        return Arrays.stream(values).boxed().toList();
+    }
+}
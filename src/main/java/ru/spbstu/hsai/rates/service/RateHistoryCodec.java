@@ -0,0 +1,284 @@
+package ru.spbstu.hsai.rates.service;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Сжатие рядов истории курсов.
+ * Курсы OpenExchangeRates - десятичные числа с небольшим числом знаков, поэтому ряд
+ * по возможности хранится как разности целых чисел в общем десятичном масштабе (zigzag varint):
+ * неизменившийся курс занимает один байт, изменение на доли процента - два-три.
+ * Если ряд не переводится в целые без потерь, курсы кодируются XOR с предыдущим значением
+ * (как в Gorilla). Время кодируется разностью разностей: для ежечасных обновлений один байт на точку
+ */
+final class RateHistoryCodec {
+    private static final byte XOR_FORMAT = 0;
+    private static final byte DECIMAL_FORMAT = 1;
+    private static final int MAX_DECIMAL_SCALE = 18;
+    private static final long MAX_EXACT_UNSCALED = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[MAX_DECIMAL_SCALE + 1];
+
+    static {
+        for (int i = 0; i <= MAX_DECIMAL_SCALE; i++) {
+            POWERS_OF_TEN[i] = Math.pow(10, i);
+        }
+    }
+
+    private RateHistoryCodec() {
+    }
+
+    static byte[] encodeDoubles(double[] values, int count) {
+        byte[] decimal = encodeDecimal(values, count);
+        if (decimal != null && Arrays.equals(toBits(decodeDoubles(decimal, count)), toBits(Arrays.copyOf(values, count)))) {
+            return decimal;
+        }
+        return encodeXor(values, count);
+    }
+
+    static double[] decodeDoubles(byte[] data, int count) {
+        return data[0] == DECIMAL_FORMAT ? decodeDecimal(data, count) : decodeXor(data, count);
+    }
+
+    /**
+     * Целые значения хранятся разностями с предыдущим курсом ряда, младший бит отмечает NaN
+     *
+     * @return закодированный ряд или null, если курсы не помещаются в общий масштаб
+     */
+    private static byte[] encodeDecimal(double[] values, int count) {
+        int scale = 0;
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(values[i])) {
+                continue;
+            }
+            if (Double.isInfinite(values[i])) {
+                return null;
+            }
+            scale = Math.max(scale, BigDecimal.valueOf(values[i]).stripTrailingZeros().scale());
+        }
+        if (scale > MAX_DECIMAL_SCALE) {
+            return null;
+        }
+
+        byte[] buffer = new byte[2 + count * 10];
+        buffer[0] = DECIMAL_FORMAT;
+        buffer[1] = (byte) scale;
+        int position = 2;
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(values[i])) {
+                position = writeVarLong(buffer, position, 1);
+                continue;
+            }
+            long unscaled;
+            try {
+                unscaled = BigDecimal.valueOf(values[i]).movePointRight(scale).longValueExact();
+            } catch (ArithmeticException e) {
+                return null;
+            }
+            // Деление точных double в decodeDecimal даёт исходный курс, только пока целое точно представимо
+            if (Math.abs(unscaled) >= MAX_EXACT_UNSCALED) {
+                return null;
+            }
+            position = writeVarLong(buffer, position, zigzag(unscaled - previous) << 1);
+            previous = unscaled;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static double[] decodeDecimal(byte[] data, int count) {
+        double[] values = new double[count];
+        double divisor = POWERS_OF_TEN[data[1]];
+        int[] position = {2};
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long token = readVarLong(data, position);
+            if ((token & 1) != 0) {
+                values[i] = Double.NaN;
+                continue;
+            }
+            previous += unzigzag(token >>> 1);
+            values[i] = previous / divisor;
+        }
+        return values;
+    }
+
+    private static byte[] encodeXor(double[] values, int count) {
+        BitWriter writer = new BitWriter(count * 2 + 8);
+        writer.write(XOR_FORMAT, 8);
+        long previous = 0;
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+        for (int i = 0; i < count; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            if (i == 0) {
+                writer.write(bits, 64);
+                previous = bits;
+                continue;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                writer.write(0, 1);
+                continue;
+            }
+            writer.write(1, 1);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= previousLeading && trailing >= previousTrailing) {
+                // Значащие биты помещаются в окно предыдущего значения
+                writer.write(0, 1);
+                writer.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                writer.write(1, 1);
+                writer.write(leading, 5);
+                // Длина 64 не помещается в 6 бит и записывается как 0
+                writer.write(significant & 63, 6);
+                writer.write(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    private static double[] decodeXor(byte[] data, int count) {
+        double[] values = new double[count];
+        BitReader reader = new BitReader(data);
+        reader.read(8);
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = reader.read(64);
+            } else if (reader.read(1) != 0) {
+                if (reader.read(1) != 0) {
+                    leading = (int) reader.read(5);
+                    int significant = (int) reader.read(6);
+                    trailing = 64 - leading - (significant == 0 ? 64 : significant);
+                }
+                previous ^= reader.read(64 - leading - trailing) << trailing;
+            }
+            values[i] = Double.longBitsToDouble(previous);
+        }
+        return values;
+    }
+
+    static byte[] encodeTimestamps(long[] timestamps, int count) {
+        byte[] buffer = new byte[count * 10];
+        int position = 0;
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = timestamps[i] - previous;
+            position = writeVarLong(buffer, position, zigzag(delta - previousDelta));
+            previous = timestamps[i];
+            previousDelta = delta;
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    static long[] decodeTimestamps(byte[] data, int count) {
+        long[] timestamps = new long[count];
+        int[] position = {0};
+        long previous = 0;
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            delta += unzigzag(readVarLong(data, position));
+            previous += delta;
+            timestamps[i] = previous;
+        }
+        return timestamps;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long[] toBits(double[] values) {
+        long[] bits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bits[i] = Double.doubleToRawLongBits(values[i]);
+        }
+        return bits;
+    }
+
+    /**
+     * @param position позиция чтения, сдвигается за прочитанное число
+     */
+    private static long readVarLong(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static final class BitWriter {
+        private byte[] buffer;
+        private int bits;
+
+        BitWriter(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void write(long value, int count) {
+            while (count > 0) {
+                int index = bits >>> 3;
+                if (index == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int offset = bits & 7;
+                int taken = Math.min(count, 8 - offset);
+                int chunk = (int) (value >>> (count - taken)) & ((1 << taken) - 1);
+                buffer[index] |= (byte) (chunk << (8 - offset - taken));
+                bits += taken;
+                count -= taken;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, (bits + 7) >>> 3);
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private int bits;
+
+        BitReader(byte[] data) {
+            this.data = data;
+        }
+
+        long read(int count) {
+            long value = 0;
+            while (count > 0) {
+                int offset = bits & 7;
+                int taken = Math.min(count, 8 - offset);
+                int chunk = (data[bits >>> 3] & 0xFF) >>> (8 - offset - taken);
+                value = (value << taken) | (chunk & ((1 << taken) - 1));
+                bits += taken;
+                count -= taken;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ru.spbstu.hsai.rates.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.dao.RateHistoryDAO;
+import ru.spbstu.hsai.rates.entities.RateHistoryBlockDBO;
+import ru.spbstu.hsai.rates.entities.RateHistoryPoint;
+import ru.spbstu.hsai.rates.entities.RateHistoryStats;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * История курсов: вектор курсов к базовой валюте каждого обновления дописывается
+ * в блок текущего дня, кросс-курсы пары за период вычисляются из двух рядов блока.
+ * Блоки последних дней дополнительно хранятся распакованными в памяти
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateHistoryService {
+    private final RateHistoryDAO rateHistoryDAO;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final AtomicReference<RecentRateHistory> recent = new AtomicReference<>(RecentRateHistory.EMPTY);
+
+    @Value("${rates.history.recent-days:31}")
+    private int recentDays = 31;
+
+    /**
+     * Дописывает курсы обновления в блок дня. Повторная запись курсов с тем же
+     * или более ранним временем пропускается. Блок заменяется, только если он не записан
+     * под арендой с большим токеном
+     *
+     * @param rates курсы к базовой валюте
+     * @param lease аренда обновления курсов
+     * @return Mono сигнализирующий о завершении операции или ошибка, если запись отклонена новой арендой
+     */
+    public Mono<Void> append(ExchangeRatesVector rates, RefreshLease lease) {
+        return Mono.defer(() -> {
+            long time = rates.getTimestamp() != null ? rates.getTimestamp() : Instant.now().getEpochSecond();
+            String day = dayOf(time);
+            return rateHistoryDAO.findById(day)
+                    .defaultIfEmpty(new RateHistoryBlockDBO(day, rates.getBase(), 0, new byte[0], new HashMap<>(), null, null))
+                    .flatMap(block -> {
+                        if (!appendPoint(block, time, rates)) {
+                            log.info("Rate history for {} already contains timestamp {}", day, time);
+                            return Mono.empty();
+                        }
+                        block.setLeaseToken(lease.token());
+                        return lease.replaceFenced(mongoTemplate, day, block)
+                                .doOnNext(saved -> {
+                                    recent.updateAndGet(index -> index.with(saved, recentFrom()));
+                                    log.info("Appended rates to history block {}: {} points", day, saved.getCount());
+                                });
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * Возвращает кросс-курсы пары за период. Читаются только блоки дней периода
+     * и только ряды двух валют пары
+     *
+     * @param baseCurrency   базовая валюта пары
+     * @param targetCurrency целевая валюта пары
+     * @param from           начало периода включительно
+     * @param to             конец периода включительно
+     * @return Flux с точками в хронологическом порядке
+     */
+    public Flux<RateHistoryPoint> getRange(String baseCurrency, String targetCurrency, Instant from, Instant to) {
+        long fromSecond = from.getEpochSecond();
+        long toSecond = to.getEpochSecond();
+        return findBlocks(baseCurrency, targetCurrency, dayOf(fromSecond), dayOf(toSecond))
+                .concatMapIterable(block -> crossRates(block, baseCurrency, targetCurrency, fromSecond, toSecond));
+    }
+
+    /**
+     * Загружает в память блоки последних rates.history.recent-days дней.
+     * Вызывается при старте и когда курсы обновил другой экземпляр
+     */
+    public Mono<Void> loadRecent() {
+        return Mono.defer(() -> {
+            LocalDate from = recentFrom();
+            Query query = new Query(Criteria.where("_id").gte(from.toString()))
+                    .with(Sort.by(Sort.Direction.ASC, "_id"));
+            return mongoTemplate.find(query, RateHistoryBlockDBO.class)
+                    .collectList()
+                    .doOnNext(blocks -> {
+                        recent.set(RecentRateHistory.of(from, blocks));
+                        log.info("Loaded {} recent rate history blocks since {}", blocks.size(), from);
+                    })
+                    .then();
+        });
+    }
+
+    /**
+     * Курс пары на дату: курс последнего обновления этого дня (UTC).
+     * Недавние дни читаются из памяти, более старые - из MongoDB
+     *
+     * @return Mono с курсом или пустой Mono, если за день курсов нет
+     */
+    public Mono<RateHistoryPoint> getRateOn(String baseCurrency, String targetCurrency, LocalDate date) {
+        RecentRateHistory index = recent.get();
+        if (index.covers(date)) {
+            return Mono.justOrEmpty(index.lastOn(baseCurrency, targetCurrency, date));
+        }
+        return findBlocks(baseCurrency, targetCurrency, date.toString(), date.toString())
+                .mapNotNull(block -> RecentRateHistory.Day.decode(block).last(baseCurrency, targetCurrency))
+                .next();
+    }
+
+    /**
+     * Минимальный, максимальный и средний курс пары за период по дням UTC включительно.
+     * Часть периода, попадающая в индекс недавней истории, считается в памяти,
+     * остальные блоки читаются из MongoDB курсором и не накапливаются
+     *
+     * @return Mono со статистикой или пустой Mono, если за период курсов нет
+     */
+    public Mono<RateHistoryStats> getStats(String baseCurrency, String targetCurrency, LocalDate from, LocalDate to) {
+        return Mono.defer(() -> {
+            RecentRateHistory index = recent.get();
+            LocalDate recentStart = !index.covers(to) ? to.plusDays(1)
+                    : from.isAfter(index.coveredFrom()) ? from : index.coveredFrom();
+            RateStatsAccumulator accumulator = new RateStatsAccumulator();
+
+            Mono<Void> older = from.isBefore(recentStart)
+                    ? findBlocks(baseCurrency, targetCurrency, from.toString(), recentStart.minusDays(1).toString())
+                    .doOnNext(block -> RecentRateHistory.Day.decode(block).accumulate(baseCurrency, targetCurrency, accumulator))
+                    .then()
+                    : Mono.empty();
+            return older.then(Mono.fromSupplier(() -> {
+                index.accumulate(baseCurrency, targetCurrency, recentStart, to, accumulator);
+                return accumulator;
+            })).mapNotNull(RateStatsAccumulator::toStats);
+        });
+    }
+
+    /**
+     * Блоки дней периода с рядами только двух валют пары
+     */
+    private Flux<RateHistoryBlockDBO> findBlocks(String baseCurrency, String targetCurrency, String fromDay, String toDay) {
+        Query query = new Query(Criteria.where("_id").gte(fromDay).lte(toDay))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields()
+                .include("base", "count", "timestamps")
+                .include("series." + baseCurrency, "series." + targetCurrency);
+        return mongoTemplate.find(query, RateHistoryBlockDBO.class);
+    }
+
+    static boolean appendPoint(RateHistoryBlockDBO block, long time, ExchangeRatesVector rates) {
+        int count = block.getCount();
+        long[] timestamps = Arrays.copyOf(RateHistoryCodec.decodeTimestamps(block.getTimestamps(), count), count + 1);
+        if (count > 0 && timestamps[count - 1] >= time) {
+            return false;
+        }
+        timestamps[count] = time;
+
+        Map<String, byte[]> series = block.getSeries() == null ? new HashMap<>() : new HashMap<>(block.getSeries());
+        String[] codes = rates.getCurrencies();
+        double[] values = rates.getRates();
+        for (int i = 0; i < codes.length; i++) {
+            series.putIfAbsent(codes[i], null);
+        }
+        for (Map.Entry<String, byte[]> entry : series.entrySet()) {
+            double[] column = entry.getValue() == null
+                    ? filledWithNaN(count + 1)
+                    : Arrays.copyOf(RateHistoryCodec.decodeDoubles(entry.getValue(), count), count + 1);
+            int index = rates.indexOf(entry.getKey());
+            column[count] = index < 0 ? Double.NaN : values[index];
+            entry.setValue(RateHistoryCodec.encodeDoubles(column, count + 1));
+        }
+
+        block.setCount(count + 1);
+        block.setTimestamps(RateHistoryCodec.encodeTimestamps(timestamps, count + 1));
+        block.setSeries(series);
+        block.setUpdated(LocalDateTime.now());
+        return true;
+    }
+
+    static List<RateHistoryPoint> crossRates(RateHistoryBlockDBO block, String baseCurrency, String targetCurrency,
+                                             long from, long to) {
+        RecentRateHistory.Day day = RecentRateHistory.Day.decode(block);
+        double[] baseRates = day.column(baseCurrency);
+        double[] targetRates = day.column(targetCurrency);
+        if (baseRates == null || targetRates == null) {
+            return List.of();
+        }
+
+        long[] timestamps = day.timestamps();
+        List<RateHistoryPoint> points = new ArrayList<>(timestamps.length);
+        for (int i = 0; i < timestamps.length; i++) {
+            double baseRate = baseRates[i];
+            double targetRate = targetRates[i];
+            if (timestamps[i] < from || timestamps[i] > to
+                    || Double.isNaN(baseRate) || Double.isNaN(targetRate) || baseRate == 0) {
+                continue;
+            }
+            BigDecimal rate = CrossRates.crossRate(BigDecimal.valueOf(baseRate), BigDecimal.valueOf(targetRate));
+            points.add(new RateHistoryPoint(Instant.ofEpochSecond(timestamps[i]), rate));
+        }
+        return points;
+    }
+
+    private static double[] filledWithNaN(int length) {
+        double[] column = new double[length];
+        Arrays.fill(column, Double.NaN);
+        return column;
+    }
+
+    private LocalDate recentFrom() {
+        return LocalDate.now(ZoneOffset.UTC).minusDays(recentDays - 1L);
+    }
+
+    private static String dayOf(long epochSecond) {
+        return LocalDate.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneOffset.UTC).toString();
+    }
+}
@@ -0,0 +1,175 @@
+package ru.spbstu.hsai.rates.service;
+
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Снимок курсов в локальном файле для быстрого старта.
+ * Формат (big-endian): заголовок из magic, версии, длины и CRC32C данных, затем данные:
+ * время обновления, коды валют, базовая валюта с курсами к ней и матрица кросс-курсов n*n.
+ * Файл записывается через отображение временного файла в память и атомарно
+ * переименовывается, поэтому читатель видит либо прежний, либо новый снимок целиком
+ */
+final class RateSnapshotFile {
+    private static final int MAGIC = 0x43434252; // "CCBR"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private RateSnapshotFile() {
+    }
+
+    /**
+     * @throws IOException если файл не удалось записать
+     */
+    static void write(Path path, RateSnapshot snapshot) throws IOException {
+        String[] codes = snapshot.getCodes();
+        int n = codes.length;
+        long[] rates = snapshot.alignedRates(codes);
+        byte[][] codeBytes = new byte[n][];
+        int size = Long.BYTES + Integer.BYTES + 1 + Integer.BYTES;
+        for (int i = 0; i < n; i++) {
+            codeBytes[i] = codes[i].getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + codeBytes[i].length;
+        }
+        String base = snapshot.getBaseCurrency();
+        Map<String, BigDecimal> baseRates = snapshot.getBaseRates();
+        boolean hasBase = base != null && baseRates != null;
+        byte[] baseBytes = hasBase ? base.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[][] unscaled = new byte[n][];
+        size += 1;
+        if (hasBase) {
+            size += Short.BYTES + baseBytes.length;
+            for (int i = 0; i < n; i++) {
+                BigDecimal rate = baseRates.get(codes[i]);
+                unscaled[i] = rate == null ? null : rate.unscaledValue().toByteArray();
+                size += 1 + (rate == null ? 0 : Short.BYTES + unscaled[i].length + Integer.BYTES);
+            }
+        }
+        size += n * n * Long.BYTES;
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) size);
+                buffer.position(HEADER_BYTES);
+                LocalDateTime updated = snapshot.getUpdated();
+                buffer.put((byte) (updated == null ? 0 : 1));
+                buffer.putLong(updated == null ? 0 : updated.toEpochSecond(ZoneOffset.UTC));
+                buffer.putInt(updated == null ? 0 : updated.getNano());
+                buffer.putInt(n);
+                for (byte[] code : codeBytes) {
+                    putBytes(buffer, code);
+                }
+                buffer.put((byte) (hasBase ? 1 : 0));
+                if (hasBase) {
+                    putBytes(buffer, baseBytes);
+                    for (int i = 0; i < n; i++) {
+                        buffer.put((byte) (unscaled[i] == null ? 0 : 1));
+                        if (unscaled[i] != null) {
+                            putBytes(buffer, unscaled[i]);
+                            buffer.putInt(baseRates.get(codes[i]).scale());
+                        }
+                    }
+                }
+                buffer.asLongBuffer().put(rates);
+
+                buffer.putInt(0, MAGIC)
+                        .putInt(Integer.BYTES, VERSION)
+                        .putInt(2 * Integer.BYTES, size)
+                        .putInt(3 * Integer.BYTES, checksum(buffer, size));
+                buffer.force();
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return снимок из файла или null, если файла нет
+     * @throws IOException если файл не читается, повреждён или записан в другом формате
+     */
+    static RateSnapshot read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Snapshot file is truncated");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Unknown snapshot file format");
+        }
+        int size = buffer.getInt(2 * Integer.BYTES);
+        if (size < 0 || (long) HEADER_BYTES + size != buffer.capacity()) {
+            throw new IOException("Snapshot file is truncated");
+        }
+        if (checksum(buffer, size) != buffer.getInt(3 * Integer.BYTES)) {
+            throw new IOException("Snapshot file checksum mismatch");
+        }
+
+        buffer.position(HEADER_BYTES);
+        boolean hasUpdated = buffer.get() != 0;
+        long epochSecond = buffer.getLong();
+        int nano = buffer.getInt();
+        LocalDateTime updated = hasUpdated ? LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC) : null;
+        int n = buffer.getInt();
+        String[] codes = new String[n];
+        for (int i = 0; i < n; i++) {
+            codes[i] = new String(getBytes(buffer), StandardCharsets.UTF_8);
+        }
+        String base = null;
+        Map<String, BigDecimal> baseRates = null;
+        if (buffer.get() != 0) {
+            base = new String(getBytes(buffer), StandardCharsets.UTF_8);
+            baseRates = new HashMap<>(n * 2);
+            for (String code : codes) {
+                if (buffer.get() != 0) {
+                    BigInteger unscaled = new BigInteger(getBytes(buffer));
+                    baseRates.put(code, new BigDecimal(unscaled, buffer.getInt()));
+                }
+            }
+        }
+        long[] rates = new long[n * n];
+        buffer.asLongBuffer().get(rates);
+        return RateSnapshot.fromMatrix(codes, rates, updated, base, baseRates);
+    }
+
+    private static int checksum(ByteBuffer buffer, int size) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(HEADER_BYTES, size));
+        return (int) crc.getValue();
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
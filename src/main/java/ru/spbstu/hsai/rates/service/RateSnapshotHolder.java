@@ -0,0 +1,137 @@
+package ru.spbstu.hsai.rates.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Хранит текущий снимок курсов, чтение без блокировок.
+ * Каждый опубликованный снимок сохраняется в локальный файл, при старте он загружается
+ * до завершения инициализации контекста, а снимок из MongoDB заменяет его, только если он новее
+ */
+@Component
+@Slf4j
+public class RateSnapshotHolder {
+    private final AtomicReference<RateSnapshot> current = new AtomicReference<>(RateSnapshot.EMPTY);
+    // Снимок, загруженный из локального файла, пока его не заменил более новый
+    private final AtomicReference<RateSnapshot> warm = new AtomicReference<>();
+    private final AtomicReference<RateSnapshot> pendingWrite = new AtomicReference<>();
+
+    // Каталог /app/data в docker-compose вынесен в том, пустое значение отключает локальный файл
+    @Value("${rates.snapshot.file:/app/data/rate-snapshot.bin}")
+    private String snapshotFile;
+
+    // Последний записанный в файл снимок, доступ только из drainWrites и load
+    private RateSnapshot written;
+
+    /**
+     * Загружает последний сохранённый снимок из локального файла
+     */
+    @PostConstruct
+    public void load() {
+        Path path = snapshotPath();
+        if (path == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            RateSnapshot snapshot = RateSnapshotFile.read(path);
+            if (snapshot == null || snapshot.isEmpty()) {
+                return;
+            }
+            if (current.compareAndSet(RateSnapshot.EMPTY, snapshot)) {
+                warm.set(snapshot);
+                written = snapshot;
+                log.info("Loaded rate snapshot from {} in {} ms: {} currencies, updated {}",
+                        path, (System.nanoTime() - started) / 1_000_000, snapshot.size(), snapshot.getUpdated());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable rate snapshot file {}: {}", path, e.getMessage());
+        }
+    }
+
+    public RateSnapshot get() {
+        return current.get();
+    }
+
+    /**
+     * Публикует новый снимок, заменяя текущий одной атомарной операцией
+     *
+     * @param snapshot новый снимок курсов
+     */
+    public void publish(RateSnapshot snapshot) {
+        current.set(snapshot);
+        warm.set(null);
+        log.info("Published rate snapshot: {} currencies, updated {}", snapshot.size(), snapshot.getUpdated());
+        persist(snapshot);
+    }
+
+    /**
+     * Публикует снимок, только если ещё не был опубликован ни один другой
+     * (загрузка при старте не должна перетирать свежее обновление).
+     * Снимок из локального файла заменяется, если загруженный из хранилища новее
+     *
+     * @param snapshot снимок, загруженный из хранилища
+     */
+    public void initialize(RateSnapshot snapshot) {
+        if (current.compareAndSet(RateSnapshot.EMPTY, snapshot)) {
+            log.info("Initialized rate snapshot: {} currencies, updated {}", snapshot.size(), snapshot.getUpdated());
+            persist(snapshot);
+            return;
+        }
+        RateSnapshot local = warm.get();
+        if (local != null && isNewer(snapshot, local) && current.compareAndSet(local, snapshot)) {
+            warm.compareAndSet(local, null);
+            log.info("Reconciled rate snapshot with storage: {} currencies, updated {} (local {})",
+                    snapshot.size(), snapshot.getUpdated(), local.getUpdated());
+            persist(snapshot);
+        }
+    }
+
+    private static boolean isNewer(RateSnapshot snapshot, RateSnapshot than) {
+        return snapshot.getUpdated() != null
+                && (than.getUpdated() == null || snapshot.getUpdated().isAfter(than.getUpdated()));
+    }
+
+    /**
+     * Записывает снимок в файл в фоне. Снимки, опубликованные во время записи,
+     * схлопываются: записывается только последний
+     */
+    private void persist(RateSnapshot snapshot) {
+        if (snapshotPath() == null || snapshot.isEmpty()) {
+            return;
+        }
+        if (pendingWrite.getAndSet(snapshot) == null) {
+            Schedulers.boundedElastic().schedule(this::drainWrites);
+        }
+    }
+
+    private synchronized void drainWrites() {
+        Path path = snapshotPath();
+        RateSnapshot snapshot;
+        while ((snapshot = pendingWrite.getAndSet(null)) != null) {
+            if (snapshot == written || (written != null && isNewer(written, snapshot))) {
+                continue;
+            }
+            long started = System.nanoTime();
+            try {
+                RateSnapshotFile.write(path, snapshot);
+                written = snapshot;
+                log.debug("Saved rate snapshot to {} in {} ms", path, (System.nanoTime() - started) / 1_000_000);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to save rate snapshot to {}", path, e);
+            }
+        }
+    }
+
+    private Path snapshotPath() {
+        return snapshotFile == null || snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    }
+}
@@ -0,0 +1,64 @@
+package ru.spbstu.hsai.rates.service;
+
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.entities.RateHistoryStats;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+
+/**
+ * Накапливает min/max/avg кросс-курса без создания точек истории.
+ * Сравнение идёт в double, точные кросс-курсы через {@link CrossRates} вычисляются
+ * только для найденных минимума и максимума
+ */
+final class RateStatsAccumulator {
+    private int count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double minBase;
+    private double minTarget;
+    private double maxBase;
+    private double maxTarget;
+    private long first = Long.MAX_VALUE;
+    private long last = Long.MIN_VALUE;
+
+    void add(long time, double baseRate, double targetRate) {
+        if (Double.isNaN(baseRate) || Double.isNaN(targetRate) || baseRate == 0) {
+            return;
+        }
+        double rate = targetRate / baseRate;
+        count++;
+        sum += rate;
+        if (rate < min) {
+            min = rate;
+            minBase = baseRate;
+            minTarget = targetRate;
+        }
+        if (rate > max) {
+            max = rate;
+            maxBase = baseRate;
+            maxTarget = targetRate;
+        }
+        first = Math.min(first, time);
+        last = Math.max(last, time);
+    }
+
+    /**
+     * @return статистика или null, если в периоде нет ни одного курса
+     */
+    RateHistoryStats toStats() {
+        if (count == 0) {
+            return null;
+        }
+        return new RateHistoryStats(
+                CrossRates.crossRate(BigDecimal.valueOf(minBase), BigDecimal.valueOf(minTarget)),
+                CrossRates.crossRate(BigDecimal.valueOf(maxBase), BigDecimal.valueOf(maxTarget)),
+                BigDecimal.valueOf(sum / count).setScale(CrossRates.RATE_SCALE, RoundingMode.HALF_UP),
+                count,
+                Instant.ofEpochSecond(first),
+                Instant.ofEpochSecond(last)
+        );
+    }
+}
@@ -0,0 +1,16 @@
+package ru.spbstu.hsai.rates.service;
+
+/**
+ * Реализация вычисления матрицы кросс-курсов
+ */
+public enum RatesKernelMode {
+    /**
+     * Поэлементное вычисление в long
+     */
+    SCALAR,
+    /**
+     * SIMD-вычисление на jdk.incubator.vector, требует --add-modules jdk.incubator.vector.
+     * Если модуль недоступен, используется {@link #SCALAR}
+     */
+    VECTOR
+}
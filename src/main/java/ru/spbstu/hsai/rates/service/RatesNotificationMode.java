@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.rates.service;
+
+/**
+ * Способ уведомления других модулей об изменении курсов через RabbitMQ
+ */
+public enum RatesNotificationMode {
+    /**
+     * Одно сообщение rates.snapshot на обновление со старым и новым вектором курсов
+     */
+    SNAPSHOT,
+    /**
+     * Отдельное сообщение rates.update на каждую изменившуюся пару
+     */
+    PAIRS
+}
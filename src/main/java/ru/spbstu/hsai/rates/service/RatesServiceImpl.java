@@ -4,6 +4,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.tuple.Pair;
 import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
@@ -11,23 +14,41 @@ import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.currency.PairKeySet;
 import ru.spbstu.hsai.mathcurr.RatesForMathService;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.FixedPoint;
+import ru.spbstu.hsai.rates.FixedPointRates;
 import ru.spbstu.hsai.user.RatesService;
 import ru.spbstu.hsai.rates.api.ampq.UpdateCurrenciesSDK;
-import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesDTO;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
 import ru.spbstu.hsai.rates.dao.CurrencyDAO;
 import ru.spbstu.hsai.rates.dao.CurrencyPairDAO;
+import ru.spbstu.hsai.rates.dao.RateVectorDAO;
 import ru.spbstu.hsai.rates.entities.CurrencyDBO;
 import ru.spbstu.hsai.rates.entities.CurrencyPairDBO;
+import ru.spbstu.hsai.rates.entities.CurrencyPairIds;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+import ru.spbstu.hsai.rates.entities.RateVectorDBO;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Сервис для обновления валютных курсов
@@ -40,92 +61,405 @@ public class RatesServiceImpl implements RatesService, RatesForMathService {
     private final CurrencyDAO currencyDAO;
     private final CurrencyPairDAO currencyPairDAO;
     private final ReactiveMongoTemplate mongoTemplate;
+    private final RateSnapshotHolder snapshotHolder;
+    private final RateVectorDAO rateVectorDAO;
+    private final SubscribedPairs subscribedPairs;
+    private final AtomicReference<String> currenciesHash = new AtomicReference<>();
+
+    @Value("${rates.storage.mode:PAIRS}")
+    private RatesStorageMode storageMode;
+
+    @Value("${rates.update.batch-size:1000}")
+    private int bulkBatchSize;
+
+    @Value("${rates.update.concurrency:4}")
+    private int bulkConcurrency;
+
+    @Value("${rates.notification.mode:SNAPSHOT}")
+    private RatesNotificationMode notificationMode = RatesNotificationMode.SNAPSHOT;
+
+    @Value("${rates.update.epsilon:0}")
+    private BigDecimal changeEpsilon = BigDecimal.ZERO;
+
+    @Value("${rates.kernel.mode:SCALAR}")
+    private RatesKernelMode kernelMode = RatesKernelMode.SCALAR;
+
+    private volatile CrossRateKernel crossRateKernel;
 
     /**
-     * Обновляет данные о валютах в MongoDB
+     * Обновляет данные о валютах в MongoDB.
+     * Если список валют не изменился с прошлого обновления, этап пропускается целиком,
+     * иначе создаются только пары с новыми валютами
      *
      * @param currencies Map с данными валют (код -> название)
      * @return Mono сигнализирующий о завершении операции
      */
     public Mono<Void> updateCurrencyData(Map<String, String> currencies) {
-        return Flux.fromIterable(currencies.entrySet())
-                .flatMap(entry -> {
-                    CurrencyDBO newCurrency = new CurrencyDBO(
-                            entry.getKey(),
-                            entry.getValue(),
-                            LocalDateTime.now()
-                    );
-
-                    return currencyDAO.findByCode(entry.getKey())
-                            .switchIfEmpty(currencyDAO.save(newCurrency));
+        String hash = currenciesHash(currencies);
+        String previousHash = currenciesHash.get();
+        if (hash.equals(previousHash)) {
+            log.info("Currency list is unchanged, skipping currency and pair update");
+            return Mono.empty();
+        }
+
+        return currencyDAO.findAll()
+                .map(CurrencyDBO::getCode)
+                .collect(Collectors.toSet())
+                .flatMap(existingCodes -> {
+                    Set<String> addedCodes = new TreeSet<>(currencies.keySet());
+                    addedCodes.removeAll(existingCodes);
+                    log.info("Currency list changed: {} new currencies {}", addedCodes.size(), addedCodes);
+
+                    Mono<Void> pairs;
+                    if (isVectorMode()) {
+                        pairs = Mono.empty();
+                    } else if (previousHash == null) {
+                        // Первое обновление после запуска сверяет все пары целиком
+                        pairs = createAllPossiblePairs(addedCodes);
+                    } else {
+                        Set<String> allCodes = new TreeSet<>(existingCodes);
+                        allCodes.addAll(addedCodes);
+                        pairs = createPairsForCurrencies(addedCodes, allCodes);
+                    }
+                    // Валюты сохраняются после пар, чтобы при ошибке новые коды были обработаны повторно
+                    return pairs.then(upsertCurrencies(currencies));
                 })
-                .then(createAllPossiblePairs());
+                .doOnSuccess(_ -> currenciesHash.set(hash));
+    }
+
+    private boolean isVectorMode() {
+        return storageMode == RatesStorageMode.VECTOR;
+    }
+
+    private static String currenciesHash(Map<String, String> currencies) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            new TreeMap<>(currencies).forEach((code, name) ->
+                    digest.update((code + "=" + name + "\n").getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Добавляет отсутствующие валюты одной bulk-операцией, существующие записи не изменяются
+     */
+    private Mono<Void> upsertCurrencies(Map<String, String> currencies) {
+        return Mono.defer(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyDBO.class);
+            currencies.forEach((code, name) -> bulkOps.upsert(
+                    new Query(Criteria.where("code").is(code)),
+                    new Update()
+                            .setOnInsert("name", name)
+                            .setOnInsert("updated", now)
+            ));
+            return bulkOps.execute()
+                    .doOnNext(result -> log.info("Upserted currencies: {} inserted", result.getUpserts().size()))
+                    .then();
+        });
+    }
+
+    /**
+     * Создаёт пары, в которых участвует хотя бы одна из новых валют: 2N-1 пар на каждую новую валюту
+     *
+     * @param addedCodes новые валюты
+     * @param allCodes   все валюты, включая новые
+     */
+    private Mono<Void> createPairsForCurrencies(Set<String> addedCodes, Set<String> allCodes) {
+        if (addedCodes.isEmpty()) {
+            return Mono.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<CurrencyPairDBO> newPairs = new ArrayList<>();
+        for (String added : addedCodes) {
+            for (String code : allCodes) {
+                newPairs.add(newPair(added, code, now));
+                if (!addedCodes.contains(code)) {
+                    newPairs.add(newPair(code, added, now));
+                }
+            }
+        }
+        return savePairs(newPairs);
     }
 
-    private Mono<Void> createAllPossiblePairs() {
+    private Mono<Void> createAllPossiblePairs(Set<String> addedCodes) {
         return currencyDAO.findAll()
-                .collectList()
+                .map(CurrencyDBO::getCode)
+                .collect(Collectors.toCollection(TreeSet::new))
                 .zipWith(currencyPairDAO.findAll().collectList())
                 .flatMap(tuple -> {
-                    List<CurrencyDBO> currencies = tuple.getT1();
+                    Set<String> codes = tuple.getT1();
+                    codes.addAll(addedCodes);
                     List<CurrencyPairDBO> existingPairs = tuple.getT2();
 
-                    // Создаем Set для быстрого поиска существующих пар
-                    Set<Pair<String, String>> existingPairsSet = existingPairs.stream()
-                            .map(p -> Pair.of(p.getBaseCurrency(), p.getTargetCurrency()))
-                            .collect(Collectors.toSet());
+                    // Существующие пары проверяются по упакованным ключам без создания строк и кортежей
+                    PairKeySet existingPairsSet = new PairKeySet(existingPairs.size());
+                    for (CurrencyPairDBO pair : existingPairs) {
+                        int key = PairKey.of(pair.getBaseCurrency(), pair.getTargetCurrency());
+                        if (key != PairKey.INVALID) {
+                            existingPairsSet.add(key);
+                        }
+                    }
 
                     // Генерируем все возможные комбинации
-                    List<CurrencyPairDBO> newPairs = currencies.stream()
-                            .flatMap(base -> currencies.stream()
-                                    .map(target -> Pair.of(base.getCode(), target.getCode()))
-                            )
-                            .filter(pair -> !existingPairsSet.contains(pair))
-                            .map(pair -> new CurrencyPairDBO(
-                                    null,
-                                    pair.getLeft(),
-                                    pair.getRight(),
-                                    BigDecimal.ZERO,
-                                    LocalDateTime.now()
-                            ))
-                            .toList();
+                    String[] codeArray = codes.toArray(new String[0]);
+                    int[] packedCodes = new int[codeArray.length];
+                    for (int i = 0; i < codeArray.length; i++) {
+                        packedCodes[i] = CurrencyCode.parse(codeArray[i]);
+                    }
+                    LocalDateTime now = LocalDateTime.now();
+                    List<CurrencyPairDBO> newPairs = new ArrayList<>();
+                    for (int base = 0; base < codeArray.length; base++) {
+                        for (int target = 0; target < codeArray.length; target++) {
+                            boolean packed = packedCodes[base] != CurrencyCode.INVALID
+                                    && packedCodes[target] != CurrencyCode.INVALID;
+                            if (!packed || !existingPairsSet.contains(PairKey.of(packedCodes[base], packedCodes[target]))) {
+                                newPairs.add(newPair(codeArray[base], codeArray[target], now));
+                            }
+                        }
+                    }
 
-                    return Flux.fromIterable(newPairs)
-                            .buffer(1000)
-                            .flatMap(batch -> currencyPairDAO.saveAll(batch).then())
-                            .then();
+                    return savePairs(newPairs);
                 });
     }
 
-    public Mono<Void> updateCurrencyPairs(ExchangeRatesDTO response) {
-        Map<String, BigDecimal> rates = response.getRates();
+    private static CurrencyPairDBO newPair(String baseCurrency, String targetCurrency, LocalDateTime now) {
+        return new CurrencyPairDBO(
+                CurrencyPairIds.of(baseCurrency, targetCurrency),
+                baseCurrency,
+                targetCurrency,
+                BigDecimal.ZERO,
+                now
+        );
+    }
+
+    private Mono<Void> savePairs(List<CurrencyPairDBO> newPairs) {
+        log.info("Creating {} currency pairs", newPairs.size());
+        return Flux.fromIterable(newPairs)
+                .buffer(1000)
+                .flatMap(batch -> currencyPairDAO.saveAll(batch).then())
+                .then();
+    }
+
+    /**
+     * Пересчитывает курсы всех валютных пар и сохраняет их в MongoDB. Записи выполняются
+     * с токеном аренды: если данные уже записаны под арендой с большим токеном, обновление завершается ошибкой
+     *
+     * @param response ответ OpenExchangeRates с курсами к базовой валюте
+     * @param lease    аренда обновления курсов
+     * @return Mono с новым снимком курсов, соответствующим сохранённым данным
+     */
+    public Mono<RateSnapshot> updateCurrencyPairs(ExchangeRatesVector response, RefreshLease lease) {
+        if (isVectorMode()) {
+            return updateRateVector(response, lease);
+        }
         log.info("Executing updateCurrencyPairs");
+        long start = System.nanoTime();
+        RateSnapshot previous = snapshotHolder.get();
+        FixedPointRates rates = FixedPointRates.of(response.getCurrencies(), response.getRates());
 
         return currencyPairDAO.findAll()
                 .flatMap(pair -> calculateCrossRate(pair, rates))
-                .buffer(500) // Пакетная обработка по 500 пар
-                .flatMap(batch -> {
-                    log.info("Another batch: {}", batch);
-                    return Flux.fromIterable(batch)
-                            .parallel()
-                            .runOn(Schedulers.parallel())
-                            .flatMap(this::processPairUpdate)
-                            .sequential();
-                })
-                .flatMap(this::sendUpdateNotification)
-                .then();
+                .collectList()
+                .flatMap(calculated -> {
+                    // Пишем и отправляем только пары, курс которых изменился больше чем на epsilon
+                    List<Pair<CurrencyPairDBO, BigDecimal>> changed = calculated.stream()
+                            .filter(pair -> isRateChanged(pair.getRight(), pair.getLeft().getCurrentRate()))
+                            .toList();
+                    log.info("Rate refresh: {} changed, {} unchanged pairs",
+                            changed.size(), calculated.size() - changed.size());
+
+                    Flux<Pair<CurrencyPairDBO, BigDecimal>> written = Flux.fromIterable(changed)
+                            .buffer(bulkBatchSize)
+                            .flatMap(batch -> processPairBatch(batch, lease), bulkConcurrency);
+                    boolean anySubscribed = changed.stream()
+                            .anyMatch(pair -> subscribedPairs.isSubscribed(
+                                    pair.getLeft().getBaseCurrency(), pair.getLeft().getTargetCurrency()));
+
+                    return sendNotifications(written, response, previous, anySubscribed)
+                            .then(Mono.fromSupplier(() -> RateSnapshot.fromPairs(
+                                    calculated.stream().map(Pair::getLeft).toList()
+                            ).withBaseRates(response.getBase(), response.toRateMap())))
+                            .doOnSuccess(_ -> log.info("Updated {} currency pairs in {} ms",
+                                    changed.size(), (System.nanoTime() - start) / 1_000_000));
+                });
+    }
+
+    /**
+     * @return true, если курс появился впервые или изменился больше чем на rates.update.epsilon
+     */
+    private boolean isRateChanged(BigDecimal oldRate, BigDecimal newRate) {
+        if (oldRate == null || newRate == null) {
+            return oldRate != newRate;
+        }
+        return newRate.subtract(oldRate).abs().compareTo(changeEpsilon) > 0;
     }
 
-    private Mono<Pair<CurrencyPairDBO, BigDecimal>> calculateCrossRate(CurrencyPairDBO pair, Map<String, BigDecimal> rates) {
+    /**
+     * Сохраняет вектор курсов к базовой валюте одним документом,
+     * кросс-курсы вычисляются в памяти и отправляются в виде уведомлений
+     *
+     * @param response ответ OpenExchangeRates с курсами к базовой валюте
+     * @param lease    аренда обновления курсов
+     * @return Mono с новым снимком курсов
+     */
+    private Mono<RateSnapshot> updateRateVector(ExchangeRatesVector response, RefreshLease lease) {
+        log.info("Executing updateRateVector");
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, BigDecimal> rates = response.toRateMap();
+        RateVectorDBO vector = new RateVectorDBO(null, response.getBase(), response.getTimestamp(), rates, now,
+                lease.token());
+        RateSnapshot previous = snapshotHolder.get();
+
+        // Матрица кросс-курсов, маска изменений и проценты считаются ядром за один проход
+        String[] codes = response.getCurrencies();
+        int n = codes.length;
+        long[] matrix = new long[n * n];
+        long[] changedMask = new long[(n * n + 63) / 64];
+        long[] percents = notificationMode == RatesNotificationMode.PAIRS ? new long[n * n] : null;
+        long[] previousMatrix = previous.isEmpty() ? null : previous.alignedRates(codes);
+        long epsilon = changeEpsilon.movePointRight(CrossRates.RATE_SCALE)
+                .setScale(0, RoundingMode.FLOOR)
+                .longValueExact();
+        CrossRateKernel.Result result = crossRateKernel().compute(
+                FixedPointRates.of(codes, response.getRates()).toArray(),
+                previousMatrix, epsilon, matrix, changedMask, percents
+        );
+        RateSnapshot snapshot = RateSnapshot.fromMatrix(codes, matrix, now, response.getBase(), rates);
+
+        // Пары без предыдущего курса не отправляются: процент изменения для них не определён.
+        // Объекты пар создаются только для изменившихся курсов пар с уведомлениями
+        long[] subscribedMask = subscribedPairs.mask(codes);
+        List<Pair<CurrencyPairDBO, BigDecimal>> changed = new ArrayList<>();
+        List<BigDecimal> changePercents = new ArrayList<>();
+        for (int word = 0; word < changedMask.length; word++) {
+            long subscribedBits = subscribedMask == null ? -1L : subscribedMask[word];
+            for (long bits = changedMask[word] & subscribedBits; bits != 0; bits &= bits - 1) {
+                int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+                Pair<CurrencyPairDBO, BigDecimal> pair = Pair.of(
+                        snapshot.getPair(codes[cell / n], codes[cell % n]),
+                        FixedPoint.toBigDecimal(previousMatrix[cell], CrossRates.RATE_SCALE)
+                );
+                changed.add(pair);
+                if (percents != null) {
+                    // NO_RATE: процент не определён или не поместился в long, считаем через BigDecimal
+                    changePercents.add(percents[cell] == RateSnapshot.NO_RATE
+                            ? CrossRates.changePercent(pair.getRight(), pair.getLeft().getCurrentRate())
+                            : FixedPoint.toBigDecimal(percents[cell], CrossRates.PERCENT_SCALE));
+                }
+            }
+        }
+        log.info("Rate refresh: {} changed ({} with alerts), {} unchanged pairs, computed in {} ms",
+                result.changed(), changed.size(), result.compared() - result.changed(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        if (result.changed() == 0 && result.compared() > 0) {
+            // Курсы не изменились, новый документ вектора не нужен
+            return Mono.just(snapshot);
+        }
+        Mono<Void> notifications = notificationMode == RatesNotificationMode.PAIRS
+                ? Flux.range(0, changed.size())
+                        .flatMap(i -> sendUpdateNotification(changed.get(i), changePercents.get(i)))
+                        .then()
+                : sendNotifications(Flux.fromIterable(changed), response, previous, !changed.isEmpty());
+        // Вектор, вставленный под устаревшей арендой после проверки, не читается: loadSnapshot выбирает наибольший токен
+        return rateVectorDAO.existsByLeaseTokenGreaterThan(lease.token())
+                .flatMap(fenced -> fenced ? Mono.error(lease.fenced()) : rateVectorDAO.save(vector))
+                .then(notifications)
+                .then(Mono.just(snapshot));
+    }
+
+    /**
+     * @return ядро вычисления кросс-курсов, выбранное rates.kernel.mode
+     */
+    private CrossRateKernel crossRateKernel() {
+        CrossRateKernel kernel = crossRateKernel;
+        if (kernel == null) {
+            kernel = createCrossRateKernel(kernelMode);
+            crossRateKernel = kernel;
+        }
+        return kernel;
+    }
+
+    private static CrossRateKernel createCrossRateKernel(RatesKernelMode mode) {
+        if (mode == RatesKernelMode.VECTOR) {
+            try {
+                return new VectorCrossRateKernel();
+            } catch (LinkageError e) {
+                log.warn("jdk.incubator.vector is not available, falling back to scalar cross-rate kernel: {}",
+                        e.toString());
+            }
+        }
+        return new ScalarCrossRateKernel();
+    }
+
+    /**
+     * Уведомляет об изменившихся курсах: одним снимком или сообщением на каждую пару,
+     * в зависимости от rates.notification.mode. Если прошлый снимок не хранит вектор курсов
+     * (первое обновление после загрузки из currency_pairs), уведомления отправляются по парам:
+     * старый вектор из округлённых курсов пар дал бы ложные изменения малых курсов
+     *
+     * @param changed  изменившиеся пары, подписка на Flux выполняет их запись
+     * @param response ответ OpenExchangeRates с новыми курсами
+     * @param previous снимок курсов до обновления
+     * @param anyChanged изменился ли курс хотя бы одной пары с уведомлениями
+     */
+    private Mono<Void> sendNotifications(Flux<Pair<CurrencyPairDBO, BigDecimal>> changed, ExchangeRatesVector response,
+                                         RateSnapshot previous, boolean anyChanged) {
+        if (notificationMode == RatesNotificationMode.PAIRS || !previous.hasBaseRates(response.getBase())) {
+            // Все пары проходят через Flux ради записи, события отправляются только по парам с уведомлениями
+            return changed.flatMap(pair -> subscribedPairs.isSubscribed(
+                            pair.getLeft().getBaseCurrency(), pair.getLeft().getTargetCurrency())
+                            ? sendUpdateNotification(pair)
+                            : Mono.empty())
+                    .then();
+        }
+        if (!anyChanged) {
+            return changed.then();
+        }
+
+        String base = response.getBase();
+        List<String> currencies = List.of(response.getCurrencies());
+        List<BigDecimal> oldRates = currencies.stream()
+                .map(code -> previous.getBaseRate(base, code))
+                .toList();
+        List<BigDecimal> newRates = IntStream.range(0, response.size())
+                .mapToObj(response::getRate)
+                .toList();
+        return changed.then(updateCurrenciesSDK.sendSnapshotNotification(
+                base, currencies, oldRates, newRates, LocalDateTime.now()
+        ));
+    }
+
+    /**
+     * Загружает снимок курсов из MongoDB, используется до первого обновления
+     *
+     * @return Mono со снимком всех сохранённых валютных пар
+     */
+    public Mono<RateSnapshot> loadSnapshot() {
+        if (isVectorMode()) {
+            return rateVectorDAO.findFirstByOrderByLeaseTokenDescUpdatedDesc()
+                    .map(vector -> RateSnapshot.fromBaseVector(vector.getBase(), vector.getRates(), vector.getUpdated()));
+        }
+        return currencyPairDAO.findAll()
+                .collectList()
+                .map(RateSnapshot::fromPairs);
+    }
+
+    private Mono<Pair<CurrencyPairDBO, BigDecimal>> calculateCrossRate(CurrencyPairDBO pair, FixedPointRates rates) {
         String base = pair.getBaseCurrency();
         String target = pair.getTargetCurrency();
 
         return Mono.fromSupplier(() -> {
             try {
-                BigDecimal baseRate = rates.getOrDefault(base, BigDecimal.ONE);
-                BigDecimal targetRate = rates.getOrDefault(target, BigDecimal.ONE);
+                long baseRate = rates.getOrDefault(base, rates.one());
+                long targetRate = rates.getOrDefault(target, rates.one());
 
-                return targetRate.divide(baseRate, 6, RoundingMode.HALF_UP);
+                // В BigDecimal курс переводится только для записи в MongoDB
+                return FixedPoint.toBigDecimal(CrossRates.crossRate(baseRate, targetRate), CrossRates.RATE_SCALE);
             } catch (ArithmeticException e) {
                 log.error("Error calculating rate for {}/{}: {}", base, target, e.getMessage());
                 return pair.getCurrentRate();
@@ -138,53 +472,55 @@ public class RatesServiceImpl implements RatesService, RatesForMathService {
         });
     }
 
-    private Mono<Pair<CurrencyPairDBO, BigDecimal>> processPairUpdate(Pair<CurrencyPairDBO, BigDecimal> pair) {
-        BigDecimal oldRate = pair.getRight();
-        BigDecimal newRate = pair.getLeft().getCurrentRate();
-        String baseCurrency = pair.getLeft().getBaseCurrency();
-        String targetCurrency = pair.getLeft().getTargetCurrency();
-
-        Query query = new Query(Criteria
-                .where("baseCurrency").is(baseCurrency)
-                .and("targetCurrency").is(targetCurrency)
-        );
-
-        Update update = new Update()
-                .set("currentRate", newRate)
-                .set("updated", LocalDateTime.now());
-
-        return mongoTemplate.updateFirst(query, update, CurrencyPairDBO.class)
-                .flatMap(updateResult -> {
-                    if (updateResult.getMatchedCount() == 0){
-                        return Mono.error(new RuntimeException("Document not found"));
-                    }
-                    return mongoTemplate.findOne(query, CurrencyPairDBO.class);
-                })
-                .map(updated -> Pair.of(updated, oldRate))
-                .doOnNext(updated -> {
-                    log.debug("Updated {}/{}: {} -> {}",
-                            updated.getLeft().getBaseCurrency(),
-                            updated.getLeft().getTargetCurrency(),
-                            oldRate,
-                            updated.getLeft().getCurrentRate()
-                    );
-                });
-    }
-
     /**
-     * Вычисляет процент изменения курса
+     * Сохраняет пакет пересчитанных пар одной неупорядоченной bulk-операцией.
+     * Новые курсы уже известны в памяти, поэтому повторное чтение документов не требуется.
+     * Пара обновляется, только если она не записана под арендой с большим токеном
      *
-     * @param oldRate - старый курс
-     * @param newRate - новый курс (после изменения)
+     * @param batch пары с новыми курсами и старыми курсами
+     * @param lease аренда обновления курсов
+     * @return Flux с теми же парами после успешной записи или ошибка, если запись отклонена новой арендой
      */
-    private BigDecimal calculateChangePercent(BigDecimal oldRate, BigDecimal newRate) {
-        if (oldRate == null || oldRate.compareTo(BigDecimal.ZERO) == 0) {
-            return null;
-        }
-        return newRate.subtract(oldRate)
-                .divide(oldRate, 6, RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(100))
-                .setScale(2, RoundingMode.HALF_UP);
+    private Flux<Pair<CurrencyPairDBO, BigDecimal>> processPairBatch(List<Pair<CurrencyPairDBO, BigDecimal>> batch,
+                                                                    RefreshLease lease) {
+        return Flux.defer(() -> {
+            ReactiveBulkOperations bulkOps = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class);
+            for (Pair<CurrencyPairDBO, BigDecimal> pair : batch) {
+                CurrencyPairDBO updated = pair.getLeft();
+                bulkOps.updateOne(
+                        new Query(Criteria.where("_id").is(updated.getCurrencyPairId())).addCriteria(lease.fence()),
+                        new Update()
+                                .set("currentRate", updated.getCurrentRate())
+                                .set("updated", updated.getUpdated())
+                                .set(RefreshLease.TOKEN_FIELD, lease.token())
+                );
+            }
+
+            long start = System.nanoTime();
+            return bulkOps.execute()
+                    .flatMap(result -> {
+                        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                        log.info("Bulk update of {} pairs took {} ms (matched {}, modified {})",
+                                batch.size(), elapsedMs, result.getMatchedCount(), result.getModifiedCount());
+                        if (result.getMatchedCount() >= batch.size()) {
+                            return Mono.just(result);
+                        }
+                        // Пара не найдена или уже записана под новой арендой
+                        List<ObjectId> ids = batch.stream().map(pair -> pair.getLeft().getCurrencyPairId()).toList();
+                        Query fenced = new Query(Criteria.where("_id").in(ids)
+                                .and(RefreshLease.TOKEN_FIELD).gt(lease.token()));
+                        return mongoTemplate.exists(fenced, CurrencyPairDBO.class)
+                                .flatMap(newer -> {
+                                    if (newer) {
+                                        return Mono.error(lease.fenced());
+                                    }
+                                    log.warn("{} currency pairs were not found during bulk update",
+                                            batch.size() - result.getMatchedCount());
+                                    return Mono.just(result);
+                                });
+                    })
+                    .thenMany(Flux.fromIterable(batch));
+        });
     }
 
     /**
@@ -194,30 +530,50 @@ public class RatesServiceImpl implements RatesService, RatesForMathService {
      * @return Mono сигнализирующий о завершении операции
      */
     private Mono<Void> sendUpdateNotification(Pair<CurrencyPairDBO, BigDecimal> pair) {
-        return Mono.fromCallable(() -> calculateChangePercent(pair.getLeft().getCurrentRate(), pair.getRight()))
-                .flatMap(percent -> {
-                    if (percent != null){
-                        return updateCurrenciesSDK.sendUpdateNotification(pair.getLeft(), pair.getRight(), percent);
-                    }
-                    return Mono.empty();
-                });
+        return Mono.fromCallable(() -> CrossRates.changePercent(pair.getRight(), pair.getLeft().getCurrentRate()))
+                .flatMap(percent -> sendUpdateNotification(pair, percent));
     }
 
+    /**
+     * @param percent заранее вычисленный процент изменения или null, если он не определён
+     */
+    private Mono<Void> sendUpdateNotification(Pair<CurrencyPairDBO, BigDecimal> pair, BigDecimal percent) {
+        if (percent != null){
+            return updateCurrenciesSDK.sendUpdateNotification(pair.getLeft(), pair.getRight(), percent);
+        }
+        return Mono.empty();
+    }
+
+
+    // Чтение идёт из снимка в памяти; MongoDB используется, только пока снимок не загружен
 
     public Mono<ObjectId> getCurrencyPairId(String baseCurrency, String targetCurrency){
-        return currencyPairDAO.findByBaseCurrencyAndTargetCurrency(baseCurrency, targetCurrency).map(CurrencyPairDBO::getCurrencyPairId);
+        return getExchangeRate(baseCurrency, targetCurrency)
+                .map(pair -> CurrencyPairIds.of(pair.getBaseCurrency(), pair.getTargetCurrency()));
     }
 
     public Mono<Boolean> isCurrencyExists(String currencyCode){
+        RateSnapshot snapshot = snapshotHolder.get();
+        if (!snapshot.isEmpty()) {
+            return Mono.just(snapshot.containsCurrency(currencyCode));
+        }
         return currencyDAO.findByCode(currencyCode)
                 .map(_ -> true)
                 .switchIfEmpty(Mono.just(false));
     }
 
+    @Override
+    public boolean isStablePairId(ObjectId pairId) {
+        return CurrencyPairIds.isStable(pairId);
+    }
+
     public Mono<String> getDefaultPairString(ObjectId pairId){
-        return currencyPairDAO.findById(pairId).map( pair ->
-                pair.getBaseCurrency() + "/" + pair.getTargetCurrency()
-        );
+        if (CurrencyPairIds.isStable(pairId)) {
+            return Mono.just(PairKey.format(CurrencyPairIds.pairKey(pairId)));
+        }
+        // Идентификатор, выданный MongoDB до перехода на стабильные идентификаторы
+        return currencyPairDAO.findById(pairId)
+                .map(p -> p.getBaseCurrency() + "/" + p.getTargetCurrency());
     }
 
     public Flux<CurrencyDBO> getAllCurrencies(){
@@ -225,10 +581,30 @@ public class RatesServiceImpl implements RatesService, RatesForMathService {
     }
 
     public Mono<CurrencyPairDBO> getExchangeRate(String baseCurrency, String targetCurrency){
+        RateSnapshot snapshot = snapshotHolder.get();
+        if (!snapshot.isEmpty()) {
+            return Mono.justOrEmpty(snapshot.getPair(baseCurrency, targetCurrency));
+        }
+        if (isVectorMode()) {
+            return loadSnapshot()
+                    .doOnNext(snapshotHolder::initialize)
+                    .mapNotNull(loaded -> loaded.getPair(baseCurrency, targetCurrency));
+        }
         return currencyPairDAO.findByBaseCurrencyAndTargetCurrency(baseCurrency, targetCurrency);
     }
 
     public Mono<BigDecimal> getBigDecimalExchangeRate(String baseCurrency, String targetCurrency){
-        return currencyPairDAO.findByBaseCurrencyAndTargetCurrency(baseCurrency, targetCurrency).map(CurrencyPairDBO::getCurrentRate);
+        return getExchangeRate(baseCurrency, targetCurrency).map(CurrencyPairDBO::getCurrentRate);
+    }
+
+    @Override
+    public Mono<BigDecimal> getBigDecimalExchangeRate(int pairKey) {
+        RateSnapshot snapshot = snapshotHolder.get();
+        if (!snapshot.isEmpty()) {
+            return Mono.justOrEmpty(snapshot.getRate(pairKey));
+        }
+        return getBigDecimalExchangeRate(
+                CurrencyCode.format(PairKey.base(pairKey)), CurrencyCode.format(PairKey.target(pairKey))
+        );
     }
 }
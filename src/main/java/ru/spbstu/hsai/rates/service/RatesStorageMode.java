@@ -0,0 +1,16 @@
+package ru.spbstu.hsai.rates.service;
+
+/**
+ * Способ хранения курсов в MongoDB
+ */
+public enum RatesStorageMode {
+    /**
+     * Каждая валютная пара хранится отдельным документом в currency_pairs
+     */
+    PAIRS,
+    /**
+     * Хранится только вектор курсов к базовой валюте (rate_vectors),
+     * кросс-курсы вычисляются в памяти
+     */
+    VECTOR
+}
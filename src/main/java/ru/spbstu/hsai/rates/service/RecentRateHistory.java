@@ -0,0 +1,139 @@
+package ru.spbstu.hsai.rates.service;
+
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.entities.RateHistoryBlockDBO;
+import ru.spbstu.hsai.rates.entities.RateHistoryPoint;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Неизменяемый индекс недавней истории курсов в памяти: распакованные блоки последних дней.
+ * Новый индекс создаётся при каждом добавлении точки и публикуется атомарно
+ */
+final class RecentRateHistory {
+    static final RecentRateHistory EMPTY = new RecentRateHistory(null, Collections.emptyNavigableMap());
+
+    // Первый день, начиная с которого индекс содержит все блоки; null, пока индекс не загружен
+    private final LocalDate coveredFrom;
+    private final NavigableMap<LocalDate, Day> days;
+
+    private RecentRateHistory(LocalDate coveredFrom, NavigableMap<LocalDate, Day> days) {
+        this.coveredFrom = coveredFrom;
+        this.days = days;
+    }
+
+    /**
+     * @param from   первый день индекса
+     * @param blocks все блоки начиная с этого дня
+     */
+    static RecentRateHistory of(LocalDate from, List<RateHistoryBlockDBO> blocks) {
+        NavigableMap<LocalDate, Day> days = new TreeMap<>();
+        for (RateHistoryBlockDBO block : blocks) {
+            days.put(LocalDate.parse(block.getId()), Day.decode(block));
+        }
+        return new RecentRateHistory(from, Collections.unmodifiableNavigableMap(days));
+    }
+
+    /**
+     * @param block  новая версия блока дня
+     * @param oldest первый день, который нужно хранить
+     * @return индекс с заменённым блоком; незагруженный индекс не меняется
+     */
+    RecentRateHistory with(RateHistoryBlockDBO block, LocalDate oldest) {
+        if (coveredFrom == null) {
+            return this;
+        }
+        NavigableMap<LocalDate, Day> updated = new TreeMap<>(days.tailMap(oldest, true));
+        updated.put(LocalDate.parse(block.getId()), Day.decode(block));
+        LocalDate from = oldest.isAfter(coveredFrom) ? oldest : coveredFrom;
+        return new RecentRateHistory(from, Collections.unmodifiableNavigableMap(updated));
+    }
+
+    LocalDate coveredFrom() {
+        return coveredFrom;
+    }
+
+    boolean covers(LocalDate day) {
+        return coveredFrom != null && !day.isBefore(coveredFrom);
+    }
+
+    /**
+     * @return курс последнего обновления дня или null, если за день курсов нет
+     */
+    RateHistoryPoint lastOn(String baseCurrency, String targetCurrency, LocalDate day) {
+        Day block = days.get(day);
+        return block == null ? null : block.last(baseCurrency, targetCurrency);
+    }
+
+    void accumulate(String baseCurrency, String targetCurrency, LocalDate from, LocalDate to,
+                    RateStatsAccumulator accumulator) {
+        if (from.isAfter(to)) {
+            return;
+        }
+        for (Day day : days.subMap(from, true, to, true).values()) {
+            day.accumulate(baseCurrency, targetCurrency, accumulator);
+        }
+    }
+
+    /**
+     * Распакованный блок одного дня
+     */
+    record Day(String base, long[] timestamps, Map<String, double[]> series) {
+
+        static Day decode(RateHistoryBlockDBO block) {
+            int count = block.getCount();
+            Map<String, double[]> series = new HashMap<>();
+            if (block.getSeries() != null) {
+                block.getSeries().forEach((code, data) -> series.put(code, RateHistoryCodec.decodeDoubles(data, count)));
+            }
+            return new Day(block.getBase(), RateHistoryCodec.decodeTimestamps(block.getTimestamps(), count), series);
+        }
+
+        /**
+         * @return ряд валюты; для базовой валюты блока, если её нет среди курсов, ряд из единиц
+         */
+        double[] column(String code) {
+            double[] column = series.get(code);
+            if (column == null && code.equals(base)) {
+                column = new double[timestamps.length];
+                Arrays.fill(column, 1.0);
+            }
+            return column;
+        }
+
+        RateHistoryPoint last(String baseCurrency, String targetCurrency) {
+            double[] baseRates = column(baseCurrency);
+            double[] targetRates = column(targetCurrency);
+            if (baseRates == null || targetRates == null) {
+                return null;
+            }
+            for (int i = timestamps.length - 1; i >= 0; i--) {
+                if (!Double.isNaN(baseRates[i]) && !Double.isNaN(targetRates[i]) && baseRates[i] != 0) {
+                    return new RateHistoryPoint(Instant.ofEpochSecond(timestamps[i]),
+                            CrossRates.crossRate(BigDecimal.valueOf(baseRates[i]), BigDecimal.valueOf(targetRates[i])));
+                }
+            }
+            return null;
+        }
+
+        void accumulate(String baseCurrency, String targetCurrency, RateStatsAccumulator accumulator) {
+            double[] baseRates = column(baseCurrency);
+            double[] targetRates = column(targetCurrency);
+            if (baseRates == null || targetRates == null) {
+                return;
+            }
+            for (int i = 0; i < timestamps.length; i++) {
+                accumulator.add(timestamps[i], baseRates[i], targetRates[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.exceptions.CCBException;
+
+/**
+ * Полученная аренда задачи
+ *
+ * @param name  имя задачи
+ * @param owner идентификатор экземпляра, владеющего арендой
+ * @param token fencing token: возрастает при каждой новой выдаче аренды
+ */
+public record RefreshLease(String name, String owner, long token) {
+    /**
+     * Поле документа с токеном аренды, под которой он записан последним
+     */
+    public static final String TOKEN_FIELD = "leaseToken";
+
+    /**
+     * @return условие записи под этой арендой: документ не записан под арендой с большим токеном
+     */
+    public Criteria fence() {
+        return new Criteria().orOperator(
+                Criteria.where(TOKEN_FIELD).exists(false),
+                Criteria.where(TOKEN_FIELD).lte(token)
+        );
+    }
+
+    /**
+     * Заменяет документ с идентификатором id или вставляет его, если документа ещё нет.
+     * Документ, записанный под арендой с большим токеном, не заменяется
+     *
+     * @return Mono с записанным документом или ошибка {@link #fenced()}
+     */
+    public <T> Mono<T> replaceFenced(ReactiveMongoTemplate mongoTemplate, Object id, T document) {
+        Query query = new Query(Criteria.where("_id").is(id)).addCriteria(fence());
+        return mongoTemplate.findAndReplace(query, document, FindAndReplaceOptions.options().upsert().returnNew())
+                // Документ есть, но записан под новой арендой: upsert пытается вставить тот же _id
+                .onErrorMap(DuplicateKeyException.class, _ -> fenced());
+    }
+
+    /**
+     * @return ошибка записи, отклонённой из-за аренды с большим токеном
+     */
+    public CCBException fenced() {
+        return new CCBException("Write under lease " + name + " with token " + token + " was rejected by a newer lease");
+    }
+}
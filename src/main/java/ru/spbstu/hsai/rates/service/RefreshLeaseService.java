@@ -0,0 +1,220 @@
+package ru.spbstu.hsai.rates.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.rates.entities.RefreshLeaseDBO;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Аренда задач в MongoDB: задачу выполняет только один экземпляр бота.
+ * Аренда выдаётся атомарным findAndModify, если документа нет или срок прежней аренды истёк,
+ * при этом fencing token увеличивается. Запись результатов выполняется только после
+ * проверки, что токен не сменился, а сами записи курсов, истории и агрегатов сохраняют токен
+ * в документах и не заменяют документы, записанные под арендой с большим токеном
+ * (см. {@link RefreshLease#fence()})
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshLeaseService {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final String instanceId = defaultOwner();
+
+    @Value("${rates.lease.ttl-minutes:15}")
+    private long ttlMinutes = 15;
+
+    @Value("${rates.lease.owner:}")
+    private String owner = "";
+
+    /**
+     * Пытается получить аренду задачи
+     *
+     * @param name имя задачи
+     * @return Mono с арендой или пустой Mono, если аренда принадлежит другому владельцу
+     */
+    public Mono<RefreshLease> tryAcquire(String name) {
+        return acquire(name, false);
+    }
+
+    /**
+     * Пытается получить аренду задачи, если наступило время её планового выполнения.
+     * Проверка расписания входит в тот же атомарный запрос, поэтому задачу по расписанию
+     * выполнит только один экземпляр
+     *
+     * @return Mono с арендой или пустой Mono, если аренда занята или время ещё не наступило
+     */
+    public Mono<RefreshLease> tryAcquireDue(String name) {
+        return acquire(name, true);
+    }
+
+    private Mono<RefreshLease> acquire(String name, boolean onlyIfDue) {
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            String ownerId = ownerId();
+            // Если аренда занята, upsert пытается вставить документ с тем же _id и получает duplicate key
+            Criteria criteria = Criteria.where("_id").is(name).and("expiresAt").lte(now);
+            if (onlyIfDue) {
+                criteria = criteria.orOperator(
+                        Criteria.where("nextRunAt").exists(false),
+                        Criteria.where("nextRunAt").lte(now)
+                );
+            }
+            Update update = new Update()
+                    .set("owner", ownerId)
+                    .set("expiresAt", now.plus(ttl()))
+                    .inc("token", 1L);
+            return mongoTemplate.findAndModify(new Query(criteria), update,
+                            FindAndModifyOptions.options().upsert(true).returnNew(true), RefreshLeaseDBO.class)
+                    .map(lease -> new RefreshLease(name, ownerId, lease.getToken()))
+                    .doOnNext(lease -> log.info("Acquired lease {} with token {}", name, lease.token()))
+                    .onErrorResume(DuplicateKeyException.class, _ -> Mono.empty());
+        });
+    }
+
+    /**
+     * Продлевает аренду перед записью результатов
+     *
+     * @return Mono с той же арендой или ошибка, если аренду уже получил другой экземпляр
+     */
+    public Mono<RefreshLease> renew(RefreshLease lease) {
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            Query query = leaseQuery(lease).addCriteria(Criteria.where("expiresAt").gt(now));
+            return mongoTemplate.updateFirst(query, new Update().set("expiresAt", now.plus(ttl())), RefreshLeaseDBO.class)
+                    .flatMap(result -> result.getMatchedCount() == 1
+                            ? Mono.just(lease)
+                            : Mono.error(new CCBException("Lease " + lease.name() + " with token " + lease.token() + " was lost")));
+        });
+    }
+
+    /**
+     * Отмечает успешное выполнение задачи, освобождает аренду и назначает следующее выполнение
+     *
+     * @param interval через сколько выполнить задачу в следующий раз
+     * @return Mono со временем завершения или пустой Mono, если аренда уже потеряна
+     */
+    public Mono<Instant> complete(RefreshLease lease, Duration interval) {
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            Update update = schedule(new Update().set("expiresAt", now).set("completedAt", now), now, interval);
+            return mongoTemplate.updateFirst(leaseQuery(lease), update, RefreshLeaseDBO.class)
+                    .flatMap(result -> {
+                        if (result.getMatchedCount() == 1) {
+                            return Mono.just(now);
+                        }
+                        log.warn("Lease {} with token {} was lost before completion", lease.name(), lease.token());
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    /**
+     * Освобождает аренду без отметки о выполнении, чтобы задачу сразу мог повторить любой экземпляр
+     */
+    public Mono<Void> release(RefreshLease lease) {
+        return Mono.defer(() -> mongoTemplate.updateFirst(leaseQuery(lease),
+                        new Update().set("expiresAt", Instant.now()), RefreshLeaseDBO.class))
+                .then();
+    }
+
+    /**
+     * Освобождает аренду после ошибки и откладывает плановое выполнение задачи
+     *
+     * @param retryAfter через сколько повторить задачу по расписанию
+     */
+    public Mono<Void> release(RefreshLease lease, Duration retryAfter) {
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            return mongoTemplate.updateFirst(leaseQuery(lease),
+                    schedule(new Update().set("expiresAt", now), now, retryAfter), RefreshLeaseDBO.class);
+        }).then();
+    }
+
+    /**
+     * Учитывает запросы к провайдеру в месячном бюджете задачи.
+     * Счётчик сбрасывается при смене месяца
+     *
+     * @param calls число запросов, отправленных провайдеру под этой арендой
+     */
+    public Mono<Void> countCalls(RefreshLease lease, long calls) {
+        if (calls <= 0) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> {
+            String month = YearMonth.now(ZoneOffset.UTC).toString();
+            Query sameMonth = leaseQuery(lease).addCriteria(Criteria.where("budgetMonth").is(month));
+            return mongoTemplate.updateFirst(sameMonth, new Update().inc("budgetUsed", calls), RefreshLeaseDBO.class)
+                    .flatMap(result -> result.getMatchedCount() == 1
+                            ? Mono.<Void>empty()
+                            : mongoTemplate.updateFirst(leaseQuery(lease),
+                                    new Update().set("budgetMonth", month).set("budgetUsed", calls),
+                                    RefreshLeaseDBO.class).then());
+        });
+    }
+
+    /**
+     * @return Mono с расписанием задачи или пустой Mono, если задача ещё не выполнялась
+     */
+    public Mono<RefreshSchedule> schedule(String name) {
+        return mongoTemplate.findById(name, RefreshLeaseDBO.class)
+                .map(lease -> new RefreshSchedule(
+                        lease.getNextRunAt(),
+                        lease.getIntervalSeconds() == null ? null : Duration.ofSeconds(lease.getIntervalSeconds()),
+                        YearMonth.now(ZoneOffset.UTC).toString().equals(lease.getBudgetMonth())
+                                && lease.getBudgetUsed() != null ? lease.getBudgetUsed() : 0
+                ));
+    }
+
+    /**
+     * @return Mono со временем последнего успешного выполнения задачи любым экземпляром
+     */
+    public Mono<Instant> lastCompleted(String name) {
+        return mongoTemplate.findById(name, RefreshLeaseDBO.class)
+                .mapNotNull(RefreshLeaseDBO::getCompletedAt);
+    }
+
+    private Duration ttl() {
+        return Duration.ofMinutes(ttlMinutes);
+    }
+
+    private String ownerId() {
+        return owner == null || owner.isBlank() ? instanceId : owner;
+    }
+
+    private static Update schedule(Update update, Instant now, Duration interval) {
+        return update.set("nextRunAt", now.plus(interval)).set("intervalSeconds", interval.toSeconds());
+    }
+
+    private static Query leaseQuery(RefreshLease lease) {
+        return new Query(Criteria.where("_id").is(lease.name())
+                .and("owner").is(lease.owner())
+                .and("token").is(lease.token()));
+    }
+
+    private static String defaultOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID();
+    }
+}
@@ -0,0 +1,15 @@
+package ru.spbstu.hsai.rates.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Расписание задачи обновления курсов, общее для всех экземпляров
+ *
+ * @param nextRunAt время следующего планового обновления или null, если оно ещё не назначено
+ * @param interval  интервал, выбранный после прошлого обновления, или null
+ * @param calls     число запросов курсов к провайдеру в текущем месяце (UTC)
+ */
+public record RefreshSchedule(Instant nextRunAt, Duration interval, long calls) {
+    public static final RefreshSchedule NONE = new RefreshSchedule(null, null, 0);
+}
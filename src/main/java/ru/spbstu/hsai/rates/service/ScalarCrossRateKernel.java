@@ -0,0 +1,78 @@
+package ru.spbstu.hsai.rates.service;
+
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+/**
+ * Поэлементное вычисление матрицы кросс-курсов в long
+ */
+final class ScalarCrossRateKernel implements CrossRateKernel {
+    static final int NOT_COMPARED = 0;
+    static final int UNCHANGED = 1;
+    static final int CHANGED = 2;
+
+    private static final long NO_RATE = RateSnapshot.NO_RATE;
+
+    @Override
+    public Result compute(long[] vector, long[] previous, long epsilon, long[] rates, long[] changed, long[] percents) {
+        int n = vector.length;
+        int changedCount = 0;
+        int compared = 0;
+        for (int base = 0; base < n; base++) {
+            for (int target = 0; target < n; target++) {
+                int state = cell(vector, previous, epsilon, rates, changed, percents, base, target);
+                if (state != NOT_COMPARED) {
+                    compared++;
+                }
+                if (state == CHANGED) {
+                    changedCount++;
+                }
+            }
+        }
+        return new Result(changedCount, compared);
+    }
+
+    /**
+     * Вычисляет одну ячейку матрицы, используется и векторным ядром для блоков,
+     * которые нельзя посчитать точно в SIMD
+     *
+     * @return {@link #NOT_COMPARED}, {@link #UNCHANGED} или {@link #CHANGED}
+     */
+    static int cell(long[] vector, long[] previous, long epsilon, long[] rates, long[] changed, long[] percents,
+                    int base, int target) {
+        int index = base * vector.length + target;
+        long baseRate = vector[base];
+        long targetRate = vector[target];
+        long rate = baseRate == NO_RATE || baseRate == 0 || targetRate == NO_RATE
+                ? NO_RATE
+                : CrossRates.crossRate(baseRate, targetRate);
+        rates[index] = rate;
+
+        if (previous == null || rate == NO_RATE || previous[index] == NO_RATE) {
+            return NOT_COMPARED;
+        }
+        long oldRate = previous[index];
+        if (Math.abs(rate - oldRate) <= epsilon) {
+            return UNCHANGED;
+        }
+        changed[index >>> 6] |= 1L << index;
+        if (percents != null) {
+            percents[index] = changePercent(oldRate, rate);
+        }
+        return CHANGED;
+    }
+
+    /**
+     * @return процент изменения или NO_RATE, если старый курс равен нулю или процент не помещается в long
+     */
+    static long changePercent(long oldRate, long newRate) {
+        if (oldRate == 0) {
+            return NO_RATE;
+        }
+        try {
+            return CrossRates.changePercent(oldRate, newRate);
+        } catch (ArithmeticException e) {
+            return NO_RATE;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.spbstu.hsai.rates.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.currency.PairKeyMap;
+import ru.spbstu.hsai.currency.PairKeySet;
+import ru.spbstu.hsai.rates.SubscribedPairsSDK;
+
+import java.util.Arrays;
+
+/**
+ * Живое множество пар с уведомлениями. Число уведомлений на пару меняется под блокировкой,
+ * а читателям публикуется неизменяемое множество ключей. Для матрицы кросс-курсов
+ * строится битовая маска в раскладке маски изменений ядра и кэшируется до смены
+ * подписок или списка валют
+ */
+@Component
+@Slf4j
+public class SubscribedPairs implements SubscribedPairsSDK {
+    private PairKeyMap<int[]> counts = new PairKeyMap<>();
+    // null, пока подписки не загружены: до этого события публикуются для всех пар
+    private volatile PairKeySet subscribed;
+    private volatile Mask mask;
+
+    public SubscribedPairs(MeterRegistry meterRegistry) {
+        Gauge.builder("rates.subscribed.pairs", this, SubscribedPairs::size)
+                .description("Currency pairs with at least one alert")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void subscribe(int pairKey) {
+        if (pairKey == PairKey.INVALID) {
+            return;
+        }
+        if (counts.computeIfAbsent(pairKey, _ -> new int[1])[0]++ == 0) {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void unsubscribe(int pairKey) {
+        int[] count = pairKey == PairKey.INVALID ? null : counts.get(pairKey);
+        if (count != null && count[0] > 0 && --count[0] == 0) {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void replaceAll(int[] pairKeys) {
+        PairKeyMap<int[]> loaded = new PairKeyMap<>(pairKeys.length);
+        for (int pairKey : pairKeys) {
+            if (pairKey != PairKey.INVALID) {
+                loaded.computeIfAbsent(pairKey, _ -> new int[1])[0]++;
+            }
+        }
+        counts = loaded;
+        publish();
+        log.info("Loaded alert subscriptions: {} alerts on {} currency pairs", pairKeys.length, size());
+    }
+
+    private void publish() {
+        PairKeySet keys = new PairKeySet(counts.size());
+        counts.forEach((pairKey, count) -> {
+            if (count[0] > 0) {
+                keys.add(pairKey);
+            }
+        });
+        subscribed = keys;
+    }
+
+    /**
+     * @return true, если на пару есть уведомление или подписки ещё не загружены
+     */
+    public boolean isSubscribed(int pairKey) {
+        PairKeySet keys = subscribed;
+        return keys == null || keys.contains(pairKey);
+    }
+
+    public boolean isSubscribed(String baseCurrency, String targetCurrency) {
+        return isSubscribed(PairKey.of(baseCurrency, targetCurrency));
+    }
+
+    /**
+     * Возвращает маску подписанных пар для матрицы n*n: бит base * n + target
+     * в слове (base * n + target) / 64. Маска общая для вызывающих и не должна изменяться
+     *
+     * @param codes отсортированные коды валют матрицы
+     * @return маска или null, если подписки ещё не загружены и подходят все пары
+     */
+    public long[] mask(String[] codes) {
+        PairKeySet keys = subscribed;
+        if (keys == null) {
+            return null;
+        }
+        Mask cached = mask;
+        if (cached != null && cached.keys() == keys && Arrays.equals(cached.codes(), codes)) {
+            return cached.bits();
+        }
+
+        int n = codes.length;
+        short[] ordinals = new short[CurrencyCode.COUNT];
+        for (int i = 0; i < n; i++) {
+            int code = CurrencyCode.parse(codes[i]);
+            if (code != CurrencyCode.INVALID) {
+                ordinals[code] = (short) (i + 1);
+            }
+        }
+        long[] bits = new long[(n * n + 63) / 64];
+        keys.forEach(pairKey -> {
+            int base = ordinals[PairKey.base(pairKey)] - 1;
+            int target = ordinals[PairKey.target(pairKey)] - 1;
+            if (base >= 0 && target >= 0) {
+                int cell = base * n + target;
+                bits[cell >>> 6] |= 1L << cell;
+            }
+        });
+        mask = new Mask(codes.clone(), keys, bits);
+        return bits;
+    }
+
+    /**
+     * @return число пар с уведомлениями
+     */
+    public int size() {
+        PairKeySet keys = subscribed;
+        return keys == null ? 0 : keys.size();
+    }
+
+    private record Mask(String[] codes, PairKeySet keys, long[] bits) {
+    }
+}
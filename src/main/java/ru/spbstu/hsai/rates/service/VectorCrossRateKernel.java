@@ -0,0 +1,175 @@
+package ru.spbstu.hsai.rates.service;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.FixedPoint;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.util.Arrays;
+
+/**
+ * SIMD-вычисление матрицы кросс-курсов на jdk.incubator.vector.
+ * Частное x * m / d оценивается в double, затем уточняется по остатку x * m - q * d в long.
+ * Остаток вычисляется по модулю 2^64, но точен, потому что по модулю он меньше нескольких d,
+ * поэтому результат совпадает с {@link ScalarCrossRateKernel}. Блоки, в которых оценка
+ * может ошибиться больше чем на 2 (частное от 2^52, делитель от 2^60, отрицательные значения),
+ * считаются поэлементно
+ */
+final class VectorCrossRateKernel implements CrossRateKernel {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    private static final long NO_RATE = RateSnapshot.NO_RATE;
+    private static final long RATE_MULTIPLIER = FixedPoint.pow10(CrossRates.RATE_SCALE);
+    // Доля изменения вычисляется с 6 знаками, доля * 100 имеет масштаб 4 и округляется до PERCENT_SCALE
+    private static final long RATIO_MULTIPLIER = FixedPoint.pow10(6);
+    private static final long PERCENT_DIVISOR = FixedPoint.pow10(4 - CrossRates.PERCENT_SCALE);
+    private static final long MAX_DIVISOR = 1L << 60;
+    private static final double MAX_QUOTIENT = 0x1p52;
+
+    @Override
+    public Result compute(long[] vector, long[] previous, long epsilon, long[] rates, long[] changed, long[] percents) {
+        int n = vector.length;
+        int lanes = LONGS.length();
+        int bound = LONGS.loopBound(n);
+        int changedCount = 0;
+        int compared = 0;
+
+        for (int base = 0; base < n; base++) {
+            long baseRate = vector[base];
+            int row = base * n;
+            if (baseRate == NO_RATE || baseRate == 0) {
+                Arrays.fill(rates, row, row + n, NO_RATE);
+                continue;
+            }
+
+            int target = 0;
+            if (baseRate > 0 && baseRate < MAX_DIVISOR) {
+                LongVector divisor = LongVector.broadcast(LONGS, baseRate);
+                for (; target < bound; target += lanes) {
+                    LongVector targetRates = LongVector.fromArray(LONGS, vector, target);
+                    VectorMask<Long> present = targetRates.compare(VectorOperators.NE, NO_RATE);
+                    LongVector rate = targetRates.compare(VectorOperators.LT, 0L).and(present).anyTrue()
+                            ? null
+                            : divide(targetRates, divisor, RATE_MULTIPLIER, present);
+
+                    if (rate == null) {
+                        for (int i = target; i < target + lanes; i++) {
+                            int state = ScalarCrossRateKernel.cell(vector, previous, epsilon, rates, changed, percents, base, i);
+                            compared += state == ScalarCrossRateKernel.NOT_COMPARED ? 0 : 1;
+                            changedCount += state == ScalarCrossRateKernel.CHANGED ? 1 : 0;
+                        }
+                        continue;
+                    }
+
+                    int cell = row + target;
+                    rate = rate.blend(NO_RATE, present.not());
+                    rate.intoArray(rates, cell);
+                    if (previous == null) {
+                        continue;
+                    }
+
+                    LongVector oldRates = LongVector.fromArray(LONGS, previous, cell);
+                    VectorMask<Long> comparable = present.and(oldRates.compare(VectorOperators.NE, NO_RATE));
+                    LongVector delta = rate.sub(oldRates);
+                    VectorMask<Long> moved = delta.lanewise(VectorOperators.ABS)
+                            .compare(VectorOperators.GT, epsilon)
+                            .and(comparable);
+                    compared += comparable.trueCount();
+                    if (!moved.anyTrue()) {
+                        continue;
+                    }
+                    changedCount += moved.trueCount();
+                    setBits(changed, cell, moved.toLong(), lanes);
+                    if (percents != null) {
+                        changePercents(delta, oldRates, moved, percents, cell);
+                    }
+                }
+            }
+
+            for (; target < n; target++) {
+                int state = ScalarCrossRateKernel.cell(vector, previous, epsilon, rates, changed, percents, base, target);
+                compared += state == ScalarCrossRateKernel.NOT_COMPARED ? 0 : 1;
+                changedCount += state == ScalarCrossRateKernel.CHANGED ? 1 : 0;
+            }
+        }
+        return new Result(changedCount, compared);
+    }
+
+    private static void changePercents(LongVector delta, LongVector oldRates, VectorMask<Long> moved,
+                                       long[] percents, int cell) {
+        VectorMask<Long> negative = delta.compare(VectorOperators.LT, 0L);
+        LongVector ratio = divide(delta.lanewise(VectorOperators.ABS), oldRates, RATIO_MULTIPLIER, moved);
+        LongVector percent = ratio == null
+                ? null
+                : divide(ratio, LongVector.broadcast(LONGS, PERCENT_DIVISOR), 1, moved);
+        if (percent == null) {
+            for (int i = 0; i < LONGS.length(); i++) {
+                if (moved.laneIsSet(i)) {
+                    long oldRate = oldRates.lane(i);
+                    percents[cell + i] = ScalarCrossRateKernel.changePercent(oldRate, oldRate + delta.lane(i));
+                }
+            }
+            return;
+        }
+        percent.lanewise(VectorOperators.NEG, negative).intoArray(percents, cell, moved);
+    }
+
+    /**
+     * Делит x * multiplier на divisor с округлением HALF_UP в выбранных дорожках
+     *
+     * @param x          неотрицательные делимые
+     * @param divisor    положительные делители
+     * @param multiplier множитель делимого
+     * @param lanes      дорожки, в которых нужен результат
+     * @return частные или null, если хотя бы в одной дорожке точность не гарантирована
+     */
+    private static LongVector divide(LongVector x, LongVector divisor, long multiplier, VectorMask<Long> lanes) {
+        VectorMask<Long> unsafeDivisor = divisor.compare(VectorOperators.LE, 0L)
+                .or(divisor.compare(VectorOperators.GE, MAX_DIVISOR))
+                .and(lanes);
+        if (unsafeDivisor.anyTrue()) {
+            return null;
+        }
+
+        DoubleVector estimate = ((DoubleVector) x.convert(VectorOperators.L2D, 0))
+                .mul((double) multiplier)
+                .div((DoubleVector) divisor.convert(VectorOperators.L2D, 0));
+        if (estimate.compare(VectorOperators.GE, MAX_QUOTIENT).cast(LONGS).and(lanes).anyTrue()) {
+            return null;
+        }
+
+        // Для неотрицательных значений приведение к long совпадает с округлением вниз
+        LongVector quotient = (LongVector) estimate.convert(VectorOperators.D2L, 0);
+        LongVector remainder = x.mul(multiplier).sub(quotient.mul(divisor));
+        for (int i = 0; i < 2; i++) {
+            VectorMask<Long> low = remainder.compare(VectorOperators.LT, 0L);
+            quotient = quotient.lanewise(VectorOperators.SUB, 1L, low);
+            remainder = remainder.lanewise(VectorOperators.ADD, divisor, low);
+            VectorMask<Long> high = remainder.compare(VectorOperators.GE, divisor);
+            quotient = quotient.lanewise(VectorOperators.ADD, 1L, high);
+            remainder = remainder.lanewise(VectorOperators.SUB, divisor, high);
+        }
+        VectorMask<Long> inexact = remainder.compare(VectorOperators.LT, 0L)
+                .or(remainder.compare(VectorOperators.GE, divisor))
+                .and(lanes);
+        if (inexact.anyTrue()) {
+            return null;
+        }
+
+        VectorMask<Long> roundUp = remainder.compare(VectorOperators.GE, divisor.sub(remainder));
+        return quotient.lanewise(VectorOperators.ADD, 1L, roundUp);
+    }
+
+    private static void setBits(long[] words, int index, long bits, int count) {
+        int word = index >>> 6;
+        int shift = index & 63;
+        words[word] |= bits << shift;
+        if (shift != 0 && shift + count > 64) {
+            words[word + 1] |= bits >>> (64 - shift);
+        }
+    }
+}
@@ -73,12 +73,8 @@ public class CurrencyConverterBot extends TelegramLongPollingBot {
     }
 
     public boolean sendMessage(long chatId, String text) {
-        SendMessage message = new SendMessage();
-        message.setChatId(chatId);
-        message.setText(text);
-        message.setParseMode("HTML");
         try{
-            execute(message);
+            sendMessageOrThrow(chatId, text);
             return true;
         } catch (TelegramApiException e){
             log.error("Error while send message to user", e);
@@ -86,6 +82,18 @@ public class CurrencyConverterBot extends TelegramLongPollingBot {
         }
     }
 
+    /**
+     * Отправляет сообщение и передаёт ошибку Telegram API вызывающему,
+     * например ответ 429 с retry_after для повторной отправки
+     */
+    public void sendMessageOrThrow(long chatId, String text) throws TelegramApiException {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        message.setParseMode("HTML");
+        execute(message);
+    }
+
     @Override
     public String getBotUsername() {
         return botUsername;
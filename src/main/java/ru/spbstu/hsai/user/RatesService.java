@@ -7,4 +7,9 @@ public interface RatesService {
     Mono<ObjectId> getCurrencyPairId(String baseCurrency, String targetCurrency);
     Mono<Boolean> isCurrencyExists(String currencyCode);
     Mono<String> getDefaultPairString(ObjectId pairId);
+
+    /**
+     * @return true, если идентификатор пары уже построен по кодам валют и не требует миграции
+     */
+    boolean isStablePairId(ObjectId pairId);
 }
@@ -1,12 +1,16 @@
 package ru.spbstu.hsai.user.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.user.RatesService;
 import ru.spbstu.hsai.user.dao.SettingsDAO;
@@ -19,6 +23,7 @@ import java.time.LocalDateTime;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class UserServiceImpl {
     private final UserDAO userDAO;
     private final SettingsDAO settingsDAO;
@@ -95,4 +100,38 @@ public class UserServiceImpl {
         );
     }
 
+    @PostConstruct
+    public void migrateSettingsOnStartup() {
+        migrateCurrencyPairIds().subscribe(
+                migrated -> log.info("Migrated currency pair ids in {} user settings", migrated),
+                error -> log.error("Failed to migrate currency pair ids", error)
+        );
+    }
+
+    /**
+     * Переводит настройки пользователей на стабильные идентификаторы валютных пар,
+     * которые не зависят от документов в currency_pairs
+     *
+     * @return Mono с количеством обновлённых настроек
+     */
+    public Mono<Long> migrateCurrencyPairIds() {
+        return settingsDAO.findAll()
+                .filter(settings -> settings.getCurrencyPairId() != null)
+                // Уже переведённые настройки не требуют обращения к курсам при каждом старте
+                .filter(settings -> !ratesService.isStablePairId(settings.getCurrencyPairId()))
+                .flatMap(settings -> ratesService.getDefaultPairString(settings.getCurrencyPairId())
+                        .map(PairKey::parse)
+                        .filter(pairKey -> pairKey != PairKey.INVALID)
+                        .flatMap(pairKey -> ratesService.getCurrencyPairId(
+                                CurrencyCode.format(PairKey.base(pairKey)),
+                                CurrencyCode.format(PairKey.target(pairKey))
+                        ))
+                        .filter(pairId -> !pairId.equals(settings.getCurrencyPairId()))
+                        .flatMap(pairId -> mongoTemplate.updateFirst(
+                                new Query(Criteria.where("chatId").is(settings.getChatId())),
+                                new Update().set("currencyPairId", pairId),
+                                SettingsDBO.class
+                        )), 16)
+                .count();
+    }
 }
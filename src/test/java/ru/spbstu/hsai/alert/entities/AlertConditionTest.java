@@ -0,0 +1,77 @@
+package ru.spbstu.hsai.alert.entities;
+
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.rates.CrossRates;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertConditionTest {
+
+    @Test
+    void compile_ShouldParseKindDirectionAndThreshold() {
+        assertEquals(new AlertCondition(AlertCondition.Kind.ABSOLUTE, AlertCondition.Direction.UP, 1_200_000L),
+                AlertCondition.compile(">1.2"));
+        assertEquals(new AlertCondition(AlertCondition.Kind.ABSOLUTE, AlertCondition.Direction.DOWN, 90_500_000L),
+                AlertCondition.compile("<90.5"));
+        assertEquals(new AlertCondition(AlertCondition.Kind.PERCENT, AlertCondition.Direction.UP, 500L),
+                AlertCondition.compile("+5%"));
+        assertEquals(new AlertCondition(AlertCondition.Kind.PERCENT, AlertCondition.Direction.DOWN, -250L),
+                AlertCondition.compile("-2.5%"));
+    }
+
+    @Test
+    void compile_InvalidExpression_ShouldNeverFire() {
+        for (String expr : new String[]{"5%", "1.2", ">abc", "", null}) {
+            AlertCondition condition = AlertCondition.compile(expr);
+
+            assertFalse(condition.isValid(), expr);
+            assertFalse(condition.test(AlertCondition.NO_VALUE, Long.MAX_VALUE, Long.MAX_VALUE), expr);
+        }
+    }
+
+    @Test
+    void test_PercentWithoutChange_ShouldNotFire() {
+        assertFalse(AlertCondition.compile("-1%").test(AlertCondition.NO_VALUE, 1_000_000L, AlertCondition.NO_VALUE));
+        assertTrue(AlertCondition.compile("<2").test(AlertCondition.NO_VALUE, 1_000_000L, AlertCondition.NO_VALUE));
+    }
+
+    @Test
+    void test_AbsoluteCondition_ShouldFireOnlyWhenRateCrossesThreshold() {
+        AlertCondition above = AlertCondition.compile(">1.2");
+        AlertCondition below = AlertCondition.compile("<1.2");
+
+        assertTrue(above.test(1_200_000L, 1_250_000L, AlertCondition.NO_VALUE));
+        assertFalse(above.test(1_210_000L, 1_250_000L, AlertCondition.NO_VALUE));
+        assertFalse(above.test(1_100_000L, 1_200_000L, AlertCondition.NO_VALUE));
+        assertTrue(below.test(1_200_000L, 1_190_000L, AlertCondition.NO_VALUE));
+        assertFalse(below.test(1_190_000L, 1_100_000L, AlertCondition.NO_VALUE));
+    }
+
+    @Test
+    void test_ShouldMatchBigDecimalComparison() {
+        // Пороги точнее масштаба событий округляются так, чтобы результат не менялся
+        Random random = new Random(22L);
+        for (int i = 0; i < 50_000; i++) {
+            BigDecimal threshold = BigDecimal.valueOf(random.nextInt(2_000_000), random.nextInt(9));
+            long rate = random.nextInt(3_000_000);
+            long percent = random.nextInt(4001) - 2000;
+            String plain = threshold.toPlainString();
+            BigDecimal decimalRate = BigDecimal.valueOf(rate, CrossRates.RATE_SCALE);
+            BigDecimal decimalPercent = BigDecimal.valueOf(percent, CrossRates.PERCENT_SCALE);
+
+            assertEquals(decimalRate.compareTo(threshold) > 0,
+                    AlertCondition.compile(">" + plain).test(AlertCondition.NO_VALUE, rate, percent), () -> rate + " > " + threshold);
+            assertEquals(decimalRate.compareTo(threshold) < 0,
+                    AlertCondition.compile("<" + plain).test(AlertCondition.NO_VALUE, rate, percent), () -> rate + " < " + threshold);
+            assertEquals(decimalPercent.compareTo(threshold) >= 0,
+                    AlertCondition.compile("+" + plain + "%").test(AlertCondition.NO_VALUE, rate, percent), () -> percent + " +" + threshold);
+            assertEquals(decimalPercent.compareTo(threshold.negate()) <= 0,
+                    AlertCondition.compile("-" + plain + "%").test(AlertCondition.NO_VALUE, rate, percent), () -> percent + " -" + threshold);
+        }
+    }
+}
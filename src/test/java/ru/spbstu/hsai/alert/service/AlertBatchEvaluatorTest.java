@@ -0,0 +1,99 @@
+package ru.spbstu.hsai.alert.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.alert.entities.RateChange;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.currency.PairKeyMap;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AlertBatchEvaluatorTest {
+    private static final int PAIRS = 300;
+
+    private final AlertIndex alertIndex = mock(AlertIndex.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AlertBatchEvaluator evaluator = new AlertBatchEvaluator(alertIndex, registry);
+
+    private final PairKeyMap<PairAlerts> alerts = new PairKeyMap<>();
+    private final PairKeyMap<PairChange> changes = new PairKeyMap<>();
+    private final int[] pairKeys = new int[PAIRS];
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(evaluator, "parallelism", 4);
+        ReflectionTestUtils.setField(evaluator, "pairsPerTask", 8);
+        evaluator.start();
+
+        for (int i = 0; i < PAIRS; i++) {
+            String base = CurrencyCode.format(i);
+            int pairKey = PairKey.of(base, "USD");
+            pairKeys[i] = pairKey;
+            // Чат 1 подписан на все пары дважды одним и тем же условием, чат 2 — на каждую третью
+            AlertDBO[] pairAlerts = i % 3 == 0
+                    ? new AlertDBO[]{alert(1L, base, ">1.0"), alert(1L, base, ">1.0"), alert(2L, base, "+5%")}
+                    : new AlertDBO[]{alert(1L, base, ">1.0"), alert(1L, base, ">1.0")};
+            alerts.put(pairKey, PairAlerts.of(pairAlerts));
+            // Курс каждой второй пары не изменился
+            changes.put(pairKey, i % 2 == 0
+                    ? PairChange.of(new RateChange(base, "USD", new BigDecimal("0.9"), new BigDecimal("1.1"),
+                    new BigDecimal("22.22")))
+                    : PairChange.NO_CHANGE);
+        }
+        when(alertIndex.thresholds(anyInt())).thenAnswer(invocation -> {
+            PairAlerts pairAlerts = alerts.get(invocation.getArgument(0));
+            return pairAlerts == null ? PairAlerts.EMPTY : pairAlerts;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        evaluator.stop();
+    }
+
+    @Test
+    void evaluate_ShouldGroupResultsByChatWithoutDuplicates() {
+        StepVerifier.create(evaluator.evaluate(pairKeys,
+                        (pairKey, pairAlerts, results) -> changes.get(pairKey).collectFired(pairAlerts, results)))
+                .assertNext(byChat -> {
+                    assertEquals(2, byChat.size());
+                    // Изменились 150 пар, у каждой две одинаковые записи чата 1
+                    assertEquals(150, byChat.get(1L).size());
+                    // Каждая шестая пара изменилась и подписана чатом 2
+                    assertEquals(50, byChat.get(2L).size());
+                    assertEquals(CurrencyCode.format(0), byChat.get(1L).get(0).getBaseCurrency());
+                })
+                .verifyComplete();
+
+        assertEquals(1, registry.get("alerts.evaluation.refresh").timer().count());
+        assertEquals(200.0, registry.get("alerts.evaluation.fired").counter().count());
+    }
+
+    @Test
+    void evaluate_PairsWithoutAlerts_ShouldReturnEmptyResult() {
+        int[] unknown = {PairKey.of("EUR", "RUB"), PairKey.of("RUB", "EUR")};
+
+        StepVerifier.create(evaluator.evaluate(unknown,
+                        (_, pairAlerts, results) -> PairChange.NO_CHANGE.collectFired(pairAlerts, results)))
+                .assertNext(byChat -> assertEquals(Map.<Long, List<AlertResult>>of(), byChat))
+                .verifyComplete();
+    }
+
+    private static AlertDBO alert(long chatId, String base, String expr) {
+        return new AlertDBO(null, chatId, base, "USD", expr);
+    }
+}
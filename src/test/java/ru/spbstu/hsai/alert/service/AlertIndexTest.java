@@ -0,0 +1,187 @@
+package ru.spbstu.hsai.alert.service;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.alert.dao.AlertDAO;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.rates.SubscribedPairsSDK;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AlertIndexTest {
+    private static final int USD_EUR = PairKey.of("USD", "EUR");
+    private static final int EUR_RUB = PairKey.of("EUR", "RUB");
+
+    private final AlertDAO alertDAO = mock(AlertDAO.class);
+    private final SubscribedPairsSDK subscribedPairs = mock(SubscribedPairsSDK.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AlertIndex index = new AlertIndex(alertDAO, mock(ReactiveMongoTemplate.class), subscribedPairs, registry);
+
+    @Test
+    void rebuild_ShouldGroupAlertsByPair() {
+        AlertDBO first = alert("USD", "EUR");
+        AlertDBO second = alert("USD", "EUR");
+        AlertDBO third = alert("EUR", "RUB");
+        when(alertDAO.findAll()).thenReturn(Flux.just(first, third, second));
+        assertFalse(index.isLoaded());
+
+        StepVerifier.create(index.rebuild())
+                .expectNext(3)
+                .verifyComplete();
+
+        assertTrue(index.isLoaded());
+        assertEquals(2, index.get(USD_EUR).length);
+        assertArrayEquals(new AlertDBO[]{third}, index.get(EUR_RUB));
+        assertEquals(0, index.get(PairKey.of("USD", "JPY")).length);
+        assertEquals(3, index.all().length);
+        assertEquals(3.0, registry.get("alerts.index.size").gauge().value());
+        assertEquals(1, registry.get("alerts.index.rebuild").timer().count());
+        verify(subscribedPairs).replaceAll(argThat(keys -> keys.length == 3));
+    }
+
+    @Test
+    void addAndRemove_ShouldBeIdempotentAndUpdateSubscriptions() {
+        AlertDBO alert = alert("USD", "EUR");
+
+        index.add(alert);
+        // То же уведомление приходит повторно из change stream
+        index.add(alert);
+        assertEquals(1, index.get(USD_EUR).length);
+        verify(subscribedPairs, times(1)).subscribe(USD_EUR);
+
+        index.remove(alert.getId());
+        index.remove(alert.getId());
+        assertEquals(0, index.get(USD_EUR).length);
+        verify(subscribedPairs, times(1)).unsubscribe(USD_EUR);
+    }
+
+    @Test
+    void changeStream_ShouldApplyInsertsUpdatesAndDeletes() {
+        AlertDBO alert = alert("USD", "EUR");
+        index.apply(event(OperationType.INSERT, alert, null));
+        assertEquals(1, index.get(USD_EUR).length);
+
+        AlertDBO moved = new AlertDBO(alert.getId(), alert.getChatId(), "EUR", "RUB", alert.getExpr());
+        index.apply(event(OperationType.UPDATE, moved, null));
+        assertEquals(0, index.get(USD_EUR).length);
+        assertEquals(1, index.get(EUR_RUB).length);
+        verify(subscribedPairs).unsubscribe(USD_EUR);
+        verify(subscribedPairs).subscribe(EUR_RUB);
+
+        index.apply(event(OperationType.DELETE, null, alert.getId()));
+        assertEquals(0, index.size());
+        verify(subscribedPairs).unsubscribe(EUR_RUB);
+    }
+
+    @Test
+    void rebuild_ShouldKeepChangesMadeWhileLoading() {
+        Sinks.Many<AlertDBO> loading = Sinks.many().unicast().onBackpressureBuffer();
+        when(alertDAO.findAll()).thenReturn(loading.asFlux());
+        AlertDBO stored = alert("USD", "EUR");
+        AlertDBO deleted = alert("USD", "EUR");
+        AlertDBO added = alert("EUR", "RUB");
+
+        StepVerifier.create(index.rebuild())
+                .then(() -> {
+                    // Запрос уже прочитал удалённое уведомление, но не видит добавленное
+                    index.add(added);
+                    index.remove(deleted.getId());
+                    loading.tryEmitNext(stored);
+                    loading.tryEmitNext(deleted);
+                    loading.tryEmitComplete();
+                })
+                .expectNext(2)
+                .verifyComplete();
+
+        assertArrayEquals(new AlertDBO[]{stored}, index.get(USD_EUR));
+        assertArrayEquals(new AlertDBO[]{added}, index.get(EUR_RUB));
+        verify(subscribedPairs, never()).unsubscribe(USD_EUR);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void incrementalChanges_ShouldMatchFullRebuild() {
+        Random random = new Random(42L);
+        String[] currencies = {"USD", "EUR", "RUB", "JPY", "GBP"};
+        List<AlertDBO> added = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            if (!added.isEmpty() && random.nextInt(3) == 0) {
+                index.remove(added.remove(random.nextInt(added.size())).getId());
+                continue;
+            }
+            AlertDBO alert = alert(currencies[random.nextInt(5)], currencies[random.nextInt(5)]);
+            if (!added.isEmpty() && random.nextBoolean()) {
+                // Изменение существующего уведомления, возможно с переносом на другую пару
+                AlertDBO previous = added.remove(random.nextInt(added.size()));
+                alert = new AlertDBO(previous.getId(), previous.getChatId(),
+                        alert.getBaseCurrency(), alert.getTargetCurrency(), "<" + random.nextInt(100));
+            }
+            index.add(alert);
+            added.add(alert);
+        }
+
+        AlertIndex rebuilt = new AlertIndex(alertDAO, mock(ReactiveMongoTemplate.class), subscribedPairs,
+                new SimpleMeterRegistry());
+        when(alertDAO.findAll()).thenReturn(Flux.fromIterable(added));
+        StepVerifier.create(rebuilt.rebuild())
+                .expectNext(added.size())
+                .verifyComplete();
+
+        assertEquals(added.size(), index.size());
+        assertArrayEquals(rebuilt.pairKeys(), index.pairKeys());
+        assertEquals(added.size(), index.all().length);
+        for (int pairKey : rebuilt.pairKeys()) {
+            assertEquals(Set.of(rebuilt.get(pairKey)), Set.of(index.get(pairKey)));
+            assertEquals(rebuilt.thresholds(pairKey).size(), index.thresholds(pairKey).size());
+        }
+        for (int i = 1; i < index.all().length; i++) {
+            assertTrue(pairKey(index.all()[i - 1]) <= pairKey(index.all()[i]));
+        }
+    }
+
+    private static int pairKey(AlertDBO alert) {
+        return PairKey.of(alert.getBaseCurrency(), alert.getTargetCurrency());
+    }
+
+    private static ChangeStreamEvent<AlertDBO> event(OperationType type, AlertDBO body, ObjectId deletedId) {
+        ChangeStreamEvent<AlertDBO> event = mock(ChangeStreamEvent.class);
+        when(event.getOperationType()).thenReturn(type);
+        when(event.getBody()).thenReturn(body);
+        if (deletedId != null) {
+            ChangeStreamDocument<Document> raw = mock(ChangeStreamDocument.class);
+            when(raw.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonObjectId(deletedId)));
+            when(event.getRaw()).thenReturn(raw);
+        }
+        return event;
+    }
+
+    private static AlertDBO alert(String base, String target) {
+        return new AlertDBO(ObjectId.get(), 12345L, base, target, ">1.0");
+    }
+}
@@ -1,15 +1,21 @@
 package ru.spbstu.hsai.alert.service;
 
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import ru.spbstu.hsai.alert.dao.AlertDAO;
+import ru.spbstu.hsai.alert.entities.AlertCondition;
 import ru.spbstu.hsai.alert.entities.AlertDBO;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.user.UserDTO;
@@ -31,6 +37,12 @@ public class AlertServiceTest {
     @Mock
     private UserServiceSDK userService;
 
+    @Mock
+    private AlertIndex alertIndex;
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
     @InjectMocks
     private AlertService alertService;
 
@@ -56,6 +68,7 @@ public class AlertServiceTest {
                 .verifyComplete();
 
         verify(alertDAO).save(any(AlertDBO.class));
+        verify(alertIndex).add(newAlert);
     }
 
     @Test
@@ -72,6 +85,61 @@ public class AlertServiceTest {
                 .verify();
     }
 
+    @Test
+    void addAlertShouldStoreCompiledCondition() {
+        // Arrange
+        UserDTO user = new UserDTO(chatId, LocalDateTime.now(), new UserSettings("USD", "USD/EUR"));
+        when(userService.getUserByChatId(chatId)).thenReturn(Mono.just(user));
+        when(alertDAO.save(any(AlertDBO.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        // Act & Assert
+        StepVerifier.create(alertService.addAlert(chatId, "usd/eur", "-3%"))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(alertDAO).save(argThat(alert -> alert.getCondition().equals(
+                new AlertCondition(AlertCondition.Kind.PERCENT, AlertCondition.Direction.DOWN, -300L))));
+    }
+
+    @Test
+    void addAlertInvalidCondition() {
+        // Arrange
+        UserDTO user = new UserDTO(chatId, LocalDateTime.now(), new UserSettings("USD", "USD/EUR"));
+        when(userService.getUserByChatId(chatId)).thenReturn(Mono.just(user));
+
+        // Act & Assert
+        StepVerifier.create(alertService.addAlert(chatId, "USD/EUR", "5%"))
+                .expectErrorMatches(ex ->
+                        ex instanceof CCBException &&
+                                ex.getMessage().contains("Неверный формат условия")
+                )
+                .verify();
+
+        verify(alertDAO, never()).save(any());
+    }
+
+    @Test
+    void backfillConditionsShouldUpdateOnlyMissingConditions() {
+        // Arrange
+        AlertDBO legacy = new AlertDBO();
+        legacy.setId(new ObjectId(alertId));
+        legacy.setExpr(">1.5");
+        when(alertDAO.findByConditionIsNull()).thenReturn(Flux.just(legacy));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(AlertDBO.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        // Act & Assert
+        StepVerifier.create(alertService.backfillConditions())
+                .expectNext(1L)
+                .verifyComplete();
+
+        verify(mongoTemplate).updateFirst(
+                argThat(query -> query.getQueryObject().containsKey("condition")),
+                argThat(update -> update.getUpdateObject().get("$set", Document.class)
+                        .get("condition").equals(AlertCondition.compile(">1.5"))),
+                eq(AlertDBO.class));
+    }
+
     @Test
     void getAllAlertsByChatIdSuccess() {
         // Arrange
@@ -121,6 +189,7 @@ public class AlertServiceTest {
                 .verifyComplete();
 
         verify(alertDAO).delete(alert);
+        verify(alertIndex).remove(alert.getId());
     }
 
     @Test
@@ -0,0 +1,146 @@
+package ru.spbstu.hsai.alert.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.telegram.CurrencyConverterBot;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationDispatcherTest {
+    private final CurrencyConverterBot bot = mock(CurrencyConverterBot.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final NotificationDispatcher dispatcher = new NotificationDispatcher(bot, registry);
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(dispatcher, "messagesPerSecond", 2.0);
+        ReflectionTestUtils.setField(dispatcher, "burst", 2);
+        ReflectionTestUtils.setField(dispatcher, "chatIntervalMs", 1000L);
+        ReflectionTestUtils.setField(dispatcher, "coalesceWindowMs", 500L);
+        ReflectionTestUtils.setField(dispatcher, "maxQueue", 10);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 2);
+        ReflectionTestUtils.setField(dispatcher, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void enqueue_ShouldMergeAlertsOfOneChatWithinWindow() throws TelegramApiException {
+        dispatcher.enqueue(1L, List.of(result(1L, "USD", "EUR")));
+        advance(200);
+        dispatcher.enqueue(1L, List.of(result(1L, "USD", "RUB")));
+
+        dispatcher.tick();
+        verify(bot, never()).sendMessageOrThrow(anyLong(), anyString());
+
+        advance(300);
+        dispatcher.tick();
+
+        verify(bot).sendMessageOrThrow(eq(1L), argThat(text ->
+                text.contains("Сработали уведомления: 2") && text.contains("USD/EUR") && text.contains("USD/RUB")));
+        assertEquals(0, dispatcher.queued());
+        assertEquals(1.0, registry.get("alerts.notifications.sent").counter().count());
+    }
+
+    @Test
+    void tick_ShouldRespectGlobalBucketAndChatInterval() throws TelegramApiException {
+        for (long chatId = 1; chatId <= 4; chatId++) {
+            dispatcher.enqueue(chatId, List.of(result(chatId, "USD", "EUR")));
+        }
+        advance(500);
+
+        dispatcher.tick();
+        verify(bot, times(2)).sendMessageOrThrow(anyLong(), anyString());
+        assertEquals(2.0, registry.get("alerts.notifications.queue").gauge().value());
+
+        // Через полсекунды в bucket появляется один токен
+        advance(500);
+        dispatcher.tick();
+        verify(bot, times(3)).sendMessageOrThrow(anyLong(), anyString());
+
+        // Первый чат получил сообщение меньше секунды назад и ждёт, хотя токен уже есть
+        dispatcher.enqueue(1L, List.of(result(1L, "USD", "JPY")));
+        advance(500);
+        dispatcher.tick();
+        verify(bot).sendMessageOrThrow(eq(4L), anyString());
+        verify(bot, times(1)).sendMessageOrThrow(eq(1L), anyString());
+
+        advance(500);
+        dispatcher.tick();
+        verify(bot, times(2)).sendMessageOrThrow(eq(1L), anyString());
+    }
+
+    @Test
+    void tick_TooManyRequests_ShouldRetryAfterDelay() throws TelegramApiException {
+        TelegramApiRequestException tooManyRequests = mock(TelegramApiRequestException.class);
+        when(tooManyRequests.getErrorCode()).thenReturn(429);
+        when(tooManyRequests.getParameters()).thenReturn(new ResponseParameters(null, 3));
+        doThrow(tooManyRequests).doNothing().when(bot).sendMessageOrThrow(eq(1L), anyString());
+
+        dispatcher.enqueue(1L, List.of(result(1L, "USD", "EUR")));
+        advance(500);
+        dispatcher.tick();
+        assertEquals(1, dispatcher.queued());
+        assertEquals(1.0, registry.get("alerts.notifications.throttled").counter().count());
+
+        advance(2_000);
+        dispatcher.tick();
+        verify(bot, times(1)).sendMessageOrThrow(eq(1L), anyString());
+
+        advance(1_000);
+        dispatcher.tick();
+        verify(bot, times(2)).sendMessageOrThrow(eq(1L), anyString());
+        assertEquals(0, dispatcher.queued());
+        assertEquals(1.0, registry.get("alerts.notifications.sent").counter().count());
+    }
+
+    @Test
+    void failuresAndOverflow_ShouldBeCountedAsDropped() throws TelegramApiException {
+        doThrow(new TelegramApiException("Bad Request")).when(bot).sendMessageOrThrow(eq(1L), anyString());
+        doNothing().when(bot).sendMessageOrThrow(eq(2L), anyString());
+
+        dispatcher.enqueue(1L, List.of(result(1L, "USD", "EUR")));
+        dispatcher.enqueue(2L, Collections.nCopies(12, result(2L, "USD", "RUB")));
+        assertEquals(3.0, registry.get("alerts.notifications.dropped").tag("reason", "queue_full").counter().count());
+
+        advance(500);
+        dispatcher.tick();
+        advance(1_000);
+        dispatcher.tick();
+
+        verify(bot, times(2)).sendMessageOrThrow(eq(1L), anyString());
+        assertEquals(1.0, registry.get("alerts.notifications.dropped").tag("reason", "failed").counter().count());
+        assertEquals(0, dispatcher.queued());
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static AlertResult result(long chatId, String base, String target) {
+        return new AlertResult(chatId, base, target, new BigDecimal("1.2345"), new BigDecimal("5.00"), "Рост на 5,00%");
+    }
+}
@@ -0,0 +1,62 @@
+package ru.spbstu.hsai.alert.service;
+
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.alert.entities.AlertCondition;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.currency.PairKey;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PairAlertsTest {
+    private static final String[] OPERATORS = {">", "<", "+", "-", ""};
+
+    @Test
+    void collectFired_ShouldMatchConditionCheckForEveryAlert() {
+        Random random = new Random(23L);
+        for (int round = 0; round < 500; round++) {
+            AlertDBO[] alerts = new AlertDBO[random.nextInt(60)];
+            for (int i = 0; i < alerts.length; i++) {
+                // Пороги из небольшого диапазона, чтобы чаще совпадали между собой и с курсами
+                String threshold = BigDecimal.valueOf(random.nextInt(40), 1).toPlainString();
+                String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+                String expr = operator.equals("+") || operator.equals("-") || operator.isEmpty()
+                        ? operator + threshold + "%"
+                        : operator + threshold;
+                alerts[i] = new AlertDBO(null, (long) i, "USD", "EUR", expr);
+            }
+            PairAlerts pairAlerts = PairAlerts.of(alerts);
+
+            for (int check = 0; check < 20; check++) {
+                long oldRate = random.nextInt(5) == 0 ? AlertCondition.NO_VALUE : random.nextInt(41) * 100_000L;
+                long newRate = random.nextInt(41) * 100_000L;
+                long percent = random.nextInt(5) == 0 ? AlertCondition.NO_VALUE : (random.nextInt(81) - 40) * 10L;
+
+                // Номер уведомления записан в chatId, поэтому сработавшие сравниваются по чатам
+                Set<Long> expected = new HashSet<>();
+                for (AlertDBO alert : alerts) {
+                    if (alert.getCondition().test(oldRate, newRate, percent)) {
+                        expected.add(alert.getChatId());
+                    }
+                }
+                List<AlertResult> fired = new ArrayList<>();
+                pairAlerts.collectFired(PairKey.of("USD", "EUR"), oldRate, newRate, percent, fired);
+                Set<Long> actual = new HashSet<>();
+                for (AlertResult result : fired) {
+                    actual.add(result.getChatId());
+                }
+
+                assertEquals(expected.size(), fired.size());
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package ru.spbstu.hsai.alert.service;
+
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.alert.entities.AlertDBO;
+import ru.spbstu.hsai.alert.entities.AlertResult;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.rates.FixedPointRates;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PairChangeTest {
+    private static final int CURRENCIES = 100;
+
+    @Test
+    void collectFired_ShouldBuildResultOnlyForFiredAlert() {
+        FixedPointRates oldRates = FixedPointRates.of(Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.9")));
+        FixedPointRates newRates = FixedPointRates.of(Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.99")));
+        int pairKey = PairKey.of("USD", "EUR");
+        PairAlerts alerts = PairAlerts.of(new AlertDBO[]{
+                new AlertDBO(null, 1L, "USD", "EUR", ">0.95"),
+                new AlertDBO(null, 2L, "USD", "EUR", "+20%")
+        });
+
+        List<AlertResult> results = new ArrayList<>();
+        PairChange.collectFired(oldRates, newRates, pairKey, alerts, results);
+
+        assertEquals(1, results.size());
+        AlertResult result = results.get(0);
+        assertEquals(1L, result.getChatId());
+        assertEquals("USD", result.getBaseCurrency());
+        assertEquals("EUR", result.getTargetCurrency());
+        assertEquals(new BigDecimal("0.990000"), result.getNewRate());
+        assertEquals(new BigDecimal("10.00"), result.getChangePercent());
+        assertEquals("Курс превысил 0.95", result.getReason());
+    }
+
+    @Test
+    void collectFired_NoFiredAlerts_ShouldNotAllocatePerPair() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        Map<String, BigDecimal> oldVector = new HashMap<>();
+        Map<String, BigDecimal> newVector = new HashMap<>();
+        for (int i = 0; i < CURRENCIES; i++) {
+            BigDecimal rate = BigDecimal.valueOf(100 + i, 2);
+            oldVector.put(CurrencyCode.format(i), rate);
+            // Все курсы изменились на 0.1%, но ни одно уведомление не срабатывает
+            newVector.put(CurrencyCode.format(i), rate.multiply(new BigDecimal("1.001")));
+        }
+        FixedPointRates oldRates = FixedPointRates.of(oldVector);
+        FixedPointRates newRates = FixedPointRates.of(newVector);
+        PairAlerts alerts = PairAlerts.of(new AlertDBO[]{
+                new AlertDBO(null, 1L, "USD", "EUR", ">1000"),
+                new AlertDBO(null, 2L, "USD", "EUR", "<0.001"),
+                new AlertDBO(null, 3L, "USD", "EUR", "+50%"),
+                new AlertDBO(null, 4L, "USD", "EUR", "-50%")
+        });
+        int[] pairKeys = new int[CURRENCIES * (CURRENCIES - 1)];
+        int next = 0;
+        for (int base = 0; base < CURRENCIES; base++) {
+            for (int target = 0; target < CURRENCIES; target++) {
+                if (base != target) {
+                    pairKeys[next++] = PairKey.of(base, target);
+                }
+            }
+        }
+        List<AlertResult> results = new ArrayList<>();
+
+        // Прогрев, чтобы измерялся скомпилированный код
+        for (int round = 0; round < 50; round++) {
+            collectAll(oldRates, newRates, pairKeys, alerts, results);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        collectAll(oldRates, newRates, pairKeys, alerts, results);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(results.isEmpty());
+        // Меньше байта на пару: объекты на пару не создаются
+        assertTrue(allocated < pairKeys.length, "allocated " + allocated + " bytes for " + pairKeys.length + " pairs");
+    }
+
+    private static void collectAll(FixedPointRates oldRates, FixedPointRates newRates, int[] pairKeys,
+                                   PairAlerts alerts, List<AlertResult> results) {
+        for (int pairKey : pairKeys) {
+            PairChange.collectFired(oldRates, newRates, pairKey, alerts, results);
+        }
+    }
+}
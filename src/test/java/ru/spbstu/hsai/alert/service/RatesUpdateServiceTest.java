@@ -10,9 +10,14 @@ import reactor.test.StepVerifier;
 import ru.spbstu.hsai.alert.dao.AlertDAO;
 import ru.spbstu.hsai.alert.entities.AlertDBO;
 import ru.spbstu.hsai.alert.entities.RateChange;
+import ru.spbstu.hsai.alert.entities.RateVectorChange;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.currency.PairKeyMap;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +26,9 @@ public class RatesUpdateServiceTest {
     @Mock
     private AlertDAO alertDAO;
 
+    @Mock
+    private AlertIndex alertIndex;
+
     @InjectMocks
     private RatesUpdateService ratesUpdateService;
 
@@ -38,7 +46,7 @@ public class RatesUpdateServiceTest {
         StepVerifier.create(ratesUpdateService.processRateChange(event))
                 .expectNextMatches(result ->
                         result.getReason().contains("Курс превысил 1.20") &&
-                                result.getNewRate().equals(new BigDecimal("1.25"))
+                                result.getNewRate().compareTo(new BigDecimal("1.25")) == 0
                 )
                 .verifyComplete();
     }
@@ -73,7 +81,7 @@ public class RatesUpdateServiceTest {
         StepVerifier.create(ratesUpdateService.processRateChange(event))
                 .expectNextMatches(result ->
                         result.getReason().contains("Рост на 6,00%") &&
-                                result.getChangePercent().equals(new BigDecimal("6.0"))
+                                result.getChangePercent().compareTo(new BigDecimal("6.0")) == 0
                 )
                 .verifyComplete();
     }
@@ -92,11 +100,74 @@ public class RatesUpdateServiceTest {
         StepVerifier.create(ratesUpdateService.processRateChange(event))
                 .expectNextMatches(result ->
                         result.getReason().contains("Падение на 4,00%") &&
-                                result.getChangePercent().equals(new BigDecimal("-4.0"))
+                                result.getChangePercent().compareTo(new BigDecimal("-4.0")) == 0
                 )
                 .verifyComplete();
     }
 
+    @Test
+    void loadedIndex_ShouldEvaluateWithoutMongo() {
+        // Arrange
+        RateChange event = new RateChange("USD", "EUR",
+                new BigDecimal("1.18"), new BigDecimal("1.25"), new BigDecimal("6.0"));
+        when(alertIndex.isLoaded()).thenReturn(true);
+        when(alertIndex.thresholds(PairKey.of("USD", "EUR"))).thenReturn(PairAlerts.of(new AlertDBO[]{
+                new AlertDBO(null, 12345L, "USD", "EUR", ">1.20"),
+                new AlertDBO(null, 12345L, "USD", "EUR", ">1.30"),
+                new AlertDBO(null, 12345L, "USD", "EUR", "<1.00")
+        }));
+
+        // Act & Assert
+        StepVerifier.create(ratesUpdateService.processRateChange(event))
+                .expectNextCount(1)
+                .verifyComplete();
+        verifyNoInteractions(alertDAO);
+    }
+
+    @Test
+    void shouldNotTriggerAbsoluteAlertAlreadyAboveThreshold() {
+        // Arrange
+        RateChange event = new RateChange("USD", "EUR",
+                new BigDecimal("1.22"), new BigDecimal("1.25"), new BigDecimal("2.46"));
+
+        AlertDBO alert = createAlert("USD", "EUR", ">1.20");
+        when(alertDAO.findByBaseCurrencyAndTargetCurrency("USD", "EUR"))
+                .thenReturn(Flux.just(alert));
+
+        // Act & Assert
+        StepVerifier.create(ratesUpdateService.processRateChange(event))
+                .expectNextCount(0)
+                .verifyComplete();
+    }
+
+    @Test
+    void loadedIndex_ShouldEvaluateSnapshotPerPair() {
+        // Arrange
+        RateVectorChange change = new RateVectorChange("USD",
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.80"), "RUB", new BigDecimal("90")),
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.84"), "RUB", new BigDecimal("90")));
+        PairKeyMap<PairAlerts> pairs = new PairKeyMap<>();
+        pairs.put(PairKey.of("USD", "EUR"), PairAlerts.of(new AlertDBO[]{
+                new AlertDBO(null, 12345L, "USD", "EUR", "+5%"),
+                new AlertDBO(null, 12345L, "USD", "EUR", ">0.82"),
+                new AlertDBO(null, 12345L, "USD", "EUR", ">0.9")
+        }));
+        pairs.put(PairKey.of("USD", "RUB"), PairAlerts.of(new AlertDBO[]{
+                new AlertDBO(null, 12345L, "USD", "RUB", "-1%")
+        }));
+        when(alertIndex.isLoaded()).thenReturn(true);
+        doAnswer(invocation -> {
+            pairs.forEach(invocation.getArgument(0));
+            return null;
+        }).when(alertIndex).forEachPair(any());
+
+        // Act & Assert
+        StepVerifier.create(ratesUpdateService.processRatesSnapshot(change))
+                .expectNextCount(2)
+                .verifyComplete();
+        verifyNoInteractions(alertDAO);
+    }
+
     @Test
     void shouldHandleMultipleAlerts() {
         // Arrange
@@ -122,4 +193,30 @@ public class RatesUpdateServiceTest {
         alert.setChatId(12345L);
         return alert;
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldExpandSnapshotOnlyForPairsWithAlerts() {
+        // Arrange
+        RateVectorChange change = new RateVectorChange("USD",
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.80"), "RUB", new BigDecimal("90")),
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.84"), "RUB", new BigDecimal("90")));
+
+        when(alertDAO.findAll()).thenReturn(Flux.just(
+                createAlert("USD", "EUR", "+5%"),
+                createAlert("USD", "EUR", ">0.9"),
+                createAlert("USD", "RUB", "-1%")
+        ));
+
+        // Act & Assert
+        StepVerifier.create(ratesUpdateService.processRatesSnapshot(change))
+                .expectNextMatches(result ->
+                        result.getBaseCurrency().equals("USD") &&
+                                result.getTargetCurrency().equals("EUR") &&
+                                result.getNewRate().equals(new BigDecimal("0.840000")) &&
+                                result.getChangePercent().equals(new BigDecimal("5.00"))
+                )
+                .verifyComplete();
+
+        verify(alertDAO, never()).findByBaseCurrencyAndTargetCurrency(any(), any());
+    }
+}
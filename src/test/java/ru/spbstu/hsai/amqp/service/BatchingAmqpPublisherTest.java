@@ -0,0 +1,75 @@
+package ru.spbstu.hsai.amqp.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchingAmqpPublisherTest {
+
+    @Mock
+    private RabbitTemplate rabbitTemplate;
+
+    @Mock
+    private RabbitOperations operations;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BatchingAmqpPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class))).thenAnswer(invocation -> {
+            RabbitOperations.OperationsCallback<?> callback = invocation.getArgument(0);
+            return callback.doInRabbit(operations);
+        });
+        publisher = new BatchingAmqpPublisher(
+                rabbitTemplate, 3, Duration.ofSeconds(5), 16, 1, Duration.ofSeconds(1), meterRegistry
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.destroy();
+    }
+
+    @Test
+    void publish_FullBatch_ShouldSendWithSingleConfirmWait() {
+        StepVerifier.create(Flux.range(0, 3).flatMap(i -> publisher.publish("rates.update", "message-" + i)))
+                .expectComplete()
+                .verify(Duration.ofSeconds(2));
+
+        verify(operations, times(3)).convertAndSend(eq("currency-converter-bot"), eq("rates.update"), anyString());
+        verify(operations, times(1)).waitForConfirmsOrDie(1000L);
+        assertEquals(3.0, meterRegistry.counter("amqp.publisher.published").count());
+        assertEquals(1L, meterRegistry.timer("amqp.publisher.confirm.latency").count());
+    }
+
+    @Test
+    void publish_Nack_ShouldFailCallersAndCountNacks() {
+        doThrow(new AmqpException("nack")).when(operations).waitForConfirmsOrDie(anyLong());
+
+        StepVerifier.create(Flux.range(0, 3).flatMap(i -> publisher.publish("history.save", "message-" + i)))
+                .expectError(AmqpException.class)
+                .verify(Duration.ofSeconds(2));
+
+        assertEquals(3.0, meterRegistry.counter("amqp.publisher.nacked").count());
+        assertEquals(0.0, meterRegistry.counter("amqp.publisher.published").count());
+    }
+}
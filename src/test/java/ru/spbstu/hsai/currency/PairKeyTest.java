@@ -0,0 +1,101 @@
+package ru.spbstu.hsai.currency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PairKeyTest {
+
+    @Test
+    void currencyCode_ShouldRoundTripAndKeepAlphabeticalOrder() {
+        assertEquals(0, CurrencyCode.parse("AAA"));
+        assertEquals(CurrencyCode.COUNT - 1, CurrencyCode.parse("ZZZ"));
+        assertEquals(CurrencyCode.parse("USD"), CurrencyCode.parse("usd"));
+        assertTrue(CurrencyCode.parse("EUR") < CurrencyCode.parse("RUB"));
+        assertEquals("USD", CurrencyCode.format(CurrencyCode.parse("USD")));
+        assertSame(CurrencyCode.format(CurrencyCode.parse("USD")), CurrencyCode.format(CurrencyCode.parse("USD")));
+        assertEquals(CurrencyCode.parse("EUR"), CurrencyCode.parse("1 EUR", 2));
+    }
+
+    @Test
+    void currencyCode_InvalidText_ShouldBeRejected() {
+        for (String text : new String[]{null, "", "US", "USDT", "U$D", "Z1F", "ÜSD", "@AA", "[AA"}) {
+            assertEquals(CurrencyCode.INVALID, CurrencyCode.parse(text), text);
+        }
+        assertEquals(CurrencyCode.INVALID, CurrencyCode.parse("EUR", 1));
+    }
+
+    @Test
+    void pairKey_ShouldParseAndFormat() {
+        int key = PairKey.parse("usd/eur");
+
+        assertEquals(PairKey.of("USD", "EUR"), key);
+        assertEquals("USD/EUR", PairKey.format(key));
+        assertEquals("EUR", CurrencyCode.format(PairKey.target(key)));
+        assertEquals("EUR/USD", PairKey.format(PairKey.inverse(key)));
+        assertTrue(PairKey.of(CurrencyCode.COUNT - 1, CurrencyCode.COUNT - 1) >= 0);
+        assertEquals(PairKey.INVALID, PairKey.parse("USD-EUR"));
+        assertEquals(PairKey.INVALID, PairKey.parse("USD/EU"));
+        assertEquals(PairKey.INVALID, PairKey.of("USD", "E1R"));
+    }
+
+    @Test
+    void pairKeySetAndMap_ShouldMatchHashSet() {
+        Random random = new Random(17576L);
+        Set<Integer> expected = new HashSet<>();
+        PairKeySet set = new PairKeySet();
+        PairKeyMap<String> map = new PairKeyMap<>(4);
+        for (int i = 0; i < 20_000; i++) {
+            int key = PairKey.of(random.nextInt(200), random.nextInt(200));
+            assertEquals(expected.add(key), set.add(key));
+            map.computeIfAbsent(key, PairKey::format);
+        }
+
+        assertEquals(expected.size(), set.size());
+        assertEquals(expected.size(), map.size());
+        for (int i = 0; i < 20_000; i++) {
+            int key = PairKey.of(random.nextInt(300), random.nextInt(300));
+            assertEquals(expected.contains(key), set.contains(key));
+            assertEquals(expected.contains(key) ? PairKey.format(key) : null, map.get(key));
+        }
+        assertFalse(set.contains(PairKey.INVALID));
+        assertNull(map.get(PairKey.INVALID));
+    }
+
+    @Test
+    void pairKeyMap_RemoveAndCopy_ShouldMatchHashMap() {
+        Random random = new Random(703L);
+        Map<Integer, Integer> expected = new HashMap<>();
+        PairKeyMap<Integer> map = new PairKeyMap<>(4);
+        for (int i = 0; i < 50_000; i++) {
+            int key = PairKey.of(random.nextInt(40), random.nextInt(40));
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        PairKeyMap<Integer> copy = map.copy();
+        expected.keySet().stream().findFirst().ifPresent(copy::remove);
+        assertEquals(expected.size(), map.size());
+        assertEquals(Math.max(0, expected.size() - 1), copy.size());
+        for (int base = 0; base < 40; base++) {
+            for (int target = 0; target < 40; target++) {
+                int key = PairKey.of(base, target);
+                assertEquals(expected.get(key), map.get(key));
+            }
+        }
+        assertNull(map.remove(PairKey.INVALID));
+    }
+}
@@ -8,6 +8,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import ru.spbstu.hsai.currency.CurrencyCode;
+import ru.spbstu.hsai.currency.PairKey;
 import ru.spbstu.hsai.exceptions.CCBException;
 import ru.spbstu.hsai.mathcurr.RatesForMathService;
 import ru.spbstu.hsai.user.UserDTO;
@@ -22,7 +24,6 @@ import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -54,7 +55,7 @@ public class MathCurrServiceTest {
         }
 
         public String getCurrency() {
-            return (String) ReflectionTestUtils.getField(termInstance, "currency");
+            return CurrencyCode.format((int) ReflectionTestUtils.getField(termInstance, "currency"));
         }
 
         public String getConverted() {
@@ -71,7 +72,7 @@ public class MathCurrServiceTest {
 
         when(userService.getUserByChatId(anyLong()))
                 .thenReturn(Mono.just(user));
-        when(ratesService.getBigDecimalExchangeRate(eq("USD"), eq("EUR")))
+        when(ratesService.getBigDecimalExchangeRate(PairKey.of("USD", "EUR")))
                 .thenReturn(Mono.just(BigDecimal.valueOf(0.85)));
 
         StepVerifier.create(mathCurrService.processCalculation(1L, expression, targetCurrency))
@@ -88,9 +89,9 @@ public class MathCurrServiceTest {
 
         when(userService.getUserByChatId(anyLong()))
                 .thenReturn(Mono.just(user));
-        when(ratesService.getBigDecimalExchangeRate(eq("JPY"), eq("EUR")))
+        when(ratesService.getBigDecimalExchangeRate(PairKey.of("JPY", "EUR")))
                 .thenReturn(Mono.error(new CCBException(null)));
-        when(ratesService.getBigDecimalExchangeRate(eq("EUR"), eq("JPY")))
+        when(ratesService.getBigDecimalExchangeRate(PairKey.of("EUR", "JPY")))
                 .thenReturn(Mono.error(new CCBException(null)));
 
         StepVerifier.create(mathCurrService.processCalculation(1L, expression, targetCurrency))
@@ -126,18 +127,18 @@ public class MathCurrServiceTest {
         // Создаем экземпляр CurrencyTerm через рефлексию
         UserSettings settings = new UserSettings("USD", "USD/EUR");
         Class<?> termClass = Class.forName("ru.spbstu.hsai.mathcurr.service.MathCurrService$CurrencyTerm");
-        Object term = termClass.getDeclaredConstructors()[0].newInstance("100 USD", 100.0, "USD");
+        Object term = termClass.getDeclaredConstructors()[0].newInstance("100 USD", 100.0, CurrencyCode.parse("USD"));
 
-        when(ratesService.getBigDecimalExchangeRate(eq("USD"), eq("EUR")))
+        when(ratesService.getBigDecimalExchangeRate(PairKey.of("USD", "EUR")))
                 .thenReturn(Mono.just(BigDecimal.valueOf(0.85)));
 
         // Вызываем приватный метод
         Method method = MathCurrService.class.getDeclaredMethod("convertTerm",
-                termClass, String.class, UserSettings.class);
+                termClass, int.class, UserSettings.class);
         method.setAccessible(true);
 
         Mono<?> resultMono = (Mono<?>) method.invoke(
-                mathCurrService, term, "EUR", settings
+                mathCurrService, term, CurrencyCode.parse("EUR"), settings
         );
 
         StepVerifier.create(resultMono)
@@ -0,0 +1,143 @@
+package ru.spbstu.hsai.rates;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Сверяет вычисления с фиксированной точкой с прежними вычислениями через BigDecimal
+ * на случайных курсах (seed фиксирован, чтобы падения воспроизводились)
+ */
+class CrossRatesTest {
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    void crossRate_ShouldMatchBigDecimalOnRandomRates() {
+        Random random = new Random(20240521L);
+        for (int i = 0; i < ITERATIONS; i++) {
+            BigDecimal baseRate = randomRate(random);
+            BigDecimal targetRate = randomRate(random);
+
+            assertEquals(referenceCrossRate(baseRate, targetRate), CrossRates.crossRate(baseRate, targetRate),
+                    () -> targetRate + " / " + baseRate);
+        }
+    }
+
+    @Test
+    void changePercent_ShouldMatchBigDecimalOnRandomRates() {
+        Random random = new Random(42L);
+        for (int i = 0; i < ITERATIONS; i++) {
+            BigDecimal oldRate = randomRate(random);
+            BigDecimal newRate = random.nextBoolean() ? randomRate(random) : nudge(oldRate, random);
+
+            assertEquals(referenceChangePercent(oldRate, newRate), CrossRates.changePercent(oldRate, newRate),
+                    () -> oldRate + " -> " + newRate);
+        }
+    }
+
+    @Test
+    void fixedPointRates_ShouldMatchBigDecimalForWholeVector() {
+        Random random = new Random(7L);
+        for (int round = 0; round < 200; round++) {
+            Map<String, BigDecimal> vector = new HashMap<>();
+            for (int i = 0; i < 40; i++) {
+                vector.put("C" + i, randomVectorRate(random));
+            }
+            FixedPointRates fixed = FixedPointRates.of(vector);
+
+            for (Map.Entry<String, BigDecimal> base : vector.entrySet()) {
+                for (Map.Entry<String, BigDecimal> target : vector.entrySet()) {
+                    long rate = CrossRates.crossRate(fixed.get(base.getKey()), fixed.get(target.getKey()));
+                    assertEquals(referenceCrossRate(base.getValue(), target.getValue()),
+                            FixedPoint.toBigDecimal(rate, CrossRates.RATE_SCALE));
+                }
+            }
+        }
+    }
+
+    @Test
+    void divide_ShouldRoundHalfUpLikeBigDecimal() {
+        Random random = new Random(1L);
+        long[] edges = {0, 1, -1, 2, 3, 7, 8, 10, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE / 10, 999_999_999_999L};
+        for (long dividend : edges) {
+            for (long divisor : edges) {
+                if (divisor != 0) {
+                    assertDivide(dividend, divisor, random.nextInt(FixedPoint.MAX_SCALE + 1));
+                }
+            }
+        }
+        for (int i = 0; i < ITERATIONS; i++) {
+            long dividend = random.nextLong() >> random.nextInt(64);
+            long divisor = random.nextLong() >> random.nextInt(64);
+            if (divisor != 0) {
+                assertDivide(dividend, divisor, random.nextInt(9));
+            }
+        }
+        // Ровно половина округляется от нуля
+        assertEquals(13, FixedPoint.divide(1, 8, 2));
+        assertEquals(-13, FixedPoint.divide(-1, 8, 2));
+    }
+
+    @Test
+    void zeroRates_ShouldBehaveAsBefore() {
+        assertThrows(ArithmeticException.class, () -> CrossRates.crossRate(BigDecimal.ZERO, BigDecimal.ONE));
+        assertThrows(ArithmeticException.class, () -> CrossRates.crossRate(0L, 1L));
+        assertNull(CrossRates.changePercent(new BigDecimal("0.000"), BigDecimal.ONE));
+        assertNull(CrossRates.changePercent(null, BigDecimal.ONE));
+    }
+
+    private static void assertDivide(long dividend, long divisor, int scale) {
+        BigDecimal expected = BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), scale, RoundingMode.HALF_UP);
+        if (expected.unscaledValue().bitLength() > 63) {
+            assertThrows(ArithmeticException.class, () -> FixedPoint.divide(dividend, divisor, scale));
+        } else {
+            assertEquals(expected.unscaledValue().longValueExact(), FixedPoint.divide(dividend, divisor, scale),
+                    () -> dividend + " / " + divisor + " @ " + scale);
+        }
+    }
+
+    /**
+     * Курс как у OpenExchangeRates: от 1e-8 до 1e7, до 12 знаков после запятой
+     */
+    private static BigDecimal randomRate(Random random) {
+        int digits = 1 + random.nextInt(15);
+        long unscaled = 1 + (long) (random.nextDouble() * Math.pow(10, digits));
+        int scale = random.nextInt(13);
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * Курс от 1e-6 до 1e6 с точностью до 12 знаков: весь вектор помещается в long с общим масштабом,
+     * а кросс-курсы в long с масштабом {@link CrossRates#RATE_SCALE}
+     */
+    private static BigDecimal randomVectorRate(Random random) {
+        int scale = random.nextInt(13);
+        int digits = 1 + random.nextInt(Math.min(15, scale + 6));
+        long unscaled = (long) (random.nextDouble() * Math.pow(10, digits));
+        return BigDecimal.valueOf(Math.max(unscaled, FixedPoint.pow10(Math.max(0, scale - 6))), scale);
+    }
+
+    private static BigDecimal nudge(BigDecimal rate, Random random) {
+        BigDecimal step = BigDecimal.ONE.movePointLeft(rate.scale());
+        return rate.add(step.multiply(BigDecimal.valueOf(random.nextInt(2001) - 1000))).max(step);
+    }
+
+    private static BigDecimal referenceCrossRate(BigDecimal baseRate, BigDecimal targetRate) {
+        return targetRate.divide(baseRate, CrossRates.RATE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal referenceChangePercent(BigDecimal oldRate, BigDecimal newRate) {
+        return newRate.subtract(oldRate)
+                .divide(oldRate, 6, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(100))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+}
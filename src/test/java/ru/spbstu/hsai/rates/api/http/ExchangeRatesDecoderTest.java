@@ -0,0 +1,80 @@
+package ru.spbstu.hsai.rates.api.http;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExchangeRatesDecoderTest {
+    private static final String BODY = """
+            {
+              "disclaimer": "Usage subject to terms",
+              "license": "https://openexchangerates.org/license",
+              "timestamp": 1700000000,
+              "base": "USD",
+              "rates": {
+                "USD": 1,
+                "RUB": 91.250013,
+                "EUR": 0.917385,
+                "BTC": 0.000026764185
+              }
+            }
+            """;
+
+    @Test
+    void decode_ChunkedBody_ShouldProduceSortedVector() {
+        StepVerifier.create(ExchangeRatesDecoder.decode(chunks(BODY, 7)))
+                .assertNext(vector -> {
+                    assertEquals(1700000000L, vector.getTimestamp());
+                    assertEquals("USD", vector.getBase());
+                    assertArrayEquals(new String[]{"BTC", "EUR", "RUB", "USD"}, vector.getCurrencies());
+                    assertEquals(new BigDecimal("91.250013"), vector.getRate("RUB"));
+                    assertEquals(new BigDecimal("0.000026764185"), vector.getRate("BTC"));
+                    assertEquals(new BigDecimal("1.0"), vector.getRate("USD"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void decode_ShouldMatchDecodingFromByteArray() {
+        ExchangeRatesVector expected = ExchangeRatesDecoder.decode(BODY.getBytes(StandardCharsets.UTF_8));
+
+        StepVerifier.create(ExchangeRatesDecoder.decode(chunks(BODY, 1)))
+                .assertNext(vector -> {
+                    assertArrayEquals(expected.getCurrencies(), vector.getCurrencies());
+                    assertArrayEquals(expected.getRates(), vector.getRates());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void decode_TruncatedBody_ShouldFail() {
+        StepVerifier.create(ExchangeRatesDecoder.decode(chunks(BODY.substring(0, BODY.length() / 2), 16)))
+                .expectError(DecodingException.class)
+                .verify();
+
+        assertThrows(DecodingException.class, () -> ExchangeRatesDecoder.decode("{\"rates\":{]".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Flux<DataBuffer> chunks(String body, int chunkSize) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            int length = Math.min(chunkSize, bytes.length - i);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.allocateBuffer(length).write(bytes, i, length));
+        }
+        return Flux.fromIterable(buffers);
+    }
+}
@@ -0,0 +1,120 @@
+package ru.spbstu.hsai.rates.api.http;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class OpenExchangeRatesSDKTest {
+    private static final String RATES_BODY = "{\"timestamp\":1700000000,\"base\":\"USD\",\"rates\":{\"USD\":1,\"EUR\":0.9}}";
+
+    private final List<ClientRequest> requests = new ArrayList<>();
+
+    @Test
+    void fetchExchangeRates_ShouldSendValidatorsAndSkipNotModified() {
+        OpenExchangeRatesSDK sdk = sdk(request -> request.headers().getFirst(HttpHeaders.IF_NONE_MATCH) == null
+                ? ratesResponse("\"v1\"")
+                : ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+
+        StepVerifier.create(sdk.fetchExchangeRates())
+                .expectNextMatches(rates -> rates.getTimestamp() == 1700000000L)
+                .verifyComplete();
+        StepVerifier.create(sdk.fetchExchangeRates())
+                .verifyComplete();
+
+        assertNull(requests.get(0).headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+        assertEquals("\"v1\"", requests.get(1).headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    void fetchExchangeRates_SameTimestamp_ShouldSkipUntilInvalidated() {
+        OpenExchangeRatesSDK sdk = sdk(_ -> ratesResponse(null));
+
+        StepVerifier.create(sdk.fetchExchangeRates()).expectNextCount(1).verifyComplete();
+        StepVerifier.create(sdk.fetchExchangeRates()).verifyComplete();
+
+        sdk.invalidateExchangeRates();
+        StepVerifier.create(sdk.fetchExchangeRates()).expectNextCount(1).verifyComplete();
+    }
+
+    @Test
+    void fetchCurrencies_ShouldBeCachedUntilTtlExpires() {
+        AtomicInteger calls = new AtomicInteger();
+        OpenExchangeRatesSDK sdk = sdk(_ -> {
+            calls.incrementAndGet();
+            return ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body("{\"USD\":\"United States Dollar\"}")
+                    .build();
+        });
+
+        StepVerifier.create(sdk.fetchCurrencies()).expectNextCount(1).verifyComplete();
+        StepVerifier.create(sdk.fetchCurrencies()).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void requestCount_ShouldCountRetriesNotModifiedAndCurrencyReloads() {
+        AtomicInteger ratesCalls = new AtomicInteger();
+        OpenExchangeRatesSDK sdk = sdk(request -> {
+            if (request.url().getPath().endsWith("/currencies.json")) {
+                return ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("{\"USD\":\"United States Dollar\"}")
+                        .build();
+            }
+            // Две ошибки сервера, затем курсы, затем 304
+            return switch (ratesCalls.incrementAndGet()) {
+                case 1, 2 -> ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build();
+                case 3 -> ratesResponse("\"v1\"");
+                default -> ClientResponse.create(HttpStatus.NOT_MODIFIED).build();
+            };
+        });
+
+        StepVerifier.create(sdk.fetchCurrencies()).expectNextCount(1).verifyComplete();
+        StepVerifier.create(sdk.fetchCurrencies()).expectNextCount(1).verifyComplete();
+        assertEquals(1, sdk.requestCount());
+
+        StepVerifier.create(sdk.fetchExchangeRates()).expectNextCount(1).verifyComplete();
+        assertEquals(4, sdk.requestCount());
+        StepVerifier.create(sdk.fetchExchangeRates()).verifyComplete();
+        assertEquals(5, sdk.requestCount());
+        assertEquals(requests.size(), sdk.requestCount());
+    }
+
+    private OpenExchangeRatesSDK sdk(Function<ClientRequest, ClientResponse> handler) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requests.add(request);
+                    return Mono.just(handler.apply(request));
+                })
+                .build();
+        return new OpenExchangeRatesSDK("openexchangerates", webClient, "https://openexchangerates.org/api", "key",
+                Duration.ofMinutes(60), Duration.ofSeconds(5));
+    }
+
+    private static ClientResponse ratesResponse(String etag) {
+        ClientResponse.Builder builder = ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(RATES_BODY);
+        if (etag != null) {
+            builder.header(HttpHeaders.ETAG, etag);
+        }
+        return builder.build();
+    }
+}
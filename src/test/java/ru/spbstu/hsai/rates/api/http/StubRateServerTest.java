@@ -0,0 +1,57 @@
+package ru.spbstu.hsai.rates.api.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StubRateServerTest {
+    private StubRateServer server;
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void stubServer_ShouldServeRecordedRatesWithJitter() {
+        server = new StubRateServer("127.0.0.1", 0, Duration.ZERO, 0.5, 0);
+        server.start();
+        OpenExchangeRatesSDK sdk = sdk();
+
+        StepVerifier.create(sdk.fetchCurrencies())
+                .expectNextMatches(currencies -> currencies.size() > 150 && currencies.containsKey("EUR"))
+                .verifyComplete();
+        StepVerifier.create(sdk.fetchExchangeRates())
+                .expectNextMatches(rates -> {
+                    assertEquals("USD", rates.getBase());
+                    assertEquals(1.0, rates.getRates()[rates.indexOf("USD")]);
+                    double eur = rates.getRates()[rates.indexOf("EUR")];
+                    assertTrue(Math.abs(eur / 0.905321 - 1) <= 0.005, () -> "EUR " + eur);
+                    assertNotEquals(0.905321, eur);
+                    return true;
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void stubServer_ShouldAddSyntheticCurrencies() {
+        server = new StubRateServer("127.0.0.1", 0, Duration.ofMillis(5), 0, 500);
+        server.start();
+
+        StepVerifier.create(sdk().fetchExchangeRates())
+                .expectNextMatches(rates -> rates.size() == 500 && rates.indexOf("ZZZ") >= 0)
+                .verifyComplete();
+    }
+
+    private OpenExchangeRatesSDK sdk() {
+        return new OpenExchangeRatesSDK("stub", WebClient.create(), server.baseUrl(), "stub",
+                Duration.ofMinutes(1), Duration.ofSeconds(5));
+    }
+}
@@ -19,12 +19,16 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import ru.spbstu.hsai.history.HistorySDK;
 import ru.spbstu.hsai.rates.entities.CurrencyPairDBO;
+import ru.spbstu.hsai.rates.entities.RateHistoryPoint;
+import ru.spbstu.hsai.rates.service.RateHistoryService;
 import ru.spbstu.hsai.rates.service.RatesServiceImpl;
 import ru.spbstu.hsai.user.UserDTO;
 import ru.spbstu.hsai.user.UserServiceSDK;
 import ru.spbstu.hsai.user.UserSettings;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
@@ -45,6 +49,11 @@ public class ConvertHandlerTest {
             return mock(RatesServiceImpl.class);
         }
 
+        @Bean
+        public RateHistoryService rateHistoryService() {
+            return mock(RateHistoryService.class);
+        }
+
         @Bean
         public UserServiceSDK userService() {
             return mock(UserServiceSDK.class);
@@ -57,15 +66,19 @@ public class ConvertHandlerTest {
 
         @Bean
         public ConvertHandler convertHandler(RatesServiceImpl ratesService,
+                                             RateHistoryService rateHistoryService,
                                              UserServiceSDK userService,
                                              HistorySDK historySDK) {
-            return new ConvertHandler(ratesService, userService, historySDK);
+            return new ConvertHandler(ratesService, rateHistoryService, userService, historySDK);
         }
     }
 
     @Autowired
     private RatesServiceImpl ratesService;
 
+    @Autowired
+    private RateHistoryService rateHistoryService;
+
     @Autowired
     private UserServiceSDK userService;
 
@@ -101,7 +114,7 @@ public class ConvertHandlerTest {
 
     @AfterEach
     void tearDown() {
-        reset(ratesService, userService, historySDK);
+        reset(ratesService, rateHistoryService, userService, historySDK);
     }
 
     @Test
@@ -196,6 +209,40 @@ public class ConvertHandlerTest {
                 .verifyComplete();
     }
 
+    @Test
+    void handleConvertAtDateShouldUseHistoricalRate() {
+        when(historySDK.saveHistory(anyLong(), anyString(), anyString(), anyMap())).thenReturn(Mono.empty());
+        Message message = createMessage("/convert 100 USD EUR at 2026-01-15");
+        UserSettings settings = new UserSettings("EUR", "USD/EUR");
+
+        when(userService.getUserByChatId(chatId)).thenReturn(Mono.just(new UserDTO(chatId, LocalDateTime.now(), settings)));
+        when(rateHistoryService.getRateOn("USD", "EUR", LocalDate.of(2026, 1, 15)))
+                .thenReturn(Mono.just(new RateHistoryPoint(Instant.parse("2026-01-15T23:00:00Z"), new BigDecimal("0.800000"))));
+
+        StepVerifier.create(convertHandler.handle(message))
+                .expectNextMatches(result ->
+                        result.contains("100,00 USD") &&
+                                result.contains("80,00 EUR") &&
+                                result.contains("15.01.2026 23:00"))
+                .verifyComplete();
+
+        verify(ratesService, never()).getExchangeRate(anyString(), anyString());
+        verifyHistorySaved("USD/EUR", 100.0);
+    }
+
+    @Test
+    void handleConvertAtDateWithoutHistoryShouldReturnError() {
+        Message message = createMessage("/convert 100 USD EUR at 2020-01-15");
+        UserSettings settings = new UserSettings("EUR", "USD/EUR");
+
+        when(userService.getUserByChatId(chatId)).thenReturn(Mono.just(new UserDTO(chatId, LocalDateTime.now(), settings)));
+        when(rateHistoryService.getRateOn("USD", "EUR", LocalDate.of(2020, 1, 15))).thenReturn(Mono.empty());
+
+        StepVerifier.create(convertHandler.handle(message))
+                .expectNextMatches(msg -> msg.contains("15.01.2020"))
+                .verifyComplete();
+    }
+
     private Message createMessage(String text) {
         Message message = new Message();
         message.setChat(new Chat(chatId, "private"));
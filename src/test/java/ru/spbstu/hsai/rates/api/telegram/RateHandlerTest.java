@@ -17,12 +17,17 @@ import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import ru.spbstu.hsai.history.HistorySDK;
 import ru.spbstu.hsai.rates.entities.CurrencyPairDBO;
+import ru.spbstu.hsai.rates.entities.RateHistoryPoint;
+import ru.spbstu.hsai.rates.entities.RateHistoryStats;
+import ru.spbstu.hsai.rates.service.RateHistoryService;
 import ru.spbstu.hsai.rates.service.RatesServiceImpl;
 import ru.spbstu.hsai.user.UserDTO;
 import ru.spbstu.hsai.user.UserServiceSDK;
 import ru.spbstu.hsai.user.UserSettings;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
@@ -43,6 +48,11 @@ public class RateHandlerTest {
             return mock(RatesServiceImpl.class);
         }
 
+        @Bean
+        public RateHistoryService rateHistoryService() {
+            return mock(RateHistoryService.class);
+        }
+
         @Bean
         public UserServiceSDK userService() {
             return mock(UserServiceSDK.class);
@@ -55,15 +65,19 @@ public class RateHandlerTest {
 
         @Bean
         public RateHandler rateHandler(RatesServiceImpl ratesService,
+                                       RateHistoryService rateHistoryService,
                                        UserServiceSDK userService,
                                        HistorySDK historySDK) {
-            return new RateHandler(ratesService, userService, historySDK);
+            return new RateHandler(ratesService, rateHistoryService, userService, historySDK);
         }
     }
 
     @Autowired
     private RatesServiceImpl ratesService;
 
+    @Autowired
+    private RateHistoryService rateHistoryService;
+
     @Autowired
     private UserServiceSDK userService;
 
@@ -209,6 +223,79 @@ public class RateHandlerTest {
                 .verifyComplete();
     }
 
+    @Test
+    void handleRateOnDateShouldUseHistory() {
+        when(historySDK.saveHistory(anyLong(), anyString(), anyString(), anyMap())).thenReturn(Mono.empty());
+        Message message = createMessage("/rate GBP/JPY 2026-01-15");
+
+        when(rateHistoryService.getRateOn("GBP", "JPY", LocalDate.of(2026, 1, 15)))
+                .thenReturn(Mono.just(new RateHistoryPoint(Instant.parse("2026-01-15T23:00:00Z"), new BigDecimal("0.912345"))));
+
+        StepVerifier.create(rateHandler.handle(message))
+                .expectNextMatches(result ->
+                        result.contains("GBP/JPY") &&
+                                result.contains("15.01.2026") &&
+                                result.contains("0,9123") &&
+                                result.contains("15.01.2026 23:00"))
+                .verifyComplete();
+
+        verify(ratesService, never()).getExchangeRate("GBP", "JPY");
+        verifyHistorySaved("GBP/JPY", "/rate GBP/JPY 2026-01-15");
+    }
+
+    @Test
+    void handleLowercaseSingleCurrencyOnDateShouldUseUppercaseCode() {
+        when(historySDK.saveHistory(anyLong(), anyString(), anyString(), anyMap())).thenReturn(Mono.empty());
+        Message message = createMessage("/rate eur 2026-01-15");
+        UserSettings settings = new UserSettings("USD", "USD/EUR");
+
+        when(userService.getUserByChatId(chatId)).thenReturn(Mono.just(new UserDTO(12345L, LocalDateTime.now(), settings)));
+        when(rateHistoryService.getRateOn("USD", "EUR", LocalDate.of(2026, 1, 15)))
+                .thenReturn(Mono.just(new RateHistoryPoint(Instant.parse("2026-01-15T23:00:00Z"), new BigDecimal("0.912345"))));
+
+        StepVerifier.create(rateHandler.handle(message))
+                .expectNextMatches(result -> result.contains("USD/EUR") && result.contains("0,9123"))
+                .verifyComplete();
+    }
+
+    @Test
+    void handleRateRangeShouldReturnStats() {
+        when(historySDK.saveHistory(anyLong(), anyString(), anyString(), anyMap())).thenReturn(Mono.empty());
+        Message message = createMessage("/rate USD/EUR 2026-01-01 2026-01-31");
+
+        when(rateHistoryService.getStats("USD", "EUR", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 31)))
+                .thenReturn(Mono.just(new RateHistoryStats(new BigDecimal("0.900000"), new BigDecimal("0.950000"),
+                        new BigDecimal("0.925000"), 744, Instant.parse("2026-01-01T00:00:00Z"), Instant.parse("2026-01-31T23:00:00Z"))));
+
+        StepVerifier.create(rateHandler.handle(message))
+                .expectNextMatches(result ->
+                        result.contains("0,9000") &&
+                                result.contains("0,9500") &&
+                                result.contains("0,9250") &&
+                                result.contains("744"))
+                .verifyComplete();
+    }
+
+    @Test
+    void handleRateRangeWithReversedDatesShouldReturnError() {
+        Message message = createMessage("/rate USD/EUR 2026-02-01 2026-01-01");
+
+        StepVerifier.create(rateHandler.handle(message))
+                .expectNextMatches(msg -> msg.contains("366"))
+                .verifyComplete();
+
+        verify(rateHistoryService, never()).getStats(anyString(), anyString(), eq(LocalDate.of(2026, 2, 1)), any());
+    }
+
+    @Test
+    void handleRateOnInvalidDateShouldReturnFormatError() {
+        Message message = createMessage("/rate USD/EUR 2026-02-30");
+
+        StepVerifier.create(rateHandler.handle(message))
+                .expectNext(errorFormat)
+                .verifyComplete();
+    }
+
     private Message createMessage(String text) {
         Message message = new Message();
         message.setChat(new Chat(chatId, "private"));
@@ -0,0 +1,133 @@
+package ru.spbstu.hsai.rates.api.telegram;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.history.HistorySDK;
+import ru.spbstu.hsai.rates.PairStatsDTO;
+import ru.spbstu.hsai.rates.PairStatsSDK;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(classes = StatsHandlerTest.TestConfig.class)
+public class StatsHandlerTest {
+
+    @Configuration
+    @PropertySource("classpath:command.properties")
+    static class TestConfig {
+        @Bean
+        public PairStatsSDK pairStatsSDK() {
+            return mock(PairStatsSDK.class);
+        }
+
+        @Bean
+        public HistorySDK historySDK() {
+            return mock(HistorySDK.class);
+        }
+
+        @Bean
+        public StatsHandler statsHandler(PairStatsSDK pairStatsSDK, HistorySDK historySDK) {
+            return new StatsHandler(pairStatsSDK, historySDK);
+        }
+    }
+
+    @Autowired
+    private PairStatsSDK pairStatsSDK;
+
+    @Autowired
+    private HistorySDK historySDK;
+
+    @Autowired
+    private StatsHandler statsHandler;
+
+    @Value("${command.stats.error}")
+    private String errorMessage;
+
+    @Value("${command.stats.error.format}")
+    private String errorFormat;
+
+    @Value("${command.stats.error.pair}")
+    private String errorStatsNotFound;
+
+    private final Long chatId = 12345L;
+
+    @AfterEach
+    void tearDown() {
+        reset(pairStatsSDK, historySDK);
+    }
+
+    @Test
+    void handleValidCommandShouldReturnStats() {
+        when(historySDK.saveHistory(anyLong(), anyString(), anyString(), anyMap())).thenReturn(Mono.empty());
+        LocalDateTime hour = LocalDateTime.of(2026, 1, 5, 10, 0);
+        PairStatsDTO stats = new PairStatsDTO("USD", "EUR", List.of(
+                new PairStatsDTO.Bucket("HOUR", false, hour,
+                        new BigDecimal("0.9"), new BigDecimal("0.95"), new BigDecimal("0.85"), new BigDecimal("0.92")),
+                new PairStatsDTO.Bucket("WEEK", true, hour.minusWeeks(1).withHour(0),
+                        new BigDecimal("0.8"), new BigDecimal("0.9"), new BigDecimal("0.8"), new BigDecimal("0.88"))
+        ), new BigDecimal("0.3164"), null, hour.plusMinutes(30));
+        when(pairStatsSDK.getPairStats("USD", "EUR")).thenReturn(Mono.just(stats));
+
+        StepVerifier.create(statsHandler.handle(createMessage("/stats usd/eur")))
+                .expectNextMatches(result ->
+                        result.contains("USD/EUR") &&
+                                result.contains("05.01.2026 10:00") &&
+                                result.contains("29.12.2025") &&
+                                result.contains("0,9500") &&
+                                result.contains("0,8800") &&
+                                result.contains("0,32%") &&
+                                result.contains("—"))
+                .verifyComplete();
+
+        verify(historySDK).saveHistory(eq(chatId), eq("STATS"), eq("USD/EUR"), anyMap());
+    }
+
+    @Test
+    void handleInvalidFormatShouldReturnError() {
+        StepVerifier.create(statsHandler.handle(createMessage("/stats USD")))
+                .expectNext(errorFormat)
+                .verifyComplete();
+    }
+
+    @Test
+    void handleUnknownPairShouldReturnError() {
+        when(pairStatsSDK.getPairStats("USD", "XXX")).thenReturn(Mono.empty());
+
+        StepVerifier.create(statsHandler.handle(createMessage("/stats USD/XXX")))
+                .expectNext(String.format(errorStatsNotFound, "USD/XXX"))
+                .verifyComplete();
+    }
+
+    @Test
+    void handleServiceErrorShouldReturnGenericError() {
+        when(pairStatsSDK.getPairStats("USD", "EUR")).thenReturn(Mono.error(new RuntimeException("boom")));
+
+        StepVerifier.create(statsHandler.handle(createMessage("/stats USD/EUR")))
+                .expectNext(errorMessage)
+                .verifyComplete();
+    }
+
+    private Message createMessage(String text) {
+        Message message = new Message();
+        message.setChat(new Chat(chatId, "private"));
+        message.setText(text);
+        return message;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.entities.CurrencyPairDBO;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveRefreshPolicyTest {
+    // Начало 30-дневного месяца: бюджета в 1000 запросов хватает на обновление раз в 43 минуты
+    private static final Instant NOW = Instant.parse("2026-11-01T00:00:00Z");
+
+    private final AdaptiveRefreshPolicy policy = new AdaptiveRefreshPolicy();
+
+    @Test
+    void afterSuccess_LargeMove_ShouldHalveIntervalWithinBudget() {
+        ReflectionTestUtils.setField(policy, "monthlyCalls", 100_000L);
+
+        assertEquals(Duration.ofMinutes(30), policy.afterSuccess(schedule(Duration.ofHours(1), 1), 2.0, NOW));
+        assertEquals(Duration.ofMinutes(5), policy.afterSuccess(schedule(Duration.ofMinutes(6), 1), 2.0, NOW));
+    }
+
+    @Test
+    void afterSuccess_UnchangedRates_ShouldBackOffUpToMaxInterval() {
+        assertEquals(Duration.ofHours(2), policy.afterSuccess(schedule(Duration.ofHours(1), 1), 0.0, NOW));
+        assertEquals(Duration.ofHours(6), policy.afterSuccess(schedule(Duration.ofHours(5), 1), 0.0, NOW));
+    }
+
+    @Test
+    void afterSuccess_SmallMove_ShouldReturnToBaseInterval() {
+        ReflectionTestUtils.setField(policy, "monthlyCalls", 100_000L);
+
+        assertEquals(Duration.ofMinutes(40), policy.afterSuccess(schedule(Duration.ofMinutes(20), 1), 0.1, NOW));
+        assertEquals(Duration.ofHours(1), policy.afterSuccess(schedule(Duration.ofMinutes(40), 1), 0.1, NOW));
+        assertEquals(Duration.ofHours(2), policy.afterSuccess(schedule(Duration.ofHours(4), 1), 0.1, NOW));
+        assertEquals(Duration.ofHours(1), policy.afterSuccess(RefreshSchedule.NONE, Double.NaN, NOW));
+    }
+
+    @Test
+    void afterFailure_ShouldDoubleInterval() {
+        assertEquals(Duration.ofHours(2), policy.afterFailure(schedule(Duration.ofHours(1), 1), NOW));
+    }
+
+    @Test
+    void budget_ShouldStretchIntervalAndWaitForNextMonthWhenExhausted() {
+        Duration stretched = policy.afterSuccess(schedule(Duration.ofHours(1), 1), 2.0, NOW);
+        assertEquals(Duration.ofDays(30).dividedBy(999), stretched);
+
+        Instant lastDay = Instant.parse("2026-11-30T12:00:00Z");
+        assertEquals(Duration.ofHours(12), policy.afterSuccess(schedule(Duration.ofHours(1), 1000), 2.0, lastDay));
+    }
+
+    @Test
+    void maxMovePercent_ShouldCompareWithPreviousBaseRates() {
+        RateSnapshot previous = RateSnapshot.fromBaseVector("USD",
+                Map.of("EUR", new BigDecimal("0.90"), "JPY", new BigDecimal("150")), LocalDateTime.now());
+        ExchangeRatesVector rates = ExchangeRatesVector.of(1L, "USD",
+                Map.of("EUR", new BigDecimal("0.909"), "JPY", new BigDecimal("150"), "GBP", new BigDecimal("0.75")));
+
+        assertEquals(1.0, AdaptiveRefreshPolicy.maxMovePercent(previous, rates), 1e-9);
+        assertTrue(Double.isNaN(AdaptiveRefreshPolicy.maxMovePercent(RateSnapshot.EMPTY, rates)));
+    }
+
+    @Test
+    void maxMovePercent_SnapshotWithoutBaseVector_ShouldNotUseRoundedPairRates() {
+        // USD/BTC 0.0000093 хранится в паре как 0.000009
+        RateSnapshot fromPairs = RateSnapshot.fromPairs(List.of(
+                new CurrencyPairDBO(null, "USD", "BTC", new BigDecimal("0.000009"), LocalDateTime.now())));
+        ExchangeRatesVector rates = ExchangeRatesVector.of(1L, "USD", Map.of("BTC", new BigDecimal("0.0000093")));
+
+        assertNull(fromPairs.getBaseRate("USD", "BTC"));
+        assertTrue(Double.isNaN(AdaptiveRefreshPolicy.maxMovePercent(fromPairs, rates)));
+    }
+
+    private static RefreshSchedule schedule(Duration interval, long calls) {
+        return new RefreshSchedule(NOW, interval, calls);
+    }
+}
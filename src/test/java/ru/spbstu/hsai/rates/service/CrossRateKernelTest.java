@@ -0,0 +1,117 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.rates.CrossRates;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CrossRateKernelTest {
+    private static final long NO_RATE = RateSnapshot.NO_RATE;
+
+    private final CrossRateKernel scalar = new ScalarCrossRateKernel();
+    private final CrossRateKernel vector = new VectorCrossRateKernel();
+
+    @Test
+    void scalarKernel_ShouldMatchCrossRates() {
+        long[] rates = {1_000_000_000L, 917_385_000L, 91_250_013_000L, 0, NO_RATE};
+        long[] matrix = new long[25];
+
+        scalar.compute(rates, null, 0, matrix, new long[1], null);
+
+        assertEquals(CrossRates.crossRate(rates[1], rates[2]), matrix[1 * 5 + 2]);
+        assertEquals(1_000_000L, matrix[2 * 5 + 2]);
+        assertEquals(0L, matrix[0 * 5 + 3]);
+        assertEquals(NO_RATE, matrix[3 * 5 + 1]);
+        assertEquals(NO_RATE, matrix[1 * 5 + 4]);
+    }
+
+    @Test
+    void vectorKernel_ShouldMatchScalarKernel() {
+        Random random = new Random(170L);
+        for (int round = 0; round < 300; round++) {
+            int n = 1 + random.nextInt(60);
+            long[] rates = randomVector(random, n);
+            long[] previous = new long[n * n];
+            scalar.compute(randomVector(random, n), null, 0, previous, new long[words(n)], null);
+            if (random.nextBoolean()) {
+                // Часть курсов не меняется, чтобы проверить маску
+                long[] current = new long[n * n];
+                scalar.compute(rates, null, 0, current, new long[words(n)], null);
+                for (int i = 0; i < previous.length; i++) {
+                    if (random.nextInt(3) == 0) {
+                        previous[i] = current[i];
+                    }
+                }
+            }
+            long epsilon = random.nextInt(3) == 0 ? random.nextInt(1000) : 0;
+
+            assertSameResult(rates, previous, epsilon);
+            assertSameResult(rates, null, epsilon);
+        }
+    }
+
+    @Test
+    void vectorKernel_ExtremeRates_ShouldFallBackToExactScalar() {
+        // Делители от 2^60, отрицательные курсы и частные от 2^50 считаются поэлементно
+        long[][] vectors = {
+                {(1L << 60) + 1, (1L << 60) + 12_345, 1L << 59, 3L << 58, 1L << 62, -(1L << 59), NO_RATE, 0},
+                {1, 3, 1L << 40, 7, 5, 11, 1L << 30, 999_999, -13},
+        };
+        for (long[] rates : vectors) {
+            long[] shifted = rates.clone();
+            for (int i = 0; i < shifted.length; i += 2) {
+                if (shifted[i] != NO_RATE) {
+                    shifted[i] += Long.signum(shifted[i]);
+                }
+            }
+            long[] previous = new long[rates.length * rates.length];
+            scalar.compute(shifted, null, 0, previous, new long[words(rates.length)], null);
+
+            assertSameResult(rates, previous, 0);
+        }
+    }
+
+    private void assertSameResult(long[] rates, long[] previous, long epsilon) {
+        int n = rates.length;
+        long[] expectedMatrix = new long[n * n];
+        long[] expectedMask = new long[words(n)];
+        long[] expectedPercents = new long[n * n];
+        long[] actualMatrix = new long[n * n];
+        long[] actualMask = new long[words(n)];
+        long[] actualPercents = new long[n * n];
+
+        CrossRateKernel.Result expected = scalar.compute(rates, previous, epsilon, expectedMatrix, expectedMask, expectedPercents);
+        CrossRateKernel.Result actual = vector.compute(rates, previous, epsilon, actualMatrix, actualMask, actualPercents);
+
+        assertEquals(expected, actual);
+        assertArrayEquals(expectedMatrix, actualMatrix);
+        assertArrayEquals(expectedMask, actualMask);
+        assertArrayEquals(expectedPercents, actualPercents);
+    }
+
+    /**
+     * Курсы в масштабе 12 от 1e-6 до 1e6, изредка отсутствующие или нулевые
+     */
+    private static long[] randomVector(Random random, int n) {
+        long[] rates = new long[n];
+        for (int i = 0; i < n; i++) {
+            int kind = random.nextInt(40);
+            if (kind == 0) {
+                rates[i] = NO_RATE;
+            } else if (kind == 1) {
+                rates[i] = 0;
+            } else {
+                rates[i] = 1_000_000L + (long) (Math.pow(10, random.nextDouble() * 12) * random.nextInt(1_000_000));
+            }
+        }
+        return rates;
+    }
+
+    private static int words(int n) {
+        return (n * n + 63) / 64;
+    }
+}
@@ -0,0 +1,181 @@
+package ru.spbstu.hsai.rates.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.rates.api.http.RateProvider;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgedRateSourceTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void fetchExchangeRates_FastPrimary_ShouldNotHedge() {
+        FakeProvider primary = new FakeProvider("primary", Duration.ofMillis(20), rates(1L));
+        FakeProvider secondary = new FakeProvider("secondary", Duration.ZERO, rates(2L));
+        HedgedRateSource source = source(primary, secondary);
+
+        StepVerifier.create(source.fetchExchangeRates())
+                .expectNextMatches(rates -> rates.getTimestamp() == 1L)
+                .verifyComplete();
+
+        assertEquals(0, secondary.calls.get());
+        assertEquals(0, meterRegistry.counter("rates.provider.hedged").count());
+    }
+
+    @Test
+    void fetchExchangeRates_SlowPrimary_ShouldHedgeAfterDelayAndCancelPrimary() {
+        FakeProvider primary = new FakeProvider("primary", Duration.ofSeconds(30), rates(1L));
+        FakeProvider secondary = new FakeProvider("secondary", Duration.ofMillis(20), rates(2L));
+        HedgedRateSource source = source(primary, secondary);
+
+        long start = System.nanoTime();
+        StepVerifier.create(source.fetchExchangeRates())
+                .expectNextMatches(rates -> rates.getTimestamp() == 2L)
+                .verifyComplete();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertTrue(elapsed.compareTo(Duration.ofMillis(220)) >= 0 && elapsed.compareTo(Duration.ofSeconds(5)) < 0,
+                () -> "Hedged response after " + elapsed);
+
+        assertEquals(1, secondary.calls.get());
+        assertTrue(primary.cancelled.get());
+        assertEquals(1, meterRegistry.counter("rates.provider.hedged").count());
+    }
+
+    @Test
+    void fetchExchangeRates_PrimaryError_ShouldHedgeImmediately() {
+        FakeProvider primary = new FakeProvider("primary", Duration.ofMillis(10), null);
+        FakeProvider secondary = new FakeProvider("secondary", Duration.ofMillis(10), rates(2L));
+        HedgedRateSource source = source(primary, secondary);
+
+        // Ошибка первого провайдера не ждёт задержки хеджирования
+        StepVerifier.create(source.fetchExchangeRates())
+                .expectNextMatches(rates -> rates.getTimestamp() == 2L)
+                .expectComplete()
+                .verify(Duration.ofMillis(150));
+    }
+
+    @Test
+    void fetchExchangeRates_PrimaryNotModified_ShouldCompleteEmpty() {
+        FakeProvider primary = new FakeProvider("primary", Duration.ofMillis(10), Mono.empty());
+        FakeProvider secondary = new FakeProvider("secondary", Duration.ZERO, rates(2L));
+        HedgedRateSource source = source(primary, secondary);
+
+        StepVerifier.create(source.fetchExchangeRates())
+                .verifyComplete();
+
+        assertEquals(0, secondary.calls.get());
+    }
+
+    @Test
+    void fetchExchangeRates_AllProvidersFail_ShouldFail() {
+        HedgedRateSource source = source(
+                new FakeProvider("primary", Duration.ZERO, null),
+                new FakeProvider("secondary", Duration.ZERO, null)
+        );
+
+        StepVerifier.create(source.fetchExchangeRates())
+                .expectError()
+                .verify();
+    }
+
+    @Test
+    void hedgeDelay_ShouldFollowP95OfRecordedLatencies() {
+        FakeProvider primary = new FakeProvider("primary", Duration.ZERO, rates(1L));
+        HedgedRateSource source = source(primary, new FakeProvider("secondary", Duration.ZERO, rates(2L)));
+        assertEquals(Duration.ofMillis(200), source.hedgeDelay(0));
+
+        LatencyWindow window = new LatencyWindow(128);
+        for (int i = 1; i <= 100; i++) {
+            window.record(Duration.ofMillis(i * 10L).toNanos());
+        }
+        assertEquals(Duration.ofMillis(950), window.percentile(0.95, 10));
+        assertEquals(null, new LatencyWindow(8).percentile(0.95, 1));
+    }
+
+    @Test
+    void fetchCurrencies_PrimaryError_ShouldFallBack() {
+        FakeProvider primary = new FakeProvider("primary", Duration.ZERO, null);
+        FakeProvider secondary = new FakeProvider("secondary", Duration.ZERO, rates(2L));
+        HedgedRateSource source = source(primary, secondary);
+
+        StepVerifier.create(source.fetchCurrencies())
+                .expectNext(Map.of("USD", "secondary"))
+                .verifyComplete();
+
+        source.invalidateExchangeRates();
+        assertTrue(primary.invalidated.get());
+        assertTrue(secondary.invalidated.get());
+        assertFalse(primary.cancelled.get());
+    }
+
+    private HedgedRateSource source(RateProvider... providers) {
+        return new HedgedRateSource(List.of(providers), Duration.ofMillis(200), Duration.ofMillis(10), meterRegistry);
+    }
+
+    private static Mono<ExchangeRatesVector> rates(long timestamp) {
+        return Mono.just(new ExchangeRatesVector(timestamp, "USD", new String[]{"EUR"}, new double[]{0.9}));
+    }
+
+    /**
+     * Провайдер, отвечающий через заданное время; null вместо ответа означает ошибку
+     */
+    private static final class FakeProvider implements RateProvider {
+        private final String name;
+        private final Duration latency;
+        private final Mono<ExchangeRatesVector> response;
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicBoolean invalidated = new AtomicBoolean();
+
+        FakeProvider(String name, Duration latency, Mono<ExchangeRatesVector> response) {
+            this.name = name;
+            this.latency = latency;
+            this.response = response;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public Mono<Map<String, String>> fetchCurrencies() {
+            return response == null
+                    ? Mono.error(new IllegalStateException(name + " is down"))
+                    : Mono.just(Map.of("USD", name));
+        }
+
+        @Override
+        public Mono<ExchangeRatesVector> fetchExchangeRates() {
+            return Mono.delay(latency)
+                    .doOnSubscribe(_ -> calls.incrementAndGet())
+                    .doOnCancel(() -> cancelled.set(true))
+                    .then(response == null
+                            ? Mono.error(new IllegalStateException(name + " is down"))
+                            : response);
+        }
+
+        @Override
+        public long requestCount() {
+            return calls.get();
+        }
+
+        @Override
+        public void invalidateExchangeRates() {
+            invalidated.set(true);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.rates.PairStatsDTO;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.entities.RateAggregatesDBO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RateAggregationServiceTest {
+    private static final RefreshLease LEASE = new RefreshLease("currency-update", "test", 7);
+    // Понедельник, 2026-01-05 10:00 UTC
+    private static final long MONDAY = LocalDateTime.of(2026, 1, 5, 10, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final long HOUR = 3600;
+
+    private ReactiveMongoTemplate mongoTemplate;
+    private RateAggregationService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(ReactiveMongoTemplate.class);
+        when(mongoTemplate.findAndReplace(any(Query.class), any(RateAggregatesDBO.class), any(FindAndReplaceOptions.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+        service = new RateAggregationService(mongoTemplate);
+    }
+
+    @Test
+    void update_ShouldTrackOhlcAndInvertReversePair() {
+        update(MONDAY, 0.90, 150.0);
+        update(MONDAY + 600, 0.95, 150.0);
+        update(MONDAY + 1200, 0.85, 150.0);
+        update(MONDAY + 1800, 0.92, 150.0);
+
+        PairStatsDTO usdEur = service.stats("USD", "EUR");
+        PairStatsDTO.Bucket hour = bucket(usdEur, "HOUR", false);
+        assertEquals(0, new BigDecimal("0.90").compareTo(hour.getOpen()));
+        assertEquals(0, new BigDecimal("0.95").compareTo(hour.getHigh()));
+        assertEquals(0, new BigDecimal("0.85").compareTo(hour.getLow()));
+        assertEquals(0, new BigDecimal("0.92").compareTo(hour.getClose()));
+        assertEquals(LocalDateTime.of(2026, 1, 5, 10, 0), hour.getStart());
+        assertEquals(LocalDateTime.of(2026, 1, 5, 0, 0), bucket(usdEur, "WEEK", false).getStart());
+
+        PairStatsDTO.Bucket reverse = bucket(service.stats("EUR", "USD"), "DAY", false);
+        assertEquals(1 / 0.90, reverse.getOpen().doubleValue(), 1e-6);
+        assertEquals(1 / 0.85, reverse.getHigh().doubleValue(), 1e-6);
+        assertEquals(1 / 0.95, reverse.getLow().doubleValue(), 1e-6);
+
+        PairStatsDTO.Bucket cross = bucket(service.stats("EUR", "JPY"), "HOUR", false);
+        assertEquals(150.0 / 0.92, cross.getClose().doubleValue(), 1e-6);
+    }
+
+    @Test
+    void update_NewHour_ShouldCloseBucket() {
+        update(MONDAY, 0.90, 150.0);
+        update(MONDAY + 1800, 0.80, 150.0);
+        update(MONDAY + HOUR, 0.70, 150.0);
+
+        PairStatsDTO stats = service.stats("USD", "EUR");
+        PairStatsDTO.Bucket closed = bucket(stats, "HOUR", true);
+        assertEquals(0, new BigDecimal("0.90").compareTo(closed.getOpen()));
+        assertEquals(0, new BigDecimal("0.80").compareTo(closed.getClose()));
+        PairStatsDTO.Bucket current = bucket(stats, "HOUR", false);
+        assertEquals(0, new BigDecimal("0.70").compareTo(current.getOpen()));
+        assertEquals(LocalDateTime.of(2026, 1, 5, 11, 0), current.getStart());
+        // День ещё не закончился
+        assertEquals(0, new BigDecimal("0.90").compareTo(bucket(stats, "DAY", false).getOpen()));
+        assertTrue(stats.getBuckets().stream().noneMatch(b -> b.getPeriod().equals("DAY") && b.isClosed()));
+    }
+
+    @Test
+    void update_ShouldKeepEwmaVarianceOfLogReturns() {
+        update(MONDAY, 1.0, 150.0);
+        assertNull(service.stats("USD", "EUR").getHourlyVolatility());
+
+        update(MONDAY + HOUR, 1.1, 150.0);
+        update(MONDAY + 2 * HOUR, 1.0, 150.0);
+
+        double first = Math.log(1.1);
+        double expected = PairAggregates.LAMBDA * first * first + (1 - PairAggregates.LAMBDA) * first * first;
+        PairStatsDTO stats = service.stats("EUR", "USD");
+        assertEquals(Math.sqrt(expected) * 100, stats.getHourlyVolatility().doubleValue(), 1e-4);
+        assertEquals(Math.sqrt(expected * 24) * 100, stats.getDailyVolatility().doubleValue(), 1e-4);
+    }
+
+    @Test
+    void update_IrregularIntervals_ShouldScaleVarianceByElapsedTime() {
+        update(MONDAY, 1.0, 150.0);
+        update(MONDAY + HOUR / 4, 1.01, 150.0);
+        update(MONDAY + HOUR / 4 + 4 * HOUR, 1.0, 150.0);
+
+        double first = Math.log(1.01);
+        double second = Math.log(1 / 1.01);
+        double decay = Math.pow(PairAggregates.LAMBDA, 4);
+        double expected = decay * (first * first / 0.25) + (1 - decay) * (second * second / 4);
+        PairStatsDTO stats = service.stats("USD", "EUR");
+        assertEquals(Math.sqrt(expected) * 100, stats.getHourlyVolatility().doubleValue(), 1e-4);
+        assertEquals(Math.sqrt(expected * 24) * 100, stats.getDailyVolatility().doubleValue(), 1e-4);
+    }
+
+    @Test
+    void update_SameTimestamp_ShouldNotSaveAgain() {
+        update(MONDAY, 0.90, 150.0);
+        update(MONDAY, 0.50, 150.0);
+
+        verify(mongoTemplate, times(1))
+                .findAndReplace(any(Query.class), any(RateAggregatesDBO.class), any(FindAndReplaceOptions.class));
+        assertEquals(0, new BigDecimal("0.90").compareTo(bucket(service.stats("USD", "EUR"), "HOUR", false).getLow()));
+    }
+
+    @Test
+    void load_ShouldRestoreSavedState() {
+        update(MONDAY, 0.90, 150.0);
+        RateAggregatesDBO saved = service.aggregate(ExchangeRatesVector.of(MONDAY + HOUR, "USD",
+                Map.of("EUR", BigDecimal.valueOf(0.80), "JPY", BigDecimal.valueOf(151.0))));
+
+        RateAggregationService follower = new RateAggregationService(mongoTemplate);
+        when(mongoTemplate.findById(eq("pairs"), eq(RateAggregatesDBO.class))).thenReturn(Mono.just(saved));
+        StepVerifier.create(follower.load()).verifyComplete();
+
+        PairStatsDTO expected = service.stats("JPY", "EUR");
+        assertEquals(expected, follower.stats("JPY", "EUR"));
+        assertEquals(3, saved.getCodes().size());
+        // 3 пары, по 3 периода текущий и прошлый бакеты, последний курс, дисперсия и время курса
+        assertEquals((3 * 2 * 3 * 4 + 3 * 3) * Double.BYTES, saved.getData().length);
+    }
+
+    @Test
+    void update_StateWrittenByNewerLease_ShouldFailAndReloadStoredState() {
+        update(MONDAY, 0.90, 150.0);
+        RateAggregatesDBO stored = service.aggregate(ExchangeRatesVector.of(MONDAY + HOUR, "USD",
+                Map.of("EUR", BigDecimal.valueOf(0.80), "JPY", BigDecimal.valueOf(151.0))));
+        RateAggregationService stale = new RateAggregationService(mongoTemplate);
+        when(mongoTemplate.findAndReplace(any(Query.class), any(RateAggregatesDBO.class), any(FindAndReplaceOptions.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+        when(mongoTemplate.findById(eq("pairs"), eq(RateAggregatesDBO.class))).thenReturn(Mono.just(stored));
+
+        StepVerifier.create(stale.update(ExchangeRatesVector.of(MONDAY + 2 * HOUR, "USD",
+                        Map.of("EUR", BigDecimal.valueOf(0.50), "JPY", BigDecimal.valueOf(150.0))), LEASE))
+                .expectError(CCBException.class)
+                .verify();
+
+        // Локальное состояние устаревшего экземпляра заменено сохранённым
+        assertEquals(service.stats("USD", "EUR"), stale.stats("USD", "EUR"));
+    }
+
+    @Test
+    void update_NewCurrency_ShouldKeepExistingPairs() {
+        update(MONDAY, 0.90, 150.0);
+        service.update(ExchangeRatesVector.of(MONDAY + 600, "USD", Map.of(
+                "EUR", BigDecimal.valueOf(0.95),
+                "GBP", BigDecimal.valueOf(0.75),
+                "JPY", BigDecimal.valueOf(150.0)
+        )), LEASE).block();
+
+        PairStatsDTO.Bucket usdEur = bucket(service.stats("USD", "EUR"), "HOUR", false);
+        assertEquals(0, new BigDecimal("0.90").compareTo(usdEur.getOpen()));
+        assertEquals(0, new BigDecimal("0.95").compareTo(usdEur.getClose()));
+        PairStatsDTO.Bucket gbpEur = bucket(service.stats("GBP", "EUR"), "HOUR", false);
+        assertEquals(gbpEur.getOpen(), gbpEur.getClose());
+        assertNull(service.stats("USD", "CHF"));
+    }
+
+    private void update(long time, double eur, double jpy) {
+        StepVerifier.create(service.update(ExchangeRatesVector.of(time, "USD", Map.of(
+                "EUR", BigDecimal.valueOf(eur),
+                "JPY", BigDecimal.valueOf(jpy)
+        )), LEASE)).verifyComplete();
+    }
+
+    private static PairStatsDTO.Bucket bucket(PairStatsDTO stats, String period, boolean closed) {
+        return stats.getBuckets().stream()
+                .filter(bucket -> bucket.getPeriod().equals(period) && bucket.isClosed() == closed)
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,258 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
+import ru.spbstu.hsai.rates.dao.RateHistoryDAO;
+import ru.spbstu.hsai.rates.entities.RateHistoryBlockDBO;
+import ru.spbstu.hsai.rates.entities.RateHistoryPoint;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RateHistoryServiceTest {
+    private static final RefreshLease LEASE = new RefreshLease("currency-update", "test", 7);
+    // 2026-01-15T00:00:00Z
+    private static final long DAY_START = 1_768_435_200L;
+
+    @Mock
+    private RateHistoryDAO rateHistoryDAO;
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private RateHistoryService historyService;
+
+    @Test
+    void codec_ShouldRoundTripDoublesAndTimestamps() {
+        Random random = new Random(13L);
+        for (int round = 0; round < 500; round++) {
+            int count = 1 + random.nextInt(48);
+            double[] values = new double[count];
+            long[] timestamps = new long[count];
+            for (int i = 0; i < count; i++) {
+                int kind = random.nextInt(4);
+                values[i] = kind == 0 && i > 0 ? values[i - 1]
+                        : kind == 1 ? Double.NaN
+                        : random.nextDouble() * Math.pow(10, random.nextInt(12) - 6);
+                timestamps[i] = DAY_START + i * 3600L + random.nextInt(5);
+            }
+
+            assertArrayEquals(values, RateHistoryCodec.decodeDoubles(RateHistoryCodec.encodeDoubles(values, count), count));
+            assertArrayEquals(timestamps, RateHistoryCodec.decodeTimestamps(RateHistoryCodec.encodeTimestamps(timestamps, count), count));
+        }
+    }
+
+    @Test
+    void append_ShouldSkipAlreadyStoredTimestamp() {
+        RateHistoryBlockDBO block = emptyBlock();
+        assertTrue(RateHistoryService.appendPoint(block, DAY_START, vector(DAY_START, 0.9, 90.0)));
+        when(rateHistoryDAO.findById("2026-01-15")).thenReturn(Mono.just(block));
+
+        StepVerifier.create(historyService.append(vector(DAY_START, 0.91, 91.0), LEASE))
+                .verifyComplete();
+
+        verify(mongoTemplate, never()).findAndReplace(any(Query.class), any(), any(FindAndReplaceOptions.class));
+    }
+
+    @Test
+    void append_ShouldReplaceBlockOnlyIfNotWrittenByNewerLease() {
+        when(rateHistoryDAO.findById("2026-01-15")).thenReturn(Mono.empty());
+        when(mongoTemplate.findAndReplace(any(Query.class), any(RateHistoryBlockDBO.class), any(FindAndReplaceOptions.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(1)));
+
+        StepVerifier.create(historyService.append(vector(DAY_START, 0.91, 91.0), LEASE))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<RateHistoryBlockDBO> block = ArgumentCaptor.forClass(RateHistoryBlockDBO.class);
+        verify(mongoTemplate).findAndReplace(query.capture(), block.capture(), any(FindAndReplaceOptions.class));
+        assertEquals(LEASE.token(), block.getValue().getLeaseToken());
+        assertTrue(query.getValue().getQueryObject().toJson().contains("leaseToken"));
+    }
+
+    @Test
+    void append_BlockWrittenByNewerLease_ShouldFail() {
+        when(rateHistoryDAO.findById("2026-01-15")).thenReturn(Mono.just(emptyBlock()));
+        when(mongoTemplate.findAndReplace(any(Query.class), any(RateHistoryBlockDBO.class), any(FindAndReplaceOptions.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+
+        StepVerifier.create(historyService.append(vector(DAY_START, 0.91, 91.0), LEASE))
+                .expectError(CCBException.class)
+                .verify();
+    }
+
+    @Test
+    void append_NewCurrency_ShouldBackfillEarlierPointsWithNaN() {
+        RateHistoryBlockDBO block = emptyBlock();
+        RateHistoryService.appendPoint(block, DAY_START, ExchangeRatesVector.of(DAY_START, "USD",
+                Map.of("EUR", new BigDecimal("0.9"))));
+        RateHistoryService.appendPoint(block, DAY_START + 3600, vector(DAY_START + 3600, 0.92, 92.0));
+
+        assertEquals(2, block.getCount());
+        double[] rub = RateHistoryCodec.decodeDoubles(block.getSeries().get("RUB"), 2);
+        assertTrue(Double.isNaN(rub[0]));
+        assertEquals(92.0, rub[1]);
+    }
+
+    @Test
+    void getRange_ShouldDeriveCrossRatesWithinRange() {
+        RateHistoryBlockDBO block = emptyBlock();
+        RateHistoryService.appendPoint(block, DAY_START, vector(DAY_START, 0.8, 80.0));
+        RateHistoryService.appendPoint(block, DAY_START + 3600, vector(DAY_START + 3600, 0.9, 90.0));
+        RateHistoryService.appendPoint(block, DAY_START + 7200, vector(DAY_START + 7200, 1.0, 100.0));
+        when(mongoTemplate.find(any(Query.class), eq(RateHistoryBlockDBO.class))).thenReturn(Flux.just(block));
+
+        StepVerifier.create(historyService.getRange("EUR", "RUB",
+                        Instant.ofEpochSecond(DAY_START + 1), Instant.ofEpochSecond(DAY_START + 7200)))
+                .expectNext(new RateHistoryPoint(Instant.ofEpochSecond(DAY_START + 3600), new BigDecimal("100.000000")))
+                .expectNext(new RateHistoryPoint(Instant.ofEpochSecond(DAY_START + 7200), new BigDecimal("100.000000")))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(query.capture(), eq(RateHistoryBlockDBO.class));
+        assertTrue(query.getValue().getFieldsObject().containsKey("series.EUR"));
+        assertFalse(query.getValue().getFieldsObject().containsKey("series"));
+    }
+
+    @Test
+    void getRange_BaseCurrencyOfBlock_ShouldUseUnitRate() {
+        RateHistoryBlockDBO block = emptyBlock();
+        RateHistoryService.appendPoint(block, DAY_START, ExchangeRatesVector.of(DAY_START, "USD",
+                Map.of("EUR", new BigDecimal("0.8"))));
+
+        List<RateHistoryPoint> points = RateHistoryService.crossRates(block, "EUR", "USD", DAY_START, DAY_START);
+
+        assertEquals(List.of(new RateHistoryPoint(Instant.ofEpochSecond(DAY_START), new BigDecimal("1.250000"))), points);
+    }
+
+    @Test
+    void yearOfHourlyUpdates_ShouldStayInLowMegabytes() {
+        // 170 валют, курсы с 6 значащими цифрами, за час меняется около двух третей курсов
+        Random random = new Random(2026L);
+        int currencies = 170;
+        String[] codes = new String[currencies];
+        double[] rates = new double[currencies];
+        for (int i = 0; i < currencies; i++) {
+            codes[i] = String.format("C%03d", i);
+            rates[i] = round(Math.pow(10, random.nextDouble() * 8 - 4));
+        }
+
+        long bytes = 0;
+        for (int day = 0; day < 365; day++) {
+            RateHistoryBlockDBO block = emptyBlock();
+            for (int hour = 0; hour < 24; hour++) {
+                for (int i = 0; i < currencies; i++) {
+                    if (random.nextInt(3) != 0) {
+                        rates[i] = round(rates[i] * (1 + random.nextGaussian() * 0.001));
+                    }
+                }
+                long time = DAY_START + day * 86_400L + hour * 3600L;
+                RateHistoryService.appendPoint(block, time, new ExchangeRatesVector(time, "USD", codes, rates.clone()));
+            }
+            bytes += block.getTimestamps().length;
+            bytes += block.getSeries().values().stream().mapToLong(data -> data.length + 8).sum();
+        }
+
+        assertTrue(bytes < 4L * 1024 * 1024, "history takes " + bytes + " bytes per year");
+    }
+
+    @Test
+    void getRateOn_RecentDay_ShouldBeServedFromMemory() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long dayStart = today.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+        RateHistoryBlockDBO block = blockOf(today, dayStart, 0.8, 0.9);
+        when(mongoTemplate.find(any(Query.class), eq(RateHistoryBlockDBO.class))).thenReturn(Flux.just(block));
+        StepVerifier.create(historyService.loadRecent()).verifyComplete();
+
+        StepVerifier.create(historyService.getRateOn("EUR", "RUB", today))
+                .expectNext(new RateHistoryPoint(Instant.ofEpochSecond(dayStart + 3600), new BigDecimal("100.000000")))
+                .verifyComplete();
+        StepVerifier.create(historyService.getRateOn("EUR", "RUB", today.minusDays(1)))
+                .verifyComplete();
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(RateHistoryBlockDBO.class));
+    }
+
+    @Test
+    void getStats_ShouldCombineOlderBlocksFromMongoWithRecentIndex() {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        LocalDate old = today.minusDays(40);
+        RateHistoryBlockDBO recentBlock = blockOf(today, today.atStartOfDay(ZoneOffset.UTC).toEpochSecond(), 0.8, 0.9);
+        RateHistoryBlockDBO oldBlock = blockOf(old, old.atStartOfDay(ZoneOffset.UTC).toEpochSecond(), 1.0, 1.0);
+        oldBlock.setSeries(new HashMap<>(oldBlock.getSeries()));
+        // В старом блоке EUR/RUB = 120
+        RateHistoryService.appendPoint(oldBlock, old.atStartOfDay(ZoneOffset.UTC).toEpochSecond() + 7200,
+                new ExchangeRatesVector(0L, "USD", new String[]{"EUR", "RUB", "USD"}, new double[]{1.0, 120.0, 1.0}));
+        when(mongoTemplate.find(any(Query.class), eq(RateHistoryBlockDBO.class)))
+                .thenReturn(Flux.just(recentBlock), Flux.just(oldBlock));
+        StepVerifier.create(historyService.loadRecent()).verifyComplete();
+
+        StepVerifier.create(historyService.getStats("EUR", "RUB", old, today))
+                .expectNextMatches(stats -> stats.points() == 5
+                        && stats.min().compareTo(new BigDecimal("100")) == 0
+                        && stats.max().compareTo(new BigDecimal("120")) == 0
+                        && stats.average().compareTo(new BigDecimal("104")) == 0)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(query.capture(), eq(RateHistoryBlockDBO.class));
+        // Из MongoDB читаются только дни до начала индекса
+        assertEquals(today.minusDays(31).toString(),
+                query.getAllValues().get(1).getQueryObject().get("_id", Document.class).get("$lte"));
+    }
+
+    private static RateHistoryBlockDBO blockOf(LocalDate day, long dayStart, double firstEur, double secondEur) {
+        RateHistoryBlockDBO block = new RateHistoryBlockDBO(day.toString(), "USD", 0, new byte[0], new HashMap<>(),
+                null, null);
+        RateHistoryService.appendPoint(block, dayStart, vector(dayStart, firstEur, firstEur * 100));
+        RateHistoryService.appendPoint(block, dayStart + 3600, vector(dayStart + 3600, secondEur, secondEur * 100));
+        return block;
+    }
+
+    private static double round(double value) {
+        return new BigDecimal(value).round(new MathContext(6, RoundingMode.HALF_UP)).doubleValue();
+    }
+
+    private static RateHistoryBlockDBO emptyBlock() {
+        return new RateHistoryBlockDBO("2026-01-15", "USD", 0, new byte[0], new HashMap<>(), null, null);
+    }
+
+    private static ExchangeRatesVector vector(long timestamp, double eur, double rub) {
+        return new ExchangeRatesVector(timestamp, "USD", new String[]{"EUR", "RUB", "USD"}, new double[]{eur, rub, 1.0});
+    }
+}
@@ -0,0 +1,136 @@
+package ru.spbstu.hsai.rates.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateSnapshotHolderTest {
+    private static final LocalDateTime UPDATED = LocalDateTime.of(2025, 5, 21, 12, 0, 0, 123_456_789);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void snapshotFile_ShouldRoundTrip() throws IOException {
+        RateSnapshot snapshot = vectorSnapshot(UPDATED, "91.25");
+        Path path = directory.resolve("rates.bin");
+
+        RateSnapshotFile.write(path, snapshot);
+        RateSnapshot loaded = RateSnapshotFile.read(path);
+
+        assertArrayEquals(snapshot.getCodes(), loaded.getCodes());
+        assertArrayEquals(snapshot.alignedRates(snapshot.getCodes()), loaded.alignedRates(loaded.getCodes()));
+        assertEquals(UPDATED, loaded.getUpdated());
+        assertEquals("USD", loaded.getBaseCurrency());
+        assertEquals(snapshot.getBaseRates(), loaded.getBaseRates());
+        assertEquals(new BigDecimal("91.25"), loaded.getBaseRate("USD", "RUB"));
+    }
+
+    @Test
+    void snapshotFile_Missing_ShouldReturnNull() throws IOException {
+        assertNull(RateSnapshotFile.read(directory.resolve("missing.bin")));
+    }
+
+    @Test
+    void snapshotFile_Corrupted_ShouldBeRejected() throws IOException {
+        Path path = directory.resolve("rates.bin");
+        RateSnapshotFile.write(path, vectorSnapshot(UPDATED, "91.25"));
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+
+        assertThrows(IOException.class, () -> RateSnapshotFile.read(path));
+
+        RateSnapshotHolder holder = holder(path);
+        holder.load();
+        assertSame(RateSnapshot.EMPTY, holder.get());
+    }
+
+    @Test
+    void publish_ShouldPersistSnapshotForNextStart() throws Exception {
+        Path path = directory.resolve("rates.bin");
+        RateSnapshotHolder holder = holder(path);
+        holder.load();
+        holder.publish(vectorSnapshot(UPDATED, "91.25"));
+
+        awaitSaved(path, UPDATED);
+        RateSnapshotHolder restarted = holder(path);
+        restarted.load();
+
+        assertEquals(UPDATED, restarted.get().getUpdated());
+        assertEquals(new BigDecimal("91.25"), restarted.get().getBaseRate("USD", "RUB"));
+    }
+
+    @Test
+    void initialize_ShouldReplaceWarmSnapshotOnlyWithNewerOne() throws Exception {
+        Path path = directory.resolve("rates.bin");
+        RateSnapshotFile.write(path, vectorSnapshot(UPDATED, "91.25"));
+        RateSnapshotHolder holder = holder(path);
+        holder.load();
+        RateSnapshot warm = holder.get();
+
+        holder.initialize(vectorSnapshot(UPDATED.minusHours(1), "90.00"));
+        assertSame(warm, holder.get());
+
+        RateSnapshot newer = vectorSnapshot(UPDATED.plusHours(1), "92.00");
+        holder.initialize(newer);
+        assertSame(newer, holder.get());
+        // Запись асинхронная и должна завершиться до удаления временного каталога
+        awaitSaved(path, newer.getUpdated());
+    }
+
+    @Test
+    void initialize_AfterPublish_ShouldKeepPublishedSnapshot() throws Exception {
+        Path path = directory.resolve("rates.bin");
+        RateSnapshotFile.write(path, vectorSnapshot(UPDATED, "91.25"));
+        RateSnapshotHolder holder = holder(path);
+        holder.load();
+        RateSnapshot published = vectorSnapshot(UPDATED.plusMinutes(1), "91.50");
+        holder.publish(published);
+
+        holder.initialize(vectorSnapshot(UPDATED.plusHours(1), "92.00"));
+
+        assertSame(published, holder.get());
+        awaitSaved(path, published.getUpdated());
+    }
+
+    private static void awaitSaved(Path path, LocalDateTime updated) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            RateSnapshot saved = RateSnapshotFile.read(path);
+            if (saved != null && updated.equals(saved.getUpdated())) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Snapshot updated " + updated + " was not saved");
+    }
+
+    private static RateSnapshotHolder holder(Path path) {
+        RateSnapshotHolder holder = new RateSnapshotHolder();
+        ReflectionTestUtils.setField(holder, "snapshotFile", path.toString());
+        return holder;
+    }
+
+    private static RateSnapshot vectorSnapshot(LocalDateTime updated, String rubRate) {
+        return RateSnapshot.fromBaseVector("USD", Map.of(
+                "USD", BigDecimal.ONE,
+                "EUR", new BigDecimal("0.917385"),
+                "RUB", new BigDecimal(rubRate),
+                "BTC", new BigDecimal("0.000015234567")
+        ), updated);
+    }
+}
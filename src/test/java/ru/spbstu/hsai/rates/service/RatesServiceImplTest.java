@@ -1,30 +1,46 @@
 package ru.spbstu.hsai.rates.service;
 
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.lang3.tuple.Pair;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
+import ru.spbstu.hsai.currency.PairKey;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.rates.FixedPointRates;
 import ru.spbstu.hsai.rates.api.ampq.UpdateCurrenciesSDK;
-import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesDTO;
+import ru.spbstu.hsai.rates.api.http.dto.ExchangeRatesVector;
 import ru.spbstu.hsai.rates.dao.CurrencyDAO;
 import ru.spbstu.hsai.rates.dao.CurrencyPairDAO;
+import ru.spbstu.hsai.rates.dao.RateVectorDAO;
 import ru.spbstu.hsai.rates.entities.CurrencyDBO;
 import ru.spbstu.hsai.rates.entities.CurrencyPairDBO;
+import ru.spbstu.hsai.rates.entities.CurrencyPairIds;
+import ru.spbstu.hsai.rates.entities.RateSnapshot;
+import ru.spbstu.hsai.rates.entities.RateVectorDBO;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 
@@ -34,6 +50,7 @@ import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 public class RatesServiceImplTest {
+    private static final RefreshLease LEASE = new RefreshLease("currency-update", "test", 7);
 
     @Mock
     private UpdateCurrenciesSDK updateCurrenciesSDK;
@@ -47,6 +64,15 @@ public class RatesServiceImplTest {
     @Mock
     private ReactiveMongoTemplate mongoTemplate;
 
+    @Mock
+    private RateVectorDAO rateVectorDAO;
+
+    @Spy
+    private RateSnapshotHolder snapshotHolder = new RateSnapshotHolder();
+
+    @Spy
+    private SubscribedPairs subscribedPairs = new SubscribedPairs(new SimpleMeterRegistry());
+
     @InjectMocks
     private RatesServiceImpl ratesService;
 
@@ -61,13 +87,13 @@ public class RatesServiceImplTest {
         CurrencyPairDBO pair = new CurrencyPairDBO(
                 null, "USD", "EUR", BigDecimal.valueOf(0.9), LocalDateTime.now()
         );
-        Map<String, BigDecimal> rates = Map.of(
+        FixedPointRates rates = FixedPointRates.of(Map.of(
                 "USD", BigDecimal.ONE,
                 "EUR", BigDecimal.valueOf(0.85)
-        );
+        ));
 
         // Act
-        Method method = RatesServiceImpl.class.getDeclaredMethod("calculateCrossRate", CurrencyPairDBO.class, Map.class);
+        Method method = RatesServiceImpl.class.getDeclaredMethod("calculateCrossRate", CurrencyPairDBO.class, FixedPointRates.class);
         method.setAccessible(true);
 
         Pair<CurrencyPairDBO, BigDecimal> result = ((Mono<Pair<CurrencyPairDBO, BigDecimal>>) method.invoke(ratesService, pair, rates)).block();
@@ -77,20 +103,191 @@ public class RatesServiceImplTest {
     }
 
     @Test
-    void processPairUpdate_ShouldUpdateDatabase() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    void processPairBatch_ShouldIssueSingleBulkWrite() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         // Arrange
-        CurrencyPairDBO pair = new CurrencyPairDBO(
-                null, "USD", "EUR", BigDecimal.valueOf(0.9), LocalDateTime.now()
+        CurrencyPairDBO usdEur = new CurrencyPairDBO(
+                ObjectId.get(), "USD", "EUR", BigDecimal.valueOf(0.9), LocalDateTime.now()
         );
-        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(CurrencyPairDBO.class))).thenReturn(Mono.empty());
-        when(mongoTemplate.findOne(any(), any())).thenReturn(Mono.just(pair));
+        CurrencyPairDBO eurUsd = new CurrencyPairDBO(
+                ObjectId.get(), "EUR", "USD", BigDecimal.valueOf(1.1), LocalDateTime.now()
+        );
+        ReactiveBulkOperations bulkOps = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 2, 2, 0, List.of(), List.of())));
 
-        Method method = RatesServiceImpl.class.getDeclaredMethod("processPairUpdate", Pair.class);
+        Method method = RatesServiceImpl.class.getDeclaredMethod("processPairBatch", List.class, RefreshLease.class);
         method.setAccessible(true);
 
         // Act & Assert
-        StepVerifier.create((Mono<Pair<CurrencyPairDBO, BigDecimal>>) method.invoke(ratesService, Pair.of(pair, BigDecimal.valueOf(0.8))))
-                                .verifyComplete();
+        List<Pair<CurrencyPairDBO, BigDecimal>> batch = List.of(
+                Pair.of(usdEur, BigDecimal.valueOf(0.8)),
+                Pair.of(eurUsd, BigDecimal.valueOf(1.2))
+        );
+        StepVerifier.create((Flux<Pair<CurrencyPairDBO, BigDecimal>>) method.invoke(ratesService, batch, LEASE))
+                .expectNextSequence(batch)
+                .verifyComplete();
+
+        verify(bulkOps, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOps, times(1)).execute();
+        verify(mongoTemplate, never()).findOne(any(), any());
+    }
+
+    @Test
+    void processPairBatch_PairsWrittenByNewerLease_ShouldFail() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+        // Arrange
+        CurrencyPairDBO usdEur = new CurrencyPairDBO(
+                ObjectId.get(), "USD", "EUR", BigDecimal.valueOf(0.9), LocalDateTime.now()
+        );
+        ReactiveBulkOperations bulkOps = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of())));
+        when(mongoTemplate.exists(any(Query.class), eq(CurrencyPairDBO.class))).thenReturn(Mono.just(true));
+
+        Method method = RatesServiceImpl.class.getDeclaredMethod("processPairBatch", List.class, RefreshLease.class);
+        method.setAccessible(true);
+
+        // Act & Assert
+        List<Pair<CurrencyPairDBO, BigDecimal>> batch = List.of(Pair.of(usdEur, BigDecimal.valueOf(0.8)));
+        StepVerifier.create((Flux<Pair<CurrencyPairDBO, BigDecimal>>) method.invoke(ratesService, batch, LEASE))
+                .expectErrorMatches(ex -> ex instanceof CCBException && ex.getMessage().contains("token 7"))
+                .verify();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOps).updateOne(query.capture(), update.capture());
+        assertTrue(query.getValue().getQueryObject().toJson().contains("leaseToken"));
+        assertEquals(7L, update.getValue().getUpdateObject().get("$set", Document.class).get("leaseToken"));
+    }
+
+    @Test
+    void updateCurrencyPairs_PairsMode_ShouldWriteInConfiguredBatches() {
+        // Arrange
+        ReflectionTestUtils.setField(ratesService, "bulkBatchSize", 2);
+        ReflectionTestUtils.setField(ratesService, "bulkConcurrency", 2);
+        ReflectionTestUtils.setField(ratesService, "notificationMode", RatesNotificationMode.PAIRS);
+        when(currencyPairDAO.findAll()).thenReturn(Flux.just(
+                new CurrencyPairDBO(ObjectId.get(), "USD", "USD", BigDecimal.ONE, LocalDateTime.now()),
+                new CurrencyPairDBO(ObjectId.get(), "USD", "EUR", new BigDecimal("0.90"), LocalDateTime.now()),
+                new CurrencyPairDBO(ObjectId.get(), "EUR", "USD", new BigDecimal("1.10"), LocalDateTime.now())
+        ));
+        ReactiveBulkOperations bulkOps = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 2, 2, 0, List.of(), List.of())));
+        when(updateCurrenciesSDK.sendUpdateNotification(any(), any(), any())).thenReturn(Mono.empty());
+        ExchangeRatesVector response = ExchangeRatesVector.of(null, "USD",
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.80")));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectNextMatches(snapshot -> snapshot.getRate("USD", "EUR").equals(new BigDecimal("0.800000")))
+                .verifyComplete();
+
+        // USD/USD не изменилась и не записывается
+        verify(mongoTemplate, times(1)).bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class);
+        verify(bulkOps, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(updateCurrenciesSDK, times(2)).sendUpdateNotification(any(), any(), any());
+    }
+
+    @Test
+    void updateCurrencyPairs_PairsMode_ShouldNotifyOnlySubscribedPairs() {
+        // Arrange
+        ReflectionTestUtils.setField(ratesService, "bulkBatchSize", 10);
+        ReflectionTestUtils.setField(ratesService, "bulkConcurrency", 1);
+        ReflectionTestUtils.setField(ratesService, "notificationMode", RatesNotificationMode.PAIRS);
+        subscribedPairs.replaceAll(new int[]{PairKey.of("EUR", "USD")});
+        when(currencyPairDAO.findAll()).thenReturn(Flux.just(
+                new CurrencyPairDBO(ObjectId.get(), "USD", "EUR", new BigDecimal("0.90"), LocalDateTime.now()),
+                new CurrencyPairDBO(ObjectId.get(), "EUR", "USD", new BigDecimal("1.10"), LocalDateTime.now())
+        ));
+        ReactiveBulkOperations bulkOps = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 2, 2, 0, List.of(), List.of())));
+        when(updateCurrenciesSDK.sendUpdateNotification(any(), any(), any())).thenReturn(Mono.empty());
+        ExchangeRatesVector response = ExchangeRatesVector.of(null, "USD",
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.80")));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // Обе пары записываются, событие отправляется только по паре с уведомлением
+        verify(bulkOps, times(2)).updateOne(any(Query.class), any(Update.class));
+        verify(updateCurrenciesSDK, times(1)).sendUpdateNotification(any(), any(), any());
+    }
+
+    @Test
+    void updateCurrencyPairs_SnapshotModeWithoutPreviousVector_ShouldNotifyPairs() {
+        // Arrange: снимок после перезапуска загружен из currency_pairs и не хранит вектор курсов
+        ReflectionTestUtils.setField(ratesService, "bulkBatchSize", 10);
+        ReflectionTestUtils.setField(ratesService, "bulkConcurrency", 1);
+        subscribedPairs.replaceAll(new int[]{PairKey.of("USD", "BTC")});
+        CurrencyPairDBO usdBtc = new CurrencyPairDBO(ObjectId.get(), "USD", "BTC",
+                new BigDecimal("0.000009"), LocalDateTime.now());
+        snapshotHolder.publish(RateSnapshot.fromPairs(List.of(usdBtc)));
+        when(currencyPairDAO.findAll()).thenReturn(Flux.just(usdBtc));
+        ReactiveBulkOperations bulkOps = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyPairDBO.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 1, 1, 0, List.of(), List.of())));
+        when(updateCurrenciesSDK.sendUpdateNotification(any(), any(), any())).thenReturn(Mono.empty());
+        ExchangeRatesVector response = ExchangeRatesVector.of(null, "USD",
+                Map.of("USD", BigDecimal.ONE, "BTC", new BigDecimal("0.0000103")));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectNextMatches(snapshot -> snapshot.hasBaseRates("USD"))
+                .verifyComplete();
+
+        // Старый вектор из округлённых курсов пар не отправляется
+        verify(updateCurrenciesSDK, never()).sendSnapshotNotification(any(), any(), any(), any(), any());
+        verify(updateCurrenciesSDK, times(1)).sendUpdateNotification(any(), any(), any());
+    }
+
+    @Test
+    void updateCurrencyPairs_VectorWrittenByNewerLease_ShouldFailWithoutSaving() {
+        // Arrange
+        ReflectionTestUtils.setField(ratesService, "storageMode", RatesStorageMode.VECTOR);
+        when(rateVectorDAO.existsByLeaseTokenGreaterThan(LEASE.token())).thenReturn(Mono.just(true));
+        ExchangeRatesVector response = ExchangeRatesVector.of(1700000000L, "USD", Map.of(
+                "USD", BigDecimal.ONE,
+                "EUR", new BigDecimal("0.80")
+        ));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectError(CCBException.class)
+                .verify();
+
+        verify(rateVectorDAO, never()).save(any(RateVectorDBO.class));
+        verifyNoInteractions(updateCurrenciesSDK);
+    }
+
+    @Test
+    void updateCurrencyPairs_VectorMode_NoSubscribedChanges_ShouldSkipEvents() {
+        // Arrange
+        ReflectionTestUtils.setField(ratesService, "storageMode", RatesStorageMode.VECTOR);
+        subscribedPairs.replaceAll(new int[]{PairKey.of("RUB", "USD")});
+        snapshotHolder.publish(RateSnapshot.fromBaseVector("USD", Map.of(
+                "USD", BigDecimal.ONE,
+                "EUR", new BigDecimal("0.90"),
+                "RUB", new BigDecimal("90")
+        ), LocalDateTime.now()));
+        ExchangeRatesVector response = ExchangeRatesVector.of(1700000000L, "USD", Map.of(
+                "USD", BigDecimal.ONE,
+                "EUR", new BigDecimal("0.80"),
+                "RUB", new BigDecimal("90")
+        ));
+        when(rateVectorDAO.existsByLeaseTokenGreaterThan(LEASE.token())).thenReturn(Mono.just(false));
+        when(rateVectorDAO.save(any(RateVectorDBO.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        // Вектор изменился и сохраняется, но пара с уведомлением осталась прежней
+        verify(rateVectorDAO, times(1)).save(any(RateVectorDBO.class));
+        verify(updateCurrenciesSDK, never()).sendSnapshotNotification(any(), any(), any(), any(), any());
     }
 
     @Test
@@ -126,7 +323,7 @@ public class RatesServiceImplTest {
 
         // Act & Assert
         StepVerifier.create(ratesService.getCurrencyPairId("USD", "EUR"))
-                .expectNext(pair.getCurrencyPairId())
+                .expectNext(CurrencyPairIds.of("USD", "EUR"))
                 .verifyComplete();
     }
 
@@ -154,4 +351,128 @@ public class RatesServiceImplTest {
                 .expectNext("USD/EUR")
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    void getExchangeRate_ShouldReadFromSnapshotWithoutMongo() {
+        // Arrange
+        ObjectId pairId = CurrencyPairIds.of("USD", "EUR");
+        snapshotHolder.publish(RateSnapshot.fromPairs(List.of(
+                new CurrencyPairDBO(pairId, "USD", "EUR", new BigDecimal("0.921455"), LocalDateTime.now()),
+                new CurrencyPairDBO(ObjectId.get(), "EUR", "USD", new BigDecimal("1.085240"), LocalDateTime.now())
+        )));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.getExchangeRate("USD", "EUR"))
+                .expectNextMatches(pair -> pair.getCurrencyPairId().equals(pairId)
+                        && pair.getCurrentRate().equals(new BigDecimal("0.921455")))
+                .verifyComplete();
+        StepVerifier.create(ratesService.getBigDecimalExchangeRate("USD", "JPY"))
+                .verifyComplete();
+        StepVerifier.create(ratesService.getDefaultPairString(pairId))
+                .expectNext("USD/EUR")
+                .verifyComplete();
+        StepVerifier.create(ratesService.isCurrencyExists("EUR"))
+                .expectNext(true)
+                .verifyComplete();
+
+        verifyNoInteractions(currencyPairDAO, currencyDAO);
+    }
+
+    @Test
+    void updateCurrencyPairs_VectorMode_ShouldPersistSingleDocument() {
+        // Arrange
+        ReflectionTestUtils.setField(ratesService, "storageMode", RatesStorageMode.VECTOR);
+        snapshotHolder.publish(RateSnapshot.fromBaseVector("USD", Map.of(
+                "USD", BigDecimal.ONE,
+                "EUR", new BigDecimal("0.90")
+        ), LocalDateTime.now()));
+        ExchangeRatesVector response = ExchangeRatesVector.of(1700000000L, "USD", Map.of(
+                "USD", BigDecimal.ONE,
+                "EUR", new BigDecimal("0.80")
+        ));
+        when(rateVectorDAO.existsByLeaseTokenGreaterThan(LEASE.token())).thenReturn(Mono.just(false));
+        when(rateVectorDAO.save(any(RateVectorDBO.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+        when(updateCurrenciesSDK.sendSnapshotNotification(any(), any(), any(), any(), any())).thenReturn(Mono.empty());
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectNextMatches(snapshot -> snapshot.getRate("EUR", "USD").equals(new BigDecimal("1.250000"))
+                        && snapshot.getRate("USD", "EUR").equals(new BigDecimal("0.800000")))
+                .verifyComplete();
+
+        verify(rateVectorDAO, times(1)).save(any(RateVectorDBO.class));
+        verify(updateCurrenciesSDK, times(1)).sendSnapshotNotification(
+                eq("USD"),
+                eq(List.of("EUR", "USD")),
+                eq(List.of(new BigDecimal("0.90"), BigDecimal.ONE)),
+                // курсы из вектора восстанавливаются по double в кратчайшей десятичной записи
+                eq(List.of(new BigDecimal("0.8"), new BigDecimal("1.0"))),
+                any()
+        );
+        verify(updateCurrenciesSDK, never()).sendUpdateNotification(any(), any(), any());
+        verifyNoInteractions(currencyPairDAO, mongoTemplate);
+    }
+
+    @Test
+    void getDefaultPairString_StableId_ShouldDecodeWithoutMongo() {
+        StepVerifier.create(ratesService.getDefaultPairString(CurrencyPairIds.of("RUB", "CNY")))
+                .expectNext("RUB/CNY")
+                .verifyComplete();
+
+        verifyNoInteractions(currencyPairDAO);
+    }
+
+    @Test
+    void updateCurrencyPairs_ChangesWithinEpsilon_ShouldSkipWritesAndEvents() {
+        // Arrange
+        ReflectionTestUtils.setField(ratesService, "changeEpsilon", new BigDecimal("0.000010"));
+        ReflectionTestUtils.setField(ratesService, "bulkBatchSize", 100);
+        ReflectionTestUtils.setField(ratesService, "bulkConcurrency", 1);
+        when(currencyPairDAO.findAll()).thenReturn(Flux.just(
+                new CurrencyPairDBO(ObjectId.get(), "USD", "EUR", new BigDecimal("0.800005"), LocalDateTime.now()),
+                new CurrencyPairDBO(ObjectId.get(), "EUR", "USD", new BigDecimal("1.249990"), LocalDateTime.now())
+        ));
+        ExchangeRatesVector response = ExchangeRatesVector.of(null, "USD",
+                Map.of("USD", BigDecimal.ONE, "EUR", new BigDecimal("0.80")));
+
+        // Act & Assert
+        StepVerifier.create(ratesService.updateCurrencyPairs(response, LEASE))
+                .expectNextMatches(snapshot -> snapshot.getRate("EUR", "USD").equals(new BigDecimal("1.250000")))
+                .verifyComplete();
+
+        verifyNoInteractions(mongoTemplate, updateCurrenciesSDK);
+    }
+
+    @Test
+    void updateCurrencyData_ShouldSkipUnchangedListAndCreateOnlyNewPairs() {
+        // Arrange
+        ReactiveBulkOperations bulkOps = mock(ReactiveBulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, CurrencyDBO.class)).thenReturn(bulkOps);
+        when(bulkOps.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of())));
+        when(currencyPairDAO.findAll()).thenReturn(Flux.empty());
+        when(currencyPairDAO.saveAll(anyList())).thenAnswer(inv -> Flux.fromIterable(inv.getArgument(0)));
+        Map<String, String> initial = Map.of("USD", "US Dollar", "EUR", "Euro");
+        Map<String, String> extended = Map.of("USD", "US Dollar", "EUR", "Euro", "RUB", "Russian Ruble");
+
+        // Act & Assert: первое обновление, затем тот же список, затем новая валюта
+        when(currencyDAO.findAll()).thenReturn(Flux.just(
+                new CurrencyDBO("USD", "US Dollar", LocalDateTime.now()),
+                new CurrencyDBO("EUR", "Euro", LocalDateTime.now())
+        ));
+        StepVerifier.create(ratesService.updateCurrencyData(initial)).verifyComplete();
+        clearInvocations(currencyDAO, currencyPairDAO, mongoTemplate, bulkOps);
+
+        StepVerifier.create(ratesService.updateCurrencyData(initial)).verifyComplete();
+        verifyNoInteractions(currencyDAO, currencyPairDAO, mongoTemplate);
+
+        StepVerifier.create(ratesService.updateCurrencyData(extended)).verifyComplete();
+
+        ArgumentCaptor<List<CurrencyPairDBO>> pairsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(currencyPairDAO).saveAll(pairsCaptor.capture());
+        verify(currencyPairDAO, never()).findAll();
+        assertEquals(5, pairsCaptor.getValue().size());
+        assertTrue(pairsCaptor.getValue().stream()
+                .allMatch(pair -> pair.getBaseCurrency().equals("RUB") || pair.getTargetCurrency().equals("RUB")));
+        verify(bulkOps, times(3)).upsert(any(Query.class), any(Update.class));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.spbstu.hsai.rates.service;
+
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import ru.spbstu.hsai.exceptions.CCBException;
+import ru.spbstu.hsai.rates.entities.RefreshLeaseDBO;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RefreshLeaseServiceTest {
+
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @InjectMocks
+    private RefreshLeaseService leaseService;
+
+    @Test
+    void tryAcquire_FreeLease_ShouldIncrementToken() {
+        ReflectionTestUtils.setField(leaseService, "owner", "node-1");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RefreshLeaseDBO.class)))
+                .thenReturn(Mono.just(new RefreshLeaseDBO("job", "node-1", 8L, Instant.now(), null, null, null, null, null)));
+
+        StepVerifier.create(leaseService.tryAcquire("job"))
+                .expectNext(new RefreshLease("job", "node-1", 8L))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(query.capture(), update.capture(), options.capture(), eq(RefreshLeaseDBO.class));
+        assertEquals("job", query.getValue().getQueryObject().get("_id"));
+        assertEquals(1L, update.getValue().getUpdateObject().get("$inc", Document.class).get("token"));
+        assertEquals(true, options.getValue().isUpsert());
+    }
+
+    @Test
+    void tryAcquire_LeaseHeldByOtherNode_ShouldBeEmpty() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RefreshLeaseDBO.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        StepVerifier.create(leaseService.tryAcquire("job"))
+                .verifyComplete();
+    }
+
+    @Test
+    void renew_TokenChanged_ShouldFailFencingCheck() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RefreshLeaseDBO.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        StepVerifier.create(leaseService.renew(new RefreshLease("job", "node-1", 3L)))
+                .expectError(CCBException.class)
+                .verify();
+    }
+
+    @Test
+    void complete_LeaseHeld_ShouldReturnCompletionTime() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RefreshLeaseDBO.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(leaseService.complete(new RefreshLease("job", "node-1", 3L), Duration.ofMinutes(30)))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(RefreshLeaseDBO.class));
+        assertEquals(3L, query.getValue().getQueryObject().get("token"));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertEquals(1800L, set.get("intervalSeconds"));
+        assertEquals(Duration.ofMinutes(30), Duration.between(set.get("completedAt", Instant.class), set.get("nextRunAt", Instant.class)));
+    }
+
+    @Test
+    void tryAcquireDue_ShouldRequireNextRunInQuery() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(RefreshLeaseDBO.class)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key error")));
+
+        StepVerifier.create(leaseService.tryAcquireDue("job"))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(RefreshLeaseDBO.class));
+        assertTrue(query.getValue().getQueryObject().containsKey("$or"));
+    }
+
+    @Test
+    void countCalls_NewMonth_ShouldResetCounter() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(RefreshLeaseDBO.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(leaseService.countCalls(new RefreshLease("job", "node-1", 3L), 4))
+                .verifyComplete();
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), update.capture(), eq(RefreshLeaseDBO.class));
+        assertEquals(4L, update.getAllValues().get(0).getUpdateObject().get("$inc", Document.class).get("budgetUsed"));
+        Document reset = update.getAllValues().get(1).getUpdateObject().get("$set", Document.class);
+        assertEquals(YearMonth.now(ZoneOffset.UTC).toString(), reset.get("budgetMonth"));
+        assertEquals(4L, reset.get("budgetUsed"));
+    }
+
+    @Test
+    void schedule_PreviousMonth_ShouldNotCountOldCalls() {
+        Instant next = Instant.now().plusSeconds(600);
+        when(mongoTemplate.findById("job", RefreshLeaseDBO.class))
+                .thenReturn(Mono.just(new RefreshLeaseDBO("job", "node-1", 3L, Instant.now(), Instant.now(),
+                        next, 600L, "2000-01", 999L)));
+
+        StepVerifier.create(leaseService.schedule("job"))
+                .expectNext(new RefreshSchedule(next, Duration.ofMinutes(10), 0))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.spbstu.hsai.rates.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.spbstu.hsai.currency.PairKey;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscribedPairsTest {
+    private static final int USD_EUR = PairKey.of("USD", "EUR");
+    private static final int EUR_RUB = PairKey.of("EUR", "RUB");
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final SubscribedPairs subscribedPairs = new SubscribedPairs(registry);
+
+    @Test
+    void beforeLoad_AllPairsShouldPass() {
+        assertTrue(subscribedPairs.isSubscribed(USD_EUR));
+        assertNull(subscribedPairs.mask(new String[]{"EUR", "USD"}));
+    }
+
+    @Test
+    void subscriptions_ShouldBeCountedPerAlert() {
+        subscribedPairs.replaceAll(new int[]{USD_EUR, USD_EUR, EUR_RUB});
+        assertEquals(2.0, registry.get("rates.subscribed.pairs").gauge().value());
+
+        subscribedPairs.unsubscribe(USD_EUR);
+        assertTrue(subscribedPairs.isSubscribed(USD_EUR));
+
+        subscribedPairs.unsubscribe(USD_EUR);
+        subscribedPairs.unsubscribe(USD_EUR);
+        assertFalse(subscribedPairs.isSubscribed(USD_EUR));
+        assertTrue(subscribedPairs.isSubscribed("EUR", "RUB"));
+        assertEquals(1, subscribedPairs.size());
+
+        subscribedPairs.subscribe(USD_EUR);
+        assertTrue(subscribedPairs.isSubscribed(USD_EUR));
+        assertEquals(2.0, registry.get("rates.subscribed.pairs").gauge().value());
+    }
+
+    @Test
+    void mask_ShouldFollowMatrixLayoutAndSubscriptions() {
+        String[] codes = {"EUR", "RUB", "USD"};
+        subscribedPairs.replaceAll(new int[]{USD_EUR, EUR_RUB, PairKey.of("USD", "JPY")});
+
+        long[] mask = subscribedPairs.mask(codes);
+        // EUR/RUB = 0 * 3 + 1, USD/EUR = 2 * 3 + 0
+        assertArrayEquals(new long[]{1L << 1 | 1L << 6}, mask);
+        assertSame(mask, subscribedPairs.mask(codes.clone()));
+
+        subscribedPairs.unsubscribe(EUR_RUB);
+        assertArrayEquals(new long[]{1L << 6}, subscribedPairs.mask(codes));
+    }
+}
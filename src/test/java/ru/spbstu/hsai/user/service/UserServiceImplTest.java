@@ -13,6 +13,7 @@ import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import ru.spbstu.hsai.exceptions.CCBException;
@@ -202,4 +203,28 @@ class UserServiceImplTest {
                         ex.getMessage().contains("Настроек пользователя не было найдено"))
                 .verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    void migrateCurrencyPairIds_LegacyId_RewritesSettings() {
+        ObjectId legacyId = ObjectId.get();
+        ObjectId stableId = new ObjectId(new byte[]{0, 0, 0, 0, 'U', 'S', 'D', 'E', 'U', 'R', 0, 0});
+        SettingsDBO legacy = new SettingsDBO(1L, "RUB", legacyId);
+        SettingsDBO migrated = new SettingsDBO(2L, "RUB", stableId);
+
+        when(settingsDAO.findAll()).thenReturn(Flux.just(legacy, migrated));
+        when(ratesService.getDefaultPairString(legacyId)).thenReturn(Mono.just("USD/EUR"));
+        when(ratesService.isStablePairId(any())).thenAnswer(invocation -> stableId.equals(invocation.getArgument(0)));
+        when(ratesService.getCurrencyPairId("USD", "EUR")).thenReturn(Mono.just(stableId));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(SettingsDBO.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+        StepVerifier.create(userService.migrateCurrencyPairIds())
+                .expectNext(1L)
+                .verifyComplete();
+
+        verify(ratesService, never()).getDefaultPairString(stableId);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), updateCaptor.capture(), eq(SettingsDBO.class));
+        assertEquals(stableId, updateCaptor.getValue().getUpdateObject().get("$set", Document.class).get("currencyPairId"));
+    }
+}